@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal;
+
+
+/**
+ * The statistics of the cached resources under a path prefix: how many are cached, and how often they were found in,
+ * or missing from, the resource cache when they were requested.  Requests for resources that have since left the
+ * cache are not counted.
+ */
+public class CacheStatistics {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final int resourceCount;
+    private final long hitCount;
+    private final long missCount;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    public CacheStatistics(int resourceCount, long hitCount, long missCount) {
+        this.resourceCount = resourceCount;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public
+    //-------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{resourceCount=" + resourceCount + ", hitCount=" + hitCount + ", missCount=" + missCount + "}";
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal;
+
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.hal.client.HalClient;
+import com.amazonaws.hal.client.HalTransport;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.http.JsonErrorResponseHandler;
+import com.amazonaws.transform.JsonErrorUnmarshaller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The HalService simplifies the configuration and access to an AWS HAL-based service API.  It is constructed
+ * with service information, the interface class that describes the service's root resource, and an optional path
+ * to the service root (if not specified it is assumed to be "/").  A HalService can be further configured,
+ * using the builder pattern, to use a particular AWSCredentialsProvider or ClientConfiguration.
+ *
+ * Once configured, this class is used to retrieve the service's root resource.
+ *
+ * @param <T> The type of the root resource.
+ */
+public class HalService<T> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private String endpoint;
+    private String serviceName;
+    private String regionId;
+    private Class<T> rootClass;
+    private String rootPath;
+    private ClientConfiguration clientConfiguration;
+    private AWSCredentialsProvider awsCredentialsProvider;
+    private Map<String, Object> resourceCache;
+    private PinnedResources pinnedResources;
+    private WriteBehind writeBehind;
+    private ResiliencePolicy resiliencePolicy;
+    private HedgingPolicy hedgingPolicy;
+    private HalTransport transport;
+    private int requestCompressionThreshold = -1;
+    private boolean binaryRepresentations;
+    private boolean conditionalWrites;
+    private boolean zeroGetCreates;
+    private long missingResourceTtlMillis;
+    private HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+    private HalClient sharedHalClient;
+    private volatile HalClient halClient;
+
+    public static String DEFAULT_ROOT_PATH = "/";
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    public HalService(String endpoint, String serviceName, String regionId, Class<T> rootClass,
+                      HttpResponseHandler<AmazonServiceException> errorResponseHandler) {
+        this(endpoint, serviceName, regionId, rootClass, DEFAULT_ROOT_PATH, errorResponseHandler);
+    }
+
+
+    public HalService(String endpoint, String serviceName, String regionId, Class<T> rootClass, String rootPath,
+                      HttpResponseHandler<AmazonServiceException> errorResponseHandler) {
+        this.endpoint = endpoint;
+        this.serviceName = serviceName;
+        this.regionId = regionId;
+        this.rootClass = rootClass;
+        this.rootPath = rootPath;
+        this.errorResponseHandler = errorResponseHandler;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Configuration
+    //-------------------------------------------------------------
+
+    public HalService<T> with(ClientConfiguration clientConfiguration) {
+        setClientConfiguration(clientConfiguration);
+
+        return this;
+    }
+
+
+    public void setClientConfiguration(ClientConfiguration clientConfiguration) {
+        this.clientConfiguration = clientConfiguration;
+    }
+
+
+    public HalService<T> with(AWSCredentialsProvider awsCredentialsProvider) {
+        setAwsCredentialsProvider(awsCredentialsProvider);
+
+        return this;
+    }
+
+
+    public void setAwsCredentialsProvider(AWSCredentialsProvider awsCredentialsProvider) {
+        this.awsCredentialsProvider = awsCredentialsProvider;
+    }
+
+
+    public HalService<T> with(Map<String, Object> resourceCache) {
+        setResourceCache(resourceCache);
+
+        return this;
+    }
+
+
+    public void setResourceCache(Map<String, Object> resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+
+    /**
+     * Keep the root resource, and the entry points configured in pinnedResources, resident.  They are prefetched in
+     * the background once the service's client is created (by prepare() or the first getRootResource()), and
+     * afterwards are served without a request and refreshed in the background.
+     *
+     * @param pinnedResources the pinned resource configuration
+     * @return this HalService
+     */
+    public HalService<T> with(PinnedResources pinnedResources) {
+        setPinnedResources(pinnedResources);
+
+        return this;
+    }
+
+
+    public void setPinnedResources(PinnedResources pinnedResources) {
+        this.pinnedResources = pinnedResources;
+    }
+
+
+    /**
+     * Queue writes whose result is not used, and merge the writes to each resource, as configured by writeBehind.
+     *
+     * @param writeBehind the write-behind configuration
+     * @return this HalService
+     */
+    public HalService<T> with(WriteBehind writeBehind) {
+        setWriteBehind(writeBehind);
+
+        return this;
+    }
+
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+
+    /**
+     * Retry failed GETs, and fall back to stale versions of resources when the retries are exhausted, as configured
+     * by resiliencePolicy.
+     *
+     * @param resiliencePolicy the resilience configuration
+     * @return this HalService
+     */
+    public HalService<T> with(ResiliencePolicy resiliencePolicy) {
+        setResiliencePolicy(resiliencePolicy);
+
+        return this;
+    }
+
+
+    public void setResiliencePolicy(ResiliencePolicy resiliencePolicy) {
+        this.resiliencePolicy = resiliencePolicy;
+    }
+
+
+    /**
+     * Hedge slow GETs, as configured by hedgingPolicy.  Hedging requires a transport, set with with(HalTransport).
+     *
+     * @param hedgingPolicy the hedging configuration
+     * @return this HalService
+     */
+    public HalService<T> with(HedgingPolicy hedgingPolicy) {
+        setHedgingPolicy(hedgingPolicy);
+
+        return this;
+    }
+
+
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+
+    /**
+     * Send requests through a HalTransport, such as NioHalTransport, instead of the default blocking HTTP client.
+     *
+     * @param transport the transport to use
+     * @return this HalService
+     */
+    public HalService<T> with(HalTransport transport) {
+        setTransport(transport);
+
+        return this;
+    }
+
+
+    public void setTransport(HalTransport transport) {
+        this.transport = transport;
+    }
+
+
+    /**
+     * Compress request bodies of at least the specified size with gzip.  Only use this with services that accept
+     * gzip-encoded requests.  Responses are always decompressed, whatever this setting.
+     *
+     * @param requestCompressionThreshold the size in bytes from which request bodies are compressed
+     * @return this HalService
+     */
+    public HalService<T> withRequestCompressionThreshold(int requestCompressionThreshold) {
+        setRequestCompressionThreshold(requestCompressionThreshold);
+
+        return this;
+    }
+
+
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+
+    /**
+     * Prefer representations in a binary HAL encoding (CBOR or Smile) over JSON, for services that can produce them.
+     * This requires the matching Jackson dataformat module on the classpath.
+     *
+     * @param binaryRepresentations true to prefer binary representations
+     * @return this HalService
+     */
+    public HalService<T> withBinaryRepresentations(boolean binaryRepresentations) {
+        setBinaryRepresentations(binaryRepresentations);
+
+        return this;
+    }
+
+
+    public void setBinaryRepresentations(boolean binaryRepresentations) {
+        this.binaryRepresentations = binaryRepresentations;
+    }
+
+
+    /**
+     * Send If-Match with PUTs and PATCHes of resources whose ETag is known, so writes based on an outdated version
+     * fail with a PreconditionFailedException instead of overwriting someone else's changes.
+     *
+     * @param conditionalWrites true to make writes conditional
+     * @return this HalService
+     */
+    public HalService<T> withConditionalWrites(boolean conditionalWrites) {
+        setConditionalWrites(conditionalWrites);
+
+        return this;
+    }
+
+
+    public void setConditionalWrites(boolean conditionalWrites) {
+        this.conditionalWrites = conditionalWrites;
+    }
+
+
+    /**
+     * Cache the resources created by POSTs without retrieving them: the created representation is asked for with
+     * "Prefer: return=representation", and if the service only returns a Location, the resource is built from the
+     * posted representation and retrieved only when something it lacks is used.
+     *
+     * @param zeroGetCreates true to build created resources from the posted representations
+     * @return this HalService
+     */
+    public HalService<T> withZeroGetCreates(boolean zeroGetCreates) {
+        setZeroGetCreates(zeroGetCreates);
+
+        return this;
+    }
+
+
+    public void setZeroGetCreates(boolean zeroGetCreates) {
+        this.zeroGetCreates = zeroGetCreates;
+    }
+
+
+    /**
+     * Remember, for a short time, the resources the service answered 404 Not Found or 410 Gone for, so retrieving
+     * them again fails without a request.
+     *
+     * @param missingResourceTtl how long a missing resource is remembered, or 0 not to remember them
+     * @param unit the unit of missingResourceTtl
+     * @return this HalService
+     */
+    public HalService<T> withMissingResourceTtl(long missingResourceTtl, TimeUnit unit) {
+        setMissingResourceTtlMillis(unit.toMillis(missingResourceTtl));
+
+        return this;
+    }
+
+
+    public void setMissingResourceTtlMillis(long missingResourceTtlMillis) {
+        if (missingResourceTtlMillis < 0) {
+            throw new IllegalArgumentException("The time to live of missing resources can't be negative.");
+        }
+
+        this.missingResourceTtlMillis = missingResourceTtlMillis;
+    }
+
+
+    /**
+     * Use an existing HalClient, typically the one of another HalService for the same endpoint, instead of creating
+     * one.  Services that share a client share its connection pool and resource cache.  The client keeps its own
+     * configuration, so the endpoint, region, ClientConfiguration, AWSCredentialsProvider, resource cache, error
+     * response handler, transport, representation, write-behind, conditional write, create, missing resource,
+     * resilience and hedging settings of this HalService are not used.
+     *
+     * @param halClient the client to use
+     * @return this HalService
+     */
+    public HalService<T> with(HalClient halClient) {
+        setHalClient(halClient);
+
+        return this;
+    }
+
+
+    public void setHalClient(HalClient halClient) {
+        this.sharedHalClient = halClient;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public
+    //-------------------------------------------------------------
+
+    /**
+     * Walk the resource interfaces reachable from the root resource interface and prepare everything needed to
+     * invoke them, so that cost is paid here rather than by the first requests.  This is optional; call it at
+     * startup to reduce cold-start latency and to detect incorrectly declared interfaces early.
+     *
+     * @return this HalService
+     * @throws IllegalArgumentException if any of the reachable interfaces is declared incorrectly.
+     */
+    public HalService<T> prepare() {
+        getHalClient().prepare(rootClass);
+
+        return this;
+    }
+
+
+    public T getRootResource() {
+        return getHalClient().getResource(rootClass, rootPath);
+    }
+
+
+    /**
+     * Get the HalClient used by this service, creating it on first use.  The client can be passed to other
+     * HalServices so they share it.
+     *
+     * @return the HalClient
+     */
+    public HalClient getHalClient() {
+        HalClient result = halClient;
+
+        if (result == null) {
+            synchronized (this) {
+                result = halClient;
+
+                if (result == null) {
+                    result = sharedHalClient == null ? createHalClient() : sharedHalClient;
+
+                    if (pinnedResources != null) {
+                        List<String> pinnedPaths = new ArrayList<>();
+
+                        pinnedPaths.add(rootPath);
+                        pinnedPaths.addAll(pinnedResources.getEntryPoints());
+
+                        result.pinResources(pinnedPaths, pinnedResources.getRefreshIntervalMillis());
+                    }
+
+                    halClient = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private HalClient createHalClient() {
+        HalClient halClient = new HalClient(clientConfiguration == null ? new ClientConfiguration() : clientConfiguration,
+                                            endpoint,
+                                            serviceName,
+                                            awsCredentialsProvider == null ? new DefaultAWSCredentialsProviderChain() : awsCredentialsProvider,
+                                            resourceCache == null ? ImmediatelyExpiringCache.getInstance() : resourceCache,
+                                            errorResponseHandler);
+
+        if (regionId != null) {
+            halClient.setSignerRegionOverride(regionId);
+        }
+
+        halClient.setTransport(transport);
+        halClient.setRequestCompressionThreshold(requestCompressionThreshold);
+        halClient.setBinaryRepresentations(binaryRepresentations);
+        halClient.setConditionalWrites(conditionalWrites);
+        halClient.setZeroGetCreates(zeroGetCreates);
+        halClient.setMissingResourceTtlMillis(missingResourceTtlMillis);
+        halClient.setWriteBehind(writeBehind);
+        halClient.setResiliencePolicy(resiliencePolicy);
+        halClient.setHedgingPolicy(hedgingPolicy);
+
+        return halClient;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Configures the hedging of a HalService's GETs.  When a GET has not been answered after a delay, derived from a
+ * percentile of the latencies the client has observed, the same GET is sent again; whichever response arrives
+ * first is used, and the other request is cancelled: it is not sent if it is still waiting for a connection, and
+ * its response is discarded without being parsed otherwise.  This cuts the tail latency caused by a slow server or
+ * connection, which adds up over traversals that follow many links one after the other.
+ *
+ * Hedges are limited to a share of the GETs by a budget that works like the retry budget of a ResiliencePolicy.
+ * Hedging can be restricted to the GETs that follow given link relations; resources of linked lists and maps,
+ * which are retrieved when first used, are then not hedged.  Hedging requires a HalTransport, since the blocking
+ * HTTP client can't have two requests in flight for one call.
+ *
+ * A HedgingPolicy instance is configured using the builder pattern, and passed to HalService.with().
+ */
+public class HedgingPolicy {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private double percentile = DEFAULT_PERCENTILE;
+    private long minDelayMillis = DEFAULT_MIN_DELAY_MILLIS;
+    private double maxHedgeRate = DEFAULT_MAX_HEDGE_RATE;
+    private int maxHedgeBurst = DEFAULT_MAX_HEDGE_BURST;
+    private Set<String> relations = new LinkedHashSet<>();
+
+    public static double DEFAULT_PERCENTILE = 95;
+    public static long DEFAULT_MIN_DELAY_MILLIS = 5;
+    public static double DEFAULT_MAX_HEDGE_RATE = 0.05;
+    public static int DEFAULT_MAX_HEDGE_BURST = 10;
+
+
+    //-------------------------------------------------------------
+    // Methods - Configuration
+    //-------------------------------------------------------------
+
+    public HedgingPolicy withPercentile(double percentile) {
+        setPercentile(percentile);
+
+        return this;
+    }
+
+
+    /**
+     * @return the percentile of the observed GET latencies after which a GET is hedged.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+
+    public void setPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+
+        this.percentile = percentile;
+    }
+
+
+    public HedgingPolicy withMinDelay(long minDelay, TimeUnit unit) {
+        setMinDelayMillis(unit.toMillis(minDelay));
+
+        return this;
+    }
+
+
+    /**
+     * @return the shortest delay after which a GET is hedged, whatever the observed latencies.
+     */
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+
+    public void setMinDelayMillis(long minDelayMillis) {
+        if (minDelayMillis < 0) {
+            throw new IllegalArgumentException("The minimum delay can't be negative.");
+        }
+
+        this.minDelayMillis = minDelayMillis;
+    }
+
+
+    public HedgingPolicy withMaxHedgeRate(double maxHedgeRate, int maxHedgeBurst) {
+        setMaxHedgeRate(maxHedgeRate, maxHedgeBurst);
+
+        return this;
+    }
+
+
+    /**
+     * @return the long-run ratio of hedges to GETs that is not exceeded.
+     */
+    public double getMaxHedgeRate() {
+        return maxHedgeRate;
+    }
+
+
+    /**
+     * @return the number of hedges that can be sent in a burst, when none were sent for a while.
+     */
+    public int getMaxHedgeBurst() {
+        return maxHedgeBurst;
+    }
+
+
+    public void setMaxHedgeRate(double maxHedgeRate, int maxHedgeBurst) {
+        if (maxHedgeRate < 0 || maxHedgeBurst < 0) {
+            throw new IllegalArgumentException("The hedge rate can't be negative.");
+        }
+
+        this.maxHedgeRate = maxHedgeRate;
+        this.maxHedgeBurst = maxHedgeBurst;
+    }
+
+
+    public HedgingPolicy withRelations(String... relations) {
+        setRelations(new LinkedHashSet<>(Arrays.asList(relations)));
+
+        return this;
+    }
+
+
+    /**
+     * @return the link relations whose GETs are hedged, or an empty set if all GETs are.
+     */
+    public Set<String> getRelations() {
+        return Collections.unmodifiableSet(relations);
+    }
+
+
+    public void setRelations(Set<String> relations) {
+        this.relations = new LinkedHashSet<>(relations);
+    }
+}
@@ -18,8 +18,13 @@ package com.amazonaws.hal;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 
 
+/**
+ * A JSON Patch (RFC 6902) document.  A JsonPatch passed as the representation of a PATCH is sent as
+ * application/json-patch+json, after redundant operations are coalesced.
+ */
 public class JsonPatch {
 
     //-------------------------------------------------------------
@@ -40,6 +45,59 @@ public class JsonPatch {
     }
 
 
+    /**
+     * Merge operations on the same path that the patch applies one after the other, with no operation on a related
+     * path (the same path, a parent or child, or a sibling array element) in between.  The coalesced patch has the
+     * same effect, and fails in the same cases, as this one:
+     *
+     *   replace, then replace or remove: the later operation alone;
+     *   add, then replace: add with the later value;
+     *   remove, then add: replace with the added value;
+     *   add or replace, then add of an object member: the first operation with the later value.
+     *
+     * Other operations, including test, move and copy, are kept as they are.
+     *
+     * @return a new patch with the coalesced operations.
+     */
+    public JsonPatch coalesce() {
+        List<Item> coalesced = new ArrayList<Item>(patchItems.size());
+        // The index in coalesced of the latest add, replace or remove of each path, until a related path is patched
+        TreeMap<String, Integer> mergeable = new TreeMap<String, Integer>();
+
+        for (Item patchItem : patchItems) {
+            Integer previousIndex = mergeable.get(patchItem.getPath());
+            Item merged = previousIndex == null ? null : merge(coalesced.get(previousIndex), patchItem);
+
+            if (merged != null) {
+                coalesced.set(previousIndex, null);
+                patchItem = merged;
+            }
+
+            forgetRelatedPaths(mergeable, patchItem.getPath());
+
+            if (patchItem instanceof FromItem) {
+                forgetRelatedPaths(mergeable, ((FromItem) patchItem).getFrom());
+            }
+
+            coalesced.add(patchItem);
+
+            if (patchItem instanceof Add || patchItem instanceof Replace || patchItem instanceof Remove) {
+                mergeable.put(patchItem.getPath(), coalesced.size() - 1);
+            }
+        }
+
+        JsonPatch coalescedPatch = new JsonPatch();
+
+        for (Item patchItem : coalesced) {
+            if (patchItem != null) {
+                coalescedPatch.with(patchItem);
+            }
+        }
+
+        return coalescedPatch;
+    }
+
+
     //-------------------------------------------------------------
     // Methods - Getter/Setter
     //-------------------------------------------------------------
@@ -54,11 +112,84 @@ public class JsonPatch {
     }
 
 
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @return the single operation equivalent to the previous operation followed by the next one on the same path,
+     *         or null if they can't be merged.
+     */
+    private static Item merge(Item previous, Item next) {
+        String path = next.getPath();
+        boolean arrayElement = isArrayElement(path);
+
+        // "-" refers to a different position for add than for the other operations
+        if (path.endsWith("/-")) {
+            return null;
+        } else if (previous instanceof Replace && (next instanceof Replace || next instanceof Remove)) {
+            return next;
+        } else if (previous instanceof Add && next instanceof Replace) {
+            return new Add(path, ((Replace) next).getValue());
+        } else if (previous instanceof Remove && next instanceof Add) {
+            return new Replace(path, ((Add) next).getValue());
+        } else if (previous instanceof Add && next instanceof Add && !arrayElement) {
+            return next;
+        } else if (previous instanceof Replace && next instanceof Add && !arrayElement) {
+            return new Replace(path, ((Add) next).getValue());
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Stop merging into the operations on the path, its parents and children, and, for array elements, the other
+     * elements of the array, whose indexes the operation may shift.
+     */
+    private static void forgetRelatedPaths(TreeMap<String, Integer> mergeable, String path) {
+        int slash = path.lastIndexOf('/');
+        String related = isArrayElement(path) && slash >= 0 ? path.substring(0, slash) : path;
+
+        mergeable.remove(related);
+        mergeable.subMap(related + "/", related + "0").clear();
+
+        for (int i = related.lastIndexOf('/'); i >= 0; i = related.lastIndexOf('/', i - 1)) {
+            mergeable.remove(related.substring(0, i));
+
+            if (i == 0) {
+                break;
+            }
+        }
+    }
+
+
+    /**
+     * @return true if the last segment of the path may be an array index.  Object members named like indexes are
+     *         treated the same way, which only makes coalescing more cautious.
+     */
+    private static boolean isArrayElement(String path) {
+        String segment = path.substring(path.lastIndexOf('/') + 1);
+
+        if (segment.equals("-")) {
+            return true;
+        }
+
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+
+        return !segment.isEmpty();
+    }
+
+
     //-------------------------------------------------------------
     // Inner Classes
     //-------------------------------------------------------------
 
-    abstract static class Item {
+    public abstract static class Item {
 
         //-------------------------------------------------------------
         // Variables - Private
@@ -92,21 +223,25 @@ public class JsonPatch {
         }
     }
 
-    
-    abstract static class ValueItem extends Item {
+
+    /**
+     * An operation with a value.  Values are sent as JSON of their own type: strings, numbers, booleans, null,
+     * Maps and Collections, or beans, which are marshalled like representations.
+     */
+    public abstract static class ValueItem extends Item {
 
         //-------------------------------------------------------------
         // Variables - Private
         //-------------------------------------------------------------
 
-        private String value;
+        private Object value;
 
 
         //-------------------------------------------------------------
         // Constructors
         //-------------------------------------------------------------
 
-        public ValueItem(String path, String value) {
+        public ValueItem(String path, Object value) {
             super(path);
 
             this.value = value;
@@ -117,13 +252,13 @@ public class JsonPatch {
         // Methods - Getter/Setter
         //-------------------------------------------------------------
 
-        public String getValue() {
+        public Object getValue() {
             return value;
         }
     }
-    
-    
-    abstract static class FromItem extends Item {
+
+
+    public abstract static class FromItem extends Item {
 
         //-------------------------------------------------------------
         // Variables - Private
@@ -159,7 +294,7 @@ public class JsonPatch {
         // Constructors
         //-------------------------------------------------------------
 
-        public Add(String path, String value) {
+        public Add(String path, Object value) {
             super(path, value);
         }
 
@@ -203,8 +338,8 @@ public class JsonPatch {
         // Constructors
         //-------------------------------------------------------------
 
-        public Replace(String path, String from) {
-            super(path, from);
+        public Replace(String path, Object value) {
+            super(path, value);
         }
 
 
@@ -269,7 +404,7 @@ public class JsonPatch {
         // Constructors
         //-------------------------------------------------------------
 
-        public Test(String path, String value) {
+        public Test(String path, Object value) {
             super(path, value);
         }
 
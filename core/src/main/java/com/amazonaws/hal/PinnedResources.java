@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Configures the resources a HalService keeps resident: the service root and, optionally, a list of entry-point
+ * paths.  Pinned resources are prefetched in parallel in the background when the service's client is created, are
+ * never evicted by the resource cache, and are refreshed in the background rather than on the request path.
+ *
+ * A PinnedResources instance is configured using the builder pattern, and passed to HalService.with().
+ */
+public class PinnedResources {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private List<String> entryPoints = new ArrayList<>();
+    private long refreshIntervalMillis = DEFAULT_REFRESH_INTERVAL_MILLIS;
+
+    public static long DEFAULT_REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+
+    //-------------------------------------------------------------
+    // Methods - Configuration
+    //-------------------------------------------------------------
+
+    public PinnedResources withEntryPoints(String... entryPoints) {
+        setEntryPoints(Arrays.asList(entryPoints));
+
+        return this;
+    }
+
+
+    /**
+     * @return the paths of resources, other than the service root, that are kept resident.
+     */
+    public List<String> getEntryPoints() {
+        return Collections.unmodifiableList(entryPoints);
+    }
+
+
+    public void setEntryPoints(List<String> entryPoints) {
+        this.entryPoints = new ArrayList<>(entryPoints);
+    }
+
+
+    public PinnedResources withRefreshInterval(long refreshInterval, TimeUnit unit) {
+        setRefreshIntervalMillis(unit.toMillis(refreshInterval));
+
+        return this;
+    }
+
+
+    /**
+     * @return the time between the end of one background refresh of the pinned resources and the start of the next.
+     */
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        if (refreshIntervalMillis <= 0) {
+            throw new IllegalArgumentException("The refresh interval must be positive.");
+        }
+
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal;
+
+
+import com.amazonaws.AmazonServiceException;
+
+
+/**
+ * A conditional PUT or PATCH was rejected with 412 Precondition Failed, because the resource changed since the
+ * version the request was based on.  If the service returned the current representation with the response, it is
+ * available from getCurrentResource(), and the client's cached instances of the resource have been updated to it;
+ * otherwise they are retrieved again when next used.  Either way, the write can be recomputed and retried.
+ */
+public class PreconditionFailedException extends AmazonServiceException {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final transient ResourceInfo currentResource;
+    private final String currentETag;
+
+    private static final long serialVersionUID = 1L;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    public PreconditionFailedException(String message, ResourceInfo currentResource, String currentETag) {
+        super(message);
+
+        this.currentResource = currentResource;
+        this.currentETag = currentETag;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    /**
+     * @return the current representation of the resource, or null if the service didn't return it.
+     */
+    public ResourceInfo getCurrentResource() {
+        return currentResource;
+    }
+
+
+    /**
+     * @return the current ETag of the resource, or null if the service didn't return it.
+     */
+    public String getCurrentETag() {
+        return currentETag;
+    }
+}
@@ -16,6 +16,11 @@
 package com.amazonaws.hal;
 
 
+/**
+ * A link was followed whose relation is not in the resource's representation.  The message is the relation.  The
+ * client throws a new instance each time, without a stack trace, since a missing relation is often an expected
+ * outcome (such as no next page) rather than an error.
+ */
 public class RelationNotAvailableException extends RuntimeException {
 
     //-------------------------------------------------------------
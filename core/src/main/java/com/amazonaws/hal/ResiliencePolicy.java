@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Configures how a HalService's GETs deal with server errors (5xx) and failures to reach the service, such as
+ * timeouts.  A failed GET is retried, after a backoff with full jitter, up to the maximum number of retries, and as
+ * long as the retry budget allows it.  The budget grows by a fraction of a retry with every GET, up to a maximum, so
+ * during a brownout retries stay a bounded share of the traffic instead of piling up.
+ *
+ * When the retries are exhausted, a stale version of the resource is returned instead of the error, if the client
+ * has one that was retrieved or revalidated within the staleness limit.  A stale version is only available for
+ * resources that were retrieved before and have since been refreshed or marked stale, not for resources the
+ * client has never seen.
+ *
+ * While a ResiliencePolicy is set, GETs are only retried by it: those that don't go through a HalTransport are sent
+ * without the retries of the ClientConfiguration's retry policy, so a GET is sent at most maxRetries + 1 times.
+ * Other requests are still retried as the ClientConfiguration says.
+ *
+ * A ResiliencePolicy instance is configured using the builder pattern, and passed to HalService.with().
+ */
+public class ResiliencePolicy {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseBackoffMillis = DEFAULT_BASE_BACKOFF_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private double retryBudgetRatio = DEFAULT_RETRY_BUDGET_RATIO;
+    private int maxRetryBudget = DEFAULT_MAX_RETRY_BUDGET;
+    private long maxStalenessMillis = DEFAULT_MAX_STALENESS_MILLIS;
+
+    public static int DEFAULT_MAX_RETRIES = 2;
+    public static long DEFAULT_BASE_BACKOFF_MILLIS = 50;
+    public static long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+    public static double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+    public static int DEFAULT_MAX_RETRY_BUDGET = 10;
+    public static long DEFAULT_MAX_STALENESS_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+
+    //-------------------------------------------------------------
+    // Methods - Configuration
+    //-------------------------------------------------------------
+
+    public ResiliencePolicy withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+
+        return this;
+    }
+
+
+    /**
+     * @return the number of times a failed GET is retried, budget permitting.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("The maximum number of retries can't be negative.");
+        }
+
+        this.maxRetries = maxRetries;
+    }
+
+
+    public ResiliencePolicy withBackoff(long baseBackoff, long maxBackoff, TimeUnit unit) {
+        setBackoffMillis(unit.toMillis(baseBackoff), unit.toMillis(maxBackoff));
+
+        return this;
+    }
+
+
+    /**
+     * @return the backoff before the first retry.  The backoff doubles with every retry, up to the maximum, and the
+     *         delay actually waited is chosen at random between 0 and the backoff.
+     */
+    public long getBaseBackoffMillis() {
+        return baseBackoffMillis;
+    }
+
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+
+    public void setBackoffMillis(long baseBackoffMillis, long maxBackoffMillis) {
+        if (baseBackoffMillis < 0 || maxBackoffMillis < baseBackoffMillis) {
+            throw new IllegalArgumentException("The base backoff can't be negative or greater than the maximum backoff.");
+        }
+
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+
+    public ResiliencePolicy withRetryBudget(double retryBudgetRatio, int maxRetryBudget) {
+        setRetryBudget(retryBudgetRatio, maxRetryBudget);
+
+        return this;
+    }
+
+
+    /**
+     * @return the fraction of a retry every GET adds to the retry budget, which is the long-run ratio of retries to
+     *         GETs.
+     */
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+
+    /**
+     * @return the number of retries the budget can hold, which is also the budget the client starts with.
+     */
+    public int getMaxRetryBudget() {
+        return maxRetryBudget;
+    }
+
+
+    public void setRetryBudget(double retryBudgetRatio, int maxRetryBudget) {
+        if (retryBudgetRatio < 0 || maxRetryBudget < 0) {
+            throw new IllegalArgumentException("The retry budget can't be negative.");
+        }
+
+        this.retryBudgetRatio = retryBudgetRatio;
+        this.maxRetryBudget = maxRetryBudget;
+    }
+
+
+    public ResiliencePolicy withMaxStaleness(long maxStaleness, TimeUnit unit) {
+        setMaxStalenessMillis(unit.toMillis(maxStaleness));
+
+        return this;
+    }
+
+
+    /**
+     * @return how long after it was last retrieved or revalidated a version of a resource can still be returned
+     *         in place of an error.
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+
+    public void setMaxStalenessMillis(long maxStalenessMillis) {
+        if (maxStalenessMillis < 0) {
+            throw new IllegalArgumentException("The staleness limit can't be negative.");
+        }
+
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+}
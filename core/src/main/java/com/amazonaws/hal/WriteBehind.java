@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Configures the write-behind mode of a HalService.  In write-behind mode, PUTs and PATCHes whose result is not used
+ * (those of void methods, or called with Void.class) are queued rather than sent right away.  Writes to the same
+ * resource that arrive before the queued one is flushed are merged with it: a PUT replaces everything queued
+ * before it, and JsonPatches are appended and coalesced, or applied to a queued PUT.  Queued writes are flushed
+ * after the flush delay by a bounded pool of threads, and when the client is shut down.  Until a write is flushed,
+ * reads of the resource return the version cached before it.
+ *
+ * A queued write that fails can't be reported to its caller, so it is logged and passed to the error callback.
+ *
+ * A WriteBehind instance is configured using the builder pattern, and passed to HalService.with().
+ */
+public class WriteBehind {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private long flushDelayMillis = DEFAULT_FLUSH_DELAY_MILLIS;
+    private int flushThreads = DEFAULT_FLUSH_THREADS;
+    private int maxQueuedResources = DEFAULT_MAX_QUEUED_RESOURCES;
+    private ErrorCallback errorCallback;
+
+    public static long DEFAULT_FLUSH_DELAY_MILLIS = 100;
+    public static int DEFAULT_FLUSH_THREADS = 2;
+    public static int DEFAULT_MAX_QUEUED_RESOURCES = 1000;
+
+
+    //-------------------------------------------------------------
+    // Methods - Configuration
+    //-------------------------------------------------------------
+
+    public WriteBehind withFlushDelay(long flushDelay, TimeUnit unit) {
+        setFlushDelayMillis(unit.toMillis(flushDelay));
+
+        return this;
+    }
+
+
+    /**
+     * @return the time a write is held in the queue, collecting later writes to the same resource, before it is sent.
+     */
+    public long getFlushDelayMillis() {
+        return flushDelayMillis;
+    }
+
+
+    public void setFlushDelayMillis(long flushDelayMillis) {
+        if (flushDelayMillis < 0) {
+            throw new IllegalArgumentException("The flush delay can't be negative.");
+        }
+
+        this.flushDelayMillis = flushDelayMillis;
+    }
+
+
+    public WriteBehind withFlushThreads(int flushThreads) {
+        setFlushThreads(flushThreads);
+
+        return this;
+    }
+
+
+    /**
+     * @return the number of threads that send queued writes.
+     */
+    public int getFlushThreads() {
+        return flushThreads;
+    }
+
+
+    public void setFlushThreads(int flushThreads) {
+        if (flushThreads <= 0) {
+            throw new IllegalArgumentException("The number of flush threads must be positive.");
+        }
+
+        this.flushThreads = flushThreads;
+    }
+
+
+    public WriteBehind withMaxQueuedResources(int maxQueuedResources) {
+        setMaxQueuedResources(maxQueuedResources);
+
+        return this;
+    }
+
+
+    /**
+     * @return the number of resources that can have a write queued at the same time.  Once it is reached, writes to
+     *         other resources are sent right away, on the calling thread.
+     */
+    public int getMaxQueuedResources() {
+        return maxQueuedResources;
+    }
+
+
+    public void setMaxQueuedResources(int maxQueuedResources) {
+        if (maxQueuedResources <= 0) {
+            throw new IllegalArgumentException("The maximum number of queued resources must be positive.");
+        }
+
+        this.maxQueuedResources = maxQueuedResources;
+    }
+
+
+    public WriteBehind withErrorCallback(ErrorCallback errorCallback) {
+        setErrorCallback(errorCallback);
+
+        return this;
+    }
+
+
+    /**
+     * @return the callback that is told about queued writes that failed, or null if they are only logged.
+     */
+    public ErrorCallback getErrorCallback() {
+        return errorCallback;
+    }
+
+
+    public void setErrorCallback(ErrorCallback errorCallback) {
+        this.errorCallback = errorCallback;
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    public interface ErrorCallback {
+
+        /**
+         * A queued write failed.  This is called on the thread that flushed the write.
+         *
+         * @param resourcePath the path of the resource the write was for
+         * @param e the reason the write failed
+         */
+        void onError(String resourcePath, Exception e);
+    }
+}
@@ -21,15 +21,44 @@ import com.amazonaws.Response;
 import com.amazonaws.handlers.RequestHandler2;
 
 
+/**
+ * Negotiates the representation of responses: HAL JSON, or optionally a binary HAL encoding, compressed with gzip
+ * or deflate if the service supports it.  Compressed responses are inflated by DecompressingResponseHandler.
+ */
 class AcceptHalJsonRequestHandler extends RequestHandler2 {
 
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private volatile boolean binaryRepresentations;
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    boolean isBinaryRepresentations() {
+        return binaryRepresentations;
+    }
+
+
+    void setBinaryRepresentations(boolean binaryRepresentations) {
+        this.binaryRepresentations = binaryRepresentations;
+    }
+
+
     //-------------------------------------------------------------
     // Methods - Implementation
     //-------------------------------------------------------------
 
     @Override
     public void beforeRequest(Request<?> request) {
-        request.addHeader("Accept", "application/hal+json");
+        request.addHeader("Accept", HalFormat.getAcceptHeader(binaryRepresentations));
+
+        if (!request.getHeaders().containsKey("Accept-Encoding")) {
+            request.addHeader("Accept-Encoding", "gzip, deflate");
+        }
     }
 
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A HalCallback that the calling thread can wait on, used to implement the blocking HalClient operations on top of
+ * a non-blocking HalTransport.
+ *
+ * @param <T> The type of the result.
+ */
+class BlockingHalCallback<T>
+        implements HalCallback<T> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final long timeoutMillis;
+    private T result;
+    private Exception exception;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    /**
+     * @param timeoutMillis how long get() waits for the outcome, or 0 to wait for as long as it takes
+     */
+    BlockingHalCallback(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HalCallback
+    //-------------------------------------------------------------
+
+    @Override
+    public void onSuccess(T result) {
+        this.result = result;
+
+        done.countDown();
+    }
+
+
+    @Override
+    public void onError(Exception e) {
+        this.exception = e;
+
+        done.countDown();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Wait for the outcome of the operation.
+     *
+     * @return the result
+     * @throws AmazonClientException if the operation failed or timed out, or the calling thread was interrupted
+     *         while waiting.
+     */
+    T get() {
+        try {
+            if (timeoutMillis <= 0) {
+                done.await();
+            } else if (!done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new AmazonClientException("No response in " + timeoutMillis + " milliseconds.",
+                                                new SocketTimeoutException());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new AmazonClientException("Interrupted while waiting for a response.", e);
+        }
+
+        if (exception instanceof AmazonClientException) {
+            throw (AmazonClientException) exception;
+        } else if (exception != null) {
+            throw new AmazonClientException(exception.getMessage(), exception);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.CacheStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The paths of the cached resources, organized as a trie of path segments, so the resources under a path prefix can
+ * be listed, counted or dropped by visiting only that part of the trie rather than every key in the cache.  A query
+ * string is a segment of its own, below the path it belongs to.
+ *
+ * The resource cache is supplied by the caller and may evict entries without telling the index, so the index can
+ * hold paths that are no longer cached.  They are checked against the cache, and pruned, whenever their part of the
+ * trie is visited, and the whole trie is swept once as many paths have been added as it held after the last sweep,
+ * so it stays proportional to the cache at a constant amortized cost per path.
+ */
+class CachedPathIndex {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Map<String, Object> resourceCache;
+    private final Node root = new Node();
+    private int addsUntilSweep = MIN_SWEEP_INTERVAL;
+
+    private static final int MIN_SWEEP_INTERVAL = 1024;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    CachedPathIndex(Map<String, Object> resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Index a path that was just put in the resource cache.  Paths the cache did not keep are not indexed.
+     */
+    synchronized void add(String resourcePath) {
+        if (!resourceCache.containsKey(resourcePath)) {
+            return;
+        }
+
+        Node node = root;
+
+        for (String segment : getSegments(resourcePath, false)) {
+            Node child = node.children.get(segment);
+
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+
+            node = child;
+        }
+
+        if (!resourcePath.equals(node.resourcePath)) {
+            node.clear();
+            node.resourcePath = resourcePath;
+        }
+
+        if (--addsUntilSweep <= 0) {
+            List<Node> nodes = new ArrayList<>();
+
+            collect(root, nodes);
+            addsUntilSweep = Math.max(MIN_SWEEP_INTERVAL, nodes.size());
+        }
+    }
+
+
+    /**
+     * Remove a path, and the nodes above it that are left without a path or children.
+     */
+    synchronized void remove(String resourcePath) {
+        List<String> segments = getSegments(resourcePath, false);
+        List<Node> nodes = new ArrayList<>(segments.size() + 1);
+        Node node = root;
+
+        nodes.add(root);
+
+        for (String segment : segments) {
+            node = node.children.get(segment);
+
+            if (node == null) {
+                return;
+            }
+
+            nodes.add(node);
+        }
+
+        node.clear();
+
+        for (int i = segments.size(); i > 0 && nodes.get(i).isEmpty(); i--) {
+            nodes.get(i - 1).children.remove(segments.get(i - 1));
+        }
+    }
+
+
+    /**
+     * Count a request for a resource that was found in the cache.  This does not lock the index.
+     */
+    void recordHit(String resourcePath) {
+        Node node = find(resourcePath, false);
+
+        if (node != null && node.resourcePath != null) {
+            node.hits.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Count a request for a resource that had to be retrieved, after it was added.  This does not lock the index.
+     */
+    void recordMiss(String resourcePath) {
+        Node node = find(resourcePath, false);
+
+        if (node != null && node.resourcePath != null) {
+            node.misses.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * @return the cached paths that start with the prefix, compared segment by segment, in segment order.
+     */
+    synchronized List<String> getPaths(String pathPrefix) {
+        List<String> resourcePaths = new ArrayList<>();
+
+        for (Node node : collect(pathPrefix)) {
+            resourcePaths.add(node.resourcePath);
+        }
+
+        return resourcePaths;
+    }
+
+
+    synchronized CacheStatistics getStatistics(String pathPrefix) {
+        List<Node> nodes = collect(pathPrefix);
+        long hits = 0;
+        long misses = 0;
+
+        for (Node node : nodes) {
+            hits += node.hits.get();
+            misses += node.misses.get();
+        }
+
+        return new CacheStatistics(nodes.size(), hits, misses);
+    }
+
+
+    /**
+     * Drop the part of the trie under a prefix.
+     *
+     * @return the paths that were cached under the prefix, which the caller removes from the cache.
+     */
+    synchronized List<String> removeAll(String pathPrefix) {
+        List<String> resourcePaths = getPaths(pathPrefix);
+        List<String> segments = getSegments(pathPrefix, true);
+        Node parent = find(segments.subList(0, segments.size() - 1));
+
+        if (parent != null) {
+            parent.children.remove(segments.get(segments.size() - 1));
+        }
+
+        return resourcePaths;
+    }
+
+
+    /**
+     * @return the number of nodes in the trie, including the root.
+     */
+    synchronized int getNodeCount() {
+        return getNodeCount(root);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private int getNodeCount(Node node) {
+        int count = 1;
+
+        for (Node child : node.children.values()) {
+            count += getNodeCount(child);
+        }
+
+        return count;
+    }
+
+
+    private Node find(String path, boolean prefix) {
+        return find(getSegments(path, prefix));
+    }
+
+
+    private Node find(List<String> segments) {
+        Node node = root;
+
+        for (int i = 0; i < segments.size() && node != null; i++) {
+            node = node.children.get(segments.get(i));
+        }
+
+        return node;
+    }
+
+
+    /**
+     * @return the nodes of the paths under a prefix that are still cached.
+     */
+    private List<Node> collect(String pathPrefix) {
+        List<Node> nodes = new ArrayList<>();
+        Node node = find(pathPrefix, true);
+
+        if (node != null) {
+            collect(node, nodes);
+        }
+
+        return nodes;
+    }
+
+
+    private void collect(Node node, List<Node> nodes) {
+        if (node.resourcePath != null) {
+            if (resourceCache.containsKey(node.resourcePath)) {
+                nodes.add(node);
+            } else {
+                node.clear();
+            }
+        }
+
+        Iterator<Node> children = node.children.values().iterator();
+
+        while (children.hasNext()) {
+            Node child = children.next();
+
+            collect(child, nodes);
+
+            if (child.isEmpty()) {
+                children.remove();
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * Split a path into its segments, with the query string, if any, as the last one.  A trailing slash of a prefix is
+     * ignored, so "/orders/123/" covers the same paths as "/orders/123".
+     */
+    private static List<String> getSegments(String path, boolean prefix) {
+        int queryIndex = path.indexOf('?');
+        List<String> segments = new ArrayList<>(Arrays.asList((queryIndex < 0 ? path : path.substring(0, queryIndex)).split("/", -1)));
+
+        if (queryIndex >= 0) {
+            segments.add(path.substring(queryIndex));
+        } else if (prefix && segments.size() > 1 && segments.get(segments.size() - 1).isEmpty()) {
+            segments.remove(segments.size() - 1);
+        }
+
+        return segments;
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class Node {
+        // Children are added and removed with the index locked, but read without locking to count hits and misses.
+        private final ConcurrentMap<String, Node> children = new ConcurrentSkipListMap<>();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private volatile String resourcePath;
+
+
+        private void clear() {
+            resourcePath = null;
+            hits.set(0);
+            misses.set(0);
+        }
+
+
+        private boolean isEmpty() {
+            return resourcePath == null && children.isEmpty();
+        }
+    }
+}
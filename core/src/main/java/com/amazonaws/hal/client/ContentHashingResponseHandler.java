@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.util.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+
+
+/**
+ * A response handler that hashes the response body before it is parsed.  The hash is kept on the HalResource parsed
+ * from the body.  If the body hashes the same as the body of the previously known version of the resource, and the
+ * ETag (if any) is the same, the body is not parsed and the previous HalResource is returned, so it keeps its
+ * memoized conversions.  This allows refreshes of services that don't provide validators (e.g. ETags) to detect that
+ * nothing changed.
+ */
+class ContentHashingResponseHandler extends HalResponseHandler<HalResource> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private HalResource previousResource;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    /**
+     * @param previousResource The previously known version of the resource, or null if there is none.
+     */
+    ContentHashingResponseHandler(HalResource previousResource) {
+        super(HalJsonResourceUnmarshaller.getInstance());
+
+        this.previousResource = previousResource;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HttpResponseHandler
+    //-------------------------------------------------------------
+
+    @Override
+    public AmazonWebServiceResponse<HalResource> handle(HttpResponse response)
+            throws Exception {
+        if (response.getContent() == null) {
+            return super.handle(response);
+        }
+
+        byte[] content;
+
+        // The transports hand over the body already read into memory, so this is a copy rather than a read.
+        try (InputStream stream = response.getContent()) {
+            content = IOUtils.toByteArray(stream);
+        }
+
+        byte[] contentHash = MessageDigest.getInstance("MD5").digest(content);
+
+        if (previousResource != null && Arrays.equals(contentHash, previousResource.getContentHash())
+            && Objects.equals(getHeader(response, "ETag"), previousResource.getETag())) {
+            AmazonWebServiceResponse<HalResource> awsResponse = new AmazonWebServiceResponse<>();
+
+            awsResponse.setResult(previousResource);
+            awsResponse.setResponseMetadata(new ResponseMetadata(Collections.singletonMap(ResponseMetadata.AWS_REQUEST_ID,
+                                                                                          getHeader(response, "x-amzn-RequestId"))));
+
+            return awsResponse;
+        }
+
+        response.setContent(new ByteArrayInputStream(content));
+
+        AmazonWebServiceResponse<HalResource> awsResponse = super.handle(response);
+
+        if (awsResponse.getResult() != null) {
+            awsResponse.getResult().setContentHash(contentHash);
+        }
+
+        return awsResponse;
+    }
+}
@@ -22,13 +22,13 @@ import org.apache.commons.logging.LogFactory;
 import javax.xml.bind.DatatypeConverter;
 
 import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 
 class ConversionUtil {
@@ -72,6 +72,58 @@ class ConversionUtil {
     }
 
 
+    /**
+     * When a value is accessed, it's intended type can either be a class or some other type (like a ParameterizedType).
+     *
+     * If the target type is a class and the value is of that type, it is returned as is.  If the target type is not a
+     * class, it may be a ParameterizedType like List&lt;T&gt; or Map&lt;K, V&gt;, and the value is returned as is only if
+     * it is already a converting type.  Otherwise the value is converted.
+     *
+     * Converted values are memoized in the supplied map rather than written back to the (unsynchronized) backing
+     * store, so reads stay lock-free and are safe when a proxy is shared between threads.  If two threads convert the
+     * same value concurrently, both return the instance that was memoized first.  The memo is keyed by the target type
+     * as well as the key, since different interfaces may read the same value as different types.
+     *
+     * @param type the target type
+     * @param key the key of the value in its backing store, which may be null
+     * @param value the raw value from the backing store
+     * @param converted the memo of converted values for the backing store
+     * @return the value, converted to the target type
+     */
+    static Object convertAndMemoize(Type type, Object key, Object value, ConcurrentMap<ConversionKey, Object> converted) {
+        if (isConverted(type, value)) {
+            return value;
+        }
+
+        ConversionKey conversionKey = new ConversionKey(key, type);
+        Object convertedValue = converted.get(conversionKey);
+
+        if (convertedValue != null) {
+            return convertedValue;
+        }
+
+        convertedValue = convert(type, value);
+
+        // A null can't be memoized, but it is also cheap to recompute.
+        if (convertedValue == null) {
+            return null;
+        }
+
+        Object existingValue = converted.putIfAbsent(conversionKey, convertedValue);
+
+        return existingValue == null ? convertedValue : existingValue;
+    }
+
+
+    static boolean isConverted(Type type, Object value) {
+        if (type instanceof Class) {
+            return ((Class) type).isInstance(value);
+        } else {
+            return value instanceof ConvertingMap || value instanceof ConvertingList;
+        }
+    }
+
+
     static Object convert(Type type, Object value) {
         if (value == null) {
             return convertFromNull(type);
@@ -227,10 +279,15 @@ class ConversionUtil {
     private static Object convertFromMap(Type type, Map value) {
         if (type instanceof Class && !Map.class.isAssignableFrom((Class) type)) {
             Class typeClass = (Class) type;
+            PropertyMapContext context = new PropertyMapContext(type, value);
+            GeneratedResourceFactory factory = GeneratedResourceFactories.getFactory(typeClass);
+            Object generated = factory == null ? null : factory.createValue(context);
+
+            if (generated != null) {
+                return generated;
+            }
 
-            return Proxy.newProxyInstance(typeClass.getClassLoader(),
-                                          new Class<?>[] { typeClass },
-                                          new MapBackedInvocationHandler(type, value));
+            return ResourceInterfaces.newProxyInstance(typeClass, new MapBackedInvocationHandler(context));
         } else {
             return new ConvertingMap(getCollectionType(type, 1, Object.class), value);
         }
@@ -240,4 +297,46 @@ class ConversionUtil {
     private static Object convertFromList(Type type, List value) {
         return new ConvertingList(getCollectionType(type, 0, Object.class), value);
     }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * The key of a memoized conversion: the key of the value in its backing store and the type it was converted to.
+     */
+    static final class ConversionKey {
+        private final Object key;
+        private final Type type;
+
+
+        ConversionKey(Object key, Type type) {
+            this.key = key;
+            this.type = type;
+        }
+
+
+        Object getKey() {
+            return key;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ConversionKey)) {
+                return false;
+            }
+
+            ConversionKey other = (ConversionKey) o;
+
+            return (key == null ? other.key == null : key.equals(other.key)) && type.equals(other.type);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * (key == null ? 0 : key.hashCode()) + type.hashCode();
+        }
+    }
 }
@@ -21,8 +21,11 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.amazonaws.hal.client.ConversionUtil.convert;
+import static com.amazonaws.hal.client.ConversionUtil.isConverted;
 
 
 public class ConvertingList
@@ -34,6 +37,8 @@ public class ConvertingList
 
     private Type type;
     private List backingList;
+    private final AtomicReferenceArray<Object> converted;
+    private final int convertedOffset;
 
 
     //-------------------------------------------------------------
@@ -41,8 +46,15 @@ public class ConvertingList
     //-------------------------------------------------------------
 
     public ConvertingList(Type type, List backingList) {
+        this(type, backingList, new AtomicReferenceArray<>(backingList.size()), 0);
+    }
+
+
+    private ConvertingList(Type type, List backingList, AtomicReferenceArray<Object> converted, int convertedOffset) {
         this.type = type;
         this.backingList = backingList;
+        this.converted = converted;
+        this.convertedOffset = convertedOffset;
     }
 
 
@@ -140,45 +152,31 @@ public class ConvertingList
     public Object get(int index) {
         Object value = backingList.get(index);
 
-        // When a value is accessed, it's intended type can either be a
-        // class or some other type (like a ParameterizedType).
-        //
-        // If the target type is a class and the value is of that type,
-        // we return it.  If the value is not of that type, we convert
-        // it and store the converted value (trusting it was converted
-        // properly) back to the backing store.
-        //
-        // If the target type is not a class, it may be ParameterizedType
-        // like List<T> or Map<K, V>.  We check if the value is already
-        // a converting type and if so, we return it.  If the value is
-        // not, we convert it and if it's now a converting type, we store
-        // the new value in the backing store.
-
-        if (type instanceof Class) {
-            if (!((Class) type).isInstance(value)) {
-                value = convert(type, value);
-
-                //noinspection unchecked
-                backingList.set(index, value);
-            }
-        } else {
-            if (!(value instanceof ConvertingMap) && !(value instanceof ConvertingList)) {
-                value = convert(type, value);
-
-                if (value instanceof ConvertingMap || value instanceof ConvertingList) {
-                    //noinspection unchecked
-                    backingList.set(index, value);
-                }
-            }
+        // See ConversionUtil.convertAndMemoize(), which this mirrors using an array indexed by position.
+        if (isConverted(type, value)) {
+            return value;
         }
 
-        return value;
+        Object convertedValue = converted.get(convertedOffset + index);
+
+        if (convertedValue != null) {
+            return convertedValue;
+        }
+
+        convertedValue = convert(type, value);
+
+        if (convertedValue == null || converted.compareAndSet(convertedOffset + index, null, convertedValue)) {
+            return convertedValue;
+        }
+
+        return converted.get(convertedOffset + index);
     }
 
 
     @Override
     public List subList(int fromIndex, int toIndex) {
-        return new ConvertingList(type, backingList.subList(fromIndex, toIndex));
+        // The sub list shares converted values with this list.
+        return new ConvertingList(type, backingList.subList(fromIndex, toIndex), converted, convertedOffset + fromIndex);
     }
 
 
@@ -236,19 +234,22 @@ public class ConvertingList
 
     private final class ConvertingIterator
             implements Iterator {
-        Iterator backingIterator = backingList.iterator();
+        int index = 0;
 
 
         @Override
         public boolean hasNext() {
-            return backingIterator.hasNext();
+            return index < size();
         }
 
 
         @Override
         public Object next() {
-            // TODO: Re-store this in the backingIterator, but beware ConcurrentModificationException
-            return convert(type, backingIterator.next());
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return get(index++);
         }
 
 
@@ -17,14 +17,16 @@ package com.amazonaws.hal.client;
 
 
 import java.lang.reflect.Type;
+import java.util.AbstractCollection;
 import java.util.AbstractSet;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import static com.amazonaws.hal.client.ConversionUtil.convert;
+import static com.amazonaws.hal.client.ConversionUtil.convertAndMemoize;
 
 
 public class ConvertingMap
@@ -36,6 +38,7 @@ public class ConvertingMap
 
     private Type type;
     private Map backingMap;
+    private final ConcurrentMap<ConversionUtil.ConversionKey, Object> converted = new ConcurrentHashMap<>();
 
 
     //-------------------------------------------------------------
@@ -73,41 +76,7 @@ public class ConvertingMap
     // TODO: test w/ map of Integer...
     @Override
     public Object get(Object key) {
-        Object value = backingMap.get(key);
-
-        // When a value is accessed, it's intended type can either be a
-        // class or some other type (like a ParameterizedType).
-        //
-        // If the target type is a class and the value is of that type,
-        // we return it.  If the value is not of that type, we convert
-        // it and store the converted value (trusting it was converted
-        // properly) back to the backing store.
-        //
-        // If the target type is not a class, it may be ParameterizedType
-        // like List<T> or Map<K, V>.  We check if the value is already
-        // a converting type and if so, we return it.  If the value is
-        // not, we convert it and if it's now a converting type, we store
-        // the new value in the backing store.
-
-        if (type instanceof Class) {
-            if (!((Class) type).isInstance(value)) {
-                value = convert(type, value);
-
-                //noinspection unchecked
-                backingMap.put(key, value);
-            }
-        } else {
-            if (!(value instanceof ConvertingMap) && !(value instanceof ConvertingList)) {
-                value = convert(type, value);
-
-                if (value instanceof ConvertingMap || value instanceof ConvertingList) {
-                    //noinspection unchecked
-                    backingMap.put(key, value);
-                }
-            }
-        }
-
-        return value;
+        return convertAndMemoize(type, key, backingMap.get(key), converted);
     }
 
 
@@ -119,8 +88,7 @@ public class ConvertingMap
 
     @Override
     public Collection values() {
-        //noinspection unchecked
-        return new ConvertingList(type, new ArrayList(backingMap.values()));
+        return new Values();
     }
 
 
@@ -164,6 +132,42 @@ public class ConvertingMap
     // Inner Classes
     //-------------------------------------------------------------
 
+    private final class Values extends AbstractCollection {
+        public Iterator iterator() {
+            return new ConvertingValueIterator();
+        }
+
+
+        public int size() {
+            return backingMap.size();
+        }
+    }
+
+
+    private final class ConvertingValueIterator
+            implements Iterator {
+        Iterator backingIterator = backingMap.keySet().iterator();
+
+
+        @Override
+        public boolean hasNext() {
+            return backingIterator.hasNext();
+        }
+
+
+        @Override
+        public Object next() {
+            return get(backingIterator.next());
+        }
+
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+
     private final class EntrySet extends AbstractSet<Entry> {
         public Iterator<Entry> iterator() {
             return new ConvertingEntryIterator();
@@ -194,7 +198,7 @@ public class ConvertingMap
     private final class ConvertingEntryIterator
             implements Iterator<Entry> {
         @SuppressWarnings("unchecked")
-        Iterator<Entry> backingIterator = backingMap.entrySet().iterator();
+        Iterator<Object> backingIterator = backingMap.keySet().iterator();
 
 
         @Override
@@ -205,8 +209,7 @@ public class ConvertingMap
 
         @Override
         public Entry next() {
-            Entry entry = backingIterator.next();
-            return new ConvertingEntry(entry.getKey(), entry.getValue());
+            return new ConvertingEntry(backingIterator.next());
         }
 
 
@@ -220,12 +223,10 @@ public class ConvertingMap
     private final class ConvertingEntry
             implements Entry {
         private Object key;
-        private Object value;
 
 
-        private ConvertingEntry(Object key, Object value) {
+        private ConvertingEntry(Object key) {
             this.key = key;
-            this.value = value;
         }
 
 
@@ -237,14 +238,7 @@ public class ConvertingMap
 
         @Override
         public Object getValue() {
-            if (!(type instanceof Class) || !value.getClass().isAssignableFrom((Class) type)) {
-                value = convert(type, value);
-
-                // TODO: Re-store this in the backingIterator, but beware ConcurrentModificationException
-//                backingMap.put(key, value);
-            }
-
-            return value;
+            return get(key);
         }
 
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * A response handler that undoes the response's Content-Encoding before passing it on.  The content is inflated
+ * as it is read, so the unmarshallers parse the decompressed stream directly, without buffering either form.
+ *
+ * Responses the HTTP layer has already decompressed no longer carry a Content-Encoding header, so they are passed
+ * on untouched.
+ *
+ * @param <T> The type of the result.
+ */
+class DecompressingResponseHandler<T>
+        implements HttpResponseHandler<T> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final HttpResponseHandler<T> responseHandler;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    DecompressingResponseHandler(HttpResponseHandler<T> responseHandler) {
+        this.responseHandler = responseHandler;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HttpResponseHandler
+    //-------------------------------------------------------------
+
+    @Override
+    public T handle(HttpResponse response)
+            throws Exception {
+        for (Iterator<Map.Entry<String, String>> iterator = response.getHeaders().entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, String> header = iterator.next();
+
+            if (header.getKey().equalsIgnoreCase("Content-Encoding") && response.getContent() != null) {
+                String encoding = header.getValue().trim().toLowerCase();
+
+                if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+                    response.setContent(new GZIPInputStream(response.getContent(), BUFFER_SIZE));
+                } else if (encoding.equals("deflate")) {
+                    response.setContent(inflate(response.getContent()));
+                } else if (!encoding.equals("identity")) {
+                    throw new IOException("Unsupported Content-Encoding: " + encoding);
+                }
+
+                iterator.remove();
+            }
+        }
+
+        return responseHandler.handle(response);
+    }
+
+
+    @Override
+    public boolean needsConnectionLeftOpen() {
+        return responseHandler.needsConnectionLeftOpen();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * "deflate" content should be zlib-wrapped (RFC 1950), but some servers send raw deflate data (RFC 1951), so the
+     * format is detected from the zlib header.
+     */
+    private static InputStream inflate(InputStream content)
+            throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(content, 2);
+        byte[] header = new byte[2];
+        int count = 0;
+        int read;
+
+        while (count < 2 && (read = stream.read(header, count, 2 - count)) > 0) {
+            count += read;
+        }
+
+        stream.unread(header, 0, count);
+
+        boolean zlib = count == 2 && (header[0] & 0x0f) == 8 && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+
+        return new InflaterInputStream(stream, new Inflater(!zlib), BUFFER_SIZE);
+    }
+}
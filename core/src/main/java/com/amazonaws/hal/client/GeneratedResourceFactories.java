@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Looks up the GeneratedResourceFactory for a resource interface, if the HAL annotation processor generated one.
+ */
+class GeneratedResourceFactories {
+
+    //-------------------------------------------------------------
+    // Variables - Private - Static
+    //-------------------------------------------------------------
+
+    private static final ConcurrentMap<Class<?>, GeneratedResourceFactory> factories = new ConcurrentHashMap<>();
+    private static final GeneratedResourceFactory NO_FACTORY = new NoFactory();
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private GeneratedResourceFactories() {
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @param resourceClass a resource interface
+     * @return the factory for the interface, or null if no implementation was generated for it.
+     */
+    static GeneratedResourceFactory getFactory(Class<?> resourceClass) {
+        GeneratedResourceFactory factory = factories.get(resourceClass);
+
+        if (factory == null) {
+            factory = NO_FACTORY;
+
+            // Only done once per interface, so the cost of instantiating the providers is not a concern.
+            for (GeneratedResourceFactory candidate : ServiceLoader.load(GeneratedResourceFactory.class, resourceClass.getClassLoader())) {
+                if (candidate.getResourceClass() == resourceClass) {
+                    factory = candidate;
+                    break;
+                }
+            }
+
+            factories.putIfAbsent(resourceClass, factory);
+        }
+
+        return factory == NO_FACTORY ? null : factory;
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class NoFactory
+            implements GeneratedResourceFactory {
+        @Override
+        public Class<?> getResourceClass() {
+            return null;
+        }
+
+
+        @Override
+        public Object createResource(HalResourceContext context) {
+            return null;
+        }
+
+
+        @Override
+        public Object createValue(PropertyMapContext context) {
+            return null;
+        }
+    }
+}
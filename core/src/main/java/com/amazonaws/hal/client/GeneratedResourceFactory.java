@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+/**
+ * Creates instances of the classes generated by the HAL annotation processor for a resource interface.  Factories
+ * are discovered through java.util.ServiceLoader, using the resource interface's class loader.  When no factory is
+ * found for an interface, a dynamic proxy is used instead.
+ */
+public interface GeneratedResourceFactory {
+
+    /**
+     * @return the resource interface this factory creates instances of.
+     */
+    Class<?> getResourceClass();
+
+
+    /**
+     * Create an instance backed by a HAL resource, as returned by a link.
+     *
+     * @param context the state of the resource
+     * @return a new instance, or null if no implementation was generated for this use of the interface.
+     */
+    Object createResource(HalResourceContext context);
+
+
+    /**
+     * Create an instance backed by a JSON object, as returned by a property getter.
+     *
+     * @param context the state of the JSON object
+     * @return a new instance, or null if no implementation was generated for this use of the interface.
+     */
+    Object createValue(PropertyMapContext context);
+}
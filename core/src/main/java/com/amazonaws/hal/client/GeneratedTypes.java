@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+
+/**
+ * Lets generated resource implementations describe the generic types of their properties without reflection.
+ */
+public final class GeneratedTypes {
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private GeneratedTypes() {
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public - Static
+    //-------------------------------------------------------------
+
+    public static ParameterizedType parameterizedType(Class<?> rawType, Type... actualTypeArguments) {
+        return new ParameterizedTypeImpl(rawType, actualTypeArguments);
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class ParameterizedTypeImpl
+            implements ParameterizedType {
+        private final Class<?> rawType;
+        private final Type[] actualTypeArguments;
+
+
+        private ParameterizedTypeImpl(Class<?> rawType, Type[] actualTypeArguments) {
+            this.rawType = rawType;
+            this.actualTypeArguments = actualTypeArguments;
+        }
+
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return actualTypeArguments.clone();
+        }
+
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+
+            ParameterizedType other = (ParameterizedType) o;
+
+            return rawType.equals(other.getRawType())
+                   && other.getOwnerType() == null
+                   && Arrays.equals(actualTypeArguments, other.getActualTypeArguments());
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(actualTypeArguments) ^ rawType.hashCode();
+        }
+
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(rawType.getName());
+
+            sb.append('<');
+
+            for (int i = 0; i < actualTypeArguments.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+
+                Type typeArgument = actualTypeArguments[i];
+
+                sb.append(typeArgument instanceof Class ? ((Class) typeArgument).getName() : typeArgument.toString());
+            }
+
+            return sb.append('>').toString();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+/**
+ * Receives the outcome of an asynchronous HalClient operation.
+ *
+ * @param <T> The type of the result.
+ */
+public interface HalCallback<T> {
+
+    void onSuccess(T result);
+
+
+    void onError(Exception e);
+}
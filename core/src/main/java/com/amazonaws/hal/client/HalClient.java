@@ -0,0 +1,1420 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.hal.CacheStatistics;
+import com.amazonaws.hal.HedgingPolicy;
+import com.amazonaws.hal.JsonPatch;
+import com.amazonaws.hal.PreconditionFailedException;
+import com.amazonaws.hal.ResiliencePolicy;
+import com.amazonaws.hal.WriteBehind;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.http.JsonErrorResponseHandler;
+import com.amazonaws.transform.JsonErrorUnmarshaller;
+import com.amazonaws.transform.VoidJsonUnmarshaller;
+import com.amazonaws.util.AWSRequestMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static com.amazonaws.http.HttpMethodName.GET;
+import static com.amazonaws.http.HttpMethodName.PATCH;
+import static com.amazonaws.http.HttpMethodName.POST;
+import static com.amazonaws.http.HttpMethodName.PUT;
+import static com.amazonaws.http.HttpMethodName.DELETE;
+
+
+/**
+ * The HalClient is a lower-level class for interacting with a HAL-based API.  Preferably, a set of interface
+ * classes that describe the interaction with the service is used, and this class is only used behind the
+ * scenes.
+ */
+public class HalClient extends AmazonWebServiceClient {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private AWSCredentialsProvider awsCredentialsProvider;
+    private Map<String, Object> resourceCache;
+    private final CachedPathIndex cachedPaths;
+    private HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+    private final PinnedResourceRegistry pinnedResources = new PinnedResourceRegistry(this);
+    private final ResourceDependencyIndex dependencyIndex;
+    private final MissingResourceCache missingResources = new MissingResourceCache();
+    private volatile ResilientGets resilientGets;
+    private final ClientConfiguration noRetryConfiguration;
+    private AmazonHttpClient noRetryClient;                                 // Sends GETs that resilientGets retries
+    private volatile HedgedGets hedgedGets;
+    private volatile HalTransport transport;
+    private volatile int requestCompressionThreshold = -1;
+    private volatile boolean conditionalWrites;
+    private volatile boolean zeroGetCreates;
+    private volatile WriteBehindQueue writeBehindQueue;
+    private final AcceptHalJsonRequestHandler acceptHandler = new AcceptHalJsonRequestHandler();
+    private final long responseTimeoutMillis;                               // Longest wait for a transport, 0 if none
+
+    private static final Map<String, String> PREFER_REPRESENTATION = Collections.singletonMap("Prefer", "return=representation");
+
+    private static Log log = LogFactory.getLog(HalClient.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    public HalClient(ClientConfiguration clientConfiguration, String endpoint, String serviceName,
+                     AWSCredentialsProvider awsCredentialsProvider, Map<String, Object> resourceCache,
+                     HttpResponseHandler<AmazonServiceException> errorResponseHandler) {
+        super(clientConfiguration);
+
+        this.setServiceNameIntern(serviceName);
+        this.setEndpoint(endpoint);
+        this.awsCredentialsProvider = awsCredentialsProvider;
+        this.resourceCache = resourceCache;
+        this.cachedPaths = new CachedPathIndex(resourceCache);
+        this.dependencyIndex = new ResourceDependencyIndex(resourceCache, pinnedResources);
+        this.errorResponseHandler = new DecompressingResponseHandler<>(
+                new PreconditionFailedResponseHandler(new JsonTranscodingResponseHandler<>(errorResponseHandler)));
+        this.addRequestHandler(acceptHandler);
+
+        this.noRetryConfiguration = new ClientConfiguration(clientConfiguration).withMaxErrorRetry(0);
+
+        // A request sent through a transport can take as long to connect as to wait for the response.
+        this.responseTimeoutMillis = clientConfiguration.getConnectionTimeout() > 0 && clientConfiguration.getSocketTimeout() > 0
+                ? (long) clientConfiguration.getConnectionTimeout() + clientConfiguration.getSocketTimeout()
+                : 0;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    public HalTransport getTransport() {
+        return transport;
+    }
+
+
+    /**
+     * Send requests through the specified transport instead of the inherited AmazonHttpClient.  Requests are still
+     * processed by the client's request handlers and signed, and responses are still mapped by the client's response
+     * and error response handlers.  The transport is not shut down with the client, so it can be shared.
+     *
+     * A blocking call waits for the transport for at most the connection timeout plus the socket timeout of the
+     * client's ClientConfiguration, or that long for every attempt of a GET retried under a ResiliencePolicy.
+     *
+     * @param transport The transport, or null to use AmazonHttpClient.
+     */
+    public void setTransport(HalTransport transport) {
+        this.transport = transport;
+    }
+
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+
+    /**
+     * Compress POST, PUT and PATCH bodies of at least the specified size with gzip.  The service must accept
+     * "Content-Encoding: gzip" requests, so compression is disabled by default.
+     *
+     * @param requestCompressionThreshold The size in bytes from which bodies are compressed, or -1 to never compress.
+     */
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+
+    public boolean isConditionalWrites() {
+        return conditionalWrites;
+    }
+
+
+    /**
+     * Make PUTs and PATCHes conditional on the version of the resource the client knows: when the cached (or
+     * pinned) resource was retrieved with an ETag, it is sent as If-Match, so a read-modify-write doesn't need a
+     * fresh GET to be safe.  If the resource changed in the meantime, the write fails with a
+     * PreconditionFailedException, and the cached resource is updated to the current representation the service
+     * returned with it, or retrieved again when next used.
+     *
+     * @param conditionalWrites true to send If-Match with writes of resources that have a known ETag.
+     */
+    public void setConditionalWrites(boolean conditionalWrites) {
+        this.conditionalWrites = conditionalWrites;
+    }
+
+
+    public boolean isZeroGetCreates() {
+        return zeroGetCreates;
+    }
+
+
+    /**
+     * Avoid retrieving the resources created by POSTs.  POSTs ask for the created resource's representation with
+     * "Prefer: return=representation".  If the service doesn't return it, but gives the created resource's Location,
+     * the resource is built from the posted representation (with the properties of the response body, if any, on
+     * top) and cached as a partial resource.  A partial resource is only retrieved when a property or link it
+     * doesn't have is used.
+     *
+     * @param zeroGetCreates true to build created resources from the posted representations.
+     */
+    public void setZeroGetCreates(boolean zeroGetCreates) {
+        this.zeroGetCreates = zeroGetCreates;
+    }
+
+
+    public long getMissingResourceTtlMillis() {
+        return missingResources.getTtlMillis();
+    }
+
+
+    /**
+     * Remember, for a short time, the hrefs that were found not to exist (404 Not Found or 410 Gone), so that
+     * retrieving them again fails right away with the same exception instead of going to the service.  Lookups of
+     * absent ids through templated links are the typical case.  A successful write to an href forgets it.
+     *
+     * @param missingResourceTtlMillis How long a missing href is remembered, or 0 (the default) not to remember them.
+     */
+    public void setMissingResourceTtlMillis(long missingResourceTtlMillis) {
+        missingResources.setTtlMillis(missingResourceTtlMillis);
+    }
+
+
+    /**
+     * Retry GETs that fail with a server error or an I/O failure, and return a stale version of the resource when
+     * the retries are exhausted, as described by the policy.  The retry budget starts full whenever a policy is set.
+     * With a HalTransport, GETs are retried on a background thread once their backoff expires; otherwise the calling
+     * thread backs off, and the GETs are sent by an AmazonHttpClient that doesn't retry them itself, so the
+     * ClientConfiguration's retries don't multiply the policy's.
+     *
+     * @param resiliencePolicy The policy, or null (the default) to report failed GETs right away.
+     */
+    public synchronized void setResiliencePolicy(ResiliencePolicy resiliencePolicy) {
+        ResilientGets previousGets = resilientGets;
+
+        resilientGets = resiliencePolicy == null ? null : new ResilientGets(resiliencePolicy);
+
+        if (previousGets != null) {
+            previousGets.shutdown();
+        }
+    }
+
+
+    /**
+     * Hedge GETs as described by the policy: a GET that is slower than the policy's percentile of the observed GET
+     * latencies is sent again, and the first response is used.  Hedging only applies when a HalTransport is set.
+     *
+     * @param hedgingPolicy The policy, or null (the default) not to hedge GETs.
+     */
+    public synchronized void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        HedgedGets previousGets = hedgedGets;
+
+        hedgedGets = hedgingPolicy == null ? null : new HedgedGets(hedgingPolicy);
+
+        if (previousGets != null) {
+            previousGets.shutdown();
+        }
+    }
+
+
+    public boolean isBinaryRepresentations() {
+        return acceptHandler.isBinaryRepresentations();
+    }
+
+
+    /**
+     * Ask for representations in a binary HAL encoding (application/hal+cbor or application/hal+smile) in preference
+     * to JSON.  Only encodings whose Jackson dataformat module is on the classpath are offered, and services that
+     * don't support them keep answering with JSON, which is still read as before.
+     *
+     * @param binaryRepresentations true to prefer binary representations.
+     */
+    public void setBinaryRepresentations(boolean binaryRepresentations) {
+        acceptHandler.setBinaryRepresentations(binaryRepresentations);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public
+    //-------------------------------------------------------------
+
+    /**
+     * Prepare the resource interfaces reachable from a root resource interface, so the first call on each of them
+     * doesn't pay for reflection, annotation parsing and proxy class generation.  Problems with the interfaces'
+     * declarations are reported together, rather than when the affected method is first called.
+     *
+     * @param rootClass the root resource interface
+     * @throws IllegalArgumentException if any of the reachable interfaces is declared incorrectly.
+     */
+    public void prepare(Class<?> rootClass) {
+        List<String> problems = ResourceInterfaces.prepare(rootClass);
+
+        if (!problems.isEmpty()) {
+            StringBuilder message = new StringBuilder("Invalid resource interfaces reachable from " + rootClass.getName() + ":");
+
+            for (String problem : problems) {
+                message.append("\n    ").append(problem);
+            }
+
+            throw new IllegalArgumentException(message.toString());
+        }
+    }
+
+
+    public <T> T getResource(Class<T> resourceClass, String resourcePath) {
+        return getResource(null, resourceClass, resourcePath, false);
+    }
+
+
+    /**
+     * POST a representation.  Representations are marshalled to JSON in memory, except for Iterables (other than
+     * Collections), Iterators, Streams and InputStreams, which are streamed with chunked transfer coding so that
+     * memory use doesn't grow with the size of the body.  The elements of Iterables, Iterators and Streams are sent
+     * as a JSON array; InputStreams are sent as they are.
+     *
+     * An Iterable can be read again to sign or retry the request, but Iterators, Streams and InputStreams can only
+     * be read once, so they can't be signed with a payload hash or retried.  Use them with credentials that don't
+     * sign requests, such as AnonymousAWSCredentials.
+     *
+     * See setZeroGetCreates() for how the resources created by POSTs can be cached without being retrieved.
+     *
+     * @param resourceClass The class of the resource interface.
+     * @param resourcePath The path of the resource.
+     * @param representation The representation to send.
+     * @return The resource returned by the service, or null if there is none.
+     */
+    public <T> T postResource(Class<T> resourceClass, String resourcePath, Object representation) {
+        flushQueuedWrite(resourcePath);
+
+        boolean createLocally = zeroGetCreates;
+        OptionalJsonResponseHandler<HalResource> responseHandler = getResponseHandler(resourceClass);
+        HalResource halResource = invoke(POST, resourcePath, representation, createLocally ? PREFER_REPRESENTATION : null,
+                                         responseHandler);
+        Object cachedResource = resourceCache.get(resourcePath);
+
+        String halResourcePath = getHalResourcePath(halResource, responseHandler);
+
+        if (resourcePath.equals(halResourcePath)) {
+            updatePinnedResource(resourcePath, halResource);
+            resourceWritten(resourcePath, halResource, false);
+        } else {
+            // The target was likely a collection resource, which now has another member.
+            markStale(resourcePath);
+            resourceWritten(resourcePath, null, false);
+
+            if (halResourcePath != null) {
+                missingResources.remove(halResourcePath);
+            }
+
+            if (createLocally && halResource != null) {
+                HalResource createdResource = halResource.isDefined()
+                        ? halResource
+                        : createPartialResource(halResourcePath, representation, halResource, responseHandler.getETag());
+
+                if (createdResource != null) {
+                    return createAndCacheResource(resourceClass, halResourcePath, createdResource);
+                }
+            }
+        }
+
+        // Check if the cached resource we just POSTed to is the same resource we got back.  If yes, update the existing proxy's
+        // invocation handler with the new data and return it.  If no, the cached target was marked stale above, and the
+        // resource we got back is cached under its own path.
+        if (cachedResource != null && resourcePath.equals(halResourcePath)) {
+            HalResourceContext context = HalResourceContext.of(cachedResource);
+
+            context.resourceUpdated(halResource);
+
+            return resourceClass.cast(cachedResource);
+        }
+
+        return halResource == null ? null : createAndCacheResource(resourceClass, halResourcePath, halResource);
+    }
+
+
+    /**
+     * PUT a representation, which is marshalled or streamed as described for postResource().  In write-behind mode,
+     * a PUT whose result is not used (resourceClass is Void) is queued, and null is returned right away.  The cached
+     * version of the resource is left as it is until the queued PUT is sent.
+     */
+    public <T> T putResource(Class<T> resourceClass, String resourcePath, Object representation) {
+        WriteBehindQueue queue = writeBehindQueue;
+
+        if (queue != null) {
+            if (isVoid(resourceClass) && !StreamingContent.isStreamed(representation)
+                && queue.queuePut(resourcePath, representation)) {
+                return null;
+            }
+
+            queue.flush(resourcePath);
+        }
+
+        return putResourceNow(resourceClass, resourcePath, representation);
+    }
+
+
+    public <T> T deleteResource(Class<T> resourceClass, String resourcePath) {
+        flushQueuedWrite(resourcePath);
+
+        OptionalJsonResponseHandler<HalResource> responseHandler = getResponseHandler(resourceClass);
+        HalResource halResource = invoke(DELETE, resourcePath, null, null, responseHandler);
+        Object cachedResource = resourceCache.get(resourcePath);
+
+        updatePinnedResource(resourcePath, null);
+        resourceWritten(resourcePath, null, true);
+
+        // Per RFC2616, section 9.7 DELETE, the resource should be removed from the cache.  We additionally clear the cached
+        // resource in case references to the proxy exist elsewhere.
+        if (cachedResource != null) {
+            HalResourceContext context = HalResourceContext.of(cachedResource);
+
+            context.resourceUpdated(null);
+
+            resourceCache.remove(resourcePath);
+            cachedPaths.remove(resourcePath);
+            dependencyIndex.prune(resourcePath);
+        }
+
+        return halResource == null ? null : createResource(resourceClass, resourcePath, halResource);
+    }
+
+
+    /**
+     * PATCH a resource.  If the representation is a JsonPatch and the service returns no body, the patch is applied
+     * to the cached (and pinned) versions of the resource, so they don't have to be retrieved again.  In write-behind
+     * mode, a JsonPatch whose result is not used (resourceClass is Void) is queued, and null is returned right away;
+     * the patch is applied to the cached resource when it is sent.
+     *
+     * If the service returns a different resource than the patched one, such as a child resource the patch changed,
+     * the patched resource is marked stale, and the returned resource updates the cached version of its own path.
+     *
+     * @param resourceClass The class of the resource interface.
+     * @param resourcePath The path of the resource.
+     * @param representation The patch, a JsonPatch or a representation in another patch format.
+     * @return The resource returned by the service or, for a JsonPatch without a response body, the cached
+     *         resource, if any.
+     */
+    public <T> T patchResource(Class<T> resourceClass, String resourcePath, Object representation) {
+        WriteBehindQueue queue = writeBehindQueue;
+
+        if (queue != null) {
+            if (isVoid(resourceClass) && representation instanceof JsonPatch
+                && queue.queuePatch(resourcePath, (JsonPatch) representation)) {
+                return null;
+            }
+
+            queue.flush(resourcePath);
+        }
+
+        return patchResourceNow(resourceClass, resourcePath, representation);
+    }
+
+
+    /**
+     * Compute the JsonPatch that turns the current version of a resource into a modified representation of it, so
+     * that only the changes are sent with patchResource() instead of the whole representation with putResource().
+     * The representation is marshalled as it would be for putResource(), and compared with the resource's
+     * properties; links and embedded resources are not compared.
+     *
+     * @param resource A resource instance returned by this client.
+     * @param representation The modified representation of the resource.
+     * @return The patch, which has no operations if the representation matches the resource.
+     * @throws IllegalArgumentException if resource is not a resource instance, or the representation is not a JSON
+     *         object.
+     */
+    public JsonPatch createPatch(Object resource, Object representation) {
+        HalResourceContext context = HalResourceContext.of(resource);
+
+        if (context == null) {
+            throw new IllegalArgumentException("Not a resource instance: " + resource);
+        }
+
+        Object target = JsonPatchApplier.parse(RepresentationMarshaller.marshall(representation));
+
+        if (!(target instanceof Map)) {
+            throw new IllegalArgumentException("The representation is not a JSON object: " + representation);
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> targetProperties = (Map<String, Object>) target;
+
+        return JsonPatchDiff.diff(context.getHalResource().getProperties(), targetProperties);
+    }
+
+
+    /**
+     * Re-retrieve a resource from the service.  If the resource is cached and the representation that comes back
+     * hashes the same as the cached one (with the same ETag, if any), the response is not parsed and the cached
+     * resource is left untouched.  Otherwise the cached resource is updated in place (keeping conversions of unchanged
+     * values) and returned.
+     *
+     * @param resourceClass The class of the resource interface.
+     * @param resourcePath The path of the resource.
+     * @return The refreshed resource.
+     */
+    public <T> T refreshResource(Class<T> resourceClass, String resourcePath) {
+        T pinnedResource = pinnedResources.getResource(resourceClass, resourcePath);
+
+        if (pinnedResource != null) {
+            HalResourceContext.of(pinnedResource).refresh();
+
+            return pinnedResource;
+        }
+
+        Object cachedResource = resourceCache.get(resourcePath);
+
+        if (cachedResource == null) {
+            return getResource(resourceClass, resourcePath);
+        }
+
+        HalResourceContext.of(cachedResource).refresh();
+
+        return resourceClass.cast(cachedResource);
+    }
+
+
+    /**
+     * Retrieve a resource without blocking the calling thread.  If the resource is cached, or if no non-blocking
+     * transport is set, the callback is invoked before this method returns; otherwise it is invoked on one of the
+     * transport's threads.
+     *
+     * @param resourceClass The class of the resource interface.
+     * @param resourcePath The path of the resource.
+     * @param callback Receives the resource, or the reason it could not be retrieved.
+     */
+    public <T> void getResourceAsync(final Class<T> resourceClass, final String resourcePath, final HalCallback<T> callback) {
+        T pinnedResource = pinnedResources.getResource(resourceClass, resourcePath);
+
+        if (pinnedResource != null) {
+            callback.onSuccess(pinnedResource);
+
+            return;
+        }
+
+        if (resourceCache.containsKey(resourcePath) || transport == null) {
+            T resource;
+
+            try {
+                resource = getResource(resourceClass, resourcePath);
+            } catch (RuntimeException e) {
+                callback.onError(e);
+
+                return;
+            }
+
+            callback.onSuccess(resource);
+
+            return;
+        }
+
+        AmazonServiceException missing = missingResources.get(resourcePath);
+
+        if (missing != null) {
+            callback.onError(missing);
+
+            return;
+        }
+
+        retrieveAsync(resourcePath, null, null, null, new HalCallback<HalResource>() {
+            @Override
+            public void onSuccess(HalResource halResource) {
+                callback.onSuccess(createAndCacheResource(resourceClass, resourcePath, halResource));
+            }
+
+
+            @Override
+            public void onError(Exception e) {
+                callback.onError(e);
+            }
+        });
+    }
+
+
+    /**
+     * Queue PUTs and JsonPatch PATCHes whose result is not used, merging the writes to each resource that arrive
+     * before it is flushed, as configured by writeBehind.  Writes are sent after the flush delay, before any other
+     * write to the same resource, by flushWrites(), and when the client is shut down.  Until then, reads of the
+     * resource don't see them.
+     *
+     * @param writeBehind The write-behind configuration, or null to send every write right away.
+     */
+    public synchronized void setWriteBehind(WriteBehind writeBehind) {
+        WriteBehindQueue previousQueue = writeBehindQueue;
+
+        writeBehindQueue = writeBehind == null ? null : new WriteBehindQueue(this, writeBehind);
+
+        if (previousQueue != null) {
+            previousQueue.close();
+        }
+    }
+
+
+    /**
+     * Send the writes queued in write-behind mode on the calling thread.  Failed writes are reported to the error
+     * callback, not thrown.
+     */
+    public void flushWrites() {
+        WriteBehindQueue queue = writeBehindQueue;
+
+        if (queue != null) {
+            queue.flushAll();
+        }
+    }
+
+
+    /**
+     * Keep the resources at the specified paths resident: they are prefetched in parallel in the background, are
+     * served without going through the resource cache (and so are never evicted from it), and are refreshed in the
+     * background.  All pinned resources are refreshed at the shortest interval they were pinned with.  Background
+     * refreshing stops when the client is shut down.
+     *
+     * @param resourcePaths The paths of the resources to pin.
+     * @param refreshIntervalMillis The delay between background refreshes.
+     */
+    public void pinResources(Collection<String> resourcePaths, long refreshIntervalMillis) {
+        pinnedResources.pin(resourcePaths, refreshIntervalMillis);
+    }
+
+
+    /**
+     * List the cached resources under a path prefix.  The prefix is matched segment by segment, so "/orders/12"
+     * covers "/orders/12" and "/orders/12/items", but not "/orders/123".  Pinned resources are not listed.
+     *
+     * @param pathPrefix The path prefix.
+     * @return The paths of the cached resources, sorted by segment.
+     */
+    public List<String> getCachedResourcePaths(String pathPrefix) {
+        return cachedPaths.getPaths(pathPrefix);
+    }
+
+
+    /**
+     * @param pathPrefix The path prefix, matched as in getCachedResourcePaths().
+     * @return The number of cached resources under the prefix, and the cache hits and misses of requests for them.
+     */
+    public CacheStatistics getCacheStatistics(String pathPrefix) {
+        return cachedPaths.getStatistics(pathPrefix);
+    }
+
+
+    /**
+     * Remove the cached resources under a path prefix, matched as in getCachedResourcePaths(), from the resource
+     * cache, and mark them stale so instances still referenced elsewhere are retrieved again when they are next used.
+     * The time this takes depends on the number of resources under the prefix, not on the size of the cache.  Pinned
+     * resources are not affected.
+     *
+     * @param pathPrefix The path prefix.
+     * @return The number of resources removed.
+     */
+    public int invalidateResources(String pathPrefix) {
+        int invalidated = 0;
+
+        for (String resourcePath : cachedPaths.removeAll(pathPrefix)) {
+            Object cachedResource = resourceCache.remove(resourcePath);
+
+            dependencyIndex.prune(resourcePath);
+
+            if (cachedResource != null) {
+                HalResourceContext.of(cachedResource).resourceUpdated(null);
+                invalidated++;
+            }
+        }
+
+        return invalidated;
+    }
+
+
+    @Override
+    public void shutdown() {
+        setWriteBehind(null);
+        setHedgingPolicy(null);
+        setResiliencePolicy(null);
+        pinnedResources.shutdown();
+
+        synchronized (this) {
+            if (noRetryClient != null) {
+                noRetryClient.shutdown();
+            }
+        }
+
+        super.shutdown();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    <T> T putResourceNow(Class<T> resourceClass, String resourcePath, Object representation) {
+        OptionalJsonResponseHandler<HalResource> responseHandler = getResponseHandler(resourceClass);
+        HalResource halResource = invokeWrite(PUT, resourcePath, representation, responseHandler);
+        Object cachedResource = resourceCache.get(resourcePath);
+
+        updatePinnedResource(resourcePath, halResource);
+        resourceWritten(resourcePath, halResource, false);
+
+        // Per RFC2616, section 9.6 PUT, the cached resource should refer to the same resource we just received, so we update the
+        // existing proxy's invocation handler with the new data.
+        if (cachedResource != null) {
+            HalResourceContext context = HalResourceContext.of(cachedResource);
+
+            context.resourceUpdated(halResource);
+
+            return resourceClass.cast(cachedResource);
+        }
+
+        return halResource == null ? null : createAndCacheResource(resourceClass, resourcePath, halResource);
+    }
+
+
+    <T> T patchResourceNow(Class<T> resourceClass, String resourcePath, Object representation) {
+        OptionalJsonResponseHandler<HalResource> responseHandler = getResponseHandler(resourceClass);
+        HalResource halResource = invokeWrite(PATCH, resourcePath, representation, responseHandler);
+
+        if ((halResource == null || halResource.isEmpty()) && representation instanceof JsonPatch) {
+            resourceWritten(resourcePath, null, false);
+
+            return resourcePatched(resourceClass, resourcePath, (JsonPatch) representation, responseHandler.getETag());
+        }
+
+        String halResourcePath = getHalResourcePath(halResource, responseHandler);
+
+        if (!resourcePath.equals(halResourcePath)) {
+            // A patch can change more than the patched resource (e.g. its child resources), and the service returned
+            // one of the others.  Nothing is known of the patched resource's new state, so it is marked stale, and
+            // the resources that embed it, which are found through the dependency index, are invalidated.  The
+            // returned resource is written like the patched one was, and is cached under its own path.
+            markStale(resourcePath);
+            resourceWritten(resourcePath, null, false);
+
+            if (halResource == null || halResourcePath == null) {
+                return null;
+            }
+
+            resourcePath = halResourcePath;
+        }
+
+        Object cachedResource = resourceCache.get(resourcePath);
+
+        updatePinnedResource(resourcePath, halResource);
+        resourceWritten(resourcePath, halResource, false);
+
+        // Update the existing proxy of the resource we got back, if it is cached, with the new data and return it.
+        if (cachedResource != null) {
+            HalResourceContext context = HalResourceContext.of(cachedResource);
+
+            context.resourceUpdated(halResource);
+
+            return resourceClass.cast(cachedResource);
+        }
+
+        return halResource == null ? null : createAndCacheResource(resourceClass, resourcePath, halResource);
+    }
+
+
+    <T> T getResource(HalResource sourceResource, Class<T> resourceClass, String resourcePath, boolean lazy) {
+        return getResource(sourceResource, resourceClass, resourcePath, lazy, null);
+    }
+
+
+    /**
+     * @param relation the relation of the link being followed to the resource, or null if it is not known
+     */
+    <T> T getResource(HalResource sourceResource, Class<T> resourceClass, String resourcePath, boolean lazy,
+                      String relation) {
+        T pinnedResource = pinnedResources.getResource(resourceClass, resourcePath);
+
+        if (pinnedResource != null) {
+            return pinnedResource;
+        }
+
+        if (resourceCache.containsKey(resourcePath)) {
+            cachedPaths.recordHit(resourcePath);
+
+            return resourceClass.cast(resourceCache.get(resourcePath));
+        }
+
+        HalResource halResource;
+
+        if (sourceResource != null && sourceResource.getEmbedded().containsKey(resourcePath)) {
+            halResource = sourceResource.getEmbedded().get(resourcePath);
+        } else if (lazy) {
+            halResource = null;
+        } else if (relation != null) {
+            halResource = retrieve(resourcePath, null, null, relation);
+        } else {
+            halResource = getHalResource(resourcePath);
+        }
+
+        return createAndCacheResource(resourceClass, resourcePath, halResource);
+    }
+
+
+    HalResource getHalResource(String resourcePath) {
+        return getHalResource(resourcePath, null);
+    }
+
+
+    HalResource getHalResource(String resourcePath, HalResource previousResource) {
+        return getHalResource(resourcePath, previousResource, previousResource);
+    }
+
+
+    /**
+     * Retrieve the representation of a resource, or fail right away if it was recently found not to exist.  Failures
+     * are retried, and a stale version may be returned instead of an error, as the ResiliencePolicy allows.
+     *
+     * @param resourcePath The path of the resource.
+     * @param previousResource The currently known version of the resource, or null if there is none.
+     * @param staleResource The version that may be returned if the resource can't be retrieved, or null if there is
+     *                      none.
+     * @return A new HalResource, previousResource itself if the representation did not change, or staleResource.
+     */
+    HalResource getHalResource(String resourcePath, HalResource previousResource, HalResource staleResource) {
+        return retrieve(resourcePath, previousResource, staleResource, null);
+    }
+
+
+    <T> T createResource(Class<T> resourceClass, HalResourceContext context) {
+        GeneratedResourceFactory factory = GeneratedResourceFactories.getFactory(resourceClass);
+        Object resource = factory == null ? null : factory.createResource(context);
+
+        if (resource == null) {
+            resource = ResourceInterfaces.newProxyInstance(resourceClass, new HalResourceInvocationHandler(context));
+        }
+
+        return resourceClass.cast(resource);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    /**
+     * Retrieve the representation of a resource, as described for getHalResource().
+     *
+     * @param relation The relation of the link being followed to the resource, or null if it is not known.
+     */
+    private HalResource retrieve(String resourcePath, HalResource previousResource, HalResource staleResource,
+                                 String relation) {
+        AmazonServiceException missing = missingResources.get(resourcePath);
+
+        if (missing != null) {
+            throw missing;
+        }
+
+        if (transport != null) {
+            ResilientGets gets = resilientGets;
+            BlockingHalCallback<HalResource> callback = new BlockingHalCallback<>(gets == null ? responseTimeoutMillis
+                                                                                               : gets.getTimeoutMillis(responseTimeoutMillis));
+
+            retrieveAsync(resourcePath, previousResource, staleResource, relation, callback);
+
+            return callback.get();
+        }
+
+        ResilientGets gets = resilientGets;
+        AmazonHttpClient httpClient = gets == null ? client : getNoRetryClient();
+        HalResource halResource;
+
+        if (gets != null) {
+            gets.started();
+        }
+
+        for (int retries = 0; ; retries++) {
+            try {
+                halResource = invoke(GET, resourcePath, null, null, new ContentHashingResponseHandler(previousResource), httpClient);
+
+                break;
+            } catch (AmazonClientException e) {
+                missingResources.failed(resourcePath, e);
+
+                if (gets != null && gets.retry(e, retries)) {
+                    continue;
+                }
+
+                if (gets != null && gets.canServeStale(e, staleResource)) {
+                    log.warn("Unable to retrieve " + resourcePath + ", using a stale version: " + e.getMessage());
+
+                    return staleResource;
+                }
+
+                throw e;
+            }
+        }
+
+        retrieved(resourcePath, previousResource, halResource);
+
+        return halResource;
+    }
+
+
+    /**
+     * @return the AmazonHttpClient that sends GETs retried by a ResiliencePolicy, which doesn't retry them itself.
+     */
+    private synchronized AmazonHttpClient getNoRetryClient() {
+        if (noRetryClient == null) {
+            noRetryClient = new AmazonHttpClient(noRetryConfiguration);
+        }
+
+        return noRetryClient;
+    }
+
+
+    /**
+     * Retrieve the representation of a resource through the transport, as described for getHalResource().  Failed
+     * GETs are sent again by the ResilientGets' retry thread once their backoff expires.
+     */
+    private void retrieveAsync(final String resourcePath, final HalResource previousResource, final HalResource staleResource,
+                               final String relation, final HalCallback<HalResource> callback) {
+        final ResilientGets gets = resilientGets;
+
+        if (gets != null) {
+            gets.started();
+        }
+
+        getAsync(resourcePath, previousResource, relation, new HalCallback<HalResource>() {
+            // Attempts are sent one after the other, so this is only read and written by one thread at a time.
+            private volatile int retries;
+
+
+            @Override
+            public void onSuccess(HalResource halResource) {
+                retrieved(resourcePath, previousResource, halResource);
+                callback.onSuccess(halResource);
+            }
+
+
+            @Override
+            public void onError(Exception e) {
+                final HalCallback<HalResource> attemptCallback = this;
+                long delay = gets == null ? -1 : gets.getRetryDelay(e, retries++);
+
+                missingResources.failed(resourcePath, e);
+
+                if (delay >= 0 && gets.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        getAsync(resourcePath, previousResource, relation, attemptCallback);
+                    }
+                }, delay)) {
+                    return;
+                }
+
+                if (gets != null && gets.canServeStale(e, staleResource)) {
+                    log.warn("Unable to retrieve " + resourcePath + ", using a stale version: " + e.getMessage());
+                    callback.onSuccess(staleResource);
+
+                    return;
+                }
+
+                callback.onError(e);
+            }
+        });
+    }
+
+
+    /**
+     * Send a GET through the transport, hedged if the HedgingPolicy applies to it.
+     */
+    private void getAsync(final String resourcePath, final HalResource previousResource, String relation,
+                          HalCallback<HalResource> callback) {
+        HedgedGets hedging = hedgedGets;
+
+        if (hedging == null || !hedging.isHedged(relation)) {
+            invokeAsync(GET, resourcePath, null, null, new ContentHashingResponseHandler(previousResource), callback);
+
+            return;
+        }
+
+        hedging.send(new HedgedGets.Sender<HalResource>() {
+            @Override
+            public void send(HalCallback<HalResource> attemptCallback) {
+                invokeAsync(GET, resourcePath, null, null, new ContentHashingResponseHandler(previousResource), attemptCallback);
+            }
+        }, callback);
+    }
+
+
+    /**
+     * A GET succeeded.  Note that the previous version is still current, or index the new one.
+     */
+    private void retrieved(String resourcePath, HalResource previousResource, HalResource halResource) {
+        if (previousResource != null && halResource == previousResource) {
+            previousResource.revalidated();
+        } else {
+            dependencyIndex.add(resourcePath, halResource);
+        }
+    }
+
+
+    /**
+     * PUT or PATCH a representation, conditionally if the client is configured for it and the resource's ETag is
+     * known.  A failed precondition brings the cached and pinned versions of the resource up to date.
+     */
+    private HalResource invokeWrite(HttpMethodName httpMethodName, String resourcePath, Object representation,
+                                    OptionalJsonResponseHandler<HalResource> responseHandler) {
+        String eTag = conditionalWrites ? getETag(resourcePath) : null;
+        Map<String, String> headers = eTag == null ? null : Collections.singletonMap("If-Match", eTag);
+
+        try {
+            return invoke(httpMethodName, resourcePath, representation, headers, responseHandler);
+        } catch (PreconditionFailedException e) {
+            HalResource currentResource = (HalResource) e.getCurrentResource();
+            Object cachedResource = resourceCache.get(resourcePath);
+
+            updatePinnedResource(resourcePath, currentResource);
+
+            if (cachedResource != null) {
+                HalResourceContext.of(cachedResource).resourceUpdated(currentResource);
+            }
+
+            throw e;
+        }
+    }
+
+
+    private <T> T invoke(HttpMethodName httpMethodName, String resourcePath, Object representation,
+                         Map<String, String> headers, HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler)
+            throws AmazonClientException {
+        return invoke(httpMethodName, resourcePath, representation, headers, responseHandler, client);
+    }
+
+
+    /**
+     * @param httpClient The AmazonHttpClient that sends the request if no transport is set.
+     */
+    private <T> T invoke(HttpMethodName httpMethodName, String resourcePath, Object representation,
+                         Map<String, String> headers, HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                         AmazonHttpClient httpClient)
+            throws AmazonClientException {
+        if (transport != null) {
+            BlockingHalCallback<T> callback = new BlockingHalCallback<>(responseTimeoutMillis);
+
+            invokeAsync(httpMethodName, resourcePath, representation, headers, responseHandler, callback);
+
+            return callback.get();
+        }
+
+        HttpResponseHandler<AmazonWebServiceResponse<T>> decompressingResponseHandler = new DecompressingResponseHandler<>(responseHandler);
+
+        ExecutionContext executionContext = createExecutionContext();
+        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+
+        awsRequestMetrics.startEvent(AWSRequestMetrics.Field.RequestMarshallTime.name());
+        Request request = buildRequest(httpMethodName, resourcePath, representation, headers, true);
+        awsRequestMetrics.endEvent(AWSRequestMetrics.Field.RequestMarshallTime.name());
+
+        awsRequestMetrics.startEvent(AWSRequestMetrics.Field.CredentialsRequestTime.name());
+        AWSCredentials credentials = awsCredentialsProvider.getCredentials();
+        awsRequestMetrics.endEvent(AWSRequestMetrics.Field.CredentialsRequestTime.name());
+
+        executionContext.setCredentials(credentials);
+
+        awsRequestMetrics.startEvent(AWSRequestMetrics.Field.ClientExecuteTime.name());
+        Response<T> response = httpClient.execute(request, decompressingResponseHandler, errorResponseHandler, executionContext);
+        awsRequestMetrics.endEvent(AWSRequestMetrics.Field.ClientExecuteTime.name());
+
+        awsRequestMetrics.log();
+
+        return response.getAwsResponse();
+    }
+
+
+    /**
+     * Send a request through the transport.  This does what AmazonHttpClient does around the HTTP exchange: the
+     * request handlers see the request before it is signed, and the response is mapped by TransportResponseHandler.
+     */
+    private <T> void invokeAsync(HttpMethodName httpMethodName, String resourcePath, Object representation,
+                                 Map<String, String> headers, HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                                 HalCallback<T> callback) {
+        Request<?> request;
+
+        try {
+            request = buildRequest(httpMethodName, resourcePath, representation, headers, false);
+
+            for (RequestHandler2 requestHandler : requestHandler2s) {
+                requestHandler.beforeRequest(request);
+            }
+
+            getSignerByURI(endpoint).sign(request, awsCredentialsProvider.getCredentials());
+        } catch (RuntimeException e) {
+            callback.onError(e);
+
+            return;
+        }
+
+        transport.send(request, new TransportResponseHandler<>(request, new DecompressingResponseHandler<>(responseHandler),
+                                                               errorResponseHandler, requestHandler2s, callback));
+    }
+
+
+    /**
+     * @param headers additional request headers, or null if there are none
+     * @param shareBuffer true if the request is sent before this thread marshalls another representation, so the
+     *                    content can be read straight from the thread's marshalling buffer
+     */
+    private Request buildRequest(HttpMethodName httpMethodName, String resourcePath, Object representation,
+                                 Map<String, String> headers, boolean shareBuffer) {
+        Request request = new DefaultRequest(null);
+
+        request.setHttpMethod(httpMethodName);
+        request.setEndpoint(endpoint);
+
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.addHeader(header.getKey(), header.getValue());
+            }
+        }
+
+        populateResourcePathAndParameters(request, resourcePath);
+
+        if (representation != null) {
+            assignContent(request, representation, shareBuffer);
+        }
+
+        return request;
+    }
+
+
+    private void populateResourcePathAndParameters(Request request, String resourcePath) {
+        int questionIndex = resourcePath.indexOf("?");
+
+        if (questionIndex < 0) {
+            request.setResourcePath(resourcePath);
+
+            return;
+        }
+
+        request.setResourcePath(resourcePath.substring(0, questionIndex));
+
+        for (String parameterPair : resourcePath.substring(questionIndex + 1).split("&")) {
+            int equalIndex = parameterPair.indexOf("=");
+
+            if (equalIndex < 0) { // key with no value
+                //noinspection deprecation
+                request.addParameter(URLDecoder.decode(parameterPair), null);
+            } else { // key=value
+                //noinspection deprecation
+                request.addParameter(URLDecoder.decode(parameterPair.substring(0, equalIndex)),
+                                     URLDecoder.decode(parameterPair.substring(equalIndex + 1)));
+            }
+        }
+    }
+
+
+    private void assignContent(Request request, Object representation, boolean shareBuffer) {
+        if (StreamingContent.isStreamed(representation)) {
+            // Without a Content-Length, the body is sent with chunked transfer coding.  Its size isn't known up
+            // front, so it is never compressed.
+            request.setContent(StreamingContent.of(representation));
+            request.addHeader("Content-Type", "application/json");
+
+            return;
+        }
+
+        boolean patch = representation instanceof JsonPatch;
+        RepresentationMarshaller.Utf8Buffer content = patch
+                ? RepresentationMarshaller.marshallPatch(((JsonPatch) representation).coalesce())
+                : RepresentationMarshaller.marshall(representation);
+
+        try {
+            byte[] contentBytes = content.getBytes();
+            int contentLength = content.getLength();
+            int threshold = requestCompressionThreshold;
+
+            if (threshold >= 0 && contentLength >= threshold) {
+                contentBytes = gzip(contentBytes, contentLength);
+                contentLength = contentBytes.length;
+                request.addHeader("Content-Encoding", "gzip");
+            } else if (!shareBuffer) {
+                contentBytes = content.toByteArray();
+            }
+
+            request.setContent(new ByteArrayInputStream(contentBytes, 0, contentLength));
+            request.addHeader("Content-Length", Integer.toString(contentLength));
+            request.addHeader("Content-Type", patch ? "application/json-patch+json" : "application/json");
+        } catch(Throwable t) {
+            throw new AmazonClientException("Unable to marshall request to JSON: " + t.getMessage(), t);
+        }
+    }
+
+
+    private static byte[] gzip(byte[] content, int length)
+            throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(content, 0, length);
+        }
+
+        return compressed.toByteArray();
+    }
+
+
+    private <T> OptionalJsonResponseHandler<HalResource> getResponseHandler(Class<T> resourceClass) {
+        if (isVoid(resourceClass)) {
+            return new OptionalJsonResponseHandler<>(new VoidJsonUnmarshaller<HalResource>());
+        }
+
+        return new OptionalJsonResponseHandler<>(HalJsonResourceUnmarshaller.getInstance());
+    }
+
+
+    private void flushQueuedWrite(String resourcePath) {
+        WriteBehindQueue queue = writeBehindQueue;
+
+        if (queue != null) {
+            queue.flush(resourcePath);
+        }
+    }
+
+
+    private <T> T createAndCacheResource(Class<T> resourceClass, String resourcePath, HalResource halResource) {
+        T t = createResource(resourceClass, resourcePath, halResource);
+
+        resourceCache.put(resourcePath, t);
+        cachedPaths.add(resourcePath);
+        cachedPaths.recordMiss(resourcePath);
+        dependencyIndex.add(resourcePath, halResource);
+
+        return t;
+    }
+
+
+    private <T> T createResource(Class<T> resourceClass, String resourcePath, HalResource halResource) {
+        return createResource(resourceClass, new HalResourceContext(halResource, resourcePath, this));
+    }
+
+
+    private <T> T resourcePatched(Class<T> resourceClass, String resourcePath, JsonPatch patch, String eTag) {
+        HalResourceContext pinnedContext = pinnedResources.getContext(resourcePath);
+        Object cachedResource = resourceCache.get(resourcePath);
+
+        if (pinnedContext != null) {
+            pinnedContext.resourcePatched(patch, eTag);
+        }
+
+        if (cachedResource == null) {
+            return null;
+        }
+
+        HalResourceContext context = HalResourceContext.of(cachedResource);
+
+        if (context != pinnedContext) {
+            context.resourcePatched(patch, eTag);
+        }
+
+        return resourceClass.isInstance(cachedResource) ? resourceClass.cast(cachedResource) : null;
+    }
+
+
+    /**
+     * @return the ETag of the pinned or cached version of the resource, or null if it has none that can be used in
+     *         If-Match.
+     */
+    private String getETag(String resourcePath) {
+        HalResourceContext context = pinnedResources.getContext(resourcePath);
+
+        if (context == null) {
+            context = HalResourceContext.of(resourceCache.get(resourcePath));
+        }
+
+        String eTag = context == null ? null : context.getETag();
+
+        // If-Match uses the strong comparison, which weak ETags never pass.
+        return eTag == null || eTag.startsWith("W/") ? null : eTag;
+    }
+
+
+    /**
+     * Build a created resource from the representation that was posted to create it.
+     *
+     * @param resourcePath the created resource's path, from the Location of the response
+     * @param representation the posted representation
+     * @param responseResource the response, whose properties (typically server-assigned ones) are added
+     * @param eTag the ETag of the response
+     * @return a partial resource, or null if the representation is not a JSON object that can be read back.
+     */
+    private HalResource createPartialResource(String resourcePath, Object representation, HalResource responseResource,
+                                              String eTag) {
+        if (StreamingContent.isStreamed(representation) || representation instanceof JsonPatch) {
+            return null;
+        }
+
+        Object properties = JsonPatchApplier.parse(RepresentationMarshaller.marshall(representation));
+
+        if (!(properties instanceof Map)) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> propertyMap = (Map<String, Object>) properties;
+        HalLink selfLink = new HalLink();
+        HalResource halResource = new HalResource().withProperties(propertyMap);
+
+        // Links and embedded resources the client sent are not the service's, so they are left to the full retrieval.
+        propertyMap.remove("_links");
+        propertyMap.remove("_embedded");
+        propertyMap.putAll(responseResource.getProperties());
+        selfLink.setHref(resourcePath);
+        halResource.setLinks(Collections.singletonMap("self", selfLink));
+        halResource.setETag(eTag);
+        halResource.setPartial(true);
+
+        return halResource;
+    }
+
+
+    /**
+     * A write to a resource succeeded.  Forget that the resource was missing, index the representation the service
+     * returned, if any and if the resource is cached or pinned, and mark stale the known resources that embed the written resource or, if it was deleted,
+     * link to it.
+     */
+    private void resourceWritten(String resourcePath, HalResource halResource, boolean deleted) {
+        missingResources.remove(resourcePath);
+        dependencyIndex.add(resourcePath, halResource);
+
+        for (String dependentPath : dependencyIndex.getEmbeddingPaths(resourcePath)) {
+            invalidate(dependentPath, resourcePath, false);
+        }
+
+        if (deleted) {
+            for (String dependentPath : dependencyIndex.getLinkingPaths(resourcePath)) {
+                invalidate(dependentPath, resourcePath, true);
+            }
+        }
+    }
+
+
+    /**
+     * Mark the pinned and cached versions of a resource stale if they refer to an href, or drop the resource from
+     * the href's dependents if neither does any more.
+     */
+    private void invalidate(String resourcePath, String href, boolean links) {
+        HalResourceContext pinnedContext = pinnedResources.getContext(resourcePath);
+        HalResourceContext context = HalResourceContext.of(resourceCache.get(resourcePath));
+        boolean invalidated = invalidate(pinnedContext, href, links);
+
+        if (context != pinnedContext) {
+            invalidated |= invalidate(context, href, links);
+        }
+
+        if (pinnedContext == null && context == null) {
+            dependencyIndex.prune(resourcePath);
+        } else if (!invalidated) {
+            dependencyIndex.remove(href, resourcePath, links);
+        }
+    }
+
+
+    private void markStale(String resourcePath) {
+        HalResourceContext pinnedContext = pinnedResources.getContext(resourcePath);
+        HalResourceContext context = HalResourceContext.of(resourceCache.get(resourcePath));
+
+        if (pinnedContext != null) {
+            pinnedContext.resourceUpdated(null);
+        }
+
+        if (context != null && context != pinnedContext) {
+            context.resourceUpdated(null);
+        }
+    }
+
+
+    private void updatePinnedResource(String resourcePath, HalResource halResource) {
+        HalResourceContext context = pinnedResources.getContext(resourcePath);
+
+        if (context != null) {
+            context.resourceUpdated(halResource);
+        }
+    }
+
+
+    private String getHalResourcePath(HalResource halResource, OptionalJsonResponseHandler<HalResource> responseHandler) {
+        String resourcePath;
+
+        if (halResource != null && halResource.isDefined()) {
+            resourcePath = halResource._getSelfHref();
+        } else {
+            String endpointString = endpoint.toString();
+            String location = responseHandler.getLocation();
+
+            // Will throw an NPE if no location is present.  This is okay, since it means we don't know what this resource is
+            // or where to find it.
+            if (location.startsWith(endpointString)) {
+                resourcePath = location.substring(endpointString.length());
+            } else {
+                resourcePath = location;
+            }
+        }
+
+        return resourcePath;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static boolean isVoid(Class<?> resourceClass) {
+        return resourceClass.equals(Void.class) || resourceClass.equals(void.class);
+    }
+
+
+    /**
+     * @return true if the context's snapshot referred to the href and was marked stale.
+     */
+    private static boolean invalidate(HalResourceContext context, String href, boolean links) {
+        HalResource halResource = context == null ? null : context.getKnownHalResource();
+
+        if (halResource == null || !ResourceDependencyIndex.refersTo(halResource, href, links)) {
+            return false;
+        }
+
+        context.resourceUpdated(null);
+
+        return true;
+    }
+}
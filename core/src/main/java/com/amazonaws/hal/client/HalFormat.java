@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.http.HttpResponse;
+import org.apache.commons.logging.LogFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+
+/**
+ * The encodings of HAL representations the client can read.  Besides JSON, HAL can be exchanged in the binary
+ * CBOR and Smile encodings, which are smaller and cheaper to parse.  They map onto the same Jackson token stream as
+ * JSON, so the HAL unmarshallers read all encodings unchanged.
+ *
+ * The binary encodings require the matching Jackson dataformat module (jackson-dataformat-cbor or
+ * jackson-dataformat-smile) on the classpath; encodings whose module is missing are never negotiated.
+ */
+enum HalFormat {
+
+    CBOR("application/hal+cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory"),
+    SMILE("application/hal+smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory"),
+    JSON("application/hal+json", null);
+
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final String mediaType;
+    private final JsonFactory jsonFactory;
+
+    private static final String BINARY_ACCEPT_HEADER = buildBinaryAcceptHeader();
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    HalFormat(String mediaType, String jsonFactoryClassName) {
+        this.mediaType = mediaType;
+        this.jsonFactory = jsonFactoryClassName == null ? new JsonFactory() : loadJsonFactory(jsonFactoryClassName);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    String getMediaType() {
+        return mediaType;
+    }
+
+
+    JsonFactory getJsonFactory() {
+        return jsonFactory;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    boolean isAvailable() {
+        return jsonFactory != null;
+    }
+
+
+    boolean isBinary() {
+        return this != JSON;
+    }
+
+
+    JsonParser createParser(InputStream content)
+            throws IOException {
+        return jsonFactory.createParser(content == null ? new ByteArrayInputStream(new byte[0]) : content);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @param binary true to prefer the available binary encodings over JSON
+     * @return the value of the Accept header that negotiates the encodings.
+     */
+    static String getAcceptHeader(boolean binary) {
+        return binary ? BINARY_ACCEPT_HEADER : JSON.mediaType;
+    }
+
+
+    /**
+     * @return the format of the response's content, or null if its Content-Type is not a HAL encoding the client
+     *         can read.
+     */
+    static HalFormat of(HttpResponse response) {
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase("Content-Type")) {
+                String mediaType = header.getValue().split(";")[0].trim().toLowerCase();
+
+                for (HalFormat format : values()) {
+                    if (format.mediaType.equals(mediaType) && format.isAvailable()) {
+                        return format;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static JsonFactory loadJsonFactory(String className) {
+        try {
+            return (JsonFactory) Class.forName(className, true, HalFormat.class.getClassLoader())
+                                      .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            // Logged without a static Log, since the enum's static fields are not initialized yet
+            LogFactory.getLog(HalFormat.class).warn("Unable to create " + className + ".", e);
+
+            return null;
+        }
+    }
+
+
+    private static String buildBinaryAcceptHeader() {
+        StringBuilder accept = new StringBuilder();
+        int quality = 10;
+
+        for (HalFormat format : values()) {
+            if (format.isAvailable()) {
+                if (accept.length() > 0) {
+                    accept.append(", ");
+                }
+
+                accept.append(format.mediaType);
+
+                if (quality < 10) {
+                    accept.append(";q=0.").append(quality);
+                }
+
+                quality--;
+            }
+        }
+
+        return accept.toString();
+    }
+}
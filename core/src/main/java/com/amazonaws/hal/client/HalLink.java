@@ -81,4 +81,43 @@ class HalLink {
     public void setDeprecation(String deprecation) {
         this.deprecation = deprecation;
     }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public - Canonical
+    //-------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof HalLink)) {
+            return false;
+        }
+
+        HalLink other = (HalLink) o;
+
+        return templated == other.templated
+               && equal(href, other.href)
+               && equal(name, other.name)
+               && equal(title, other.title)
+               && equal(deprecation, other.deprecation);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return href == null ? 0 : href.hashCode();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private static boolean equal(Object value1, Object value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.ResourceInfo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * The parsed representation of a HAL resource.  A HalResource is populated by the unmarshallers and is treated as
+ * immutable once published; updates replace the whole instance (see HalResourceInvocationHandler.resourceUpdated()).
+ * Converted property values are memoized separately and are safe to access from multiple threads.
+ */
+class HalResource
+        implements ResourceInfo {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private Map<String, Object> properties = new HashMap<>();
+    private final ConcurrentMap<ConversionUtil.ConversionKey, Object> convertedProperties = new ConcurrentHashMap<>();
+    private byte[] contentHash;                                             // Hash of the response body, if known
+    private String eTag;                                                    // Entity tag of the response, if known
+    private boolean partial;                                                // Built by the client, not retrieved
+    private volatile long validatedNanos = System.nanoTime();               // When it was last known to be current
+    private Map<String, HalLink> links = Collections.emptyMap();            // Map of relation to HalLink
+    private Map<String, HalResource> embedded = Collections.emptyMap();     // Map of href to HalResource
+
+
+    //-------------------------------------------------------------
+    // Implementation - ResourceInfo
+    //-------------------------------------------------------------
+
+    @Override
+    public boolean _isLinkAvailable(String relation) {
+        return links.containsKey(relation);
+    }
+
+
+    @Override
+    public Set<String> _getAvailableLinks() {
+        return links.keySet();
+    }
+
+
+    @Override
+    public Object _getProperty(String propertyName) {
+        return properties.get(propertyName);
+    }
+
+
+    @Override
+    public String _getSelfHref() {
+        return _getLinkHref("self");
+    }
+
+
+    @Override
+    public String _getLinkHref(String relation) {
+        HalLink link = getLink(relation);
+
+        if (link == null) {
+            return null;
+        }
+
+        return link.getHref();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public - Canonical
+    //-------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        HalLink selfLink = getLink("self");
+
+        if (selfLink == null) {
+            return "<undefined>";
+        }
+
+        return selfLink.getHref();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    Object getProperty(String key) {
+        return properties.get(key);
+    }
+
+
+    void addProperty(String key, Object value) {
+        properties.put(key, value);
+    }
+
+
+    Map<String, Object> getProperties() {
+        return properties;
+    }
+
+
+    /**
+     * @param properties the properties of the copy
+     * @return a copy of this resource, with the same links and embedded resources, but different properties.
+     */
+    HalResource withProperties(Map<String, Object> properties) {
+        HalResource halResource = new HalResource();
+
+        halResource.properties = properties;
+        halResource.links = links;
+        halResource.embedded = embedded;
+        halResource.partial = partial;
+
+        return halResource;
+    }
+
+
+    ConcurrentMap<ConversionUtil.ConversionKey, Object> getConvertedProperties() {
+        return convertedProperties;
+    }
+
+
+    HalLink getLink(String relation) {
+        return links.get(relation);
+    }
+
+
+    Map<String, HalLink> getLinks() {
+        return links;
+    }
+
+
+    void setLinks(Map<String, HalLink> links) {
+        this.links = links;
+    }
+
+
+    Map<String, HalResource> getEmbedded() {
+        return embedded;
+    }
+
+
+    void setEmbedded(Map<String, HalResource> embedded) {
+        this.embedded = embedded;
+    }
+
+
+    byte[] getContentHash() {
+        return contentHash;
+    }
+
+
+    void setContentHash(byte[] contentHash) {
+        this.contentHash = contentHash;
+    }
+
+
+    String getETag() {
+        return eTag;
+    }
+
+
+    void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+
+    /**
+     * @return the System.nanoTime() at which the representation was created or last revalidated.
+     */
+    long getValidatedNanos() {
+        return validatedNanos;
+    }
+
+
+    /**
+     * The service returned the same representation again.  Unlike the rest of a HalResource, this timestamp changes
+     * after the snapshot is published.
+     */
+    void revalidated() {
+        validatedNanos = System.nanoTime();
+    }
+
+
+    /**
+     * @return true if this resource was built from a representation the client sent, rather than retrieved, so the
+     *         service may have properties and links it doesn't.
+     */
+    boolean isPartial() {
+        return partial;
+    }
+
+
+    void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+
+    boolean isDefined() {
+        return getLink("self") != null;
+    }
+
+
+    /**
+     * @return true if the resource has no properties, links or embedded resources, as when the response had no body.
+     */
+    boolean isEmpty() {
+        return properties.isEmpty() && links.isEmpty() && embedded.isEmpty();
+    }
+
+
+    /**
+     * Carry over state from a previous version of this resource for everything that did not change between the two
+     * versions: memoized conversions of unchanged properties, the links map if no link changed, and the same for each
+     * embedded resource that is present in both.  This must be called before this resource is published.
+     *
+     * @param previousResource the previous version of this resource
+     */
+    void inheritUnchanged(HalResource previousResource) {
+        if (previousResource == this) {
+            return;
+        }
+
+        for (Map.Entry<ConversionUtil.ConversionKey, Object> entry : previousResource.convertedProperties.entrySet()) {
+            Object key = entry.getKey().getKey();
+
+            if (properties.containsKey(key) && equal(properties.get(key), previousResource.properties.get(key))) {
+                convertedProperties.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (links.equals(previousResource.links)) {
+            links = previousResource.links;
+        }
+
+        for (Map.Entry<String, HalResource> entry : embedded.entrySet()) {
+            HalResource previousEmbedded = previousResource.embedded.get(entry.getKey());
+
+            if (previousEmbedded != null) {
+                entry.getValue().inheritUnchanged(previousEmbedded);
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private static boolean equal(Object value1, Object value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
+}
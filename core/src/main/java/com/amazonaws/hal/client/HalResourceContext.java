@@ -0,0 +1,399 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.JsonPatch;
+import com.amazonaws.hal.Link.KeyField;
+import com.amazonaws.hal.RelationNotAvailableException;
+import com.amazonaws.hal.ResourceInfo;
+
+import com.damnhandy.uri.template.MalformedUriTemplateException;
+import com.damnhandy.uri.template.UriTemplate;
+import com.damnhandy.uri.template.VariableExpansionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.amazonaws.hal.client.ConversionUtil.convertAndMemoize;
+
+
+/**
+ * The state behind a resource instance: the resource's path, the current snapshot of its representation and the
+ * HalClient it belongs to.  Resource instances, whether dynamic proxies or classes generated by the HAL annotation
+ * processor, delegate to a HalResourceContext.
+ *
+ * The public methods of this class are intended to be called by generated resource implementations.
+ */
+public final class HalResourceContext {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final AtomicReference<HalResource> halResourceReference;
+    private final String resourcePath;
+    private final HalClient halClient;
+    private volatile HalResource staleResource;         // The last snapshot, while the resource is marked stale
+
+    private static Log log = LogFactory.getLog(HalResourceContext.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    HalResourceContext(HalResource halResource, String resourcePath, HalClient halClient) {
+        this.halResourceReference = new AtomicReference<>(halResource);
+        this.resourcePath = resourcePath;
+        this.halClient = halClient;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    public String getResourcePath() {
+        return resourcePath;
+    }
+
+
+    public HalClient getHalClient() {
+        return halClient;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public
+    //-------------------------------------------------------------
+
+    /**
+     * @return the current snapshot of the resource, which implements the ResourceInfo methods.
+     */
+    public ResourceInfo getResourceInfo() {
+        return getHalResource();
+    }
+
+
+    /**
+     * Get a property of the resource, converted to the specified type.
+     *
+     * @param propertyName the name of the property
+     * @param type the type the value is converted to
+     * @return the converted value
+     */
+    public Object getProperty(String propertyName, Type type) {
+        return getProperty(getHalResource(), propertyName, type);
+    }
+
+
+    /**
+     * Get the href of the link with the specified relation, expanding it if it is templated.
+     *
+     * @param relation the link relation
+     * @param variableNames the names of URI template variables
+     * @param variableValues the values of URI template variables, in the same order as variableNames
+     * @return the href
+     */
+    public String getRelationHref(String relation, String[] variableNames, Object[] variableValues) {
+        return getRelationHref(getHalResource(), relation, variableNames, variableValues);
+    }
+
+
+    public <T> T getLinkedResource(Class<T> resourceClass, String relation, String[] variableNames, Object[] variableValues) {
+        HalResource halResource = getHalResource();
+
+        return halClient.getResource(halResource, resourceClass,
+                                     getRelationHref(halResource, relation, variableNames, variableValues), false, relation);
+    }
+
+
+    public <T> List<T> getLinkedResourceList(Class<T> resourceClass, String relation) {
+        return new HalLinkList<>(complete(getHalResource()), relation, resourceClass, halClient);
+    }
+
+
+    public <T> Map<String, T> getLinkedResourceMap(Class<T> resourceClass, String relation, KeyField keyField) {
+        return new HalLinkMap<>(complete(getHalResource()), relation, keyField, resourceClass, halClient);
+    }
+
+
+    /**
+     * @param other a resource instance
+     * @return true if other is a resource instance (proxy or generated) for the same resource as this one.
+     */
+    public boolean isSameResource(Object other) {
+        HalResourceContext otherContext = of(other);
+
+        return otherContext != null && resourcePath.equals(otherContext.resourcePath);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public - Canonical
+    //-------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return resourcePath;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @param resource a resource instance
+     * @return the context behind the resource instance, or null if the object is not a resource instance.
+     */
+    static HalResourceContext of(Object resource) {
+        if (resource instanceof GeneratedResource) {
+            return ((GeneratedResource) resource)._getResourceContext();
+        }
+
+        if (resource != null && Proxy.isProxyClass(resource.getClass())) {
+            InvocationHandler invocationHandler = Proxy.getInvocationHandler(resource);
+
+            if (invocationHandler instanceof HalResourceInvocationHandler) {
+                return ((HalResourceInvocationHandler) invocationHandler).getResourceContext();
+            }
+        }
+
+        return null;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Get the current snapshot of the resource, fetching it first if it is not yet known.  HalResource instances are
+     * not modified once published, so the snapshot is swapped as a whole rather than updated in place.  If another
+     * thread publishes a newer snapshot while this one is being fetched, the newer snapshot wins.
+     *
+     * If the resource was marked stale and can't be retrieved, the client's ResiliencePolicy may return the last
+     * snapshot instead.  That snapshot is used, but not published, so the next call tries to retrieve the resource
+     * again.
+     */
+    HalResource getHalResource() {
+        HalResource halResource = halResourceReference.get();
+
+        if (halResource == null || !halResource.isDefined()) {
+            HalResource previousResource = staleResource;
+            HalResource fetchedResource = halClient.getHalResource(resourcePath, null, previousResource);
+
+            if (previousResource != null && fetchedResource == previousResource) {
+                return fetchedResource;
+            }
+
+            if (halResourceReference.compareAndSet(halResource, fetchedResource)) {
+                staleResource = null;
+                halResource = fetchedResource;
+            } else {
+                HalResource currentResource = halResourceReference.get();
+
+                halResource = currentResource == null || !currentResource.isDefined() ? fetchedResource : currentResource;
+            }
+        }
+
+        return halResource;
+    }
+
+
+    Object getProperty(HalResource halResource, String propertyName, Type type) {
+        if (halResource.isPartial() && !halResource.getProperties().containsKey(propertyName)) {
+            halResource = complete(halResource);
+        }
+
+        return convertAndMemoize(type, propertyName, halResource.getProperty(propertyName), halResource.getConvertedProperties());
+    }
+
+
+    String getRelationHref(HalResource halResource, String relation, String[] variableNames, Object[] variableValues) {
+        HalLink halLink = halResource.getLink(relation);
+
+        if (halLink == null && halResource.isPartial()) {
+            halLink = complete(halResource).getLink(relation);
+        }
+
+        if (halLink == null) {
+            // Missing relations are expected often enough, e.g. on the last page of a list, that the stack trace is
+            // not worth filling in.
+            throw new RelationNotAvailableException(relation, null, false, false);
+        }
+
+        if (halLink.getDeprecation() != null) {
+            log.warn("Link '" + relation + "' has been deprecated: " + halLink.getDeprecation());
+        }
+
+        String href;
+
+        if (halLink.isTemplated()) {
+            try {
+                UriTemplate uriTemplate = UriTemplate.fromTemplate(halLink.getHref());
+
+                for (int i = 0; i < variableNames.length; i++) {
+                    assignTemplateValue(uriTemplate, variableNames[i], variableValues[i]);
+                }
+
+                href = uriTemplate.expand();
+            } catch (MalformedUriTemplateException | VariableExpansionException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            href = halLink.getHref();
+        }
+
+        return href;
+    }
+
+
+    /**
+     * Replace a partial snapshot, built by the client from a representation it sent, with the resource as the
+     * service has it.  This is done when something that isn't in the partial snapshot is asked for.  If another
+     * thread published a complete snapshot in the meantime, that snapshot is used.
+     *
+     * @param halResource a snapshot of the resource
+     * @return the snapshot itself if it is not partial, or the complete snapshot.
+     */
+    HalResource complete(HalResource halResource) {
+        if (!halResource.isPartial()) {
+            return halResource;
+        }
+
+        HalResource fetchedResource = halClient.getHalResource(resourcePath);
+
+        fetchedResource.inheritUnchanged(halResource);
+
+        if (halResourceReference.compareAndSet(halResource, fetchedResource)) {
+            return fetchedResource;
+        }
+
+        HalResource currentResource = halResourceReference.get();
+
+        return currentResource == null || !currentResource.isDefined() || currentResource.isPartial() ? fetchedResource : currentResource;
+    }
+
+
+    /**
+     * The resource this context manages has been updated or deemed stale.  Values already converted for the previous
+     * version are carried over to the new version wherever the underlying data did not change.
+     *
+     * @param halResource The new HalResource or null if the resource was stale and the new value is not yet known.
+     */
+    void resourceUpdated(HalResource halResource) {
+        HalResource previousResource = halResourceReference.get();
+
+        if (halResource != null && previousResource != null) {
+            halResource.inheritUnchanged(previousResource);
+        }
+
+        if (halResource != null) {
+            staleResource = null;
+        } else if (previousResource != null && previousResource.isDefined()) {
+            staleResource = previousResource;
+        }
+
+        halResourceReference.set(halResource);
+    }
+
+
+    /**
+     * @return the current snapshot, or null if it is not known.  Unlike getHalResource(), this never retrieves the
+     *         resource.
+     */
+    HalResource getKnownHalResource() {
+        return halResourceReference.get();
+    }
+
+
+    /**
+     * @return the ETag of the current snapshot, or null if the snapshot is not known or had no ETag.
+     */
+    String getETag() {
+        HalResource halResource = getKnownHalResource();
+
+        return halResource == null ? null : halResource.getETag();
+    }
+
+
+    /**
+     * The service accepted a patch of the resource this context manages without returning the patched
+     * representation.  The patch is applied to the current snapshot, so the resource doesn't have to be retrieved
+     * again.  If the patch can't be applied locally, the resource is deemed stale.  If another thread published a
+     * newer snapshot in the meantime, that snapshot is kept.
+     *
+     * @param patch the patch the service applied
+     * @param eTag the ETag of the patched resource, or null if the service didn't return one
+     */
+    void resourcePatched(JsonPatch patch, String eTag) {
+        HalResource previousResource = halResourceReference.get();
+        HalResource halResource = previousResource == null || !previousResource.isDefined()
+                ? null
+                : JsonPatchApplier.apply(previousResource, patch);
+
+        if (halResource != null) {
+            halResource.setETag(eTag);
+            halResource.inheritUnchanged(previousResource);
+        } else {
+            log.debug("Unable to apply the patch of " + resourcePath + " locally, the resource will be retrieved again.");
+        }
+
+        if (halResourceReference.compareAndSet(previousResource, halResource) && halResource == null
+            && previousResource != null && previousResource.isDefined()) {
+            staleResource = previousResource;
+        }
+    }
+
+
+    /**
+     * Re-retrieve the resource this context manages.  If the representation did not change, the current snapshot (and
+     * everything converted from it) is kept.
+     */
+    void refresh() {
+        HalResource previousResource = halResourceReference.get();
+        HalResource halResource = halClient.getHalResource(resourcePath, previousResource);
+
+        if (halResource != previousResource) {
+            resourceUpdated(halResource);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void assignTemplateValue(UriTemplate uriTemplate, String variableName, Object value) {
+        if (uriTemplate.hasVariable(variableName)) {
+            log.warn(String.format("Duplicate assignment to variable %s.  Current = '%s', skipping new value '%s'.",
+                                   variableName, uriTemplate.get(variableName), value));
+
+            return;
+        }
+
+        uriTemplate.set(variableName, value);
+    }
+}
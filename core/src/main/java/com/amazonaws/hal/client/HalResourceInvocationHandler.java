@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.Link;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+
+class HalResourceInvocationHandler
+        implements InvocationHandler {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final HalResourceContext context;
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    HalResourceInvocationHandler(HalResource halResource, String resourcePath, HalClient halClient) {
+        this(new HalResourceContext(halResource, resourcePath, halClient));
+    }
+
+
+    HalResourceInvocationHandler(HalResourceContext context) {
+        this.context = context;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - InvocationHandler
+    //-------------------------------------------------------------
+
+    /**
+     */
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+        ResourceMethod resourceMethod = ResourceMethod.getInstance(method);
+        HalClient halClient = context.getHalClient();
+
+        // Every call works against a single snapshot, even if the resource is updated concurrently.
+        HalResource halResource = context.getHalResource();
+
+        switch (resourceMethod.getKind()) {
+        case RESOURCE_INFO:
+            try {
+                return resourceMethod.getResourceInfoMethod().invoke(halResource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+
+        case LINK_LIST:
+            //noinspection unchecked
+            return new HalLinkList(context.complete(halResource), resourceMethod.getLink().relation(), getResourceClass(resourceMethod), halClient);
+
+        case LINK_MAP:
+            //noinspection unchecked
+            return new HalLinkMap(context.complete(halResource), resourceMethod.getLink().relation(), resourceMethod.getLink().keyField(),
+                                  getResourceClass(resourceMethod), halClient);
+
+        case LINK:
+            return invokeLink(halResource, resourceMethod, args == null ? EMPTY_ARGS : args);
+
+        case PROPERTY:
+            return context.getProperty(halResource, resourceMethod.getPropertyName(), resourceMethod.getPropertyType());
+
+        case TO_STRING:
+            return context.getResourcePath();
+
+        case EQUALS:
+            return context.isSameResource(args[0]);
+
+        case HASH_CODE:
+            return context.getResourcePath().hashCode();
+
+        default:
+            throw new UnsupportedOperationException("Don't know how to handle '" + method.getName() + "'");
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    HalResourceContext getResourceContext() {
+        return context;
+    }
+
+
+    /**
+     * The resource this InvocationHandler manages has been updated or deemed stale.
+     *
+     * @param halResource The new HalResource or null if the resource was stale and the new value is not yet known.
+     * @see HalResourceContext#resourceUpdated(HalResource)
+     */
+    void resourceUpdated(HalResource halResource) {
+        context.resourceUpdated(halResource);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private Object invokeLink(HalResource halResource, ResourceMethod resourceMethod, Object[] args) {
+        HalClient halClient = context.getHalClient();
+        Link link = resourceMethod.getLink();
+        Class<?> resourceClass = resourceMethod.getResourceClass();
+
+        switch (link.method()) {
+        case GET:
+            return halClient.getResource(halResource, resourceClass, getRelationHref(halResource, resourceMethod, args), false,
+                                         link.relation());
+
+        case POST:
+            if (args.length == 0) {
+                throw new IllegalArgumentException("POST operations require a representation argument.");
+            }
+
+            return halClient.postResource(resourceClass, getRelationHref(halResource, resourceMethod, args), args[0]);
+
+        case PUT:
+            if (args.length == 0) {
+                throw new IllegalArgumentException("PUT operations require a representation argument.");
+            }
+
+            return halClient.putResource(resourceClass, getRelationHref(halResource, resourceMethod, args), args[0]);
+
+        case DELETE:
+            return halClient.deleteResource(resourceClass, getRelationHref(halResource, resourceMethod, args));
+
+        case PATCH:
+            if (args.length == 0) {
+                throw new IllegalArgumentException("PATCH operations require a representation argument.");
+            }
+
+            return halClient.patchResource(resourceClass, getRelationHref(halResource, resourceMethod, args), args[0]);
+
+        default:
+            throw new UnsupportedOperationException("Unexpected HTTP method: " + link.method());
+        }
+    }
+
+
+    private String getRelationHref(HalResource halResource, ResourceMethod resourceMethod, Object[] args) {
+        return context.getRelationHref(halResource, resourceMethod.getLink().relation(),
+                                       resourceMethod.getVariableNames(), resourceMethod.getVariableValues(args));
+    }
+
+
+    private Class getResourceClass(ResourceMethod resourceMethod) {
+        if (resourceMethod.getResourceClass() == null) {
+            throw new UnsupportedOperationException(resourceMethod.getProblems().toString());
+        }
+
+        return resourceMethod.getResourceClass();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.JsonResponseHandler;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+import com.amazonaws.transform.Unmarshaller;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The base of the client's response handlers.  JSON responses are handled by JsonResponseHandler; responses in a
+ * binary HAL encoding are parsed with the encoding's Jackson parser and passed to the same unmarshaller.  The
+ * response's ETag is kept, and recorded on the HalResource it describes.
+ *
+ * @param <T> The type of the result.
+ */
+class HalResponseHandler<T> extends JsonResponseHandler<T> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Unmarshaller<T, JsonUnmarshallerContext> responseUnmarshaller;
+    private String eTag;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    HalResponseHandler(Unmarshaller<T, JsonUnmarshallerContext> responseUnmarshaller) {
+        super(responseUnmarshaller);
+
+        this.responseUnmarshaller = responseUnmarshaller;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    /**
+     * @return the ETag of the handled response, or null if it had none.
+     */
+    String getETag() {
+        return eTag;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HttpResponseHandler
+    //-------------------------------------------------------------
+
+    @Override
+    public AmazonWebServiceResponse<T> handle(HttpResponse response)
+            throws Exception {
+        eTag = getHeader(response, "ETag");
+
+        AmazonWebServiceResponse<T> awsResponse = parse(response);
+
+        if (awsResponse.getResult() instanceof HalResource) {
+            ((HalResource) awsResponse.getResult()).setETag(eTag);
+        }
+
+        return awsResponse;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @return the value of the header, whatever the case of its name, or null if the response doesn't have it.
+     */
+    static String getHeader(HttpResponse response, String name) {
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private AmazonWebServiceResponse<T> parse(HttpResponse response)
+            throws Exception {
+        HalFormat format = HalFormat.of(response);
+
+        if (format == null || !format.isBinary()) {
+            return super.handle(response);
+        }
+
+        try (JsonParser jsonParser = format.createParser(response.getContent())) {
+            HalUnmarshallerContext unmarshallerContext = new HalUnmarshallerContext(jsonParser, response);
+
+            registerAdditionalMetadataExpressions(unmarshallerContext);
+
+            AmazonWebServiceResponse<T> awsResponse = new AmazonWebServiceResponse<>();
+            Map<String, String> metadata = new HashMap<>();
+
+            awsResponse.setResult(responseUnmarshaller.unmarshall(unmarshallerContext));
+            metadata.put(ResponseMetadata.AWS_REQUEST_ID, unmarshallerContext.getHeader("x-amzn-RequestId"));
+            awsResponse.setResponseMetadata(new ResponseMetadata(metadata));
+
+            return awsResponse;
+        }
+    }
+}
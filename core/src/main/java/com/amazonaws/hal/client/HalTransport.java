@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpResponse;
+
+
+/**
+ * The layer below HalClient that exchanges HTTP requests and responses.  By default a HalClient uses the blocking
+ * AmazonHttpClient it inherits from AmazonWebServiceClient; a HalTransport replaces it.
+ *
+ * Requests passed to a transport have already been processed by the client's request handlers and signed, and the
+ * client maps the responses it gets back (including errors) exactly as it does for AmazonHttpClient responses.  The
+ * transport is only responsible for moving bytes.
+ */
+public interface HalTransport {
+
+    /**
+     * Send a request.  Implementations must not block the calling thread waiting for the response; the callback is
+     * invoked exactly once, on a thread of the transport's choosing.
+     *
+     * @param request the signed request, with its endpoint, resource path, parameters, headers and content set
+     * @param callback receives the response, whatever its status code, or the reason no response was received
+     */
+    void send(Request<?> request, Callback callback);
+
+
+    /**
+     * Release the transport's connections and threads.
+     */
+    void shutdown();
+
+
+    interface Callback {
+
+        /**
+         * @param response the response, with its content fully received
+         */
+        void completed(HttpResponse response);
+
+
+        void failed(Exception e);
+    }
+
+
+    /**
+     * Implemented by callbacks whose response may stop being wanted, such as the losing request of a hedged GET.
+     * A transport that has not sent such a request yet should check isCancelled() before sending it and, if it is
+     * cancelled, fail the callback with a CancellationException instead.  Requests already sent may be left to
+     * complete, or aborted where the protocol allows it without closing the connection, as HTTP/2 does by resetting
+     * the stream.
+     */
+    interface Cancellable {
+
+        boolean isCancelled();
+    }
+}
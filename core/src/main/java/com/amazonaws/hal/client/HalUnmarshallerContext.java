@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+
+/**
+ * A JsonUnmarshallerContext over any Jackson parser, used to unmarshall the binary HAL encodings.  It implements
+ * the part of the context the HAL unmarshallers rely on.
+ */
+class HalUnmarshallerContext extends JsonUnmarshallerContext {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final JsonParser jsonParser;
+    private final HttpResponse httpResponse;
+    private JsonToken currentToken;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    HalUnmarshallerContext(JsonParser jsonParser, HttpResponse httpResponse) {
+        this.jsonParser = jsonParser;
+        this.httpResponse = httpResponse;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - JsonUnmarshallerContext
+    //-------------------------------------------------------------
+
+    @Override
+    public JsonToken getCurrentToken() {
+        return currentToken;
+    }
+
+
+    @Override
+    public JsonToken nextToken()
+            throws IOException {
+        currentToken = jsonParser.nextToken();
+
+        return currentToken;
+    }
+
+
+    @Override
+    public String readText()
+            throws IOException {
+        return jsonParser.getText();
+    }
+
+
+    @Override
+    public boolean testExpression(String expression) {
+        try {
+            return currentToken == JsonToken.FIELD_NAME && expression.equals(jsonParser.getCurrentName());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+
+    @Override
+    public JsonParser getJsonParser() {
+        return jsonParser;
+    }
+
+
+    @Override
+    public HttpResponse getHttpResponse() {
+        return httpResponse;
+    }
+
+
+    @Override
+    public String getHeader(String header) {
+        return httpResponse == null ? null : httpResponse.getHeaders().get(header);
+    }
+}
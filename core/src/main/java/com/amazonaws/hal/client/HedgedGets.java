@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.HedgingPolicy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * The hedging state of a HalClient's GETs under a HedgingPolicy: the recent GET latencies, the hedging delay
+ * derived from them, the hedge budget, and the thread that sends hedges when their delay expires.
+ *
+ * Latencies are kept in a ring buffer of the most recent samples, which is sorted to find the percentile only every
+ * so many samples, so recording a latency costs a couple of atomic operations.  No GET is hedged until enough
+ * samples have been seen.
+ */
+class HedgedGets {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final Set<String> relations;
+    private final RequestBudget budget;
+    private final ScheduledExecutorService hedgeExecutor;
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLE_COUNT);
+    private final AtomicLong sampleCount = new AtomicLong();
+    private volatile long delayNanos = -1;
+
+    private static final int SAMPLE_COUNT = 1024;
+    private static final int SAMPLES_PER_UPDATE = 64;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    HedgedGets(HedgingPolicy policy) {
+        this.percentile = policy.getPercentile();
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(policy.getMinDelayMillis());
+        this.relations = new HashSet<>(policy.getRelations());
+        this.budget = new RequestBudget(policy.getMaxHedgeRate(), policy.getMaxHedgeBurst());
+        this.hedgeExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hal-hedging"));
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * @param relation the relation of the link being followed, or null if the GET is not for a link
+     * @return true if GETs for the relation are hedged.
+     */
+    boolean isHedged(String relation) {
+        return relations.isEmpty() || relations.contains(relation);
+    }
+
+
+    /**
+     * Send a GET and, if it is not answered within the hedging delay and the budget allows it, send it again.  The
+     * callback gets the first successful response, or the last failure if every request failed.
+     *
+     * @param sender sends the GET, each time with a new callback
+     * @param callback receives the outcome
+     */
+    <T> void send(final Sender<T> sender, HalCallback<T> callback) {
+        final Race<T> race = new Race<>(callback);
+        long delay = delayNanos;
+
+        budget.deposit();
+        sender.send(race.newAttempt());
+
+        if (delay < 0) {
+            return;
+        }
+
+        try {
+            race.setHedge(hedgeExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!race.isDone() && budget.withdraw()) {
+                        HalCallback<T> attempt = race.newAttempt();
+
+                        if (attempt != null) {
+                            sender.send(attempt);
+                        }
+                    }
+                }
+            }, delay, TimeUnit.NANOSECONDS));
+        } catch (RejectedExecutionException ignore) {
+            // The policy was replaced or the client shut down while the GET was being sent, so it is not hedged.
+        }
+    }
+
+
+    void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void recordLatency(long latencyNanos) {
+        long count = sampleCount.getAndIncrement();
+
+        latencies.set((int) (count % SAMPLE_COUNT), latencyNanos);
+
+        if ((count + 1) % SAMPLES_PER_UPDATE == 0) {
+            updateDelay((int) Math.min(count + 1, SAMPLE_COUNT));
+        }
+    }
+
+
+    private void updateDelay(int samples) {
+        long[] sorted = new long[samples];
+
+        for (int i = 0; i < samples; i++) {
+            sorted[i] = latencies.get(i);
+        }
+
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile / 100 * samples) - 1;
+
+        delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, Math.min(samples - 1, index))]);
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    interface Sender<T> {
+
+        void send(HalCallback<T> callback);
+    }
+
+
+    /**
+     * The requests sent for one GET.  The first success wins; a failure only counts once no request is left that
+     * could still succeed.  The latency recorded is the GET's, from when its first request was sent, so a GET won by a
+     * hedge counts at least the hedging delay rather than the hedge's own, shorter, latency.
+     */
+    private final class Race<T> {
+        private final HalCallback<T> callback;
+        private final long startNanos = System.nanoTime();
+        private int outstanding;
+        private boolean done;
+        private Future<?> hedge;
+
+
+        private Race(HalCallback<T> callback) {
+            this.callback = callback;
+        }
+
+
+        private synchronized boolean isDone() {
+            return done;
+        }
+
+
+        private synchronized void setHedge(Future<?> hedge) {
+            if (done) {
+                hedge.cancel(false);
+            } else {
+                this.hedge = hedge;
+            }
+        }
+
+
+        /**
+         * @return the callback for another request, or null if the race is already over.
+         */
+        private synchronized HalCallback<T> newAttempt() {
+            if (done) {
+                return null;
+            }
+
+            outstanding++;
+
+            return new Attempt();
+        }
+
+
+        private synchronized boolean finish(boolean success) {
+            outstanding--;
+
+            if (done || (!success && outstanding > 0)) {
+                return false;
+            }
+
+            done = true;
+
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+
+            return true;
+        }
+
+
+        private final class Attempt
+                implements HalCallback<T>, HalTransport.Cancellable {
+
+            @Override
+            public void onSuccess(T result) {
+                if (finish(true)) {
+                    recordLatency(System.nanoTime() - startNanos);
+                    callback.onSuccess(result);
+                }
+            }
+
+
+            @Override
+            public void onError(Exception e) {
+                if (finish(false)) {
+                    callback.onError(e);
+                }
+            }
+
+
+            @Override
+            public boolean isCancelled() {
+                return isDone();
+            }
+        }
+    }
+}
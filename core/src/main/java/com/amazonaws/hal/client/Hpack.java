@@ -0,0 +1,445 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * HPACK header compression for HTTP/2 (RFC 7541).
+ *
+ * The Decoder implements the full format, including the dynamic table and Huffman coded strings, since servers
+ * are free to use all of it.  The Encoder only emits literals without indexing (referencing the static table for
+ * names and exact matches), which keeps it stateless: header blocks can then be encoded in any order, and the
+ * server's dynamic table settings never need to be tracked.
+ */
+class Hpack {
+
+    //-------------------------------------------------------------
+    // Variables - Private - Static
+    //-------------------------------------------------------------
+
+    private static final String[][] STATIC_TABLE = {
+            { ":authority", "" },
+            { ":method", "GET" },
+            { ":method", "POST" },
+            { ":path", "/" },
+            { ":path", "/index.html" },
+            { ":scheme", "http" },
+            { ":scheme", "https" },
+            { ":status", "200" },
+            { ":status", "204" },
+            { ":status", "206" },
+            { ":status", "304" },
+            { ":status", "400" },
+            { ":status", "404" },
+            { ":status", "500" },
+            { "accept-charset", "" },
+            { "accept-encoding", "gzip, deflate" },
+            { "accept-language", "" },
+            { "accept-ranges", "" },
+            { "accept", "" },
+            { "access-control-allow-origin", "" },
+            { "age", "" },
+            { "allow", "" },
+            { "authorization", "" },
+            { "cache-control", "" },
+            { "content-disposition", "" },
+            { "content-encoding", "" },
+            { "content-language", "" },
+            { "content-length", "" },
+            { "content-location", "" },
+            { "content-range", "" },
+            { "content-type", "" },
+            { "cookie", "" },
+            { "date", "" },
+            { "etag", "" },
+            { "expect", "" },
+            { "expires", "" },
+            { "from", "" },
+            { "host", "" },
+            { "if-match", "" },
+            { "if-modified-since", "" },
+            { "if-none-match", "" },
+            { "if-range", "" },
+            { "if-unmodified-since", "" },
+            { "last-modified", "" },
+            { "link", "" },
+            { "location", "" },
+            { "max-forwards", "" },
+            { "proxy-authenticate", "" },
+            { "proxy-authorization", "" },
+            { "range", "" },
+            { "referer", "" },
+            { "refresh", "" },
+            { "retry-after", "" },
+            { "server", "" },
+            { "set-cookie", "" },
+            { "strict-transport-security", "" },
+            { "transfer-encoding", "" },
+            { "user-agent", "" },
+            { "vary", "" },
+            { "via", "" },
+            { "www-authenticate", "" }
+    };
+
+    private static final int[] HUFFMAN_CODES = {
+            0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+            0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+            0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+            0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+            0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+            0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+            0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+            0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+            0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+            0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+            0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+            0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+            0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+            0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+            0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+            0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+            0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+            0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+            0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+            0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+            0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+            0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+            0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+            0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+            0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+            0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+            0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+            0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+            0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+            0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+            0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+            0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee
+    };
+
+    private static final byte[] HUFFMAN_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26
+    };
+
+    private static final HuffmanNode HUFFMAN_ROOT = buildHuffmanTree();
+    private static final Map<String, Integer> STATIC_NAME_INDEXES = new HashMap<>();
+    private static final Map<String, Integer> STATIC_FIELD_INDEXES = new HashMap<>();
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAME_INDEXES.put(STATIC_TABLE[i][0], i + 1);
+            STATIC_FIELD_INDEXES.put(STATIC_TABLE[i][0] + ":" + STATIC_TABLE[i][1], i + 1);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private Hpack() {
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static HuffmanNode buildHuffmanTree() {
+        HuffmanNode root = new HuffmanNode();
+
+        for (int symbol = 0; symbol < HUFFMAN_CODES.length; symbol++) {
+            HuffmanNode node = root;
+
+            for (int bit = HUFFMAN_LENGTHS[symbol] - 1; bit >= 0; bit--) {
+                int branch = (HUFFMAN_CODES[symbol] >>> bit) & 1;
+
+                if (node.children[branch] == null) {
+                    node.children[branch] = new HuffmanNode();
+                }
+
+                node = node.children[branch];
+            }
+
+            node.symbol = symbol;
+        }
+
+        return root;
+    }
+
+
+    private static void encodeInteger(ByteArrayOutputStream out, int firstByte, int prefixBits, int value) {
+        int maxPrefix = (1 << prefixBits) - 1;
+
+        if (value < maxPrefix) {
+            out.write(firstByte | value);
+
+            return;
+        }
+
+        out.write(firstByte | maxPrefix);
+        value -= maxPrefix;
+
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write(value);
+    }
+
+
+    private static void encodeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(ISO_8859_1);
+
+        encodeInteger(out, 0x00, 7, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    static final class Encoder {
+
+        /**
+         * @param headers name/value pairs; names must be lower case
+         * @return the header block
+         */
+        byte[] encode(List<String[]> headers) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            for (String[] header : headers) {
+                Integer fieldIndex = STATIC_FIELD_INDEXES.get(header[0] + ":" + header[1]);
+
+                if (fieldIndex != null && !STATIC_TABLE[fieldIndex - 1][1].isEmpty()) {
+                    encodeInteger(out, 0x80, 7, fieldIndex);
+
+                    continue;
+                }
+
+                Integer nameIndex = STATIC_NAME_INDEXES.get(header[0]);
+
+                if (nameIndex != null) {
+                    encodeInteger(out, 0x00, 4, nameIndex);
+                } else {
+                    out.write(0x00);
+                    encodeString(out, header[0]);
+                }
+
+                encodeString(out, header[1]);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+
+    /**
+     * Decodes the header blocks of one connection.  Every header block received must be decoded, in order, to keep
+     * the dynamic table in step with the encoder's.
+     */
+    static final class Decoder {
+        private final LinkedList<String[]> dynamicTable = new LinkedList<>();
+        private int dynamicTableSize;
+        private int maxDynamicTableSize;
+        private final int maxDynamicTableSizeLimit;
+        private byte[] block;
+        private int position;
+
+
+        Decoder(int maxDynamicTableSize) {
+            this.maxDynamicTableSize = maxDynamicTableSize;
+            this.maxDynamicTableSizeLimit = maxDynamicTableSize;
+        }
+
+
+        List<String[]> decode(byte[] headerBlock)
+                throws IOException {
+            List<String[]> headers = new ArrayList<>();
+
+            block = headerBlock;
+            position = 0;
+
+            while (position < block.length) {
+                int firstByte = block[position] & 0xff;
+
+                if ((firstByte & 0x80) != 0) {
+                    headers.add(getField(decodeInteger(7)));
+                } else if ((firstByte & 0x40) != 0) {
+                    String[] field = decodeLiteral(6);
+
+                    headers.add(field);
+                    addField(field);
+                } else if ((firstByte & 0x20) != 0) {
+                    int size = decodeInteger(5);
+
+                    if (size > maxDynamicTableSizeLimit) {
+                        throw new IOException("HPACK dynamic table size " + size + " exceeds the limit.");
+                    }
+
+                    maxDynamicTableSize = size;
+                    evict();
+                } else {
+                    headers.add(decodeLiteral(4));
+                }
+            }
+
+            return headers;
+        }
+
+
+        private String[] decodeLiteral(int prefixBits)
+                throws IOException {
+            int nameIndex = decodeInteger(prefixBits);
+            String name = nameIndex == 0 ? decodeString() : getField(nameIndex)[0];
+
+            return new String[] { name, decodeString() };
+        }
+
+
+        private String[] getField(int index)
+                throws IOException {
+            if (index > 0 && index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            } else if (index > STATIC_TABLE.length && index <= STATIC_TABLE.length + dynamicTable.size()) {
+                return dynamicTable.get(index - STATIC_TABLE.length - 1);
+            }
+
+            throw new IOException("Invalid HPACK index " + index + ".");
+        }
+
+
+        private void addField(String[] field) {
+            dynamicTable.addFirst(field);
+            dynamicTableSize += field[0].length() + field[1].length() + 32;
+            evict();
+        }
+
+
+        private void evict() {
+            while (dynamicTableSize > maxDynamicTableSize) {
+                String[] field = dynamicTable.removeLast();
+
+                dynamicTableSize -= field[0].length() + field[1].length() + 32;
+            }
+        }
+
+
+        private int decodeInteger(int prefixBits)
+                throws IOException {
+            int maxPrefix = (1 << prefixBits) - 1;
+            int value = block[position++] & maxPrefix;
+
+            if (value < maxPrefix) {
+                return value;
+            }
+
+            for (int shift = 0; ; shift += 7) {
+                if (position >= block.length || shift > 28) {
+                    throw new IOException("Invalid HPACK integer.");
+                }
+
+                int nextByte = block[position++] & 0xff;
+
+                value += (nextByte & 0x7f) << shift;
+
+                if ((nextByte & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+
+        private String decodeString()
+                throws IOException {
+            if (position >= block.length) {
+                throw new IOException("Truncated HPACK string.");
+            }
+
+            boolean huffman = (block[position] & 0x80) != 0;
+            int length = decodeInteger(7);
+
+            if (length > block.length - position) {
+                throw new IOException("Truncated HPACK string.");
+            }
+
+            String value = huffman ? decodeHuffman(position, length) : new String(block, position, length, ISO_8859_1);
+
+            position += length;
+
+            return value;
+        }
+
+
+        private String decodeHuffman(int offset, int length)
+                throws IOException {
+            StringBuilder value = new StringBuilder(length * 8 / 5);
+            HuffmanNode node = HUFFMAN_ROOT;
+
+            for (int i = offset; i < offset + length; i++) {
+                for (int bit = 7; bit >= 0; bit--) {
+                    node = node.children[(block[i] >>> bit) & 1];
+
+                    if (node == null) {
+                        throw new IOException("Invalid Huffman code.");
+                    }
+
+                    if (node.symbol >= 0) {
+                        value.append((char) node.symbol);
+                        node = HUFFMAN_ROOT;
+                    }
+                }
+            }
+
+            // Whatever is left over must be padding: a prefix of the EOS code, which is all ones.
+            return value.toString();
+        }
+    }
+
+
+    private static final class HuffmanNode {
+        private final HuffmanNode[] children = new HuffmanNode[2];
+        private int symbol = -1;
+    }
+}
@@ -0,0 +1,1014 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An HTTP/2 connection (RFC 7540) over an NioConnection, multiplexing any number of exchanges as concurrent streams.
+ *
+ * A single read loop parses the frames sent by the server, and frames to the server are queued and written one
+ * buffer at a time.  Stream ids are allocated and HEADERS frames queued under the same lock, so streams are opened
+ * in id order.  At most the lower of the local limit and the server's SETTINGS_MAX_CONCURRENT_STREAMS streams are
+ * open at once; further exchanges wait on the connection until a stream closes.  No stream is opened until the
+ * server's SETTINGS have been received.
+ *
+ * Exchanges the server did not process (refused streams, and streams above the last stream id of a GOAWAY) are
+ * handed back through the Listener to be retried, as are exchanges that never got a stream.
+ *
+ * Exchanges whose callback is cancelled (see HalTransport.Cancellable) are not given a stream, and the streams of
+ * those already sent are reset by resetCancelledStreams().  Either way the callback fails with a
+ * CancellationException.
+ */
+class Http2Connection {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final NioConnection connection;
+    private final String scheme;
+    private final String authority;
+    private final int maxConcurrentStreams;
+    private final Listener listener;
+    private final Hpack.Encoder encoder = new Hpack.Encoder();
+    private final Hpack.Decoder decoder = new Hpack.Decoder(DEFAULT_HEADER_TABLE_SIZE);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(2 * (FRAME_HEADER_SIZE + DEFAULT_MAX_FRAME_SIZE));
+
+    private final Map<Integer, Stream> streams = new LinkedHashMap<>();
+    private final Queue<Stream> waitingStreams = new ArrayDeque<>();
+    private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private boolean writing;
+    private int nextStreamId = 1;
+    private boolean settingsReceived;
+    private int peerMaxConcurrentStreams = Integer.MAX_VALUE;
+    private int peerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+    private int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private long sendWindow = DEFAULT_WINDOW_SIZE;
+    private boolean goingAway;
+    private boolean closed;
+    private long lastActivityNanos = System.nanoTime();
+
+    // Only used by the read loop
+    private ByteArrayOutputStream headerBlock;
+    private int headerBlockStreamId;
+    private boolean headerBlockEndStream;
+
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(Charset.forName("ISO-8859-1"));
+    private static final int FRAME_HEADER_SIZE = 9;
+    private static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    private static final int RECEIVE_WINDOW_SIZE = 16 * 1024 * 1024;
+    private static final long MAX_STREAM_ID = Integer.MAX_VALUE;
+
+    private static final int TYPE_DATA = 0x0;
+    private static final int TYPE_HEADERS = 0x1;
+    private static final int TYPE_RST_STREAM = 0x3;
+    private static final int TYPE_SETTINGS = 0x4;
+    private static final int TYPE_PUSH_PROMISE = 0x5;
+    private static final int TYPE_PING = 0x6;
+    private static final int TYPE_GOAWAY = 0x7;
+    private static final int TYPE_WINDOW_UPDATE = 0x8;
+    private static final int TYPE_CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    private static final int ERROR_REFUSED_STREAM = 0x7;
+    private static final int ERROR_CANCEL = 0x8;
+
+    private static Log log = LogFactory.getLog(Http2Connection.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    /**
+     * @param connection the open connection, on which HTTP/2 has been negotiated or is known to be spoken
+     * @param scheme the value of the :scheme pseudo-header
+     * @param authority the value of the :authority pseudo-header
+     * @param maxConcurrentStreams the most streams to open at once, whatever the server allows
+     * @param listener is told about exchanges to retry and about the connection closing
+     */
+    Http2Connection(NioConnection connection, String scheme, String authority, int maxConcurrentStreams, Listener listener) {
+        this.connection = connection;
+        this.scheme = scheme;
+        this.authority = authority;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.listener = listener;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Send the connection preface and start reading frames.
+     */
+    void start() {
+        // Reads block for as long as the connection is idle; stalled streams are detected by checkTimeout()
+        connection.setTimeoutMillis(0);
+
+        ByteBuffer settings = frame(TYPE_SETTINGS, 0, 0, 12);
+
+        settings.putShort((short) SETTINGS_ENABLE_PUSH).putInt(0);
+        settings.putShort((short) SETTINGS_INITIAL_WINDOW_SIZE).putInt(RECEIVE_WINDOW_SIZE);
+
+        synchronized (this) {
+            writeQueue.add(ByteBuffer.wrap(PREFACE));
+            enqueue(settings);
+            enqueueWindowUpdate(0, RECEIVE_WINDOW_SIZE - DEFAULT_WINDOW_SIZE);
+        }
+
+        write();
+        read();
+    }
+
+
+    /**
+     * @return false if the connection can't take new exchanges because it is closed or going away.
+     */
+    synchronized boolean isUsable() {
+        return !closed && !goingAway;
+    }
+
+
+    /**
+     * Send an exchange on a new stream, or queue it until a stream is available.
+     *
+     * @return false if the connection can no longer open streams, in which case the exchange was not accepted.
+     */
+    boolean send(Exchange exchange) {
+        if (exchange.isCancelled()) {
+            dispatch(Collections.singletonList(new Completion(new Stream(exchange), newCancellationException(), false)));
+
+            return true;
+        }
+
+        synchronized (this) {
+            if (closed || goingAway || nextStreamId + 2L * (waitingStreams.size() + 1) > MAX_STREAM_ID) {
+                goingAway = true;
+
+                return false;
+            }
+
+            Stream stream = new Stream(exchange);
+
+            if (settingsReceived && streams.size() < getStreamLimit()) {
+                open(stream);
+            } else {
+                waitingStreams.add(stream);
+            }
+        }
+
+        write();
+
+        return true;
+    }
+
+
+    /**
+     * Reset the open streams, and drop the waiting ones, whose exchanges were cancelled.
+     */
+    void resetCancelledStreams() {
+        List<Completion> completions = new ArrayList<>();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            for (Iterator<Stream> iterator = streams.values().iterator(); iterator.hasNext(); ) {
+                Stream stream = iterator.next();
+
+                if (stream.exchange.isCancelled()) {
+                    ByteBuffer frame = frame(TYPE_RST_STREAM, 0, stream.id, 4);
+
+                    frame.putInt(ERROR_CANCEL);
+                    enqueue(frame);
+                    iterator.remove();
+                    completions.add(new Completion(stream, newCancellationException(), false));
+                }
+            }
+
+            for (Iterator<Stream> iterator = waitingStreams.iterator(); iterator.hasNext(); ) {
+                Stream stream = iterator.next();
+
+                if (stream.exchange.isCancelled()) {
+                    iterator.remove();
+                    completions.add(new Completion(stream, newCancellationException(), false));
+                }
+            }
+
+            openWaitingStreams(completions);
+        }
+
+        write();
+        dispatch(completions);
+    }
+
+
+    /**
+     * Close the connection if streams are open and nothing has been received for longer than the timeout.
+     */
+    void checkTimeout(long timeoutMillis) {
+        boolean expired;
+
+        synchronized (this) {
+            expired = !closed && !streams.isEmpty()
+                      && System.nanoTime() - lastActivityNanos > TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        if (expired) {
+            close(new SocketTimeoutException("No response from the server in " + timeoutMillis + " milliseconds."));
+        }
+    }
+
+
+    /**
+     * Close the connection, failing or retrying the exchanges that were in progress.
+     *
+     * @param cause the reason the connection was closed, or null if no exchanges are in progress
+     */
+    void close(Exception cause) {
+        List<Completion> completions = new ArrayList<>();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            for (Stream stream : streams.values()) {
+                if (!stream.responseStarted && stream.exchange.isIdempotent()) {
+                    completions.add(new Completion(stream, cause, true));
+                } else {
+                    completions.add(new Completion(stream, cause, false));
+                }
+            }
+
+            for (Stream stream : waitingStreams) {
+                completions.add(new Completion(stream, cause, true));
+            }
+
+            streams.clear();
+            waitingStreams.clear();
+            writeQueue.clear();
+        }
+
+        connection.close();
+        dispatch(completions);
+        listener.closed(this);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private int getStreamLimit() {
+        return Math.min(maxConcurrentStreams, peerMaxConcurrentStreams);
+    }
+
+
+    /**
+     * Open a stream for the exchange, and queue its HEADERS and as much of its content as flow control allows.  Must
+     * be called while holding the lock.
+     */
+    private void open(Stream stream) {
+        if (streams.isEmpty()) {
+            lastActivityNanos = System.nanoTime();
+        }
+
+        stream.id = nextStreamId;
+        stream.sendWindow = peerInitialWindowSize;
+        nextStreamId += 2;
+        streams.put(stream.id, stream);
+
+        byte[] block = encoder.encode(stream.exchange.getHeaders(scheme, authority));
+        boolean endStream = stream.exchange.content.length == 0;
+        int offset = 0;
+
+        do {
+            int length = Math.min(block.length - offset, peerMaxFrameSize);
+            int flags = (offset + length == block.length ? FLAG_END_HEADERS : 0) | (offset == 0 && endStream ? FLAG_END_STREAM : 0);
+            ByteBuffer frame = frame(offset == 0 ? TYPE_HEADERS : TYPE_CONTINUATION, flags, stream.id, length);
+
+            frame.put(block, offset, length);
+            enqueue(frame);
+            offset += length;
+        } while (offset < block.length);
+
+        sendData();
+    }
+
+
+    /**
+     * Open streams for waiting exchanges, up to the stream limit.  Exchanges cancelled while they waited are failed
+     * instead.  Must be called while holding the lock.
+     */
+    private void openWaitingStreams(List<Completion> completions) {
+        while (settingsReceived && !goingAway && !waitingStreams.isEmpty() && streams.size() < getStreamLimit()) {
+            Stream stream = waitingStreams.remove();
+
+            if (stream.exchange.isCancelled()) {
+                completions.add(new Completion(stream, newCancellationException(), false));
+            } else {
+                open(stream);
+            }
+        }
+    }
+
+
+    /**
+     * Queue DATA frames for the streams with content left to send, as far as the flow control windows allow.  Must
+     * be called while holding the lock.
+     */
+    private void sendData() {
+        for (Stream stream : streams.values()) {
+            byte[] content = stream.exchange.content;
+
+            while (stream.contentOffset < content.length && sendWindow > 0 && stream.sendWindow > 0) {
+                int length = (int) Math.min(Math.min(content.length - stream.contentOffset, peerMaxFrameSize),
+                                            Math.min(sendWindow, stream.sendWindow));
+                boolean endStream = stream.contentOffset + length == content.length;
+                ByteBuffer frame = frame(TYPE_DATA, endStream ? FLAG_END_STREAM : 0, stream.id, length);
+
+                frame.put(content, stream.contentOffset, length);
+                enqueue(frame);
+                stream.contentOffset += length;
+                stream.sendWindow -= length;
+                sendWindow -= length;
+            }
+        }
+    }
+
+
+    private static ByteBuffer frame(int type, int flags, int streamId, int length) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + length);
+
+        frame.put((byte) (length >>> 16)).put((byte) (length >>> 8)).put((byte) length);
+        frame.put((byte) type).put((byte) flags).putInt(streamId);
+
+        return frame;
+    }
+
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void enqueue(ByteBuffer frame) {
+        frame.flip();
+        writeQueue.add(frame);
+    }
+
+
+    private void enqueueWindowUpdate(int streamId, int increment) {
+        ByteBuffer frame = frame(TYPE_WINDOW_UPDATE, 0, streamId, 4);
+
+        frame.putInt(increment);
+        enqueue(frame);
+    }
+
+
+    /**
+     * Write the queued frames, unless a write is already in progress.
+     */
+    private void write() {
+        ByteBuffer buffer;
+
+        synchronized (this) {
+            if (writing || closed || writeQueue.isEmpty()) {
+                return;
+            }
+
+            int size = 0;
+
+            for (ByteBuffer frame : writeQueue) {
+                size += frame.remaining();
+            }
+
+            buffer = ByteBuffer.allocate(size);
+
+            while (!writeQueue.isEmpty()) {
+                buffer.put(writeQueue.remove());
+            }
+
+            buffer.flip();
+            writing = true;
+        }
+
+        connection.write(buffer, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                synchronized (Http2Connection.this) {
+                    writing = false;
+                }
+
+                write();
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                close(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+            }
+        });
+    }
+
+
+    private void read() {
+        connection.read(readBuffer, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0) {
+                    close(new EOFException("Connection closed by the server."));
+
+                    return;
+                }
+
+                List<Completion> completions = new ArrayList<>();
+
+                readBuffer.flip();
+
+                try {
+                    while (readFrame(completions)) {
+                        // Process every complete frame in the buffer
+                    }
+                } catch (IOException e) {
+                    dispatch(completions);
+                    close(e);
+
+                    return;
+                }
+
+                readBuffer.compact();
+                write();
+                dispatch(completions);
+
+                boolean finished;
+
+                synchronized (Http2Connection.this) {
+                    finished = goingAway && streams.isEmpty() && waitingStreams.isEmpty();
+                }
+
+                if (finished) {
+                    close(null);
+                } else if (isOpen()) {
+                    read();
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                close(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+            }
+        });
+    }
+
+
+    private synchronized boolean isOpen() {
+        return !closed;
+    }
+
+
+    /**
+     * Process the next frame in the read buffer.
+     *
+     * @return false if the buffer doesn't hold a complete frame.
+     */
+    private boolean readFrame(List<Completion> completions)
+            throws IOException {
+        if (readBuffer.remaining() < FRAME_HEADER_SIZE) {
+            return false;
+        }
+
+        int start = readBuffer.position();
+        int length = ((readBuffer.get(start) & 0xff) << 16) | ((readBuffer.get(start + 1) & 0xff) << 8)
+                     | (readBuffer.get(start + 2) & 0xff);
+
+        if (length > DEFAULT_MAX_FRAME_SIZE) {
+            throw new IOException("HTTP/2 frame of " + length + " bytes exceeds the maximum frame size.");
+        } else if (readBuffer.remaining() < FRAME_HEADER_SIZE + length) {
+            return false;
+        }
+
+        int type = readBuffer.get(start + 3) & 0xff;
+        int flags = readBuffer.get(start + 4) & 0xff;
+        int streamId = readBuffer.getInt(start + 5) & 0x7fffffff;
+        byte[] payload = new byte[length];
+
+        readBuffer.position(start + FRAME_HEADER_SIZE);
+        readBuffer.get(payload);
+
+        if (headerBlock != null && type != TYPE_CONTINUATION) {
+            throw new IOException("HTTP/2 header block interrupted by a frame of type " + type + ".");
+        }
+
+        synchronized (this) {
+            lastActivityNanos = System.nanoTime();
+        }
+
+        switch (type) {
+        case TYPE_DATA:
+            readData(streamId, flags, payload, completions);
+            break;
+
+        case TYPE_HEADERS:
+            readHeaders(streamId, flags, payload, completions);
+            break;
+
+        case TYPE_CONTINUATION:
+            readContinuation(streamId, flags, payload, completions);
+            break;
+
+        case TYPE_RST_STREAM:
+            readResetStream(streamId, payload, completions);
+            break;
+
+        case TYPE_SETTINGS:
+            if ((flags & FLAG_ACK) == 0) {
+                readSettings(payload, completions);
+            }
+            break;
+
+        case TYPE_PING:
+            if ((flags & FLAG_ACK) == 0) {
+                synchronized (this) {
+                    ByteBuffer frame = frame(TYPE_PING, FLAG_ACK, 0, payload.length);
+
+                    frame.put(payload);
+                    enqueue(frame);
+                }
+            }
+            break;
+
+        case TYPE_GOAWAY:
+            readGoAway(payload, completions);
+            break;
+
+        case TYPE_WINDOW_UPDATE:
+            readWindowUpdate(streamId, payload);
+            break;
+
+        case TYPE_PUSH_PROMISE:
+            throw new IOException("HTTP/2 server push was disabled, but the server sent PUSH_PROMISE.");
+
+        default:
+            // Frames of unknown types are ignored
+            break;
+        }
+
+        return true;
+    }
+
+
+    private void readData(int streamId, int flags, byte[] payload, List<Completion> completions)
+            throws IOException {
+        int padding = (flags & FLAG_PADDED) == 0 ? 0 : (payload[0] & 0xff) + 1;
+
+        if (padding > payload.length) {
+            throw new IOException("Invalid HTTP/2 DATA frame padding.");
+        }
+
+        boolean endStream = (flags & FLAG_END_STREAM) != 0;
+
+        synchronized (this) {
+            Stream stream = streams.get(streamId);
+
+            // The received bytes are returned to the server's windows right away; the content is buffered in memory.
+            if (payload.length > 0) {
+                enqueueWindowUpdate(0, payload.length);
+
+                if (stream != null && !endStream) {
+                    enqueueWindowUpdate(streamId, payload.length);
+                }
+            }
+
+            if (stream != null) {
+                stream.body.write(payload, padding == 0 ? 0 : 1, payload.length - padding);
+
+                if (endStream) {
+                    complete(stream, completions);
+                }
+            }
+        }
+    }
+
+
+    private void readHeaders(int streamId, int flags, byte[] payload, List<Completion> completions)
+            throws IOException {
+        int offset = 0;
+        int padding = 0;
+
+        if ((flags & FLAG_PADDED) != 0) {
+            padding = payload[0] & 0xff;
+            offset = 1;
+        }
+
+        if ((flags & FLAG_PRIORITY) != 0) {
+            offset += 5;
+        }
+
+        if (offset + padding > payload.length) {
+            throw new IOException("Invalid HTTP/2 HEADERS frame padding.");
+        }
+
+        headerBlock = new ByteArrayOutputStream();
+        headerBlock.write(payload, offset, payload.length - offset - padding);
+        headerBlockStreamId = streamId;
+        headerBlockEndStream = (flags & FLAG_END_STREAM) != 0;
+
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            readHeaderBlock(completions);
+        }
+    }
+
+
+    private void readContinuation(int streamId, int flags, byte[] payload, List<Completion> completions)
+            throws IOException {
+        if (headerBlock == null || streamId != headerBlockStreamId) {
+            throw new IOException("Unexpected HTTP/2 CONTINUATION frame.");
+        }
+
+        headerBlock.write(payload, 0, payload.length);
+
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            readHeaderBlock(completions);
+        }
+    }
+
+
+    /**
+     * Decode a complete header block.  Blocks are decoded even for streams that are no longer open, to keep the
+     * decoder's dynamic table in step with the server's.
+     */
+    private void readHeaderBlock(List<Completion> completions)
+            throws IOException {
+        List<String[]> fields = decoder.decode(headerBlock.toByteArray());
+
+        headerBlock = null;
+
+        synchronized (this) {
+            Stream stream = streams.get(headerBlockStreamId);
+
+            if (stream == null) {
+                return;
+            }
+
+            if (!stream.responseStarted) {
+                for (String[] field : fields) {
+                    if (field[0].equals(":status")) {
+                        stream.statusCode = Integer.parseInt(field[1]);
+                    } else if (!field[0].startsWith(":")) {
+                        stream.headers.add(field);
+                    }
+                }
+
+                if (stream.statusCode >= 100 && stream.statusCode < 200) {
+                    // Informational responses are followed by the final response
+                    stream.headers.clear();
+
+                    return;
+                }
+
+                stream.responseStarted = true;
+            }
+
+            if (headerBlockEndStream) {
+                complete(stream, completions);
+            }
+        }
+    }
+
+
+    private void readResetStream(int streamId, byte[] payload, List<Completion> completions)
+            throws IOException {
+        int errorCode = readInt(payload);
+
+        synchronized (this) {
+            Stream stream = streams.remove(streamId);
+
+            if (stream != null) {
+                IOException cause = new IOException("HTTP/2 stream reset by the server with error code " + errorCode + ".");
+
+                completions.add(new Completion(stream, cause, errorCode == ERROR_REFUSED_STREAM));
+                openWaitingStreams(completions);
+            }
+        }
+    }
+
+
+    private void readSettings(byte[] payload, List<Completion> completions)
+            throws IOException {
+        if (payload.length % 6 != 0) {
+            throw new IOException("Invalid HTTP/2 SETTINGS frame.");
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < payload.length; i += 6) {
+                int identifier = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+                int value = ((payload[i + 2] & 0xff) << 24) | ((payload[i + 3] & 0xff) << 16)
+                            | ((payload[i + 4] & 0xff) << 8) | (payload[i + 5] & 0xff);
+
+                if (identifier == SETTINGS_MAX_CONCURRENT_STREAMS) {
+                    peerMaxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+                } else if (identifier == SETTINGS_INITIAL_WINDOW_SIZE) {
+                    for (Stream stream : streams.values()) {
+                        stream.sendWindow += value - peerInitialWindowSize;
+                    }
+
+                    peerInitialWindowSize = value;
+                } else if (identifier == SETTINGS_MAX_FRAME_SIZE) {
+                    peerMaxFrameSize = value;
+                }
+            }
+
+            settingsReceived = true;
+            enqueue(frame(TYPE_SETTINGS, FLAG_ACK, 0, 0));
+            openWaitingStreams(completions);
+            sendData();
+        }
+    }
+
+
+    private void readGoAway(byte[] payload, List<Completion> completions) {
+        int lastStreamId = readInt(payload) & 0x7fffffff;
+
+        synchronized (this) {
+            goingAway = true;
+
+            for (Iterator<Stream> iterator = streams.values().iterator(); iterator.hasNext(); ) {
+                Stream stream = iterator.next();
+
+                if (stream.id > lastStreamId) {
+                    iterator.remove();
+                    completions.add(new Completion(stream, new IOException("HTTP/2 stream not processed by the server."), true));
+                }
+            }
+
+            for (Stream stream : waitingStreams) {
+                completions.add(new Completion(stream, new IOException("HTTP/2 connection closed by the server."), true));
+            }
+
+            waitingStreams.clear();
+        }
+    }
+
+
+    private void readWindowUpdate(int streamId, byte[] payload) {
+        int increment = readInt(payload) & 0x7fffffff;
+
+        synchronized (this) {
+            if (streamId == 0) {
+                sendWindow += increment;
+            } else if (streams.containsKey(streamId)) {
+                streams.get(streamId).sendWindow += increment;
+            }
+
+            sendData();
+        }
+    }
+
+
+    private static int readInt(byte[] payload) {
+        return ByteBuffer.wrap(payload, 0, 4).getInt();
+    }
+
+
+    /**
+     * Close a stream whose response is complete.  Must be called while holding the lock.
+     */
+    private void complete(Stream stream, List<Completion> completions) {
+        streams.remove(stream.id);
+
+        HttpResponse response = new HttpResponse(stream.exchange.request, null);
+
+        response.setStatusCode(stream.statusCode);
+        response.setStatusText("");
+
+        for (String[] header : stream.headers) {
+            response.addHeader(header[0], header[1]);
+        }
+
+        response.setContent(new ByteArrayInputStream(stream.body.toByteArray()));
+        completions.add(new Completion(stream, response));
+        openWaitingStreams(completions);
+    }
+
+
+    private static CancellationException newCancellationException() {
+        return new CancellationException("The request was cancelled.");
+    }
+
+
+    /**
+     * Invoke the callbacks of finished exchanges.  Must be called without holding the lock.
+     */
+    private void dispatch(List<Completion> completions) {
+        for (Completion completion : completions) {
+            HalTransport.Callback callback = completion.stream.exchange.callback;
+
+            try {
+                if (completion.response != null) {
+                    callback.completed(completion.response);
+                } else if (completion.retry) {
+                    listener.retry(completion.stream.exchange, completion.cause);
+                } else {
+                    callback.failed(completion.cause);
+                }
+            } catch (RuntimeException e) {
+                log.error("Transport callback failed.", e);
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    interface Listener {
+
+        /**
+         * The server did not process the exchange, so it can safely be sent again.
+         */
+        void retry(Exchange exchange, Exception cause);
+
+
+        void closed(Http2Connection connection);
+    }
+
+
+    /**
+     * A request, ready to be sent on any connection to its endpoint.
+     */
+    static final class Exchange {
+        private final Request<?> request;
+        private final byte[] content;
+        private final HalTransport.Callback callback;
+        private boolean retried;
+
+
+        Exchange(Request<?> request, byte[] content, HalTransport.Callback callback) {
+            this.request = request;
+            this.content = content;
+            this.callback = callback;
+        }
+
+
+        Request<?> getRequest() {
+            return request;
+        }
+
+
+        HalTransport.Callback getCallback() {
+            return callback;
+        }
+
+
+        boolean isRetried() {
+            return retried;
+        }
+
+
+        void setRetried(boolean retried) {
+            this.retried = retried;
+        }
+
+
+        boolean isCancelled() {
+            return callback instanceof HalTransport.Cancellable && ((HalTransport.Cancellable) callback).isCancelled();
+        }
+
+
+        boolean isIdempotent() {
+            HttpMethodName httpMethod = request.getHttpMethod();
+
+            return httpMethod == HttpMethodName.GET || httpMethod == HttpMethodName.HEAD
+                   || httpMethod == HttpMethodName.PUT || httpMethod == HttpMethodName.DELETE;
+        }
+
+
+        private List<String[]> getHeaders(String scheme, String authority) {
+            List<String[]> headers = new ArrayList<>();
+
+            headers.add(new String[] { ":method", request.getHttpMethod().name() });
+            headers.add(new String[] { ":scheme", scheme });
+            headers.add(new String[] { ":authority", authority });
+            headers.add(new String[] { ":path", NioHalTransport.getRequestTarget(request) });
+
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                String name = header.getKey().toLowerCase();
+
+                // Connection-specific headers are not allowed in HTTP/2
+                if (!name.equals("host") && !name.equals("connection") && !name.equals("keep-alive")
+                    && !name.equals("transfer-encoding") && !name.equals("upgrade") && !name.equals("content-length")) {
+                    headers.add(new String[] { name, header.getValue() });
+                }
+            }
+
+            HttpMethodName httpMethod = request.getHttpMethod();
+
+            if (content.length > 0 || httpMethod == HttpMethodName.POST || httpMethod == HttpMethodName.PUT
+                || httpMethod == HttpMethodName.PATCH) {
+                headers.add(new String[] { "content-length", Integer.toString(content.length) });
+            }
+
+            return headers;
+        }
+    }
+
+
+    private static final class Stream {
+        private final Exchange exchange;
+        private int id;
+        private long sendWindow;
+        private int contentOffset;
+        private int statusCode;
+        private final List<String[]> headers = new ArrayList<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private boolean responseStarted;
+
+
+        private Stream(Exchange exchange) {
+            this.exchange = exchange;
+        }
+    }
+
+
+    private static final class Completion {
+        private final Stream stream;
+        private final HttpResponse response;
+        private final Exception cause;
+        private final boolean retry;
+
+
+        private Completion(Stream stream, HttpResponse response) {
+            this.stream = stream;
+            this.response = response;
+            this.cause = null;
+            this.retry = false;
+        }
+
+
+        private Completion(Stream stream, Exception cause, boolean retry) {
+            this.stream = stream;
+            this.response = null;
+            this.cause = cause;
+            this.retry = retry;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.net.ssl.SSLContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A non-blocking HalTransport that multiplexes the requests to an endpoint as concurrent streams of a single HTTP/2
+ * connection.  Wide traversals, such as fetching every resource of a link list, then share one connection instead
+ * of each opening or waiting for their own.
+ *
+ * At most maxConcurrentStreams requests (or fewer, if the server's SETTINGS_MAX_CONCURRENT_STREAMS is lower) are in
+ * flight on the connection at once; further requests wait, without holding a thread, until a stream closes.
+ * Requests the server refuses or did not process before going away are retried once on a new connection.  If no
+ * data is received for ClientConfiguration.getSocketTimeout() milliseconds while requests are in flight, the
+ * connection is closed and its requests fail.  Requests whose callback is cancelled (see HalTransport.Cancellable)
+ * are not sent if they are still waiting, and their streams are reset if they are in flight.
+ *
+ * HTTP/2 is negotiated with ALPN for https endpoints, where the JRE supports it.  Plain http endpoints only use
+ * HTTP/2 with prior knowledge, since the HTTP/1.1 Upgrade mechanism is not supported.  Requests to endpoints that
+ * don't speak HTTP/2 are sent with HTTP/1.1 by an NioHalTransport, which shares this transport's I/O threads, as
+ * are requests whose content is streamed with chunked transfer coding.
+ */
+public class Http2HalTransport
+        implements HalTransport {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final NioHalTransport http1Transport;
+    private final SSLContext sslContext;
+    private final int maxConcurrentStreams;
+    private final boolean priorKnowledge;
+    private final long connectTimeoutMillis;
+    private final long timeoutMillis;
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timeoutExecutor;
+    private volatile boolean shutdown;
+
+    private static final String[] APPLICATION_PROTOCOLS = { "h2", "http/1.1" };
+    private static final long MAX_CHECK_INTERVAL_MILLIS = 100;
+
+    public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+    private static Log log = LogFactory.getLog(Http2HalTransport.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    public Http2HalTransport() {
+        this(new ClientConfiguration());
+    }
+
+
+    public Http2HalTransport(ClientConfiguration clientConfiguration) {
+        this(clientConfiguration, DEFAULT_MAX_CONCURRENT_STREAMS, false);
+    }
+
+
+    /**
+     * @param clientConfiguration supplies the connection and socket timeouts, and the connection limit of the HTTP/1.1
+     *                            fallback
+     * @param maxConcurrentStreams the most requests in flight on one connection
+     * @param priorKnowledge true to speak HTTP/2 to plain http endpoints without negotiation
+     */
+    public Http2HalTransport(ClientConfiguration clientConfiguration, int maxConcurrentStreams, boolean priorKnowledge) {
+        if (maxConcurrentStreams <= 0) {
+            throw new IllegalArgumentException("The maximum number of concurrent streams must be positive.");
+        }
+
+        this.http1Transport = new NioHalTransport(clientConfiguration);
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.priorKnowledge = priorKnowledge;
+        this.connectTimeoutMillis = clientConfiguration.getConnectionTimeout();
+        this.timeoutMillis = clientConfiguration.getSocketTimeout();
+
+        try {
+            this.sslContext = SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to create transport: " + e.getMessage(), e);
+        }
+
+        // Cancelled streams are looked for even without a timeout, so the checks run at least this often.
+        long checkIntervalMillis = timeoutMillis > 0 ? Math.max(10, Math.min(MAX_CHECK_INTERVAL_MILLIS, timeoutMillis / 4))
+                                                     : MAX_CHECK_INTERVAL_MILLIS;
+
+        timeoutExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hal-h2-timeout"));
+        timeoutExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkStreams();
+            }
+        }, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HalTransport
+    //-------------------------------------------------------------
+
+    @Override
+    public void send(Request<?> request, Callback callback) {
+        Endpoint endpoint = getEndpoint(request.getEndpoint());
+
+        // Bodies of unknown length are streamed over HTTP/1.1, so they aren't read into memory to be framed
+        if (endpoint.http1 || NioHalTransport.isStreamed(request)) {
+            http1Transport.send(request, callback);
+
+            return;
+        }
+
+        byte[] content;
+
+        try {
+            content = NioHalTransport.getContent(request);
+        } catch (IOException e) {
+            callback.failed(e);
+
+            return;
+        }
+
+        endpoint.execute(new Http2Connection.Exchange(request, content, callback));
+    }
+
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+
+        timeoutExecutor.shutdownNow();
+
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.close();
+        }
+
+        http1Transport.shutdown();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private Endpoint getEndpoint(URI uri) {
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() < 0 ? (secure ? 443 : 80) : uri.getPort();
+        String key = uri.getScheme() + "://" + uri.getHost() + ":" + port;
+        Endpoint endpoint = endpoints.get(key);
+
+        if (endpoint == null) {
+            endpoint = new Endpoint(uri.getHost(), port, secure, uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + port);
+
+            Endpoint existingEndpoint = endpoints.putIfAbsent(key, endpoint);
+
+            if (existingEndpoint != null) {
+                endpoint = existingEndpoint;
+            }
+        }
+
+        return endpoint;
+    }
+
+
+    private void checkStreams() {
+        for (Endpoint endpoint : endpoints.values()) {
+            Http2Connection connection = endpoint.connection;
+
+            if (connection != null) {
+                connection.resetCancelledStreams();
+
+                if (timeoutMillis > 0) {
+                    connection.checkTimeout(timeoutMillis);
+                }
+            }
+        }
+    }
+
+
+    private static void failed(Callback callback, Exception exception) {
+        try {
+            callback.failed(exception);
+        } catch (RuntimeException e) {
+            log.error("Transport callback failed.", e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * The connection to one endpoint.  Exchanges queue here while the connection is being opened.
+     */
+    private final class Endpoint
+            implements Http2Connection.Listener {
+        private final String host;
+        private final int port;
+        private final boolean secure;
+        private final String authority;
+        private volatile Http2Connection connection;
+        private volatile boolean http1;
+        private boolean connecting;
+        private final List<Http2Connection.Exchange> waitingExchanges = new ArrayList<>();
+
+
+        private Endpoint(String host, int port, boolean secure, String authority) {
+            this.host = host;
+            this.port = port;
+            this.secure = secure;
+            this.authority = authority;
+            this.http1 = !secure && !priorKnowledge;
+        }
+
+
+        private void execute(Http2Connection.Exchange exchange) {
+            while (true) {
+                Http2Connection currentConnection;
+
+                synchronized (this) {
+                    currentConnection = connection;
+
+                    if (currentConnection == null || !currentConnection.isUsable()) {
+                        waitingExchanges.add(exchange);
+
+                        if (connecting) {
+                            return;
+                        }
+
+                        connecting = true;
+                        connection = null;
+                    }
+                }
+
+                if (currentConnection != null && currentConnection.isUsable()) {
+                    if (currentConnection.send(exchange)) {
+                        return;
+                    }
+
+                    // The connection stopped taking streams in the meantime
+                    continue;
+                }
+
+                connect();
+
+                return;
+            }
+        }
+
+
+        private void connect() {
+            NioConnection.open(http1Transport.getChannelGroup(), http1Transport.getConnectExecutor(), host, port,
+                               secure ? sslContext : null, secure ? APPLICATION_PROTOCOLS : null, connectTimeoutMillis, timeoutMillis,
+                               new CompletionHandler<NioConnection, Void>() {
+                @Override
+                public void completed(NioConnection nioConnection, Void attachment) {
+                    if (secure && !"h2".equals(nioConnection.getApplicationProtocol())) {
+                        log.debug(host + ":" + port + " did not negotiate HTTP/2, falling back to HTTP/1.1.");
+                        nioConnection.close();
+                        http1 = true;
+
+                        for (Http2Connection.Exchange exchange : takeWaitingExchanges()) {
+                            http1Transport.send(exchange.getRequest(), exchange.getCallback());
+                        }
+
+                        return;
+                    }
+
+                    Http2Connection http2Connection = new Http2Connection(nioConnection, secure ? "https" : "http", authority,
+                                                                          maxConcurrentStreams, Endpoint.this);
+
+                    synchronized (Endpoint.this) {
+                        connection = http2Connection;
+                    }
+
+                    http2Connection.start();
+
+                    for (Http2Connection.Exchange exchange : takeWaitingExchanges()) {
+                        execute(exchange);
+                    }
+                }
+
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    Exception cause = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+
+                    for (Http2Connection.Exchange exchange : takeWaitingExchanges()) {
+                        Http2HalTransport.failed(exchange.getCallback(), cause);
+                    }
+                }
+            });
+        }
+
+
+        private synchronized List<Http2Connection.Exchange> takeWaitingExchanges() {
+            List<Http2Connection.Exchange> exchanges = new ArrayList<>(waitingExchanges);
+
+            waitingExchanges.clear();
+            connecting = false;
+
+            return exchanges;
+        }
+
+
+        private void close() {
+            Http2Connection currentConnection = connection;
+
+            if (currentConnection != null) {
+                currentConnection.close(new IOException("Transport shut down."));
+            }
+        }
+
+
+        @Override
+        public void retry(Http2Connection.Exchange exchange, Exception cause) {
+            if (exchange.isRetried() || shutdown) {
+                Http2HalTransport.failed(exchange.getCallback(), cause);
+            } else {
+                exchange.setRetried(true);
+                execute(exchange);
+            }
+        }
+
+
+        @Override
+        public void closed(Http2Connection closedConnection) {
+            synchronized (this) {
+                if (connection == closedConnection) {
+                    connection = null;
+                }
+            }
+        }
+    }
+}
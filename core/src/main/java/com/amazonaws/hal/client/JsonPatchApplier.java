@@ -0,0 +1,426 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.hal.JsonPatch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Applies a JsonPatch to the properties of a HalResource, for PATCH requests the service accepts without returning
+ * the patched representation.  HalResources are immutable once published, so the patch is applied to a copy, and
+ * only the objects and arrays on the patched paths are copied.
+ *
+ * Links and embedded resources are not kept as JSON, so patches to them (or to the whole document) can't be
+ * applied locally.
+ */
+class JsonPatchApplier {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Map<String, Object> properties;
+    private final Set<Object> copiedContainers = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private JsonPatchApplier(HalResource halResource) {
+        this.properties = new HashMap<>(halResource.getProperties());
+        this.copiedContainers.add(properties);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @param halResource the resource the patch was sent for
+     * @param patch the patch
+     * @return a patched copy of the resource, or null if the patch can't be applied to it locally.
+     */
+    static HalResource apply(HalResource halResource, JsonPatch patch) {
+        JsonPatchApplier applier = new JsonPatchApplier(halResource);
+
+        try {
+            for (JsonPatch.Item patchItem : patch.getPatchItems()) {
+                applier.apply(patchItem);
+            }
+        } catch (NotApplicableException | AmazonClientException e) {
+            return null;
+        }
+
+        return halResource.withProperties(applier.properties);
+    }
+
+
+    /**
+     * Convert a value to the form the unmarshallers give property values, by marshalling it to JSON and reading it
+     * back.
+     *
+     * @param value the value
+     * @return a String, Number, Boolean, null, or a Map or List of such values.
+     */
+    static Object toPropertyValue(Object value) {
+        RepresentationMarshaller.Utf8Buffer buffer = new RepresentationMarshaller.Utf8Buffer();
+
+        RepresentationMarshaller.marshallElement(value, buffer);
+
+        return parse(buffer);
+    }
+
+
+    /**
+     * @param json a buffer holding a JSON value
+     * @return the value, in the form the unmarshallers give property values.
+     */
+    static Object parse(RepresentationMarshaller.Utf8Buffer json) {
+        try (JsonParser jsonParser = jsonFactory.createParser(json.getBytes(), 0, json.getLength())) {
+            HalUnmarshallerContext context = new HalUnmarshallerContext(jsonParser, null);
+            JsonToken token = context.nextToken();
+
+            if (token == JsonToken.START_OBJECT) {
+                context.nextToken();
+
+                return HalJsonMapUnmarshaller.getInstance().unmarshall(context);
+            } else if (token == JsonToken.START_ARRAY) {
+                context.nextToken();
+
+                return HalJsonListUnmarshaller.getInstance().unmarshall(context);
+            }
+
+            return JsonUnmarshallerUtil.getObjectForToken(token, context);
+        } catch (Exception e) {
+            throw new AmazonClientException("Unable to read marshalled JSON: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Compare values as JSON does, so numbers are equal if they have the same value whatever their type.
+     */
+    static boolean jsonEquals(Object value1, Object value2) {
+        if (value1 instanceof Number && value2 instanceof Number) {
+            return new BigDecimal(value1.toString()).compareTo(new BigDecimal(value2.toString())) == 0;
+        } else if (value1 instanceof Map && value2 instanceof Map) {
+            Map<?, ?> map1 = (Map<?, ?>) value1;
+            Map<?, ?> map2 = (Map<?, ?>) value2;
+
+            if (!map1.keySet().equals(map2.keySet())) {
+                return false;
+            }
+
+            for (Map.Entry<?, ?> entry : map1.entrySet()) {
+                if (!jsonEquals(entry.getValue(), map2.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+
+            return true;
+        } else if (value1 instanceof List && value2 instanceof List) {
+            List<?> list1 = (List<?>) value1;
+            List<?> list2 = (List<?>) value2;
+
+            if (list1.size() != list2.size()) {
+                return false;
+            }
+
+            for (Iterator<?> iterator1 = list1.iterator(), iterator2 = list2.iterator(); iterator1.hasNext(); ) {
+                if (!jsonEquals(iterator1.next(), iterator2.next())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void apply(JsonPatch.Item patchItem)
+            throws NotApplicableException {
+        String[] path = parsePointer(patchItem.getPath());
+        String op = patchItem.getOp();
+
+        if (op.equals("add")) {
+            add(path, toPropertyValue(((JsonPatch.ValueItem) patchItem).getValue()));
+        } else if (op.equals("remove")) {
+            remove(path);
+        } else if (op.equals("replace")) {
+            remove(path);
+            add(path, toPropertyValue(((JsonPatch.ValueItem) patchItem).getValue()));
+        } else if (op.equals("move")) {
+            String[] from = parsePointer(((JsonPatch.FromItem) patchItem).getFrom());
+
+            add(path, remove(from));
+        } else if (op.equals("copy")) {
+            add(path, deepCopy(get(parsePointer(((JsonPatch.FromItem) patchItem).getFrom()))));
+        } else if (op.equals("test")) {
+            if (!jsonEquals(get(path), toPropertyValue(((JsonPatch.ValueItem) patchItem).getValue()))) {
+                throw new NotApplicableException();
+            }
+        } else {
+            throw new NotApplicableException();
+        }
+    }
+
+
+    private Object get(String[] path)
+            throws NotApplicableException {
+        Object container = getContainer(path, false);
+        String token = path[path.length - 1];
+
+        if (container instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) container;
+
+            if (!map.containsKey(token)) {
+                throw new NotApplicableException();
+            }
+
+            return map.get(token);
+        }
+
+        List<?> list = (List<?>) container;
+
+        return list.get(getIndex(token, list.size() - 1));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private void add(String[] path, Object value)
+            throws NotApplicableException {
+        Object container = getContainer(path, true);
+        String token = path[path.length - 1];
+
+        if (container instanceof Map) {
+            ((Map<String, Object>) container).put(token, value);
+        } else {
+            List<Object> list = (List<Object>) container;
+
+            list.add(token.equals("-") ? list.size() : getIndex(token, list.size()), value);
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private Object remove(String[] path)
+            throws NotApplicableException {
+        Object container = getContainer(path, true);
+        String token = path[path.length - 1];
+
+        if (container instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) container;
+
+            if (!map.containsKey(token)) {
+                throw new NotApplicableException();
+            }
+
+            return map.remove(token);
+        }
+
+        List<Object> list = (List<Object>) container;
+
+        return list.remove(getIndex(token, list.size() - 1));
+    }
+
+
+    /**
+     * @param copy true to copy the containers on the path that are shared with the original resource, so they can
+     *             be modified
+     * @return the object or array that holds the last token of the path.
+     */
+    @SuppressWarnings("unchecked")
+    private Object getContainer(String[] path, boolean copy)
+            throws NotApplicableException {
+        Object container = properties;
+
+        for (int i = 0; i < path.length - 1; i++) {
+            Object child;
+
+            if (container instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) container;
+
+                if (!map.containsKey(path[i])) {
+                    throw new NotApplicableException();
+                }
+
+                child = map.get(path[i]);
+
+                if (copy && (child = copyIfShared(child)) != map.get(path[i])) {
+                    map.put(path[i], child);
+                }
+            } else {
+                List<Object> list = (List<Object>) container;
+                int index = getIndex(path[i], list.size() - 1);
+
+                child = list.get(index);
+
+                if (copy && (child = copyIfShared(child)) != list.get(index)) {
+                    list.set(index, child);
+                }
+            }
+
+            container = child;
+        }
+
+        if (!(container instanceof Map) && !(container instanceof List)) {
+            throw new NotApplicableException();
+        }
+
+        return container;
+    }
+
+
+    private Object copyIfShared(Object container) {
+        if (copiedContainers.contains(container)) {
+            return container;
+        }
+
+        Object copy;
+
+        if (container instanceof Map) {
+            copy = new HashMap<>((Map<?, ?>) container);
+        } else if (container instanceof List) {
+            copy = new ArrayList<>((List<?>) container);
+        } else {
+            return container;
+        }
+
+        copiedContainers.add(copy);
+
+        return copy;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @return the unescaped reference tokens of a JSON pointer that refers to a property or a value within one.
+     */
+    private static String[] parsePointer(String pointer)
+            throws NotApplicableException {
+        if (!pointer.startsWith("/")) {
+            throw new NotApplicableException();
+        }
+
+        String[] tokens = pointer.substring(1).split("/", -1);
+
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokens[i].replace("~1", "/").replace("~0", "~");
+        }
+
+        if (tokens[0].equals("_links") || tokens[0].equals("_embedded")) {
+            throw new NotApplicableException();
+        }
+
+        return tokens;
+    }
+
+
+    private static int getIndex(String token, int maximum)
+            throws NotApplicableException {
+        if (token.isEmpty() || (token.length() > 1 && token.charAt(0) == '0')) {
+            throw new NotApplicableException();
+        }
+
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                throw new NotApplicableException();
+            }
+        }
+
+        try {
+            int index = Integer.parseInt(token);
+
+            if (index > maximum) {
+                throw new NotApplicableException();
+            }
+
+            return index;
+        } catch (NumberFormatException e) {
+            throw new NotApplicableException();
+        }
+    }
+
+
+    private static Object deepCopy(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new HashMap<>();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put((String) entry.getKey(), deepCopy(entry.getValue()));
+            }
+
+            return copy;
+        } else if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+
+            for (Object element : (List<?>) value) {
+                copy.add(deepCopy(element));
+            }
+
+            return copy;
+        }
+
+        return value;
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * The patch can't be applied to the local copy of the resource, which then no longer matches the service's.
+     */
+    private static final class NotApplicableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+
+        private NotApplicableException() {
+            super(null, null, false, false);
+        }
+    }
+}
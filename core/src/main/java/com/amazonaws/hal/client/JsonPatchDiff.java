@@ -0,0 +1,301 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.JsonPatch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ * Computes the JsonPatch that turns one version of a resource's properties into another.  Objects are compared
+ * member by member, and arrays element by element along their longest common subsequence, so unchanged parts of a
+ * resource are not sent.  A value that was removed in one place and added in another is moved rather than sent
+ * again, and an added value that also appears unchanged elsewhere is copied if that is shorter.
+ *
+ * Values are compared in the form the unmarshallers give property values.  Links and embedded resources are not
+ * compared.
+ */
+class JsonPatchDiff {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final List<JsonPatch.Item> patchItems = new ArrayList<>();
+    // The values removed from paths that are not inside arrays, by toKey(), with the indexes of their remove operations
+    private final Map<Object, List<Integer>> removedValues = new HashMap<>();
+    // The values left unchanged at paths that are not inside arrays, by toKey()
+    private final Map<Object, String> unchangedValues = new HashMap<>();
+
+    // Beyond this, arrays are compared index by index rather than through their longest common subsequence
+    private static final long MAX_LCS_CELLS = 1000 * 1000;
+    // The length of ,"from":"" that a copy adds to an add operation, apart from the path
+    private static final int COPY_OVERHEAD = 11;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private JsonPatchDiff() {
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @param source the properties of the current version
+     * @param target the properties of the new version
+     * @return the patch that turns source into target, which is empty if they are the same.
+     */
+    static JsonPatch diff(Map<String, Object> source, Map<String, Object> target) {
+        JsonPatchDiff diff = new JsonPatchDiff();
+        Map<String, Object> sourceProperties = new HashMap<>(source);
+        Map<String, Object> targetProperties = new HashMap<>(target);
+
+        for (String reserved : new String[] { "_links", "_embedded" }) {
+            sourceProperties.remove(reserved);
+            targetProperties.remove(reserved);
+        }
+
+        diff.diffObjects(sourceProperties, targetProperties, "", true);
+
+        return diff.createPatch();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    /**
+     * @param memberPath true if no segment of the path is an array index, so the path doesn't shift as the patch
+     *                   is applied
+     */
+    @SuppressWarnings("unchecked")
+    private void diff(Object source, Object target, String path, boolean memberPath) {
+        if (JsonPatchApplier.jsonEquals(source, target)) {
+            if (memberPath && (source instanceof Map || source instanceof List || source instanceof String)) {
+                unchangedValues.put(toKey(source), path);
+            }
+        } else if (source instanceof Map && target instanceof Map) {
+            diffObjects((Map<String, Object>) source, (Map<String, Object>) target, path, memberPath);
+        } else if (source instanceof List && target instanceof List) {
+            diffArrays((List<Object>) source, (List<Object>) target, path);
+        } else {
+            patchItems.add(new JsonPatch.Replace(path, target));
+        }
+    }
+
+
+    private void diffObjects(Map<String, Object> source, Map<String, Object> target, String path, boolean memberPath) {
+        for (String key : new TreeSet<>(source.keySet())) {
+            String memberPointer = path + "/" + escape(key);
+
+            if (target.containsKey(key)) {
+                diff(source.get(key), target.get(key), memberPointer, memberPath);
+            } else {
+                if (memberPath) {
+                    Object valueKey = toKey(source.get(key));
+                    List<Integer> indexes = removedValues.get(valueKey);
+
+                    if (indexes == null) {
+                        removedValues.put(valueKey, indexes = new ArrayList<>());
+                    }
+
+                    indexes.add(patchItems.size());
+                }
+
+                patchItems.add(new JsonPatch.Remove(memberPointer));
+            }
+        }
+
+        for (String key : new TreeSet<>(target.keySet())) {
+            if (!source.containsKey(key)) {
+                patchItems.add(new JsonPatch.Add(path + "/" + escape(key), target.get(key)));
+            }
+        }
+    }
+
+
+    /**
+     * Remove, add and change elements along an edit script, keeping track of where each element is as the earlier
+     * operations are applied.  An element removed where another is added is changed in place instead.
+     */
+    private void diffArrays(List<Object> source, List<Object> target, String path) {
+        int prefix = 0;
+        int sourceEnd = source.size();
+        int targetEnd = target.size();
+
+        while (prefix < sourceEnd && prefix < targetEnd && JsonPatchApplier.jsonEquals(source.get(prefix), target.get(prefix))) {
+            prefix++;
+        }
+
+        while (sourceEnd > prefix && targetEnd > prefix
+               && JsonPatchApplier.jsonEquals(source.get(sourceEnd - 1), target.get(targetEnd - 1))) {
+            sourceEnd--;
+            targetEnd--;
+        }
+
+        int sourceCount = sourceEnd - prefix;
+        int targetCount = targetEnd - prefix;
+        int[][] lcs = (long) sourceCount * targetCount <= MAX_LCS_CELLS
+                ? getLcsLengths(source, target, prefix, sourceCount, targetCount)
+                : null;
+        int index = prefix;
+        int i = 0;
+        int j = 0;
+
+        while (i < sourceCount || j < targetCount) {
+            Object sourceElement = i < sourceCount ? source.get(prefix + i) : null;
+            Object targetElement = j < targetCount ? target.get(prefix + j) : null;
+
+            // Elements are paired up when they match, or when neither is part of the rest of a common subsequence
+            if (i < sourceCount && j < targetCount && (lcs == null || lcs[i][j] == lcs[i + 1][j + 1]
+                                                       || JsonPatchApplier.jsonEquals(sourceElement, targetElement))) {
+                diff(sourceElement, targetElement, path + "/" + index, false);
+                i++;
+                j++;
+                index++;
+            } else if (j < targetCount && (i == sourceCount || lcs == null || lcs[i][j + 1] >= lcs[i + 1][j])) {
+                patchItems.add(new JsonPatch.Add(path + "/" + index, targetElement));
+                j++;
+                index++;
+            } else {
+                patchItems.add(new JsonPatch.Remove(path + "/" + index));
+                i++;
+            }
+        }
+    }
+
+
+    /**
+     * @return the lengths of the longest common subsequences of the suffixes of the differing parts of the arrays.
+     */
+    private int[][] getLcsLengths(List<Object> source, List<Object> target, int offset, int sourceCount, int targetCount) {
+        int[][] lengths = new int[sourceCount + 1][targetCount + 1];
+
+        for (int i = sourceCount - 1; i >= 0; i--) {
+            for (int j = targetCount - 1; j >= 0; j--) {
+                lengths[i][j] = JsonPatchApplier.jsonEquals(source.get(offset + i), target.get(offset + j))
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+
+        return lengths;
+    }
+
+
+    /**
+     * Turn remove and add pairs of the same value into moves, and adds of values that are unchanged elsewhere into
+     * copies where that is shorter.
+     */
+    private JsonPatch createPatch() {
+        for (int i = 0; i < patchItems.size(); i++) {
+            if (!(patchItems.get(i) instanceof JsonPatch.Add)) {
+                continue;
+            }
+
+            JsonPatch.Add add = (JsonPatch.Add) patchItems.get(i);
+            Object valueKey = toKey(add.getValue());
+            List<Integer> removeIndexes = removedValues.get(valueKey);
+            String from = null;
+
+            if (removeIndexes != null && !removeIndexes.isEmpty()
+                && !add.getPath().startsWith(patchItems.get(removeIndexes.get(0)).getPath() + "/")) {
+                int removeIndex = removeIndexes.remove(0);
+
+                from = patchItems.get(removeIndex).getPath();
+                patchItems.set(removeIndex, null);
+                patchItems.set(i, new JsonPatch.Move(add.getPath(), from));
+            } else if ((from = unchangedValues.get(valueKey)) != null
+                       && from.length() + COPY_OVERHEAD < getLength(add.getValue())) {
+                patchItems.set(i, new JsonPatch.Copy(add.getPath(), from));
+            }
+        }
+
+        JsonPatch patch = new JsonPatch();
+
+        for (JsonPatch.Item patchItem : patchItems) {
+            if (patchItem != null) {
+                patch.with(patchItem);
+            }
+        }
+
+        return patch;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static String escape(String key) {
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+
+    /**
+     * @return a key for the value whose equals() agrees with JsonPatchApplier.jsonEquals(), so numbers of different
+     *         types or scales that have the same value are the same key.
+     */
+    private static Object toKey(Object value) {
+        if (value instanceof Number) {
+            BigDecimal number = new BigDecimal(value.toString());
+
+            // stripTrailingZeros() leaves the scale of zero alone before Java 8
+            return number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+        } else if (value instanceof Map) {
+            Map<Object, Object> key = new HashMap<>();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                key.put(entry.getKey(), toKey(entry.getValue()));
+            }
+
+            return key;
+        } else if (value instanceof List) {
+            List<Object> key = new ArrayList<>();
+
+            for (Object element : (List<?>) value) {
+                key.add(toKey(element));
+            }
+
+            return key;
+        }
+
+        return value;
+    }
+
+
+    private static int getLength(Object value) {
+        RepresentationMarshaller.Utf8Buffer buffer = new RepresentationMarshaller.Utf8Buffer();
+
+        RepresentationMarshaller.marshallElement(value, buffer);
+
+        return buffer.getLength();
+    }
+}
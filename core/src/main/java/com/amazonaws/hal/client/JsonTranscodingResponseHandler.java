@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * A response handler that converts bodies in a binary HAL encoding to JSON before passing the response on, for
+ * handlers that only read JSON, such as the error response handlers.
+ *
+ * @param <T> The type of the result.
+ */
+class JsonTranscodingResponseHandler<T>
+        implements HttpResponseHandler<T> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final HttpResponseHandler<T> responseHandler;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    JsonTranscodingResponseHandler(HttpResponseHandler<T> responseHandler) {
+        this.responseHandler = responseHandler;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HttpResponseHandler
+    //-------------------------------------------------------------
+
+    @Override
+    public T handle(HttpResponse response)
+            throws Exception {
+        HalFormat format = HalFormat.of(response);
+
+        if (format != null && format.isBinary()) {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+
+            try (JsonParser jsonParser = format.createParser(response.getContent());
+                 JsonGenerator jsonGenerator = HalFormat.JSON.getJsonFactory().createGenerator(json)) {
+                if (jsonParser.nextToken() != null) {
+                    jsonGenerator.copyCurrentStructure(jsonParser);
+                }
+            }
+
+            for (Iterator<Map.Entry<String, String>> iterator = response.getHeaders().entrySet().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().getKey().equalsIgnoreCase("Content-Type")) {
+                    iterator.remove();
+                }
+            }
+
+            response.addHeader("Content-Type", HalFormat.JSON.getMediaType());
+            response.setContent(new ByteArrayInputStream(json.toByteArray()));
+        }
+
+        return responseHandler.handle(response);
+    }
+
+
+    @Override
+    public boolean needsConnectionLeftOpen() {
+        return responseHandler.needsConnectionLeftOpen();
+    }
+}
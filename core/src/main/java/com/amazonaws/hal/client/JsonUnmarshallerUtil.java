@@ -51,6 +51,8 @@ class JsonUnmarshallerUtil {
             return Boolean.TRUE;
         case VALUE_NULL:
             return null;
+        case VALUE_EMBEDDED_OBJECT: // e.g. byte strings in the binary encodings
+            return context.getJsonParser().getEmbeddedObject();
         default:
             throw new RuntimeException("We expected a VALUE token but got: " + token);
         }
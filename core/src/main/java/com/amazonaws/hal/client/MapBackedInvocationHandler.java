@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+
+class MapBackedInvocationHandler
+        implements InvocationHandler {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final PropertyMapContext context;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    MapBackedInvocationHandler(PropertyMapContext context) {
+        this.context = context;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - InvocationHandler
+    //-------------------------------------------------------------
+
+    /**
+     */
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+        ResourceMethod resourceMethod = ResourceMethod.getInstance(method);
+
+        if (resourceMethod.getKind() == ResourceMethod.Kind.PROPERTY) {
+            return context.getProperty(resourceMethod.getPropertyName(), resourceMethod.getPropertyType());
+        } else if (method.getName().equals("toString")) {
+            return context.toString();
+        }
+        // TODO: equals() and hashCode()?
+
+        throw new UnsupportedOperationException("Don't know how to handle '" + method.getName() + "'");
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonServiceException;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The hrefs recently found not to exist (404 Not Found or 410 Gone), so repeated requests for them, typically
+ * templated lookups of absent ids, fail without going to the service until the entry expires.  The details of the
+ * exception the service's response produced are kept, and each such request fails with a new exception built from
+ * them, of the same class if it has a String constructor, so callers never share an instance.
+ *
+ * Entries are keyed by the expanded href.  A write to an href removes its entry.  The cache is disabled while its
+ * time to live is 0.
+ */
+class MissingResourceCache {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final ConcurrentMap<String, MissingResource> missingResources = new ConcurrentHashMap<>();
+    private volatile long ttlNanos;
+
+    private static final int MAX_MISSING_RESOURCES = 10000;
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+
+    void setTtlMillis(long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("The time to live of missing resources can't be negative.");
+        }
+
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+
+        if (ttlMillis == 0) {
+            missingResources.clear();
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * @return a copy of the exception a recent request for the href failed with, or null if the href is not known to
+     *         be missing.
+     */
+    AmazonServiceException get(String href) {
+        MissingResource missingResource = missingResources.get(href);
+
+        if (missingResource == null) {
+            return null;
+        }
+
+        if (missingResource.expiresAt - System.nanoTime() <= 0) {
+            missingResources.remove(href, missingResource);
+
+            return null;
+        }
+
+        return missingResource.newException();
+    }
+
+
+    /**
+     * Record the failure of a request for an href, if the service said the resource does not exist.
+     */
+    void failed(String href, Exception e) {
+        long ttl = ttlNanos;
+
+        if (ttl == 0 || !(e instanceof AmazonServiceException)) {
+            return;
+        }
+
+        AmazonServiceException exception = (AmazonServiceException) e;
+
+        if (exception.getStatusCode() != 404 && exception.getStatusCode() != 410) {
+            return;
+        }
+
+        if (missingResources.size() >= MAX_MISSING_RESOURCES) {
+            removeExpired();
+        }
+
+        if (missingResources.size() < MAX_MISSING_RESOURCES) {
+            missingResources.put(href, new MissingResource(exception, System.nanoTime() + ttl));
+        }
+    }
+
+
+    void remove(String href) {
+        missingResources.remove(href);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void removeExpired() {
+        long now = System.nanoTime();
+        Iterator<MissingResource> iterator = missingResources.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class MissingResource {
+        private final Class<? extends AmazonServiceException> exceptionClass;
+        private final String errorMessage;
+        private final String errorCode;
+        private final AmazonServiceException.ErrorType errorType;
+        private final int statusCode;
+        private final String serviceName;
+        private final String requestId;
+        private final long expiresAt;
+
+
+        private MissingResource(AmazonServiceException exception, long expiresAt) {
+            this.exceptionClass = exception.getClass();
+            this.errorMessage = exception.getErrorMessage();
+            this.errorCode = exception.getErrorCode();
+            this.errorType = exception.getErrorType();
+            this.statusCode = exception.getStatusCode();
+            this.serviceName = exception.getServiceName();
+            this.requestId = exception.getRequestId();
+            this.expiresAt = expiresAt;
+        }
+
+
+        private AmazonServiceException newException() {
+            AmazonServiceException exception;
+
+            try {
+                exception = exceptionClass.getConstructor(String.class).newInstance(errorMessage);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                exception = new AmazonServiceException(errorMessage);
+            }
+
+            exception.setErrorCode(errorCode);
+            exception.setErrorType(errorType);
+            exception.setStatusCode(statusCode);
+            exception.setServiceName(serviceName);
+            exception.setRequestId(requestId);
+
+            return exception;
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * A connection to an HTTP server over an AsynchronousSocketChannel, optionally secured with TLS through an
+ * SSLEngine.  Reads and writes complete through CompletionHandlers; no thread waits on the socket.
+ *
+ * A connection is used by one exchange at a time, so it is not thread-safe.
+ */
+class NioConnection {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final AsynchronousSocketChannel channel;
+    private final SSLEngine sslEngine;
+    private long timeoutMillis;
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+    private ByteBuffer appIn;
+    private boolean reused;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private NioConnection(AsynchronousSocketChannel channel, SSLEngine sslEngine, long timeoutMillis) {
+        this.channel = channel;
+        this.sslEngine = sslEngine;
+        this.timeoutMillis = timeoutMillis;
+
+        if (sslEngine != null) {
+            netIn = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+            netOut = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+            appIn = ByteBuffer.allocate(sslEngine.getSession().getApplicationBufferSize());
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * Open a connection, completing the TLS handshake if an SSLContext is specified.  The host name is resolved and
+     * the connection is started on one of the connectExecutor's threads, so the calling thread doesn't wait for DNS.
+     *
+     * @param channelGroup the group whose threads complete the connection's operations
+     * @param connectExecutor resolves the host name, and times out the connection attempt
+     * @param host the server's host name
+     * @param port the server's port
+     * @param sslContext the context used to secure the connection, or null for a plain connection
+     * @param connectTimeoutMillis the timeout of the host name resolution and TCP connection, or 0 for none
+     * @param timeoutMillis the timeout of individual reads and writes, or 0 for none
+     * @param handler receives the open connection
+     */
+    static void open(AsynchronousChannelGroup channelGroup, ScheduledExecutorService connectExecutor, String host, int port,
+                     SSLContext sslContext, long connectTimeoutMillis, long timeoutMillis,
+                     CompletionHandler<NioConnection, Void> handler) {
+        open(channelGroup, connectExecutor, host, port, sslContext, null, connectTimeoutMillis, timeoutMillis, handler);
+    }
+
+
+    /**
+     * Open a connection, offering the specified application protocols through ALPN during the TLS handshake.  ALPN
+     * is only offered if the JRE supports it; getApplicationProtocol() reports the outcome.
+     *
+     * @param applicationProtocols the protocols to offer, in order of preference, or null to use no ALPN
+     */
+    static void open(AsynchronousChannelGroup channelGroup, ScheduledExecutorService connectExecutor, String host, int port,
+                     SSLContext sslContext, String[] applicationProtocols, long connectTimeoutMillis, long timeoutMillis,
+                     final CompletionHandler<NioConnection, Void> handler) {
+        final NioConnection connection;
+
+        try {
+            SSLEngine sslEngine = null;
+
+            if (sslContext != null) {
+                SSLParameters sslParameters = sslContext.getDefaultSSLParameters();
+
+                sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+
+                if (applicationProtocols != null) {
+                    setApplicationProtocols(sslParameters, applicationProtocols);
+                }
+
+                sslEngine = sslContext.createSSLEngine(host, port);
+                sslEngine.setUseClientMode(true);
+                sslEngine.setSSLParameters(sslParameters);
+            }
+
+            connection = new NioConnection(AsynchronousSocketChannel.open(channelGroup), sslEngine, timeoutMillis);
+        } catch (IOException | ShutdownChannelGroupException e) {
+            handler.failed(e, null);
+
+            return;
+        }
+
+        Connect connect = new Connect(connection, host, port, connectTimeoutMillis, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                if (connection.sslEngine == null) {
+                    handler.completed(connection, null);
+
+                    return;
+                }
+
+                try {
+                    connection.sslEngine.beginHandshake();
+                } catch (SSLException e) {
+                    failed(e, null);
+
+                    return;
+                }
+
+                connection.handshake(new CompletionHandler<Void, Void>() {
+                    @Override
+                    public void completed(Void result, Void attachment) {
+                        handler.completed(connection, null);
+                    }
+
+
+                    @Override
+                    public void failed(Throwable e, Void attachment) {
+                        connection.close();
+                        handler.failed(e, null);
+                    }
+                });
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                connection.close();
+                handler.failed(e, null);
+            }
+        });
+
+        try {
+            if (connectTimeoutMillis > 0) {
+                connect.timeout = connectExecutor.schedule(connect.new Timeout(), connectTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+
+            connectExecutor.execute(connect);
+        } catch (RejectedExecutionException e) {
+            connect.failed(new ShutdownChannelGroupException(), null);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    /**
+     * @return true if the connection was used by an earlier exchange, in which case the server may have closed it
+     *         in the meantime.
+     */
+    boolean isReused() {
+        return reused;
+    }
+
+
+    void setReused(boolean reused) {
+        this.reused = reused;
+    }
+
+
+    /**
+     * @param timeoutMillis the timeout of individual reads and writes from now on, or 0 for none
+     */
+    void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+
+    /**
+     * @return the application protocol negotiated through ALPN, or null if the connection is not secured, ALPN is
+     *         not supported by the JRE, or the server did not select a protocol.
+     */
+    String getApplicationProtocol() {
+        if (sslEngine == null) {
+            return null;
+        }
+
+        try {
+            String protocol = (String) SSLEngine.class.getMethod("getApplicationProtocol").invoke(sslEngine);
+
+            return protocol == null || protocol.isEmpty() ? null : protocol;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+            // Nothing more can be done with the connection either way
+        }
+    }
+
+
+    /**
+     * Write all of the remaining bytes of the buffer.
+     */
+    void write(ByteBuffer source, CompletionHandler<Void, Void> handler) {
+        if (sslEngine == null) {
+            writeNet(source, handler);
+        } else {
+            wrapAndWrite(source, handler);
+        }
+    }
+
+
+    /**
+     * Read at least one byte into the buffer, completing with the number of bytes read, or -1 at the end of the
+     * stream.
+     */
+    void read(final ByteBuffer destination, final CompletionHandler<Integer, Void> handler) {
+        if (sslEngine == null) {
+            channel.read(destination, timeoutMillis, TimeUnit.MILLISECONDS, null, handler);
+
+            return;
+        }
+
+        try {
+            while (appIn.position() == 0) {
+                netIn.flip();
+
+                SSLEngineResult result = sslEngine.unwrap(netIn, appIn);
+
+                netIn.compact();
+
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    if (appIn.position() == 0) {
+                        handler.completed(-1, null);
+
+                        return;
+                    }
+                } else if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    throw new SSLException("TLS record larger than the application buffer.");
+                } else if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW
+                           || (result.bytesConsumed() == 0 && result.bytesProduced() == 0)) {
+                    readNet(new CompletionHandler<Void, Void>() {
+                        @Override
+                        public void completed(Void result, Void attachment) {
+                            read(destination, handler);
+                        }
+
+
+                        @Override
+                        public void failed(Throwable e, Void attachment) {
+                            if (e instanceof EOFException) {
+                                handler.completed(-1, null);
+                            } else {
+                                handler.failed(e, null);
+                            }
+                        }
+                    });
+
+                    return;
+                }
+
+                runDelegatedTasks();
+            }
+        } catch (SSLException e) {
+            handler.failed(e, null);
+
+            return;
+        }
+
+        appIn.flip();
+
+        int count = Math.min(appIn.remaining(), destination.remaining());
+        ByteBuffer chunk = appIn.duplicate();
+
+        chunk.limit(appIn.position() + count);
+        destination.put(chunk);
+        appIn.position(appIn.position() + count);
+        appIn.compact();
+
+        handler.completed(count, null);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * ALPN is only available from Java 8u252, so it is configured reflectively.
+     */
+    private static void setApplicationProtocols(SSLParameters sslParameters, String[] applicationProtocols) {
+        try {
+            Method method = SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+
+            method.invoke(sslParameters, (Object) applicationProtocols);
+        } catch (NoSuchMethodException ignore) {
+            // Without ALPN, the server picks its default protocol
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void handshake(final CompletionHandler<Void, Void> handler) {
+        CompletionHandler<Void, Void> continuation = new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                handshake(handler);
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                handler.failed(e, null);
+            }
+        };
+
+        try {
+            while (true) {
+                switch (sslEngine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+
+                case NEED_WRAP:
+                    netOut.clear();
+
+                    SSLEngineResult wrapResult = sslEngine.wrap(EMPTY, netOut);
+
+                    netOut.flip();
+
+                    if (wrapResult.getStatus() == SSLEngineResult.Status.CLOSED && !netOut.hasRemaining()) {
+                        throw new SSLException("Connection closed during the TLS handshake.");
+                    }
+
+                    writeNet(netOut, continuation);
+
+                    return;
+
+                case NEED_UNWRAP:
+                    netIn.flip();
+
+                    SSLEngineResult unwrapResult = sslEngine.unwrap(netIn, appIn);
+
+                    netIn.compact();
+
+                    if (unwrapResult.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                        readNet(continuation);
+
+                        return;
+                    } else if (unwrapResult.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("Connection closed during the TLS handshake.");
+                    }
+                    break;
+
+                default:
+                    handler.completed(null, null);
+
+                    return;
+                }
+            }
+        } catch (SSLException e) {
+            handler.failed(e, null);
+        }
+    }
+
+
+    private void runDelegatedTasks() {
+        Runnable task;
+
+        while ((task = sslEngine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+
+    private void wrapAndWrite(final ByteBuffer source, final CompletionHandler<Void, Void> handler) {
+        try {
+            netOut.clear();
+
+            SSLEngineResult result = sslEngine.wrap(source, netOut);
+
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("Connection closed.");
+            }
+
+            netOut.flip();
+        } catch (SSLException e) {
+            handler.failed(e, null);
+
+            return;
+        }
+
+        writeNet(netOut, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                if (source.hasRemaining()) {
+                    wrapAndWrite(source, handler);
+                } else {
+                    handler.completed(null, null);
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                handler.failed(e, null);
+            }
+        });
+    }
+
+
+    private void writeNet(final ByteBuffer source, final CompletionHandler<Void, Void> handler) {
+        channel.write(source, timeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (source.hasRemaining()) {
+                    writeNet(source, handler);
+                } else {
+                    handler.completed(null, null);
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                handler.failed(e, null);
+            }
+        });
+    }
+
+
+    /**
+     * Read more TLS records into netIn, failing with an EOFException at the end of the stream.
+     */
+    private void readNet(final CompletionHandler<Void, Void> handler) {
+        channel.read(netIn, timeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0) {
+                    handler.failed(new EOFException("Connection closed by the server."), null);
+                } else {
+                    handler.completed(null, null);
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                handler.failed(e, null);
+            }
+        });
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * Resolves the host name and connects the channel, unless the connect timeout expires first.  Whichever finishes
+     * first completes the handler; the other finds the attempt already done.
+     */
+    private static final class Connect
+            implements Runnable, CompletionHandler<Void, Void> {
+        private final NioConnection connection;
+        private final String host;
+        private final int port;
+        private final long connectTimeoutMillis;
+        private final CompletionHandler<Void, Void> handler;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile Future<?> timeout;
+
+
+        private Connect(NioConnection connection, String host, int port, long connectTimeoutMillis,
+                        CompletionHandler<Void, Void> handler) {
+            this.connection = connection;
+            this.host = host;
+            this.port = port;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.handler = handler;
+        }
+
+
+        @Override
+        public void run() {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+
+            if (address.isUnresolved()) {
+                failed(new UnknownHostException(host), null);
+
+                return;
+            }
+
+            try {
+                connection.channel.connect(address, null, this);
+            } catch (RuntimeException e) {
+                // The channel was closed by the timeout, or its group was shut down
+                failed(e, null);
+            }
+        }
+
+
+        @Override
+        public void completed(Void result, Void attachment) {
+            if (finish()) {
+                handler.completed(result, attachment);
+            }
+        }
+
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            if (finish()) {
+                handler.failed(e, attachment);
+            }
+        }
+
+
+        private boolean finish() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+
+            Future<?> currentTimeout = timeout;
+
+            if (currentTimeout != null) {
+                currentTimeout.cancel(false);
+            }
+
+            return true;
+        }
+
+
+        private final class Timeout
+                implements Runnable {
+            @Override
+            public void run() {
+                failed(new SocketTimeoutException("Unable to connect to " + host + ":" + port + " in " + connectTimeoutMillis
+                                                  + " milliseconds."), null);
+            }
+        }
+    }
+}
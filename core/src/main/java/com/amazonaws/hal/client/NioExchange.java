@@ -0,0 +1,508 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A single HTTP/1.1 request/response exchange over an NioConnection.  The request is written in full, then the
+ * response is parsed incrementally as bytes arrive: the status line and headers, then a body delimited by
+ * Content-Length, by chunked transfer coding, or by the end of the connection.
+ *
+ * A request body of unknown length is read from its stream one chunk at a time as the previous chunk is written,
+ * and sent with chunked transfer coding.
+ */
+class NioExchange {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final NioConnection connection;
+    private final Request<?> request;
+    private final ByteBuffer requestBytes;
+    private final InputStream requestBody;
+    private final Listener listener;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private byte[] pending = new byte[READ_BUFFER_SIZE];
+    private int pendingLength;
+    private boolean responseStarted;
+
+    private State state = State.HEADERS;
+    private long remaining;
+    private int statusCode;
+    private String statusText;
+    private final List<String[]> headers = new ArrayList<>();
+    private boolean keepAlive;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int REQUEST_CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    NioExchange(NioConnection connection, Request<?> request, byte[] requestBytes, Listener listener) {
+        this(connection, request, requestBytes, null, listener);
+    }
+
+
+    /**
+     * @param requestBytes the request head, and the body if its length is known
+     * @param requestBody the body to send with chunked transfer coding after the head, or null
+     */
+    NioExchange(NioConnection connection, Request<?> request, byte[] requestBytes, InputStream requestBody, Listener listener) {
+        this.connection = connection;
+        this.request = request;
+        this.requestBytes = ByteBuffer.wrap(requestBytes);
+        this.requestBody = requestBody;
+        this.listener = listener;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    void start() {
+        connection.write(requestBytes, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                if (requestBody == null) {
+                    readMore();
+                } else {
+                    writeChunk(new byte[REQUEST_CHUNK_SIZE]);
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                fail(e);
+            }
+        });
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    /**
+     * Write the next chunk of the request body, or the last chunk at the end of the body, then read the response.
+     */
+    private void writeChunk(final byte[] chunk) {
+        int count;
+
+        try {
+            count = requestBody.read(chunk);
+
+            // Streams may return 0 bytes without being at the end, which would look like the last chunk
+            while (count == 0) {
+                count = requestBody.read(chunk);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+
+            return;
+        }
+
+        final boolean last = count < 0;
+        String chunkHead = last ? "0\r\n\r\n" : Integer.toHexString(count) + "\r\n";
+        ByteBuffer chunkBytes = ByteBuffer.allocate(chunkHead.length() + (last ? 0 : count + 2));
+
+        chunkBytes.put(chunkHead.getBytes(ISO_8859_1));
+
+        if (!last) {
+            chunkBytes.put(chunk, 0, count).put((byte) '\r').put((byte) '\n');
+        }
+
+        chunkBytes.flip();
+
+        connection.write(chunkBytes, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                if (last) {
+                    readMore();
+                } else {
+                    writeChunk(chunk);
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                fail(e);
+            }
+        });
+    }
+
+
+    private void readMore() {
+        connection.read(readBuffer, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0) {
+                    endOfStream();
+
+                    return;
+                }
+
+                readBuffer.flip();
+                append(readBuffer);
+                readBuffer.clear();
+
+                try {
+                    process();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                fail(e);
+            }
+        });
+    }
+
+
+    private void append(ByteBuffer bytes) {
+        if (pendingLength + bytes.remaining() > pending.length) {
+            byte[] larger = new byte[Math.max(pending.length * 2, pendingLength + bytes.remaining())];
+
+            System.arraycopy(pending, 0, larger, 0, pendingLength);
+            pending = larger;
+        }
+
+        responseStarted |= bytes.hasRemaining();
+
+        int count = bytes.remaining();
+
+        bytes.get(pending, pendingLength, count);
+        pendingLength += count;
+    }
+
+
+    private void consume(int count) {
+        System.arraycopy(pending, count, pending, 0, pendingLength - count);
+        pendingLength -= count;
+    }
+
+
+    private void consumeBody(long maximum) {
+        int count = (int) Math.min(maximum, pendingLength);
+
+        body.write(pending, 0, count);
+        consume(count);
+        remaining -= count;
+    }
+
+
+    /**
+     * Parse as much of the response as the pending bytes allow, then either complete or read more.
+     */
+    private void process()
+            throws IOException {
+        while (true) {
+            switch (state) {
+            case HEADERS:
+                int headerEnd = indexOf("\r\n\r\n");
+
+                if (headerEnd < 0) {
+                    if (pendingLength > MAX_HEADER_SIZE) {
+                        throw new IOException("Response headers exceed " + MAX_HEADER_SIZE + " bytes.");
+                    }
+
+                    readMore();
+
+                    return;
+                }
+
+                parseHeaders(new String(pending, 0, headerEnd, ISO_8859_1));
+                consume(headerEnd + 4);
+
+                if (state == State.DONE) {
+                    complete();
+
+                    return;
+                }
+                break;
+
+            case LENGTH:
+                consumeBody(remaining);
+
+                if (remaining == 0) {
+                    complete();
+
+                    return;
+                }
+
+                readMore();
+
+                return;
+
+            case CHUNK_SIZE:
+                int lineEnd = indexOf("\r\n");
+
+                if (lineEnd < 0) {
+                    readMore();
+
+                    return;
+                }
+
+                String chunkSize = new String(pending, 0, lineEnd, ISO_8859_1);
+                int extensionStart = chunkSize.indexOf(';');
+
+                try {
+                    remaining = Long.parseLong((extensionStart < 0 ? chunkSize : chunkSize.substring(0, extensionStart)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid chunk size: " + chunkSize);
+                }
+
+                consume(lineEnd + 2);
+                state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+                break;
+
+            case CHUNK_DATA:
+                consumeBody(remaining);
+
+                if (remaining > 0) {
+                    readMore();
+
+                    return;
+                }
+
+                state = State.CHUNK_END;
+                break;
+
+            case CHUNK_END:
+                if (pendingLength < 2) {
+                    readMore();
+
+                    return;
+                }
+
+                consume(2);
+                state = State.CHUNK_SIZE;
+                break;
+
+            case TRAILERS:
+                int trailerEnd = indexOf("\r\n");
+
+                if (trailerEnd < 0) {
+                    readMore();
+
+                    return;
+                }
+
+                consume(trailerEnd + 2);
+
+                if (trailerEnd == 0) {
+                    complete();
+
+                    return;
+                }
+                break;
+
+            case UNTIL_CLOSE:
+                consumeBody(pendingLength);
+                readMore();
+
+                return;
+
+            default:
+                return;
+            }
+        }
+    }
+
+
+    private void parseHeaders(String headerBlock)
+            throws IOException {
+        String[] lines = headerBlock.split("\r\n");
+        String[] statusLine = lines[0].split(" ", 3);
+
+        if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid status line: " + lines[0]);
+        }
+
+        try {
+            statusCode = Integer.parseInt(statusLine[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + lines[0]);
+        }
+
+        statusText = statusLine.length > 2 ? statusLine[2] : "";
+
+        // Interim responses (e.g. 100 Continue) are followed by the real one.
+        if (statusCode >= 100 && statusCode < 200) {
+            return;
+        }
+
+        String connectionHeader = null;
+        String transferEncoding = null;
+        String contentLength = null;
+
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+
+            if (colon <= 0) {
+                continue;
+            }
+
+            String name = lines[i].substring(0, colon).trim();
+            String value = lines[i].substring(colon + 1).trim();
+
+            headers.add(new String[] { name, value });
+
+            if (name.equalsIgnoreCase("Connection")) {
+                connectionHeader = value;
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                transferEncoding = value;
+            } else if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = value;
+            }
+        }
+
+        keepAlive = statusLine[0].equals("HTTP/1.1") ? !"close".equalsIgnoreCase(connectionHeader)
+                                                     : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+        if (request.getHttpMethod() == HttpMethodName.HEAD || statusCode == 204 || statusCode == 304) {
+            state = State.DONE;
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                remaining = Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+
+            state = remaining == 0 ? State.DONE : State.LENGTH;
+        } else {
+            state = State.UNTIL_CLOSE;
+            keepAlive = false;
+        }
+    }
+
+
+    private int indexOf(String delimiter) {
+        byte[] delimiterBytes = delimiter.getBytes(ISO_8859_1);
+
+        outer:
+        for (int i = 0; i <= pendingLength - delimiterBytes.length; i++) {
+            for (int j = 0; j < delimiterBytes.length; j++) {
+                if (pending[i + j] != delimiterBytes[j]) {
+                    continue outer;
+                }
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+
+    private void endOfStream() {
+        if (state == State.UNTIL_CLOSE) {
+            complete();
+        } else {
+            fail(new EOFException("Connection closed before the response was complete."));
+        }
+    }
+
+
+    private void complete() {
+        state = State.DONE;
+
+        HttpResponse response = new HttpResponse(request, null);
+
+        response.setStatusCode(statusCode);
+        response.setStatusText(statusText);
+
+        for (String[] header : headers) {
+            response.addHeader(header[0], header[1]);
+        }
+
+        response.setContent(new ByteArrayInputStream(body.toByteArray()));
+
+        listener.completed(response, keepAlive && pendingLength == 0);
+    }
+
+
+    private void fail(Throwable e) {
+        state = State.DONE;
+
+        listener.failed(e instanceof Exception ? (Exception) e : new RuntimeException(e), responseStarted);
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    interface Listener {
+
+        /**
+         * @param response the complete response
+         * @param reusable true if the connection can be used for another exchange
+         */
+        void completed(HttpResponse response, boolean reusable);
+
+
+        /**
+         * @param e the reason the exchange failed
+         * @param responseStarted true if any part of the response was received
+         */
+        void failed(Exception e, boolean responseStarted);
+    }
+
+
+    private enum State {
+        HEADERS,
+        LENGTH,
+        CHUNK_SIZE,
+        CHUNK_DATA,
+        CHUNK_END,
+        TRAILERS,
+        UNTIL_CLOSE,
+        DONE
+    }
+}
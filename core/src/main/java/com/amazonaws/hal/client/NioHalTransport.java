@@ -0,0 +1,580 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.util.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.net.ssl.SSLContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+
+/**
+ * A non-blocking HalTransport built on NIO asynchronous socket channels.  A small, fixed set of I/O threads drives
+ * every connection, so the number of requests in flight is not bounded by the number of threads.
+ *
+ * Connections are kept alive and pooled per endpoint.  At most ClientConfiguration.getMaxConnections() connections
+ * are opened to an endpoint; further requests wait in a queue (without holding a thread) until a connection is
+ * released.  A request whose callback is cancelled (see HalTransport.Cancellable) while it waits is not sent.  Reads
+ * and writes time out after ClientConfiguration.getSocketTimeout() milliseconds.
+ *
+ * Idempotent requests that fail on a pooled connection before any response is received (typically because the
+ * server closed the idle connection) are retried once on a new connection.
+ *
+ * Request content with no Content-Length header, other than a ByteArrayInputStream, is streamed with chunked
+ * transfer coding rather than read into memory.  Such requests are only retried if the content supports mark() and
+ * reset().
+ */
+public class NioHalTransport
+        implements HalTransport {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final AsynchronousChannelGroup channelGroup;
+    private final SSLContext sslContext;
+    private final int maxConnectionsPerEndpoint;
+    private final long connectTimeoutMillis;
+    private final long timeoutMillis;
+    private final ScheduledThreadPoolExecutor connectExecutor;
+    private final ConcurrentMap<String, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static Log log = LogFactory.getLog(NioHalTransport.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    public NioHalTransport() {
+        this(new ClientConfiguration());
+    }
+
+
+    public NioHalTransport(ClientConfiguration clientConfiguration) {
+        this(clientConfiguration, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * @param clientConfiguration supplies the maximum number of connections per endpoint, and the connection and
+     *                            socket timeouts
+     * @param ioThreads the number of threads that drive the connections and invoke the callbacks, and the number
+     *                  of threads that resolve host names
+     */
+    public NioHalTransport(ClientConfiguration clientConfiguration, int ioThreads) {
+        this.maxConnectionsPerEndpoint = clientConfiguration.getMaxConnections();
+        this.connectTimeoutMillis = clientConfiguration.getConnectionTimeout();
+        this.timeoutMillis = clientConfiguration.getSocketTimeout();
+        this.connectExecutor = new ScheduledThreadPoolExecutor(ioThreads, new DaemonThreadFactory("hal-nio-connect"));
+
+        // Timeouts are cancelled as soon as the connection is open, so they don't have to wait out their delay.
+        connectExecutor.setRemoveOnCancelPolicy(true);
+
+        try {
+            this.channelGroup = AsynchronousChannelGroup.withFixedThreadPool(ioThreads, new DaemonThreadFactory("hal-nio"));
+            this.sslContext = SSLContext.getDefault();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to create transport: " + e.getMessage(), e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    AsynchronousChannelGroup getChannelGroup() {
+        return channelGroup;
+    }
+
+
+    ScheduledExecutorService getConnectExecutor() {
+        return connectExecutor;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HalTransport
+    //-------------------------------------------------------------
+
+    @Override
+    public void send(Request<?> request, Callback callback) {
+        InputStream requestBody = isStreamed(request) ? request.getContent() : null;
+        byte[] requestBytes;
+
+        try {
+            requestBytes = serialize(request, requestBody != null);
+        } catch (IOException e) {
+            callback.failed(e);
+
+            return;
+        }
+
+        if (requestBody != null && requestBody.markSupported()) {
+            requestBody.mark(Integer.MAX_VALUE);
+        }
+
+        getConnectionPool(request.getEndpoint()).execute(new PendingExchange(request, requestBytes, requestBody, callback));
+    }
+
+
+    @Override
+    public void shutdown() {
+        for (ConnectionPool connectionPool : connectionPools.values()) {
+            connectionPool.closeIdleConnections();
+        }
+
+        connectExecutor.shutdownNow();
+
+        try {
+            channelGroup.shutdownNow();
+        } catch (IOException e) {
+            log.warn("Unable to shut down transport.", e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private ConnectionPool getConnectionPool(URI endpoint) {
+        boolean secure = "https".equalsIgnoreCase(endpoint.getScheme());
+        int port = endpoint.getPort() < 0 ? (secure ? 443 : 80) : endpoint.getPort();
+        String key = endpoint.getScheme() + "://" + endpoint.getHost() + ":" + port;
+        ConnectionPool connectionPool = connectionPools.get(key);
+
+        if (connectionPool == null) {
+            connectionPool = new ConnectionPool(endpoint.getHost(), port, secure);
+
+            ConnectionPool existingConnectionPool = connectionPools.putIfAbsent(key, connectionPool);
+
+            if (existingConnectionPool != null) {
+                connectionPool = existingConnectionPool;
+            }
+        }
+
+        return connectionPool;
+    }
+
+
+    /**
+     * @param streamed true if the content is sent separately, with chunked transfer coding
+     * @return the request head, followed by the content unless it is streamed.
+     */
+    private byte[] serialize(Request<?> request, boolean streamed)
+            throws IOException {
+        URI endpoint = request.getEndpoint();
+        HttpMethodName httpMethod = request.getHttpMethod();
+        byte[] content = streamed ? new byte[0] : getContent(request);
+
+        StringBuilder head = new StringBuilder();
+
+        head.append(httpMethod.name()).append(' ').append(getRequestTarget(request)).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(endpoint.getHost());
+
+        if (endpoint.getPort() >= 0) {
+            head.append(':').append(endpoint.getPort());
+        }
+
+        head.append("\r\n");
+
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (!header.getKey().equalsIgnoreCase("Host") && !header.getKey().equalsIgnoreCase("Content-Length")) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+
+        if (streamed) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else if (content.length > 0 || httpMethod == HttpMethodName.POST || httpMethod == HttpMethodName.PUT
+            || httpMethod == HttpMethodName.PATCH) {
+            head.append("Content-Length: ").append(content.length).append("\r\n");
+        }
+
+        head.append("\r\n");
+
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream(head.length() + content.length);
+
+        requestBytes.write(head.toString().getBytes(ISO_8859_1));
+        requestBytes.write(content);
+
+        return requestBytes.toByteArray();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @return true if the request has content of unknown length that isn't already in memory, which is streamed
+     *         rather than read into memory.
+     */
+    static boolean isStreamed(Request<?> request) {
+        InputStream content = request.getContent();
+
+        return content != null && !(content instanceof ByteArrayInputStream) && !request.getHeaders().containsKey("Content-Length");
+    }
+
+
+    static byte[] getContent(Request<?> request)
+            throws IOException {
+        try (InputStream contentStream = request.getContent()) {
+            return contentStream == null ? new byte[0] : IOUtils.toByteArray(contentStream);
+        }
+    }
+
+
+    /**
+     * @return the encoded path and query string of the request.
+     */
+    static String getRequestTarget(Request<?> request) {
+        String basePath = request.getEndpoint().getPath() == null ? "" : request.getEndpoint().getPath();
+        String resourcePath = request.getResourcePath() == null ? "" : request.getResourcePath();
+
+        if (basePath.endsWith("/") && resourcePath.startsWith("/")) {
+            resourcePath = resourcePath.substring(1);
+        } else if (!basePath.endsWith("/") && !resourcePath.startsWith("/")) {
+            resourcePath = "/" + resourcePath;
+        }
+
+        StringBuilder target = new StringBuilder(urlEncode(basePath + resourcePath, true));
+        char separator = '?';
+
+        // Parameters map to single values in older SDKs, and to lists of values in newer ones.
+        for (Map.Entry<String, ?> parameter : request.getParameters().entrySet()) {
+            Collection<?> values = parameter.getValue() instanceof Collection
+                    ? (Collection<?>) parameter.getValue()
+                    : Collections.singletonList(parameter.getValue());
+
+            for (Object value : values) {
+                target.append(separator).append(urlEncode(parameter.getKey(), false));
+
+                if (value != null) {
+                    target.append('=').append(urlEncode(value.toString(), false));
+                }
+
+                separator = '&';
+            }
+        }
+
+        return target.toString();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * Encode a value the way the SDK's signers do, so the request line matches what was signed.
+     */
+    private static String urlEncode(String value, boolean path) {
+        try {
+            String encoded = URLEncoder.encode(value, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+
+            return path ? encoded.replace("%2F", "/") : encoded;
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    private static void close(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.warn("Unable to close request content.", e);
+            }
+        }
+    }
+
+
+    private static void completed(Callback callback, HttpResponse response) {
+        try {
+            callback.completed(response);
+        } catch (RuntimeException e) {
+            log.error("Transport callback failed.", e);
+        }
+    }
+
+
+    private static void failed(Callback callback, Exception exception) {
+        try {
+            callback.failed(exception);
+        } catch (RuntimeException e) {
+            log.error("Transport callback failed.", e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class PendingExchange {
+        private final Request<?> request;
+        private final byte[] requestBytes;
+        private final InputStream requestBody;
+        private final Callback callback;
+        private boolean retried;
+
+
+        private PendingExchange(Request<?> request, byte[] requestBytes, InputStream requestBody, Callback callback) {
+            this.request = request;
+            this.requestBytes = requestBytes;
+            this.requestBody = requestBody;
+            this.callback = callback;
+        }
+
+
+        private boolean isCancelled() {
+            return callback instanceof Cancellable && ((Cancellable) callback).isCancelled();
+        }
+
+
+        private boolean isRetryable() {
+            HttpMethodName httpMethod = request.getHttpMethod();
+
+            return !retried && (requestBody == null || requestBody.markSupported())
+                   && (httpMethod == HttpMethodName.GET || httpMethod == HttpMethodName.HEAD
+                       || httpMethod == HttpMethodName.PUT || httpMethod == HttpMethodName.DELETE);
+        }
+    }
+
+
+    /**
+     * The connections to one endpoint.  The bookkeeping is synchronized, but no I/O is done while holding the lock.
+     */
+    private final class ConnectionPool {
+        private final String host;
+        private final int port;
+        private final boolean secure;
+        private final Deque<NioConnection> idleConnections = new ArrayDeque<>();
+        private final Queue<PendingExchange> waitingExchanges = new ArrayDeque<>();
+        private int openConnections;
+
+
+        private ConnectionPool(String host, int port, boolean secure) {
+            this.host = host;
+            this.port = port;
+            this.secure = secure;
+        }
+
+
+        private void execute(PendingExchange exchange) {
+            NioConnection connection;
+
+            synchronized (this) {
+                while ((connection = idleConnections.pollLast()) != null && !connection.isOpen()) {
+                    openConnections--;
+                }
+
+                if (connection == null) {
+                    if (openConnections >= maxConnectionsPerEndpoint) {
+                        waitingExchanges.add(exchange);
+
+                        return;
+                    }
+
+                    openConnections++;
+                }
+            }
+
+            if (connection == null) {
+                connect(exchange);
+            } else {
+                start(connection, exchange);
+            }
+        }
+
+
+        private void connect(final PendingExchange exchange) {
+            if (exchange.isCancelled()) {
+                connectionClosed();
+                cancel(exchange);
+
+                return;
+            }
+
+            NioConnection.open(channelGroup, connectExecutor, host, port, secure ? sslContext : null, connectTimeoutMillis, timeoutMillis,
+                               new CompletionHandler<NioConnection, Void>() {
+                @Override
+                public void completed(NioConnection connection, Void attachment) {
+                    start(connection, exchange);
+                }
+
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    connectionClosed();
+                    close(exchange.requestBody);
+                    NioHalTransport.failed(exchange.callback, e instanceof Exception ? (Exception) e : new RuntimeException(e));
+                }
+            });
+        }
+
+
+        private void start(final NioConnection connection, final PendingExchange exchange) {
+            if (exchange.isCancelled()) {
+                release(connection, true);
+                cancel(exchange);
+
+                return;
+            }
+
+            new NioExchange(connection, exchange.request, exchange.requestBytes, exchange.requestBody, new NioExchange.Listener() {
+                @Override
+                public void completed(HttpResponse response, boolean reusable) {
+                    release(connection, reusable);
+                    close(exchange.requestBody);
+                    NioHalTransport.completed(exchange.callback, response);
+                }
+
+
+                @Override
+                public void failed(Exception e, boolean responseStarted) {
+                    boolean retry = connection.isReused() && !responseStarted && exchange.isRetryable();
+
+                    connection.close();
+                    connectionClosed();
+
+                    if (retry && exchange.requestBody != null) {
+                        try {
+                            exchange.requestBody.reset();
+                        } catch (IOException resetException) {
+                            retry = false;
+                        }
+                    }
+
+                    if (retry) {
+                        exchange.retried = true;
+                        execute(exchange);
+                    } else {
+                        close(exchange.requestBody);
+                        NioHalTransport.failed(exchange.callback, e);
+                    }
+                }
+            }).start();
+        }
+
+
+        /**
+         * Hand a connection whose exchange is complete to the next waiting exchange, or keep it for later.
+         */
+        private void release(NioConnection connection, boolean reusable) {
+            PendingExchange nextExchange;
+
+            synchronized (this) {
+                nextExchange = waitingExchanges.poll();
+
+                if (reusable && nextExchange == null) {
+                    connection.setReused(true);
+                    idleConnections.addLast(connection);
+
+                    return;
+                }
+            }
+
+            if (reusable) {
+                connection.setReused(true);
+                start(connection, nextExchange);
+            } else {
+                connection.close();
+
+                if (nextExchange == null) {
+                    connectionClosed();
+                } else {
+                    connect(nextExchange);
+                }
+            }
+        }
+
+
+        /**
+         * A connection was closed, which makes room for a waiting exchange, if any.
+         */
+        private void connectionClosed() {
+            PendingExchange nextExchange;
+
+            synchronized (this) {
+                nextExchange = waitingExchanges.poll();
+
+                if (nextExchange == null) {
+                    openConnections--;
+
+                    return;
+                }
+            }
+
+            connect(nextExchange);
+        }
+
+
+        private void cancel(PendingExchange exchange) {
+            close(exchange.requestBody);
+            NioHalTransport.failed(exchange.callback, new CancellationException("The request was cancelled."));
+        }
+
+
+        private void closeIdleConnections() {
+            synchronized (this) {
+                for (NioConnection connection : idleConnections) {
+                    connection.close();
+                }
+
+                openConnections -= idleConnections.size();
+                idleConnections.clear();
+            }
+        }
+    }
+}
@@ -16,14 +16,13 @@
 package com.amazonaws.hal.client;
 
 
-import com.amazonaws.http.JsonResponseHandler;
 import com.amazonaws.transform.JsonUnmarshallerContext;
 import com.amazonaws.transform.Unmarshaller;
 
 import java.util.Map;
 
 
-class OptionalJsonResponseHandler<T> extends JsonResponseHandler<T> {
+class OptionalJsonResponseHandler<T> extends HalResponseHandler<T> {
 
     //-------------------------------------------------------------
     // Variables - Private
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The resources a HalClient keeps resident.  Pinned resources live outside the resource cache, so they are never
+ * evicted, and they are refreshed by a background thread.  A refresh that fails leaves the previous snapshot in
+ * place.  All pinned resources are refreshed together, at the shortest interval any of them was pinned with.
+ *
+ * Each pinned path has a single HalResourceContext, shared by the instances of every interface the resource is
+ * requested as, so a refresh is visible through all of them.
+ */
+class PinnedResourceRegistry {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final HalClient halClient;
+    private final ConcurrentMap<String, PinnedResource> pinnedResources = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refreshExecutor;
+    private ScheduledFuture<?> refreshTask;
+    private long refreshIntervalMillis;
+
+    private static final int MAX_PREFETCH_THREADS = 8;
+
+    private static Log log = LogFactory.getLog(PinnedResourceRegistry.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    PinnedResourceRegistry(HalClient halClient) {
+        this.halClient = halClient;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Pin the resources at the specified paths, start prefetching them in parallel, and refresh all pinned resources
+     * in the background.  A resource that can't be prefetched stays pinned, and is retrieved when it is first used.
+     *
+     * @param resourcePaths the paths of the resources to pin
+     * @param refreshIntervalMillis the delay between background refreshes, which replaces the current delay if it is
+     *                              shorter
+     */
+    synchronized void pin(Collection<String> resourcePaths, long refreshIntervalMillis) {
+        List<Runnable> prefetches = new ArrayList<>();
+
+        for (String resourcePath : resourcePaths) {
+            if (pinnedResources.containsKey(resourcePath)) {
+                continue;
+            }
+
+            final HalResourceContext context = new HalResourceContext(null, resourcePath, halClient);
+
+            pinnedResources.put(resourcePath, new PinnedResource(context));
+            prefetches.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        context.getHalResource();
+                    } catch (RuntimeException e) {
+                        log.warn("Unable to prefetch pinned resource " + context.getResourcePath() + ".", e);
+                    }
+                }
+            });
+        }
+
+        prefetch(prefetches);
+
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hal-pinned-refresh"));
+        }
+
+        if (refreshTask == null || refreshIntervalMillis < this.refreshIntervalMillis) {
+            if (refreshTask != null) {
+                refreshTask.cancel(false);
+            }
+
+            this.refreshIntervalMillis = refreshIntervalMillis;
+            this.refreshTask = refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refreshAll();
+                }
+            }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * @return the instance of the pinned resource at the path, or null if the path is not pinned.
+     */
+    <T> T getResource(Class<T> resourceClass, String resourcePath) {
+        PinnedResource pinnedResource = pinnedResources.get(resourcePath);
+
+        return pinnedResource == null ? null : pinnedResource.getInstance(resourceClass);
+    }
+
+
+    /**
+     * @return the context of the pinned resource at the path, or null if the path is not pinned.
+     */
+    HalResourceContext getContext(String resourcePath) {
+        PinnedResource pinnedResource = pinnedResources.get(resourcePath);
+
+        return pinnedResource == null ? null : pinnedResource.context;
+    }
+
+
+    synchronized void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+            refreshTask = null;
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    /**
+     * Run the prefetches without waiting for them.  Their threads end once the prefetches are done.
+     */
+    private void prefetch(List<Runnable> prefetches) {
+        if (prefetches.isEmpty()) {
+            return;
+        }
+
+        ExecutorService prefetchExecutor = Executors.newFixedThreadPool(Math.min(prefetches.size(), MAX_PREFETCH_THREADS),
+                                                                        new DaemonThreadFactory("hal-pinned-prefetch"));
+
+        for (Runnable prefetch : prefetches) {
+            prefetchExecutor.execute(prefetch);
+        }
+
+        prefetchExecutor.shutdown();
+    }
+
+
+    private void refreshAll() {
+        for (PinnedResource pinnedResource : pinnedResources.values()) {
+            try {
+                pinnedResource.context.refresh();
+            } catch (RuntimeException e) {
+                log.warn("Unable to refresh pinned resource " + pinnedResource.context.getResourcePath()
+                         + ", keeping the current version.", e);
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private final class PinnedResource {
+        private final HalResourceContext context;
+        private final ConcurrentMap<Class<?>, Object> instances = new ConcurrentHashMap<>();
+
+
+        private PinnedResource(HalResourceContext context) {
+            this.context = context;
+        }
+
+
+        private <T> T getInstance(Class<T> resourceClass) {
+            Object instance = instances.get(resourceClass);
+
+            if (instance == null) {
+                instance = halClient.createResource(resourceClass, context);
+
+                Object existingInstance = instances.putIfAbsent(resourceClass, instance);
+
+                if (existingInstance != null) {
+                    instance = existingInstance;
+                }
+            }
+
+            return resourceClass.cast(instance);
+        }
+    }
+}
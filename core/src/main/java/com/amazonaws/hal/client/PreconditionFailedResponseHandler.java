@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.hal.PreconditionFailedException;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.util.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+
+/**
+ * An error response handler that turns the 412 responses to the client's conditional writes into
+ * PreconditionFailedExceptions.  A body in a HAL encoding is the current representation of the resource, and is
+ * parsed into the exception; any other body is passed to the wrapped handler for the error message.  Other errors
+ * are left to the wrapped handler.
+ */
+class PreconditionFailedResponseHandler
+        implements HttpResponseHandler<AmazonServiceException> {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+
+    private static final int PRECONDITION_FAILED = 412;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    PreconditionFailedResponseHandler(HttpResponseHandler<AmazonServiceException> errorResponseHandler) {
+        this.errorResponseHandler = errorResponseHandler;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HttpResponseHandler
+    //-------------------------------------------------------------
+
+    @Override
+    public AmazonServiceException handle(HttpResponse response)
+            throws Exception {
+        if (response.getStatusCode() != PRECONDITION_FAILED || !response.getRequest().getHeaders().containsKey("If-Match")) {
+            return errorResponseHandler.handle(response);
+        }
+
+        HalResource currentResource = null;
+        String message = "The resource was modified since it was last retrieved.";
+
+        if (HalFormat.of(response) != null) {
+            currentResource = new ContentHashingResponseHandler(null).handle(response).getResult();
+        } else {
+            message = getErrorMessage(response, message);
+        }
+
+        PreconditionFailedException exception = new PreconditionFailedException(message, currentResource,
+                                                                                 HalResponseHandler.getHeader(response, "ETag"));
+
+        exception.setServiceName(response.getRequest().getServiceName());
+        exception.setStatusCode(PRECONDITION_FAILED);
+        exception.setErrorType(ErrorType.Client);
+        exception.setRequestId(HalResponseHandler.getHeader(response, "X-Amzn-RequestId"));
+
+        return exception;
+    }
+
+
+    @Override
+    public boolean needsConnectionLeftOpen() {
+        return errorResponseHandler.needsConnectionLeftOpen();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private String getErrorMessage(HttpResponse response, String defaultMessage)
+            throws Exception {
+        byte[] content;
+
+        try (InputStream stream = response.getContent()) {
+            content = stream == null ? new byte[0] : IOUtils.toByteArray(stream);
+        }
+
+        if (content.length == 0) {
+            return defaultMessage;
+        }
+
+        response.setContent(new ByteArrayInputStream(content));
+
+        try {
+            AmazonServiceException exception = errorResponseHandler.handle(response);
+
+            return exception == null || exception.getErrorMessage() == null ? defaultMessage : exception.getErrorMessage();
+        } catch (Exception e) {
+            // The cause of the error is known, so a body the error response handler can't read is not a problem.
+            return defaultMessage;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.amazonaws.hal.client.ConversionUtil.convertAndMemoize;
+
+
+/**
+ * The state behind an interface instance that is backed by a JSON object (as opposed to a HAL resource).  Both
+ * dynamic proxies and classes generated by the HAL annotation processor delegate to a PropertyMapContext.
+ *
+ * The public methods of this class are intended to be called by generated implementations.
+ */
+public final class PropertyMapContext {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private Type type;
+    private Map map;
+    private final ConcurrentMap<ConversionUtil.ConversionKey, Object> converted = new ConcurrentHashMap<>();
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    PropertyMapContext(Type type, Map map) {
+        this.type = type;
+        this.map = map;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public
+    //-------------------------------------------------------------
+
+    /**
+     * Get a property of the JSON object, converted to the specified type.
+     *
+     * @param propertyName the name of the property
+     * @param type the type the value is converted to
+     * @return the converted value
+     */
+    public Object getProperty(String propertyName, Type type) {
+        return convertAndMemoize(type, propertyName, map.get(propertyName), converted);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Public - Canonical
+    //-------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "Proxy for type: " + type;
+    }
+}
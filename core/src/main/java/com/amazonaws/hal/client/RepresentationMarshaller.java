@@ -0,0 +1,529 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.hal.JsonPatch;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Marshalls representations to JSON for POST, PUT and PATCH bodies, following the bean conventions of the SDK's
+ * JSONObject: every public getter (getX() or isX()) with a non-null value becomes a property, collections and
+ * arrays become arrays, maps become objects, and other JDK types are written as strings.  Enums are written as
+ * their names.  JsonPatches are marshalled separately, as application/json-patch+json.
+ *
+ * The getters of each class are found once and cached, and the JSON is written straight into a UTF-8 buffer that
+ * is reused by the thread.  The bytes written are the ones sent, so a representation is only serialized once.
+ */
+class RepresentationMarshaller {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Property[] properties;
+
+    private static final ConcurrentMap<Class<?>, RepresentationMarshaller> marshallers = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Utf8Buffer> buffers = new ThreadLocal<>();
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private RepresentationMarshaller(Class<?> beanClass) {
+        List<Property> properties = new ArrayList<>();
+        Method[] methods = beanClass.getClassLoader() != null ? beanClass.getMethods() : beanClass.getDeclaredMethods();
+
+        for (Method method : methods) {
+            String propertyName = getPropertyName(method);
+
+            if (propertyName != null) {
+                method.setAccessible(true);
+                properties.add(new Property(propertyName, method));
+            }
+        }
+
+        Collections.sort(properties, new Comparator<Property>() {
+            @Override
+            public int compare(Property property1, Property property2) {
+                return property1.name.compareTo(property2.name);
+            }
+        });
+
+        this.properties = properties.toArray(new Property[properties.size()]);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * Marshall a representation into the calling thread's buffer.  The buffer is overwritten by the thread's next
+     * call, so its content must have been sent by then.
+     *
+     * @param representation the representation
+     * @return the buffer holding the representation's JSON.
+     */
+    static Utf8Buffer marshall(Object representation) {
+        Utf8Buffer buffer = getBuffer();
+
+        marshall(buffer, representation, true);
+
+        return buffer;
+    }
+
+
+    /**
+     * Marshall a JSON Patch into the calling thread's buffer as an application/json-patch+json array of operations.
+     * Values are marshalled as the properties of representations are.
+     *
+     * @param patch the patch
+     * @return the buffer holding the patch's JSON.
+     */
+    static Utf8Buffer marshallPatch(JsonPatch patch) {
+        Utf8Buffer buffer = getBuffer();
+        boolean first = true;
+
+        buffer.write('[');
+
+        for (JsonPatch.Item patchItem : patch.getPatchItems()) {
+            buffer.writeAscii(first ? "{\"op\":" : ",{\"op\":");
+            buffer.writeString(patchItem.getOp());
+            buffer.writeAscii(",\"path\":");
+            buffer.writeString(patchItem.getPath());
+
+            if (patchItem instanceof JsonPatch.FromItem) {
+                buffer.writeAscii(",\"from\":");
+                buffer.writeString(((JsonPatch.FromItem) patchItem).getFrom());
+            }
+
+            if (patchItem instanceof JsonPatch.ValueItem) {
+                buffer.writeAscii(",\"value\":");
+                marshall(buffer, ((JsonPatch.ValueItem) patchItem).getValue(), false);
+            }
+
+            buffer.write('}');
+            first = false;
+        }
+
+        buffer.write(']');
+
+        return buffer;
+    }
+
+
+    /**
+     * Append an element of an array to a buffer, marshalling it as the elements of collection properties are.
+     *
+     * @param element the element
+     * @param buffer the buffer
+     */
+    static void marshallElement(Object element, Utf8Buffer buffer) {
+        marshall(buffer, element, false);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static Utf8Buffer getBuffer() {
+        Utf8Buffer buffer = buffers.get();
+
+        if (buffer == null || buffer.bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new Utf8Buffer();
+            buffers.set(buffer);
+        }
+
+        buffer.clear();
+
+        return buffer;
+    }
+
+
+    private static void marshall(Utf8Buffer buffer, Object value, boolean topLevel) {
+        try {
+            writeValue(buffer, value, topLevel);
+        } catch (IllegalAccessException e) {
+            throw new AmazonClientException("Unable to marshall representation to JSON: " + e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            throw new AmazonClientException("Unable to marshall representation to JSON: " + e.getTargetException().getMessage(),
+                                            e.getTargetException());
+        }
+    }
+
+
+    private static RepresentationMarshaller getInstance(Class<?> beanClass) {
+        RepresentationMarshaller marshaller = marshallers.get(beanClass);
+
+        if (marshaller == null) {
+            marshaller = new RepresentationMarshaller(beanClass);
+
+            RepresentationMarshaller existingMarshaller = marshallers.putIfAbsent(beanClass, marshaller);
+
+            if (existingMarshaller != null) {
+                marshaller = existingMarshaller;
+            }
+        }
+
+        return marshaller;
+    }
+
+
+    /**
+     * @return the property name of a bean getter, or null if the method is not one.
+     */
+    private static String getPropertyName(Method method) {
+        String name = method.getName();
+        String key;
+
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())
+            || method.getParameterTypes().length != 0 || method.getReturnType() == void.class) {
+            return null;
+        } else if (name.startsWith("get") && !name.equals("getClass") && !name.equals("getDeclaringClass")) {
+            key = name.substring(3);
+        } else if (name.startsWith("is")) {
+            key = name.substring(2);
+        } else {
+            return null;
+        }
+
+        if (key.isEmpty() || !Character.isUpperCase(key.charAt(0))) {
+            return null;
+        } else if (key.length() == 1) {
+            return key.toLowerCase();
+        } else if (!Character.isUpperCase(key.charAt(1))) {
+            return Character.toLowerCase(key.charAt(0)) + key.substring(1);
+        }
+
+        return key;
+    }
+
+
+    /**
+     * @param topLevel true for the representation itself, which is always written as an object or array, as
+     *                 JSONObject did
+     */
+    private static void writeValue(Utf8Buffer buffer, Object value, boolean topLevel)
+            throws IllegalAccessException, InvocationTargetException {
+        if (value == null) {
+            buffer.writeAscii("null");
+        } else if (value instanceof String || value instanceof Character) {
+            buffer.writeString(value.toString());
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                   || value instanceof Boolean) {
+            buffer.writeAscii(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                throw new AmazonClientException("Unable to marshall representation to JSON: JSON does not allow non-finite numbers.");
+            }
+
+            buffer.writeAscii(value.toString());
+        } else if (value instanceof Map) {
+            writeMap(buffer, (Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            writeCollection(buffer, (Collection<?>) value);
+        } else if (value.getClass().isArray()) {
+            writeArray(buffer, value);
+        } else if (value instanceof Enum && !topLevel) {
+            buffer.writeString(((Enum<?>) value).name());
+        } else if (!topLevel && isJdkClass(value.getClass())) {
+            buffer.writeString(value.toString());
+        } else {
+            getInstance(value.getClass()).writeBean(buffer, value);
+        }
+    }
+
+
+    private static boolean isJdkClass(Class<?> valueClass) {
+        String className = valueClass.getName();
+
+        return valueClass.getClassLoader() == null || className.startsWith("java.") || className.startsWith("javax.");
+    }
+
+
+    private static void writeMap(Utf8Buffer buffer, Map<?, ?> map)
+            throws IllegalAccessException, InvocationTargetException {
+        boolean first = true;
+
+        buffer.write('{');
+
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+
+            if (!first) {
+                buffer.write(',');
+            }
+
+            buffer.writeString(entry.getKey().toString());
+            buffer.write(':');
+            writeValue(buffer, entry.getValue(), false);
+            first = false;
+        }
+
+        buffer.write('}');
+    }
+
+
+    private static void writeCollection(Utf8Buffer buffer, Collection<?> collection)
+            throws IllegalAccessException, InvocationTargetException {
+        boolean first = true;
+
+        buffer.write('[');
+
+        for (Object element : collection) {
+            if (!first) {
+                buffer.write(',');
+            }
+
+            writeValue(buffer, element, false);
+            first = false;
+        }
+
+        buffer.write(']');
+    }
+
+
+    private static void writeArray(Utf8Buffer buffer, Object array)
+            throws IllegalAccessException, InvocationTargetException {
+        int length = Array.getLength(array);
+
+        buffer.write('[');
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                buffer.write(',');
+            }
+
+            writeValue(buffer, Array.get(array, i), false);
+        }
+
+        buffer.write(']');
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void writeBean(Utf8Buffer buffer, Object bean)
+            throws IllegalAccessException, InvocationTargetException {
+        boolean first = true;
+
+        buffer.write('{');
+
+        for (Property property : properties) {
+            Object value = property.getter.invoke(bean);
+
+            if (value == null) {
+                continue;
+            }
+
+            if (!first) {
+                buffer.write(',');
+            }
+
+            buffer.write(property.encodedName, 0, property.encodedName.length);
+            writeValue(buffer, value, false);
+            first = false;
+        }
+
+        buffer.write('}');
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class Property {
+        private final String name;
+        private final Method getter;
+        private final byte[] encodedName;
+
+
+        private Property(String name, Method getter) {
+            Utf8Buffer buffer = new Utf8Buffer();
+
+            buffer.writeString(name);
+            buffer.write(':');
+
+            this.name = name;
+            this.getter = getter;
+            this.encodedName = buffer.toByteArray();
+        }
+    }
+
+
+    /**
+     * A growable byte buffer that encodes JSON text as UTF-8 as it is written.
+     */
+    static final class Utf8Buffer {
+        private byte[] bytes = new byte[INITIAL_SIZE];
+        private int length;
+
+        private static final int INITIAL_SIZE = 4 * 1024;
+
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+
+        int getLength() {
+            return length;
+        }
+
+
+        byte[] toByteArray() {
+            byte[] copy = new byte[length];
+
+            System.arraycopy(bytes, 0, copy, 0, length);
+
+            return copy;
+        }
+
+
+        private void ensureCapacity(int additional) {
+            if (length + additional > bytes.length) {
+                byte[] newBytes = new byte[Math.max(bytes.length * 2, length + additional)];
+
+                System.arraycopy(bytes, 0, newBytes, 0, length);
+                bytes = newBytes;
+            }
+        }
+
+
+        void clear() {
+            length = 0;
+        }
+
+
+        void write(int b) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) b;
+        }
+
+
+        private void write(byte[] source, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+
+        private void writeAscii(String value) {
+            ensureCapacity(value.length());
+
+            for (int i = 0; i < value.length(); i++) {
+                bytes[length++] = (byte) value.charAt(i);
+            }
+        }
+
+
+        private void writeString(String value) {
+            // Quotes, escapes and the longest UTF-8 encoding of every char
+            ensureCapacity(value.length() * 6 + 2);
+
+            bytes[length++] = '"';
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+
+                if (c == '"' || c == '\\') {
+                    bytes[length++] = '\\';
+                    bytes[length++] = (byte) c;
+                } else if (c >= 0x20 && c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x20) {
+                    writeEscape(c);
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xc0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                    bytes[length++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates can't be encoded; String.getBytes() substitutes them the same way
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xe0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+
+            bytes[length++] = '"';
+        }
+
+
+        private void writeEscape(char c) {
+            bytes[length++] = '\\';
+
+            switch (c) {
+            case '\b':
+                bytes[length++] = 'b';
+                break;
+            case '\t':
+                bytes[length++] = 't';
+                break;
+            case '\n':
+                bytes[length++] = 'n';
+                break;
+            case '\f':
+                bytes[length++] = 'f';
+                break;
+            case '\r':
+                bytes[length++] = 'r';
+                break;
+            default:
+                bytes[length++] = 'u';
+                bytes[length++] = '0';
+                bytes[length++] = '0';
+                bytes[length++] = HEX[c >> 4];
+                bytes[length++] = HEX[c & 0xf];
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A budget for extra requests, such as retries or hedges, that keeps them a bounded share of the requests made.
+ * Every request adds a fraction of an extra request to the budget, up to a maximum, and every extra request takes a
+ * whole one out.  The budget starts full, so a burst of up to the maximum is allowed at once.
+ *
+ * The budget is kept in thousandths of a request, so no floating point arithmetic is done on the request path.
+ */
+class RequestBudget {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    private static final long REQUEST_COST = 1000;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    /**
+     * @param ratio the fraction of an extra request each request adds, which is the long-run ratio of extra requests
+     *              to requests
+     * @param maxRequests the number of extra requests the budget can hold
+     */
+    RequestBudget(double ratio, int maxRequests) {
+        this.deposit = Math.round(ratio * REQUEST_COST);
+        this.maxBalance = maxRequests * REQUEST_COST;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * A request is being made; add its share to the budget.
+     */
+    void deposit() {
+        long current;
+
+        do {
+            current = balance.get();
+
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+    }
+
+
+    /**
+     * @return true if the budget allows an extra request, which is then taken out of it.
+     */
+    boolean withdraw() {
+        long current;
+
+        do {
+            current = balance.get();
+
+            if (current < REQUEST_COST) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - REQUEST_COST));
+
+        return true;
+    }
+}
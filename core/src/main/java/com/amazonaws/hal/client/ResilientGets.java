@@ -0,0 +1,203 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.hal.ResiliencePolicy;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The retry state of a HalClient's GETs under a ResiliencePolicy: which failures are retried, how long to back off,
+ * the retry budget shared by all GETs, and whether a stale version of a resource may stand in for an error.
+ *
+ * GETs sent through AmazonHttpClient back off on the calling thread.  GETs sent through a HalTransport are retried
+ * by a thread of their own once the backoff expires, so neither the caller nor the transport's threads wait it out.
+ */
+class ResilientGets {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxStalenessNanos;
+    private final RequestBudget budget;
+    private ScheduledExecutorService retryExecutor;                 // Created when a retry is first scheduled
+    private boolean shutdown;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    ResilientGets(ResiliencePolicy policy) {
+        this.maxRetries = policy.getMaxRetries();
+        this.baseBackoffMillis = policy.getBaseBackoffMillis();
+        this.maxBackoffMillis = policy.getMaxBackoffMillis();
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(policy.getMaxStalenessMillis());
+        this.budget = new RequestBudget(policy.getRetryBudgetRatio(), policy.getMaxRetryBudget());
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * A GET is about to be sent for the first time; add its share to the retry budget.
+     */
+    void started() {
+        budget.deposit();
+    }
+
+
+    /**
+     * Decide whether to retry a failed GET and, if so, how long to back off first.
+     *
+     * @param e the reason the GET failed
+     * @param retries the number of times the GET was already retried
+     * @return the backoff in milliseconds, or -1 if the GET should not be sent again.
+     */
+    long getRetryDelay(Exception e, int retries) {
+        if (!isRetryable(e) || retries >= maxRetries || !budget.withdraw()) {
+            return -1;
+        }
+
+        long backoff = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(retries, 30));
+
+        return backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+    }
+
+
+    /**
+     * @param attemptTimeoutMillis how long one attempt at a GET can take, or 0 if it is not bounded
+     * @return how long a GET can take with all of its retries and backoffs, or 0 if it is not bounded.
+     */
+    long getTimeoutMillis(long attemptTimeoutMillis) {
+        if (attemptTimeoutMillis <= 0) {
+            return 0;
+        }
+
+        return attemptTimeoutMillis * (maxRetries + 1) + maxBackoffMillis * maxRetries;
+    }
+
+
+    /**
+     * Decide whether to retry a failed GET and, if so, back off on the calling thread before returning.
+     *
+     * @param e the reason the GET failed
+     * @param retries the number of times the GET was already retried
+     * @return true if the GET should be sent again.
+     */
+    boolean retry(Exception e, int retries) {
+        long delay = getRetryDelay(e, retries);
+
+        if (delay < 0) {
+            return false;
+        }
+
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Send a retry once its backoff expires, on the retry thread.
+     *
+     * @param retry sends the GET again
+     * @param delayMillis the backoff
+     * @return false if the retry can't be scheduled because the policy was replaced or the client shut down.
+     */
+    synchronized boolean schedule(Runnable retry, long delayMillis) {
+        if (shutdown) {
+            return false;
+        }
+
+        if (retryExecutor == null) {
+            retryExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hal-retry"));
+        }
+
+        try {
+            retryExecutor.schedule(retry, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * @return true if the failure is one a stale version may be returned for, and the stale version is recent enough.
+     */
+    boolean canServeStale(Exception e, HalResource staleResource) {
+        return staleResource != null && staleResource.isDefined() && isRetryable(e)
+               && System.nanoTime() - staleResource.getValidatedNanos() <= maxStalenessNanos;
+    }
+
+
+    /**
+     * Stop accepting retries.  Those already scheduled are still sent, so the GETs waiting on them complete.
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+
+        if (retryExecutor != null) {
+            retryExecutor.shutdown();
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @return true for server errors, and for I/O failures such as refused connections and timeouts.
+     */
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof AmazonServiceException) {
+            return ((AmazonServiceException) e).getStatusCode() >= 500;
+        }
+
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Which cached or pinned resources embed, or link to, which hrefs, so a write to a resource can invalidate exactly the
+ * resources that show it.  A resource is indexed when a representation of it is retrieved or received while it is
+ * cached or pinned, and its entries are replaced each time.
+ *
+ * The resource cache may evict entries without telling the index, so it can hold resources that are no longer kept.
+ * They are dropped when one of their hrefs is written, and the whole index is swept once as many resources have been
+ * indexed as it held after the last sweep, so it stays proportional to the cache at a constant amortized cost.
+ */
+class ResourceDependencyIndex {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Map<String, Object> resourceCache;
+    private final PinnedResourceRegistry pinnedResources;
+    private final Map<String, Set<String>> embeddingPaths = new HashMap<>();
+    private final Map<String, Set<String>> linkingPaths = new HashMap<>();
+    private final Map<String, Dependencies> dependencies = new HashMap<>();     // Map of resource path to its hrefs
+    private int addsUntilSweep = MIN_SWEEP_INTERVAL;
+
+    private static final int MIN_SWEEP_INTERVAL = 1024;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    ResourceDependencyIndex(Map<String, Object> resourceCache, PinnedResourceRegistry pinnedResources) {
+        this.resourceCache = resourceCache;
+        this.pinnedResources = pinnedResources;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Record the hrefs a representation of a resource embeds (at any depth) and links to, in place of those of its
+     * previous representation.  The resource's own href and templated links are not recorded.  Nothing is recorded
+     * for a resource that is neither cached nor pinned.
+     *
+     * @param resourcePath the path of the resource
+     * @param halResource the representation, or null if it is not known
+     */
+    synchronized void add(String resourcePath, HalResource halResource) {
+        if (halResource == null || !isKept(resourcePath)) {
+            return;
+        }
+
+        Dependencies resourceDependencies = new Dependencies();
+
+        addEmbedded(resourcePath, halResource, resourceDependencies.embedded);
+
+        for (HalLink halLink : halResource.getLinks().values()) {
+            if (!halLink.isTemplated() && halLink.getHref() != null && !halLink.getHref().equals(resourcePath)) {
+                resourceDependencies.linked.add(halLink.getHref());
+            }
+        }
+
+        removeResource(resourcePath);
+
+        if (!resourceDependencies.isEmpty()) {
+            dependencies.put(resourcePath, resourceDependencies);
+            addDependents(embeddingPaths, resourceDependencies.embedded, resourcePath);
+            addDependents(linkingPaths, resourceDependencies.linked, resourcePath);
+        }
+
+        if (--addsUntilSweep <= 0) {
+            sweep();
+        }
+    }
+
+
+    /**
+     * @return the paths of the resources that were indexed with an embedded copy of the href.
+     */
+    synchronized List<String> getEmbeddingPaths(String href) {
+        return getDependents(embeddingPaths, href);
+    }
+
+
+    /**
+     * @return the paths of the resources that were indexed with a link to the href.
+     */
+    synchronized List<String> getLinkingPaths(String href) {
+        return getDependents(linkingPaths, href);
+    }
+
+
+    /**
+     * Forget that a resource embeds, or if links is true embeds or links to, an href, because its current snapshots
+     * no longer do.
+     */
+    synchronized void remove(String href, String resourcePath, boolean links) {
+        Dependencies resourceDependencies = dependencies.get(resourcePath);
+
+        if (resourceDependencies == null) {
+            return;
+        }
+
+        removeDependent(embeddingPaths, href, resourcePath);
+        resourceDependencies.embedded.remove(href);
+
+        if (links) {
+            removeDependent(linkingPaths, href, resourcePath);
+            resourceDependencies.linked.remove(href);
+        }
+
+        if (resourceDependencies.isEmpty()) {
+            dependencies.remove(resourcePath);
+        }
+    }
+
+
+    /**
+     * Forget a resource if it is no longer cached or pinned.
+     */
+    synchronized void prune(String resourcePath) {
+        if (!isKept(resourcePath)) {
+            removeResource(resourcePath);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @param halResource a snapshot of a resource
+     * @param href an href
+     * @param links true to check the snapshot's links as well as its embedded resources
+     * @return true if the snapshot embeds (at any depth), or if requested links to, the href.
+     */
+    static boolean refersTo(HalResource halResource, String href, boolean links) {
+        if (links) {
+            for (HalLink halLink : halResource.getLinks().values()) {
+                if (href.equals(halLink.getHref())) {
+                    return true;
+                }
+            }
+        }
+
+        for (Map.Entry<String, HalResource> entry : halResource.getEmbedded().entrySet()) {
+            if (href.equals(entry.getKey()) || refersTo(entry.getValue(), href, false)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private boolean isKept(String resourcePath) {
+        return resourceCache.containsKey(resourcePath) || pinnedResources.getContext(resourcePath) != null;
+    }
+
+
+    private void removeResource(String resourcePath) {
+        Dependencies resourceDependencies = dependencies.remove(resourcePath);
+
+        if (resourceDependencies != null) {
+            for (String href : resourceDependencies.embedded) {
+                removeDependent(embeddingPaths, href, resourcePath);
+            }
+
+            for (String href : resourceDependencies.linked) {
+                removeDependent(linkingPaths, href, resourcePath);
+            }
+        }
+    }
+
+
+    private void sweep() {
+        for (String resourcePath : new ArrayList<>(dependencies.keySet())) {
+            prune(resourcePath);
+        }
+
+        addsUntilSweep = Math.max(MIN_SWEEP_INTERVAL, dependencies.size());
+    }
+
+
+    private void addEmbedded(String resourcePath, HalResource halResource, Set<String> hrefs) {
+        for (Map.Entry<String, HalResource> entry : halResource.getEmbedded().entrySet()) {
+            // Embedded resources without a self link can't be written, so they are not indexed.
+            if (entry.getKey() != null && !entry.getKey().equals(resourcePath)) {
+                hrefs.add(entry.getKey());
+            }
+
+            addEmbedded(resourcePath, entry.getValue(), hrefs);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static void addDependents(Map<String, Set<String>> dependents, Collection<String> hrefs, String resourcePath) {
+        for (String href : hrefs) {
+            Set<String> paths = dependents.get(href);
+
+            if (paths == null) {
+                dependents.put(href, paths = new HashSet<>());
+            }
+
+            paths.add(resourcePath);
+        }
+    }
+
+
+    private static List<String> getDependents(Map<String, Set<String>> dependents, String href) {
+        Set<String> paths = dependents.get(href);
+
+        return paths == null ? Collections.<String>emptyList() : new ArrayList<>(paths);
+    }
+
+
+    private static void removeDependent(Map<String, Set<String>> dependents, String href, String resourcePath) {
+        Set<String> paths = dependents.get(href);
+
+        if (paths != null && paths.remove(resourcePath) && paths.isEmpty()) {
+            dependents.remove(href);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class Dependencies {
+        private final Set<String> embedded = new HashSet<>();
+        private final Set<String> linked = new HashSet<>();
+
+
+        private boolean isEmpty() {
+            return embedded.isEmpty() && linked.isEmpty();
+        }
+    }
+}
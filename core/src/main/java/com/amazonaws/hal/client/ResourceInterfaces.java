@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.ResourceInfo;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Creates the instances of resource and value interfaces that are backed by dynamic proxies, and prepares the graph
+ * of interfaces reachable from a root resource interface ahead of use.
+ */
+class ResourceInterfaces {
+
+    //-------------------------------------------------------------
+    // Variables - Private - Static
+    //-------------------------------------------------------------
+
+    private static final ConcurrentMap<Class<?>, Constructor<?>> proxyConstructors = new ConcurrentHashMap<>();
+
+    // Backs the throwaway instance created to find a proxy class, which is never invoked
+    private static final InvocationHandler UNUSED_HANDLER = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private ResourceInterfaces() {
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    static <T> T newProxyInstance(Class<T> interfaceClass, InvocationHandler invocationHandler) {
+        try {
+            return interfaceClass.cast(getProxyConstructor(interfaceClass).newInstance(invocationHandler));
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getTargetException());
+        }
+    }
+
+
+    /**
+     * Walk the resource interfaces reachable from the root through @Link return types, and the value interfaces
+     * reachable through property getters.  For each interface, the dispatch information of every method is computed
+     * and the implementation (generated or proxy) is resolved, so none of this happens on the first request.
+     *
+     * @param rootClass the root resource interface
+     * @return the problems found with the interfaces' declarations, or an empty list if there are none.
+     */
+    static List<String> prepare(Class<?> rootClass) {
+        Set<String> problems = new LinkedHashSet<>();
+        Set<Class<?>> visitedResourceClasses = new HashSet<>();
+        Set<Class<?>> visitedValueClasses = new HashSet<>();
+        Deque<Class<?>> resourceClasses = new ArrayDeque<>();
+        Deque<Class<?>> valueClasses = new ArrayDeque<>();
+
+        resourceClasses.add(rootClass);
+
+        while (!resourceClasses.isEmpty() || !valueClasses.isEmpty()) {
+            boolean resource = !resourceClasses.isEmpty();
+            Class<?> interfaceClass = resource ? resourceClasses.remove() : valueClasses.remove();
+            Set<Class<?>> visited = resource ? visitedResourceClasses : visitedValueClasses;
+
+            if (interfaceClass == ResourceInfo.class || !visited.add(interfaceClass)) {
+                continue;
+            }
+
+            if (!interfaceClass.isInterface()) {
+                problems.add(interfaceClass.getName() + ": resources must be described by interfaces.");
+
+                continue;
+            }
+
+            if (GeneratedResourceFactories.getFactory(interfaceClass) == null) {
+                getProxyConstructor(interfaceClass);
+            }
+
+            for (Method method : interfaceClass.getMethods()) {
+                ResourceMethod resourceMethod = ResourceMethod.getInstance(method);
+
+                problems.addAll(resourceMethod.getProblems());
+
+                switch (resourceMethod.getKind()) {
+                case LINK:
+                case LINK_LIST:
+                case LINK_MAP:
+                    if (!resource) {
+                        problems.add(method.getDeclaringClass().getName() + "." + method.getName()
+                                     + "(): links are only supported on resource interfaces.");
+                    } else if (resourceMethod.getResourceClass() != null && resourceMethod.getResourceClass().isInterface()) {
+                        resourceClasses.add(resourceMethod.getResourceClass());
+                    }
+                    break;
+
+                case PROPERTY:
+                    addValueClasses(resourceMethod.getPropertyType(), valueClasses);
+                    break;
+
+                default:
+                    break;
+                }
+            }
+        }
+
+        return new ArrayList<>(problems);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static Constructor<?> getProxyConstructor(Class<?> interfaceClass) {
+        Constructor<?> constructor = proxyConstructors.get(interfaceClass);
+
+        if (constructor == null) {
+            try {
+                constructor = Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[] { interfaceClass },
+                                                     UNUSED_HANDLER)
+                                   .getClass().getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+
+            proxyConstructors.putIfAbsent(interfaceClass, constructor);
+        }
+
+        return constructor;
+    }
+
+
+    private static void addValueClasses(Type type, Deque<Class<?>> valueClasses) {
+        if (type instanceof ParameterizedType) {
+            for (Type typeArgument : ((ParameterizedType) type).getActualTypeArguments()) {
+                addValueClasses(typeArgument, valueClasses);
+            }
+        } else if (type instanceof Class && ((Class<?>) type).isInterface()) {
+            String className = ((Class<?>) type).getName();
+
+            if (!className.startsWith("java.") && !className.startsWith("javax.")) {
+                valueClasses.add((Class<?>) type);
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.Link;
+import com.amazonaws.hal.ResourceInfo;
+import com.amazonaws.hal.UriValue;
+import com.amazonaws.hal.UriVariable;
+import com.amazonaws.http.HttpMethodName;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.amazonaws.hal.client.ConversionUtil.getCollectionType;
+
+
+/**
+ * The dispatch information for a method of a resource or value interface: what kind of call it is, and everything
+ * derived from its signature and annotations that is needed to make the call.  ResourceMethods are computed once
+ * per Method and cached, so reflection and annotation parsing stay off the request path.
+ *
+ * Problems with the method's declaration are recorded rather than thrown, so they can be reported together when
+ * the interfaces are prepared.
+ */
+class ResourceMethod {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Method method;
+    private Kind kind;
+    private Method resourceInfoMethod;
+    private Link link;
+    private Class<?> resourceClass;
+    private String propertyName;
+    private Type propertyType;
+    private String[] variableNames;
+    private int[] variableIndexes;
+    private Object[] variableValues;
+    private final List<String> problems = new ArrayList<>();
+
+    private static final ConcurrentMap<Method, ResourceMethod> resourceMethods = new ConcurrentHashMap<>();
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private ResourceMethod(Method method) {
+        this.method = method;
+
+        try {
+            resourceInfoMethod = ResourceInfo.class.getMethod(method.getName(), method.getParameterTypes());
+            kind = Kind.RESOURCE_INFO;
+
+            return;
+        } catch (NoSuchMethodException ignore) {
+            // If the method is not defined in ResourceInfo, it is classified below
+        }
+
+        int parameterCount = method.getParameterTypes().length;
+
+        if ((link = method.getAnnotation(Link.class)) != null) {
+            initializeLink();
+        } else if (method.getName().startsWith("get")) {
+            kind = Kind.PROPERTY;
+            propertyName = ConversionUtil.getPropertyName(method.getName());
+            propertyType = method.getGenericReturnType();
+
+            if (parameterCount != 0) {
+                addProblem("property getters can't take arguments.");
+            }
+        } else if (method.getName().equals("toString") && parameterCount == 0) {
+            kind = Kind.TO_STRING;
+        } else if (method.getName().equals("equals") && parameterCount == 1) {
+            kind = Kind.EQUALS;
+        } else if (method.getName().equals("hashCode") && parameterCount == 0) {
+            kind = Kind.HASH_CODE;
+        } else {
+            kind = Kind.UNSUPPORTED;
+
+            addProblem("methods must be getters or be annotated with @Link.");
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    static ResourceMethod getInstance(Method method) {
+        ResourceMethod resourceMethod = resourceMethods.get(method);
+
+        if (resourceMethod == null) {
+            resourceMethod = new ResourceMethod(method);
+
+            ResourceMethod existingResourceMethod = resourceMethods.putIfAbsent(method, resourceMethod);
+
+            if (existingResourceMethod != null) {
+                resourceMethod = existingResourceMethod;
+            }
+        }
+
+        return resourceMethod;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Getter/Setter
+    //-------------------------------------------------------------
+
+    Method getMethod() {
+        return method;
+    }
+
+
+    Kind getKind() {
+        return kind;
+    }
+
+
+    Method getResourceInfoMethod() {
+        return resourceInfoMethod;
+    }
+
+
+    Link getLink() {
+        return link;
+    }
+
+
+    /**
+     * @return the resource interface returned by a link, or the element type for LINK_LIST and LINK_MAP.
+     */
+    Class<?> getResourceClass() {
+        return resourceClass;
+    }
+
+
+    String getPropertyName() {
+        return propertyName;
+    }
+
+
+    Type getPropertyType() {
+        return propertyType;
+    }
+
+
+    String[] getVariableNames() {
+        return variableNames;
+    }
+
+
+    List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * @param args the arguments the method was invoked with
+     * @return the URI template values, in the same order as getVariableNames().
+     */
+    Object[] getVariableValues(Object[] args) {
+        Object[] values = variableValues.clone();
+
+        for (int i = 0; i < variableIndexes.length; i++) {
+            if (variableIndexes[i] >= 0) {
+                values[i] = args[variableIndexes[i]];
+            }
+        }
+
+        return values;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void initializeLink() {
+        Class<?> returnType = method.getReturnType();
+        HttpMethodName httpMethod = link.method();
+
+        if (httpMethod == HttpMethodName.GET && List.class.isAssignableFrom(returnType)) {
+            kind = Kind.LINK_LIST;
+            resourceClass = getResourceClass(getCollectionType(method.getGenericReturnType(), 0, ResourceInfo.class));
+        } else if (httpMethod == HttpMethodName.GET && Map.class.isAssignableFrom(returnType)) {
+            kind = Kind.LINK_MAP;
+            resourceClass = getResourceClass(getCollectionType(method.getGenericReturnType(), 1, ResourceInfo.class));
+        } else {
+            kind = Kind.LINK;
+            resourceClass = returnType;
+
+            if (returnType != void.class && returnType != Void.class && !returnType.isInterface()) {
+                addProblem("links must return a resource interface, a List or Map of resource interfaces, or void.");
+            }
+        }
+
+        // The first argument of a POST, PUT or PATCH is the representation, the others are URI template values.
+        int firstVariableIndex = 0;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+
+        if (httpMethod == HttpMethodName.POST || httpMethod == HttpMethodName.PUT || httpMethod == HttpMethodName.PATCH) {
+            firstVariableIndex = 1;
+
+            if (parameterTypes.length == 0) {
+                addProblem(httpMethod + " operations require a representation argument.");
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            boolean annotated = false;
+
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation.annotationType() == UriVariable.class) {
+                    names.add(((UriVariable) annotation).name());
+                    indexes.add(i);
+                    values.add(null);
+                    annotated = true;
+                }
+            }
+
+            if (!annotated && i >= firstVariableIndex) {
+                addProblem("argument " + i + " is not annotated with @UriVariable.");
+            }
+        }
+
+        for (UriValue uriValue : link.uriValues()) {
+            names.add(uriValue.name());
+            indexes.add(-1);
+            values.add(uriValue.value());
+        }
+
+        variableNames = names.toArray(new String[names.size()]);
+        variableIndexes = new int[indexes.size()];
+        variableValues = values.toArray();
+
+        for (int i = 0; i < variableIndexes.length; i++) {
+            variableIndexes[i] = indexes.get(i);
+        }
+    }
+
+
+    private Class<?> getResourceClass(Type elementType) {
+        if (elementType instanceof Class && ((Class<?>) elementType).isInterface()) {
+            return (Class<?>) elementType;
+        }
+
+        addProblem("the elements of linked collections must be resource interfaces, not " + elementType + ".");
+
+        return null;
+    }
+
+
+    private void addProblem(String problem) {
+        problems.add(method.getDeclaringClass().getName() + "." + method.getName() + "(): " + problem);
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    enum Kind {
+        RESOURCE_INFO,
+        LINK,
+        LINK_LIST,
+        LINK_MAP,
+        PROPERTY,
+        TO_STRING,
+        EQUALS,
+        HASH_CODE,
+        UNSUPPORTED
+    }
+}
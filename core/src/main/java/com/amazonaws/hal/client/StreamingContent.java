@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Iterator;
+
+
+/**
+ * The body of a request whose representation is too large to marshall in memory.  The elements of an Iterable,
+ * Iterator or Stream are marshalled one at a time as the body is read, and written as a JSON array, so only one
+ * element is held as JSON at any time.  InputStream representations are sent as they are, and must contain JSON.
+ *
+ * Bodies backed by an Iterable support mark() and reset() by iterating again, so they can be signed and retried
+ * without being buffered.  Iterators, Streams and InputStreams can only be read once.
+ */
+class StreamingContent extends InputStream {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Iterable<?> elements;
+    private final AutoCloseable source;
+    private Iterator<?> iterator;
+    private final RepresentationMarshaller.Utf8Buffer buffer = new RepresentationMarshaller.Utf8Buffer();
+    private int bufferPosition;
+    private boolean started;
+    private boolean finished;
+    private boolean first = true;
+    private long position;
+    private long markPosition;
+
+    private static final Class<?> BASE_STREAM_CLASS = loadClass("java.util.stream.BaseStream");
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    private StreamingContent(Iterable<?> elements, Iterator<?> iterator, AutoCloseable source) {
+        this.elements = elements;
+        this.iterator = iterator;
+        this.source = source;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package - Static
+    //-------------------------------------------------------------
+
+    /**
+     * @return true if the representation is sent as a stream rather than marshalled in memory.  Collections are
+     *         already held in memory, so they are marshalled as before.
+     */
+    static boolean isStreamed(Object representation) {
+        return representation instanceof InputStream || representation instanceof Iterator
+               || (representation instanceof Iterable && !(representation instanceof Collection))
+               || (BASE_STREAM_CLASS != null && BASE_STREAM_CLASS.isInstance(representation));
+    }
+
+
+    /**
+     * @param representation a representation for which isStreamed() is true
+     * @return the request body for the representation.
+     */
+    static InputStream of(Object representation) {
+        if (representation instanceof InputStream) {
+            return (InputStream) representation;
+        } else if (representation instanceof Iterator) {
+            return new StreamingContent(null, (Iterator<?>) representation, null);
+        } else if (representation instanceof Iterable) {
+            return new StreamingContent((Iterable<?>) representation, null, null);
+        }
+
+        // Streams are Java 8 classes, so they are iterated reflectively
+        try {
+            Iterator<?> iterator = (Iterator<?>) BASE_STREAM_CLASS.getMethod("iterator").invoke(representation);
+
+            return new StreamingContent(null, iterator, (AutoCloseable) representation);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getTargetException());
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Static
+    //-------------------------------------------------------------
+
+    private static Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - InputStream
+    //-------------------------------------------------------------
+
+    @Override
+    public int read()
+            throws IOException {
+        byte[] single = new byte[1];
+
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+
+    @Override
+    public int read(byte[] destination, int offset, int length)
+            throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (bufferPosition == buffer.getLength()) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+
+        int count = Math.min(length, buffer.getLength() - bufferPosition);
+
+        System.arraycopy(buffer.getBytes(), bufferPosition, destination, offset, count);
+        bufferPosition += count;
+        position += count;
+
+        return count;
+    }
+
+
+    @Override
+    public boolean markSupported() {
+        return elements != null;
+    }
+
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        markPosition = position;
+    }
+
+
+    /**
+     * Start marshalling the elements again, from a new iterator, and skip to the marked position.
+     */
+    @Override
+    public synchronized void reset()
+            throws IOException {
+        if (elements == null) {
+            throw new IOException("The representation can only be read once.");
+        }
+
+        iterator = null;
+        started = false;
+        finished = false;
+        first = true;
+        buffer.clear();
+        bufferPosition = 0;
+        position = 0;
+
+        long skipped = 0;
+
+        while (skipped < markPosition) {
+            long count = skip(markPosition - skipped);
+
+            if (count <= 0) {
+                throw new IOException("The representation changed since it was marked.");
+            }
+
+            skipped += count;
+        }
+    }
+
+
+    @Override
+    public void close()
+            throws IOException {
+        if (source == null) {
+            return;
+        }
+
+        try {
+            source.close();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    /**
+     * Marshall the next piece of the array into the buffer.
+     *
+     * @return false at the end of the array.
+     */
+    private boolean fill() {
+        if (finished) {
+            return false;
+        }
+
+        buffer.clear();
+        bufferPosition = 0;
+
+        if (!started) {
+            if (elements != null) {
+                iterator = elements.iterator();
+            }
+
+            buffer.write('[');
+            started = true;
+        } else if (iterator.hasNext()) {
+            if (!first) {
+                buffer.write(',');
+            }
+
+            RepresentationMarshaller.marshallElement(iterator.next(), buffer);
+            first = false;
+        } else {
+            buffer.write(']');
+            finished = true;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+
+/**
+ * Turns the raw response received from a HalTransport into a result or an exception, the way AmazonHttpClient does
+ * for the blocking path: successful responses go to the response handler, others to the error response handler,
+ * and the client's request handlers are told about the outcome.
+ *
+ * @param <T> The type of the result.
+ */
+class TransportResponseHandler<T>
+        implements HalTransport.Callback, HalTransport.Cancellable {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final Request<?> request;
+    private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+    private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+    private final List<RequestHandler2> requestHandlers;
+    private final HalCallback<T> callback;
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    TransportResponseHandler(Request<?> request,
+                             HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                             HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                             List<RequestHandler2> requestHandlers,
+                             HalCallback<T> callback) {
+        this.request = request;
+        this.responseHandler = responseHandler;
+        this.errorResponseHandler = errorResponseHandler;
+        this.requestHandlers = requestHandlers;
+        this.callback = callback;
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HalTransport.Cancellable
+    //-------------------------------------------------------------
+
+    @Override
+    public boolean isCancelled() {
+        return callback instanceof HalTransport.Cancellable && ((HalTransport.Cancellable) callback).isCancelled();
+    }
+
+
+    //-------------------------------------------------------------
+    // Implementation - HalTransport.Callback
+    //-------------------------------------------------------------
+
+    @Override
+    public void completed(HttpResponse httpResponse) {
+        int statusCode = httpResponse.getStatusCode();
+
+        // Nobody wants the result any more, so don't spend time unmarshalling it.
+        if (isCancelled()) {
+            callback.onError(new CancellationException("The request was cancelled."));
+
+            return;
+        }
+
+        if (statusCode >= 200 && statusCode < 300) {
+            T result;
+
+            try {
+                AmazonWebServiceResponse<T> awsResponse = responseHandler.handle(httpResponse);
+
+                if (awsResponse == null) {
+                    throw new RuntimeException("Unable to unmarshall response metadata.");
+                }
+
+                result = awsResponse.getResult();
+            } catch (Exception e) {
+                failed(new AmazonClientException("Unable to unmarshall response (" + e.getMessage() + ").", e), null);
+
+                return;
+            }
+
+            for (RequestHandler2 requestHandler : requestHandlers) {
+                requestHandler.afterResponse(request, new Response<>(result, httpResponse));
+            }
+
+            callback.onSuccess(result);
+        } else {
+            AmazonServiceException exception;
+
+            try {
+                exception = errorResponseHandler.handle(httpResponse);
+            } catch (Exception e) {
+                failed(new AmazonClientException("Unable to unmarshall error response (" + e.getMessage() + ").", e), null);
+
+                return;
+            }
+
+            exception.setStatusCode(statusCode);
+
+            failed(exception, new Response<>(null, httpResponse));
+        }
+    }
+
+
+    @Override
+    public void failed(Exception e) {
+        failed(new AmazonClientException("Unable to execute HTTP request: " + e.getMessage(), e), null);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void failed(AmazonClientException exception, Response<?> response) {
+        for (RequestHandler2 requestHandler : requestHandlers) {
+            requestHandler.afterError(request, response, exception);
+        }
+
+        callback.onError(exception);
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.JsonPatch;
+import com.amazonaws.hal.WriteBehind;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The writes a HalClient holds back in write-behind mode, at most one per resource path.  A write to a path that
+ * already has one queued is merged into it, so a burst of writes to the same resource is sent as a single request
+ * (or a PUT followed by a PATCH, if a patch can't be applied to the queued PUT).
+ *
+ * Queued writes are flushed by a fixed pool of threads.  Flushes of the same path are serialized by a striped lock,
+ * which writes that aren't queued also take before they are sent, so a resource's writes reach the service in the
+ * order they were made, whichever thread sends them.
+ *
+ * Queued writes are not applied to the cached resources; reads see them once they are flushed.
+ */
+class WriteBehindQueue {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private final HalClient halClient;
+    private final WriteBehind configuration;
+    private final ConcurrentMap<String, QueuedWrite> queuedWrites = new ConcurrentHashMap<>();
+    private final Object[] flushLocks;
+    private final ScheduledThreadPoolExecutor flushExecutor;
+    private volatile boolean closed;
+
+    private static final int LOCK_STRIPES_PER_THREAD = 4;
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static Log log = LogFactory.getLog(WriteBehindQueue.class);
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    WriteBehindQueue(HalClient halClient, WriteBehind configuration) {
+        this.halClient = halClient;
+        this.configuration = configuration;
+        this.flushLocks = new Object[configuration.getFlushThreads() * LOCK_STRIPES_PER_THREAD];
+        this.flushExecutor = new ScheduledThreadPoolExecutor(configuration.getFlushThreads(),
+                                                             new DaemonThreadFactory("hal-write-behind"));
+
+        for (int i = 0; i < flushLocks.length; i++) {
+            flushLocks[i] = new Object();
+        }
+
+        // Everything queued is flushed by close(), so the delayed flushes left over are not needed.
+        flushExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * Queue a PUT of the representation, replacing anything already queued for the path.
+     *
+     * @return true if the write was queued, false if it must be sent right away because the queue is closed or full.
+     */
+    boolean queuePut(String resourcePath, Object representation) {
+        // Marshall now, so changes the caller makes to the representation after this call are not sent.
+        return queue(resourcePath, JsonPatchApplier.parse(RepresentationMarshaller.marshall(representation)), null);
+    }
+
+
+    /**
+     * Queue a PATCH, appending it to anything already queued for the path.
+     *
+     * @return true if the write was queued, false if it must be sent right away because the queue is closed or full.
+     */
+    boolean queuePatch(String resourcePath, JsonPatch patch) {
+        return queue(resourcePath, null, patch);
+    }
+
+
+    /**
+     * Send the write queued for a path, if any, on the calling thread, or wait for a flush of the path in progress to
+     * finish.  This is done before a write to the path that isn't queued, so the writes are sent in order.
+     */
+    void flush(String resourcePath) {
+        // A write being sent has already been removed from the map, so the lock is taken whether there is one or not.
+        synchronized (getFlushLock(resourcePath)) {
+            QueuedWrite queuedWrite = queuedWrites.get(resourcePath);
+
+            if (queuedWrite != null) {
+                send(queuedWrite);
+            }
+        }
+    }
+
+
+    /**
+     * Send every queued write on the calling thread.
+     */
+    void flushAll() {
+        for (QueuedWrite queuedWrite : new ArrayList<>(queuedWrites.values())) {
+            send(queuedWrite);
+        }
+    }
+
+
+    /**
+     * Stop queueing writes, send the queued ones, and wait for flushes in progress to finish.
+     */
+    void close() {
+        closed = true;
+
+        flushAll();
+        flushExecutor.shutdown();
+
+        try {
+            if (!flushExecutor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for queued writes to be sent.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private boolean queue(String resourcePath, Object representation, JsonPatch patch) {
+        while (!closed) {
+            QueuedWrite queuedWrite = queuedWrites.get(resourcePath);
+
+            if (queuedWrite == null) {
+                if (queuedWrites.size() >= configuration.getMaxQueuedResources()) {
+                    return false;
+                }
+
+                QueuedWrite newWrite = new QueuedWrite(resourcePath, representation, patch);
+
+                queuedWrite = queuedWrites.putIfAbsent(resourcePath, newWrite);
+
+                if (queuedWrite == null) {
+                    schedule(newWrite);
+
+                    return true;
+                }
+            }
+
+            if (queuedWrite.merge(representation, patch)) {
+                return true;
+            }
+
+            // The write was taken for sending just now; it has been removed, so try again with a new one.
+        }
+
+        return false;
+    }
+
+
+    private void schedule(final QueuedWrite queuedWrite) {
+        try {
+            flushExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(queuedWrite);
+                }
+            }, configuration.getFlushDelayMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // The queue was closed after the write was queued; close() sends it.
+            log.debug("Unable to schedule the flush of " + queuedWrite.resourcePath + ".", e);
+        }
+    }
+
+
+    private void send(QueuedWrite queuedWrite) {
+        String resourcePath = queuedWrite.resourcePath;
+
+        synchronized (getFlushLock(resourcePath)) {
+            if (!queuedWrite.take()) {
+                return;
+            }
+
+            queuedWrites.remove(resourcePath, queuedWrite);
+
+            try {
+                if (queuedWrite.representation != null) {
+                    halClient.putResourceNow(Void.class, resourcePath, queuedWrite.representation);
+                }
+
+                if (queuedWrite.patch != null) {
+                    halClient.patchResourceNow(Void.class, resourcePath, queuedWrite.patch);
+                }
+            } catch (RuntimeException e) {
+                writeFailed(resourcePath, e);
+            }
+        }
+    }
+
+
+    private Object getFlushLock(String resourcePath) {
+        return flushLocks[(resourcePath.hashCode() & Integer.MAX_VALUE) % flushLocks.length];
+    }
+
+
+    private void writeFailed(String resourcePath, Exception e) {
+        log.warn("Unable to send the queued write of " + resourcePath + ".", e);
+
+        WriteBehind.ErrorCallback errorCallback = configuration.getErrorCallback();
+
+        if (errorCallback != null) {
+            try {
+                errorCallback.onError(resourcePath, e);
+            } catch (RuntimeException callbackException) {
+                log.warn("The write-behind error callback failed.", callbackException);
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * A queued PUT representation, a queued JsonPatch, or a PUT followed by a patch that could not be applied to it.
+     */
+    private static final class QueuedWrite {
+        private final String resourcePath;
+        private Object representation;
+        private JsonPatch patch;
+        private boolean taken;
+
+
+        private QueuedWrite(String resourcePath, Object representation, JsonPatch patch) {
+            this.resourcePath = resourcePath;
+            this.representation = representation;
+            // A copy, so operations the caller adds to its patch afterwards are not sent.
+            this.patch = patch == null ? null : patch.coalesce();
+        }
+
+
+        /**
+         * @return false if the write has already been taken for sending, so nothing can be merged into it.
+         */
+        private synchronized boolean merge(Object nextRepresentation, JsonPatch nextPatch) {
+            if (taken) {
+                return false;
+            }
+
+            if (nextRepresentation != null) {
+                // A PUT replaces the whole resource, so whatever was queued before it doesn't need to be sent.
+                representation = nextRepresentation;
+                patch = null;
+            } else if (patch == null && representation instanceof Map && applyToRepresentation(nextPatch)) {
+                return true;
+            } else {
+                JsonPatch combined = new JsonPatch();
+
+                if (patch != null) {
+                    for (JsonPatch.Item patchItem : patch.getPatchItems()) {
+                        combined.with(patchItem);
+                    }
+                }
+
+                for (JsonPatch.Item patchItem : nextPatch.getPatchItems()) {
+                    combined.with(patchItem);
+                }
+
+                patch = combined.coalesce();
+            }
+
+            return true;
+        }
+
+
+        private synchronized boolean take() {
+            if (taken) {
+                return false;
+            }
+
+            taken = true;
+
+            return true;
+        }
+
+
+        private boolean applyToRepresentation(JsonPatch nextPatch) {
+            @SuppressWarnings("unchecked")
+            HalResource halResource = new HalResource().withProperties((Map<String, Object>) representation);
+            HalResource patchedResource = JsonPatchApplier.apply(halResource, nextPatch);
+
+            if (patchedResource == null) {
+                return false;
+            }
+
+            representation = patchedResource.getProperties();
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.hal.client.HalClient;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+public class HalServiceTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testClientIsCreatedOnce()
+            throws Exception {
+        final HalService<ResourceInfo> halService = createHalService();
+        final CyclicBarrier start = new CyclicBarrier(8);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<HalClient>> results = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(new Callable<HalClient>() {
+                @Override
+                public HalClient call()
+                        throws Exception {
+                    start.await();
+
+                    return halService.getHalClient();
+                }
+            }));
+        }
+
+        Set<HalClient> halClients = Collections.newSetFromMap(new IdentityHashMap<HalClient, Boolean>());
+
+        for (Future<HalClient> result : results) {
+            halClients.add(result.get(10, TimeUnit.SECONDS));
+        }
+
+        callers.shutdown();
+
+        Assert.assertEquals(1, halClients.size());
+        Assert.assertSame(halClients.iterator().next(), halService.getHalClient());
+
+        halService.getHalClient().shutdown();
+    }
+
+
+    @Test
+    public void testSharedClientIsUsed() {
+        HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost", "hal",
+                                            new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                            new HashMap<String, Object>(), null);
+        HalService<ResourceInfo> halService = createHalService().with(halClient);
+        HalService<ResourceInfo> otherHalService = createHalService().with(halClient);
+
+        Assert.assertSame(halClient, halService.getHalClient());
+        Assert.assertSame(halClient, otherHalService.getHalClient());
+
+        // A client of its own is created only when none is shared.
+        Assert.assertNotSame(halClient, createHalService().getHalClient());
+
+        halClient.shutdown();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private static HalService<ResourceInfo> createHalService() {
+        return new HalService<>("http://localhost", "hal", null, ResourceInfo.class, null)
+                .with(new StaticCredentialsProvider(new AnonymousAWSCredentials()));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.hal.CacheStatistics;
+import com.amazonaws.hal.ResourceInfo;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+
+public class CachedPathIndexTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testRemovePrunesEmptyNodes() {
+        Map<String, Object> resourceCache = new HashMap<>();
+        CachedPathIndex index = new CachedPathIndex(resourceCache);
+
+        for (String resourcePath : Arrays.asList("/orders", "/orders/12/items?page=2")) {
+            resourceCache.put(resourcePath, resourcePath);
+            index.add(resourcePath);
+        }
+
+        // The root, "", "orders", "12", "items" and "?page=2"
+        Assert.assertEquals(6, index.getNodeCount());
+
+        resourceCache.remove("/orders/12/items?page=2");
+        index.remove("/orders/12/items?page=2");
+
+        Assert.assertEquals(3, index.getNodeCount());
+        Assert.assertEquals(Arrays.asList("/orders"), index.getPaths("/"));
+
+        resourceCache.remove("/orders");
+        index.remove("/orders");
+
+        Assert.assertEquals(1, index.getNodeCount());
+    }
+
+
+    @Test
+    public void testEvictedPathsAreSwept() {
+        Map<String, Object> resourceCache = new HashMap<>();
+        CachedPathIndex index = new CachedPathIndex(resourceCache);
+
+        resourceCache.put("/orders", "/orders");
+        index.add("/orders");
+
+        // Cached and then evicted without the index being told, as by an LRU cache
+        for (int i = 0; i < 5000; i++) {
+            String resourcePath = "/orders/" + i;
+
+            resourceCache.put(resourcePath, resourcePath);
+            index.add(resourcePath);
+            resourceCache.remove(resourcePath);
+        }
+
+        Assert.assertTrue(String.valueOf(index.getNodeCount()), index.getNodeCount() < 1100);
+        Assert.assertEquals(Arrays.asList("/orders"), index.getPaths("/orders"));
+    }
+
+
+    @Test
+    public void testInvalidateCachedPrefix() {
+        Map<String, Object> resourceCache = new HashMap<>();
+        HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost", "hal",
+                                            new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                            resourceCache, null) {
+            @Override
+            HalResource getHalResource(String resourcePath, HalResource previousResource) {
+                return new HalResource();
+            }
+        };
+
+        for (String resourcePath : Arrays.asList("/orders", "/orders/12", "/orders/12/items", "/orders/12/items?page=2",
+                                                 "/orders/123", "/customers/12")) {
+            halClient.getResource(ResourceInfo.class, resourcePath);
+        }
+
+        halClient.getResource(ResourceInfo.class, "/orders/12/items");
+        resourceCache.remove("/orders/12/items?page=2");
+
+        CacheStatistics statistics = halClient.getCacheStatistics("/orders/12/");
+
+        Assert.assertEquals(2, statistics.getResourceCount());
+        Assert.assertEquals(1, statistics.getHitCount());
+        Assert.assertEquals(2, statistics.getMissCount());
+        Assert.assertEquals(Arrays.asList("/orders/12", "/orders/12/items"), halClient.getCachedResourcePaths("/orders/12"));
+
+        ResourceInfo items = (ResourceInfo) resourceCache.get("/orders/12/items");
+
+        Assert.assertEquals(2, halClient.invalidateResources("/orders/12"));
+        Assert.assertEquals(Arrays.asList("/orders", "/orders/123"), halClient.getCachedResourcePaths("/orders"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("/orders", "/orders/123", "/customers/12")), resourceCache.keySet());
+        Assert.assertNull(HalResourceContext.of(items).getKnownHalResource());
+    }
+}
@@ -0,0 +1,667 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.hal.HedgingPolicy;
+import com.amazonaws.hal.JsonPatch;
+import com.amazonaws.hal.PreconditionFailedException;
+import com.amazonaws.hal.ResiliencePolicy;
+import com.amazonaws.hal.ResourceInfo;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import com.amazonaws.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Tests of the HalClient's caching, write and retrieval features against a stub service.  Each test registers the
+ * handlers for the paths it uses.
+ */
+public class HalClientTest {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private NioHalTransport transport;
+
+
+    //-------------------------------------------------------------
+    // Methods - Setup
+    //-------------------------------------------------------------
+
+    @Before
+    public void startServer()
+            throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        transport = new NioHalTransport(new ClientConfiguration().withMaxConnections(2), 2);
+    }
+
+
+    @After
+    public void stopServer() {
+        transport.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testUnchangedBodyKeepsTheKnownVersion() {
+        final AtomicInteger count = new AtomicInteger(1);
+
+        server.createContext("/counter", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/counter\"}},\"count\":" + count + "}  ");
+            }
+        });
+
+        HalClient halClient = createHalClient();
+        Counter counter = halClient.getResource(Counter.class, "/counter");
+
+        Assert.assertEquals(1, counter.getCount());
+
+        HalResource hashedResource = HalResourceContext.of(counter).getKnownHalResource();
+
+        Assert.assertNotNull(hashedResource.getContentHash());
+
+        halClient.refreshResource(Counter.class, "/counter");
+        Assert.assertSame(hashedResource, HalResourceContext.of(counter).getKnownHalResource());
+
+        count.set(2);
+        halClient.refreshResource(Counter.class, "/counter");
+        Assert.assertNotSame(hashedResource, HalResourceContext.of(counter).getKnownHalResource());
+        Assert.assertEquals(2, counter.getCount());
+    }
+
+
+    @Test
+    public void testPinnedResourcesArePrefetchedInTheBackground()
+            throws InterruptedException {
+        final AtomicInteger rootGets = new AtomicInteger();
+        final CountDownLatch released = new CountDownLatch(1);
+
+        server.createContext("/root", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/root\"}},\"count\":" + rootGets.incrementAndGet() + "}");
+            }
+        });
+
+        HalClient halClient = createHalClient();
+
+        // The prefetch is held by the server, so this only returns if it doesn't wait for it.
+        halClient.pinResources(Collections.singletonList("/root"), TimeUnit.HOURS.toMillis(1));
+        Assert.assertEquals(0, rootGets.get());
+        released.countDown();
+
+        Counter root = halClient.getResource(Counter.class, "/root");
+
+        Assert.assertSame(root, halClient.getResource(Counter.class, "/root"));
+        Assert.assertTrue(root.getCount() >= 1);
+
+        halClient.shutdown();
+    }
+
+
+    @Test
+    public void testPinnedResourcesAreRefreshedAtTheShortestInterval()
+            throws InterruptedException {
+        final AtomicInteger rootGets = new AtomicInteger();
+        final CountDownLatch refreshed = new CountDownLatch(3);
+
+        server.createContext("/root", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/root\"}},\"count\":" + rootGets.incrementAndGet() + "}");
+                refreshed.countDown();
+            }
+        });
+        server.createContext("/other", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/other\"}}}");
+            }
+        });
+
+        HalClient halClient = createHalClient();
+
+        halClient.pinResources(Collections.singletonList("/root"), TimeUnit.HOURS.toMillis(1));
+        halClient.pinResources(Collections.singletonList("/other"), 10);
+
+        // The prefetch, then refreshes every 10ms rather than every hour.
+        Assert.assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(halClient.getResource(Counter.class, "/root").getCount() >= 2);
+
+        // A longer interval doesn't replace the shorter one.
+        halClient.pinResources(Collections.singletonList("/more"), TimeUnit.HOURS.toMillis(1));
+
+        int gets = rootGets.get();
+
+        for (int i = 0; i < 1000 && rootGets.get() == gets; i++) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertTrue(rootGets.get() > gets);
+
+        halClient.shutdown();
+    }
+
+
+    @Test
+    public void testConditionalWrites() {
+        final AtomicInteger version = new AtomicInteger(1);
+        final AtomicReference<String> ifMatch = new AtomicReference<>();
+
+        server.createContext("/versioned", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                int status = 200;
+
+                ifMatch.set(exchange.getRequestHeaders().getFirst("If-Match"));
+
+                if (exchange.getRequestMethod().equals("PUT")) {
+                    if (("\"" + version + "\"").equals(ifMatch.get())) {
+                        version.incrementAndGet();
+                    } else {
+                        status = 412;
+                    }
+                }
+
+                exchange.getResponseHeaders().add("ETag", "\"" + version + "\"");
+                respond(exchange, status, "{\"_links\":{\"self\":{\"href\":\"/versioned\"}},\"version\":" + version + "}");
+            }
+        });
+
+        HalClient halClient = createHalClient();
+
+        halClient.setConditionalWrites(true);
+
+        Versioned versioned = halClient.getResource(Versioned.class, "/versioned");
+
+        Assert.assertEquals(1, versioned.getVersion());
+
+        // Another client updates the resource.
+        version.set(2);
+
+        try {
+            halClient.putResource(Versioned.class, "/versioned", Collections.singletonMap("version", 3));
+            Assert.fail("The write should not have been accepted.");
+        } catch (PreconditionFailedException e) {
+            Assert.assertEquals("\"1\"", ifMatch.get());
+            Assert.assertEquals("\"2\"", e.getCurrentETag());
+            Assert.assertEquals(2, ((Number) e.getCurrentResource()._getProperty("version")).intValue());
+        }
+
+        // The cached resource was brought up to date by the failed write, so the retry is based on version 2.
+        Assert.assertEquals(2, versioned.getVersion());
+        Assert.assertSame(versioned, halClient.putResource(Versioned.class, "/versioned", Collections.singletonMap("version", 3)));
+        Assert.assertEquals("\"2\"", ifMatch.get());
+        Assert.assertEquals(3, versioned.getVersion());
+    }
+
+
+    @Test
+    public void testZeroGetCreates() {
+        final AtomicReference<String> prefer = new AtomicReference<>();
+        final AtomicInteger itemGets = new AtomicInteger();
+
+        server.createContext("/items", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                if (exchange.getRequestMethod().equals("POST")) {
+                    prefer.set(exchange.getRequestHeaders().getFirst("Prefer"));
+                    exchange.getResponseHeaders().add("Location", "http://localhost:" + server.getAddress().getPort() + "/items/7");
+                    respond(exchange, 201, "{\"id\":7}");
+                } else {
+                    itemGets.incrementAndGet();
+                    respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/items/7\"}},\"id\":7,\"name\":\"x\",\"created\":\"today\"}");
+                }
+            }
+        });
+
+        HalClient halClient = createHalClient();
+
+        halClient.setZeroGetCreates(true);
+
+        Item item = halClient.postResource(Item.class, "/items", Collections.singletonMap("name", "x"));
+
+        Assert.assertEquals("return=representation", prefer.get());
+        Assert.assertEquals("/items/7", item.toString());
+        Assert.assertEquals("x", item.getName());
+        Assert.assertEquals(7, item.getId());
+        Assert.assertEquals(0, itemGets.get());
+        Assert.assertSame(item, halClient.getResource(Item.class, "/items/7"));
+
+        // A property the client didn't send is only known once the resource is retrieved.
+        Assert.assertEquals("today", item.getCreated());
+        Assert.assertEquals(1, itemGets.get());
+        Assert.assertEquals("x", item.getName());
+        Assert.assertEquals(1, itemGets.get());
+    }
+
+
+    @Test
+    public void testWritesInvalidateDependentResources() {
+        final AtomicInteger orderGets = new AtomicInteger();
+
+        server.createContext("/orders", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    respond(exchange, 204, null);
+
+                    return;
+                }
+
+                orderGets.incrementAndGet();
+                respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/orders\"},\"archived\":{\"href\":\"/orders/2\"}},"
+                                       + "\"_embedded\":{\"first\":{\"_links\":{\"self\":{\"href\":\"/orders/1\"}},\"total\":1}}}");
+            }
+        });
+
+        HalClient halClient = createHalClient();
+        ResourceInfo orders = halClient.getResource(ResourceInfo.class, "/orders");
+
+        Assert.assertTrue(orders._isLinkAvailable("archived"));
+
+        // A resource the collection neither embeds nor links to.
+        halClient.putResource(Void.class, "/orders/3", Collections.singletonMap("total", 3));
+        Assert.assertTrue(orders._isLinkAvailable("archived"));
+        Assert.assertEquals(1, orderGets.get());
+
+        // An embedded resource changed.
+        halClient.putResource(Void.class, "/orders/1", Collections.singletonMap("total", 2));
+        Assert.assertTrue(orders._isLinkAvailable("archived"));
+        Assert.assertEquals(2, orderGets.get());
+
+        // A linked resource was deleted.
+        halClient.deleteResource(Void.class, "/orders/2");
+        Assert.assertTrue(orders._isLinkAvailable("archived"));
+        Assert.assertEquals(3, orderGets.get());
+    }
+
+
+    @Test
+    public void testPatchReturningAnotherResourceUpdatesBoth() {
+        final AtomicInteger orderGets = new AtomicInteger();
+        final AtomicInteger lineGets = new AtomicInteger();
+
+        server.createContext("/orders", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                if (exchange.getRequestMethod().equals("PATCH")) {
+                    // The patch changed one of the order's lines, which is returned.
+                    respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/orders/1/lines/1\"}},\"count\":5}");
+                } else if (exchange.getRequestURI().getPath().equals("/orders/1")) {
+                    respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/orders/1\"}},\"count\":" + orderGets.incrementAndGet() + "}");
+                } else {
+                    respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/orders/1/lines/1\"}},\"count\":" + lineGets.incrementAndGet() + "}");
+                }
+            }
+        });
+
+        HalClient halClient = createHalClient();
+        Counter order = halClient.getResource(Counter.class, "/orders/1");
+        Counter line = halClient.getResource(Counter.class, "/orders/1/lines/1");
+
+        Assert.assertEquals(1, order.getCount());
+        Assert.assertEquals(1, line.getCount());
+
+        Counter patched = halClient.patchResource(Counter.class, "/orders/1", new JsonPatch().with(new JsonPatch.Replace("/lines/0/count", 5)));
+
+        // The returned resource replaces the cached version of its own path, not that of the patched resource.
+        Assert.assertSame(line, patched);
+        Assert.assertEquals(5, line.getCount());
+        Assert.assertEquals(1, lineGets.get());
+
+        // The patched resource is retrieved again.
+        Assert.assertEquals(2, order.getCount());
+    }
+
+
+    @Test
+    public void testMissingResourcesAreRemembered() {
+        final AtomicInteger missingGets = new AtomicInteger();
+
+        server.createContext("/missing", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    respond(exchange, 204, null);
+
+                    return;
+                }
+
+                missingGets.incrementAndGet();
+                respond(exchange, 404, "{\"message\":\"Not here\"}");
+            }
+        });
+
+        HalClient halClient = createHalClient();
+
+        halClient.setMissingResourceTtlMillis(TimeUnit.MINUTES.toMillis(1));
+
+        AmazonServiceException first = getMissing(halClient);
+
+        Assert.assertEquals(404, first.getStatusCode());
+
+        // Each caller gets an exception of its own, with the same details.
+        AmazonServiceException second = getMissing(halClient);
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(404, second.getStatusCode());
+        Assert.assertEquals(first.getErrorMessage(), second.getErrorMessage());
+        Assert.assertEquals(1, missingGets.get());
+
+        // A write to the resource makes it worth retrieving again.
+        halClient.putResource(Void.class, "/missing", Collections.singletonMap("name", "found"));
+        getMissing(halClient);
+        Assert.assertEquals(2, missingGets.get());
+    }
+
+
+    @Test
+    public void testStaleVersionIsServedOnError() {
+        final AtomicInteger flakyGets = new AtomicInteger();
+        final AtomicInteger flakyFailures = new AtomicInteger(1);
+
+        server.createContext("/flaky", new FlakyHandler(flakyGets, flakyFailures));
+
+        HalClient halClient = createHalClient();
+
+        halClient.setResiliencePolicy(new ResiliencePolicy().withMaxRetries(2)
+                                                            .withBackoff(1, 2, TimeUnit.MILLISECONDS)
+                                                            .withRetryBudget(0, 3));
+
+        Counter counter = halClient.getResource(Counter.class, "/flaky");
+
+        Assert.assertEquals(2, counter.getCount());
+
+        // The retries fail as well, so the version already known is kept.
+        flakyFailures.set(5);
+        halClient.refreshResource(Counter.class, "/flaky");
+        Assert.assertEquals(2, counter.getCount());
+        Assert.assertEquals(5, flakyGets.get());
+
+        // The retry budget is used up.
+        halClient.refreshResource(Counter.class, "/flaky");
+        Assert.assertEquals(6, flakyGets.get());
+
+        // Past the staleness limit, the error is reported.
+        halClient.setResiliencePolicy(new ResiliencePolicy().withMaxRetries(0).withMaxStaleness(0, TimeUnit.MILLISECONDS));
+
+        try {
+            halClient.refreshResource(Counter.class, "/flaky");
+            Assert.fail("The refresh should have failed.");
+        } catch (AmazonServiceException e) {
+            Assert.assertEquals(503, e.getStatusCode());
+        }
+
+        Assert.assertEquals(2, counter.getCount());
+
+        halClient.shutdown();
+    }
+
+
+    @Test
+    public void testRetriesAreSentByTheRetryThread()
+            throws InterruptedException {
+        final List<String> senders = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicReference<Counter> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        server.createContext("/flaky", new FlakyHandler(new AtomicInteger(), new AtomicInteger(2)));
+
+        HalClient halClient = createHalClient();
+
+        halClient.setTransport(new HalTransport() {
+            @Override
+            public void send(Request<?> request, Callback callback) {
+                senders.add(Thread.currentThread().getName());
+                transport.send(request, callback);
+            }
+
+
+            @Override
+            public void shutdown() {
+            }
+        });
+        halClient.setResiliencePolicy(new ResiliencePolicy().withMaxRetries(2).withBackoff(1, 2, TimeUnit.MILLISECONDS));
+        halClient.getResourceAsync(Counter.class, "/flaky", new HalCallback<Counter>() {
+            @Override
+            public void onSuccess(Counter counter) {
+                result.set(counter);
+                done.countDown();
+            }
+
+
+            @Override
+            public void onError(Exception e) {
+                done.countDown();
+            }
+        });
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, result.get().getCount());
+        Assert.assertEquals(3, senders.size());
+        Assert.assertEquals(Thread.currentThread().getName(), senders.get(0));
+        Assert.assertTrue(senders.get(1), senders.get(1).startsWith("hal-retry-"));
+        Assert.assertTrue(senders.get(2), senders.get(2).startsWith("hal-retry-"));
+
+        halClient.shutdown();
+    }
+
+
+    @Test
+    public void testSlowGetIsHedged()
+            throws InterruptedException {
+        final AtomicInteger slowGets = new AtomicInteger();
+        final CountDownLatch released = new CountDownLatch(1);
+
+        server.createContext("/hedged", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                // The first request for /hedged?slow is held until the test is over, so only a hedge can answer it.
+                if ("slow".equals(exchange.getRequestURI().getQuery()) && slowGets.incrementAndGet() == 1) {
+                    try {
+                        released.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                try {
+                    respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"" + exchange.getRequestURI() + "\"}}}");
+                } catch (IOException ignore) {
+                    // The client may have stopped waiting for the held response.
+                }
+            }
+        });
+
+        HalClient halClient = createHalClient();
+
+        halClient.setHedgingPolicy(new HedgingPolicy().withPercentile(90).withMinDelay(10, TimeUnit.MILLISECONDS));
+
+        // GETs are only hedged once enough latencies have been observed.
+        for (int i = 0; i < 64; i++) {
+            halClient.getResource(ResourceInfo.class, "/hedged?" + i);
+        }
+
+        try {
+            ResourceInfo resource = halClient.getResource(ResourceInfo.class, "/hedged?slow");
+
+            Assert.assertEquals("/hedged?slow", resource._getSelfHref());
+            Assert.assertEquals(2, slowGets.get());
+        } finally {
+            released.countDown();
+        }
+
+        halClient.shutdown();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private AmazonServiceException getMissing(HalClient halClient) {
+        try {
+            halClient.getResource(ResourceInfo.class, "/missing")._getSelfHref();
+        } catch (AmazonServiceException e) {
+            return e;
+        }
+
+        throw new AssertionError("The resource should be missing.");
+    }
+
+
+    private HalClient createHalClient() {
+        HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost:" + server.getAddress().getPort(), "hal",
+                                            new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                            new HashMap<String, Object>(),
+                                            new StatusCodeErrorResponseHandler(new HashMap<Integer, Class<? extends AmazonServiceException>>()));
+
+        halClient.setTransport(transport);
+
+        return halClient;
+    }
+
+
+    /**
+     * Send a HAL response, or an empty one if body is null.
+     */
+    private static void respond(HttpExchange exchange, int status, String body)
+            throws IOException {
+        IOUtils.toByteArray(exchange.getRequestBody());
+
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+
+            return;
+        }
+
+        byte[] bytes = body.getBytes("UTF-8");
+
+        exchange.getResponseHeaders().add("Content-Type", "application/hal+json");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * Fails with a 503 while failures remains positive, then returns the number of GETs received.
+     */
+    private static class FlakyHandler implements HttpHandler {
+        private final AtomicInteger gets;
+        private final AtomicInteger failures;
+
+
+        FlakyHandler(AtomicInteger gets, AtomicInteger failures) {
+            this.gets = gets;
+            this.failures = failures;
+        }
+
+
+        @Override
+        public void handle(HttpExchange exchange)
+                throws IOException {
+            int count = gets.incrementAndGet();
+
+            if (failures.getAndDecrement() > 0) {
+                respond(exchange, 503, "{\"message\":\"Busy\"}");
+            } else {
+                respond(exchange, 200, "{\"_links\":{\"self\":{\"href\":\"/flaky\"}},\"count\":" + count + "}");
+            }
+        }
+    }
+
+
+    public interface Versioned {
+        int getVersion();
+    }
+
+
+    public interface Counter {
+        int getCount();
+    }
+
+
+    public interface Item {
+        int getId();
+        String getName();
+        String getCreated();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.transform.JsonUnmarshallerContextImpl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+
+
+public class HalFormatTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testBinaryRepresentation()
+            throws Exception {
+        HalFormat format = HalFormat.CBOR;
+
+        Assert.assertTrue("jackson-dataformat-cbor is not on the test classpath.", format.isAvailable());
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        try (JsonParser jsonParser = new JsonFactory().createParser(getClasspathResource("report.resource"));
+             JsonGenerator jsonGenerator = format.getJsonFactory().createGenerator(content)) {
+            jsonParser.nextToken();
+            jsonGenerator.copyCurrentStructure(jsonParser);
+        }
+
+        HttpResponse response = new HttpResponse(null, null);
+
+        response.addHeader("Content-Type", format.getMediaType());
+        response.setContent(new ByteArrayInputStream(content.toByteArray()));
+
+        Assert.assertEquals(format, HalFormat.of(response));
+
+        HalResource halResource = new OptionalJsonResponseHandler<>(HalJsonResourceUnmarshaller.getInstance()).handle(response).getResult();
+        HalResource jsonHalResource = parseHalResourceFromClasspath("report.resource");
+
+        Assert.assertEquals(jsonHalResource._getSelfHref(), halResource._getSelfHref());
+        Assert.assertEquals(jsonHalResource._getProperty("columns"), halResource._getProperty("columns"));
+        Assert.assertEquals(jsonHalResource._getProperty("rows"), halResource._getProperty("rows"));
+        Assert.assertEquals(30, ((List<?>) halResource._getProperty("rows")).size());
+        Assert.assertTrue(HalFormat.getAcceptHeader(true).startsWith(format.getMediaType()));
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private InputStream getClasspathResource(String classpathFile) {
+        return this.getClass().getClassLoader().getResourceAsStream(classpathFile);
+    }
+
+
+    private HalResource parseHalResourceFromClasspath(String classpathFile)
+            throws Exception {
+        JsonParser jsonParser = new JsonFactory().createParser(getClasspathResource(classpathFile));
+
+        return HalJsonResourceUnmarshaller.getInstance().unmarshall(new JsonUnmarshallerContextImpl(jsonParser));
+    }
+}
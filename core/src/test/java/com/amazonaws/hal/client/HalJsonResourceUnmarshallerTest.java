@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import java.io.InputStream;
 import java.lang.reflect.Proxy;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -81,6 +82,74 @@ public class HalJsonResourceUnmarshallerTest {
         Assert.assertNotNull(types.getIntegerMap());
         Assert.assertEquals(3, types.getIntegerMap().size());
         Assert.assertEquals(1, (long) types.getIntegerMap().get("one"));
+        Assert.assertNull(types.getIntegerMap().get(null));
+        Assert.assertFalse(types.getIntegerMap().containsKey(null));
+    }
+
+
+    @Test
+    public void testMemoizedConversion()
+            throws Exception {
+        HalResource halResource = parseHalResourceFromClasspath("report.resource");
+
+        Report report = (Report) Proxy.newProxyInstance(Report.class.getClassLoader(),
+                                                        new Class<?>[] { Report.class },
+                                                        new HalResourceInvocationHandler(halResource, halResource._getSelfHref(), null));
+
+        Map<String, Column> columns = report.getColumns();
+
+        Assert.assertSame(columns, report.getColumns());
+        Assert.assertSame(report.getRows(), report.getRows());
+
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            Assert.assertSame(entry.getValue(), columns.get(entry.getKey()));
+        }
+
+        // The raw representation is left untouched.
+        Assert.assertFalse(halResource.getProperty("columns") instanceof ConvertingMap);
+    }
+
+
+    @Test
+    public void testUpdateKeepsUnchangedConversions()
+            throws Exception {
+        HalResource halResource = parseHalResourceFromClasspath("types.resource");
+        HalResourceInvocationHandler invocationHandler = new HalResourceInvocationHandler(halResource, halResource._getSelfHref(), null);
+
+        Types types = (Types) Proxy.newProxyInstance(Types.class.getClassLoader(),
+                                                     new Class<?>[] { Types.class },
+                                                     invocationHandler);
+
+        List<Integer> integerList = types.getIntegerList();
+        Map<String, Integer> integerMap = types.getIntegerMap();
+
+        HalResource updatedResource = parseHalResourceFromClasspath("types.resource");
+
+        updatedResource.addProperty("integerMap", Collections.singletonMap("four", 4));
+        invocationHandler.resourceUpdated(updatedResource);
+
+        Assert.assertSame(integerList, types.getIntegerList());
+        Assert.assertNotSame(integerMap, types.getIntegerMap());
+        Assert.assertEquals(4, (long) types.getIntegerMap().get("four"));
+    }
+
+
+    @Test
+    public void testConversionsAreMemoizedPerType()
+            throws Exception {
+        HalResource halResource = parseHalResourceFromClasspath("blog.resource");
+        HalResourceInvocationHandler invocationHandler = new HalResourceInvocationHandler(halResource, halResource._getSelfHref(), null);
+
+        LongId longId = (LongId) Proxy.newProxyInstance(LongId.class.getClassLoader(),
+                                                        new Class<?>[] { LongId.class },
+                                                        invocationHandler);
+        IntId intId = (IntId) Proxy.newProxyInstance(IntId.class.getClassLoader(),
+                                                     new Class<?>[] { IntId.class },
+                                                     invocationHandler);
+
+        Assert.assertEquals(123L, longId.getId());
+        Assert.assertEquals(123, intId.getId());
+        Assert.assertEquals(123L, longId.getId());
     }
 
 
@@ -152,6 +221,16 @@ public class HalJsonResourceUnmarshallerTest {
     }
 
 
+    public interface LongId {
+        long getId();
+    }
+
+
+    public interface IntId {
+        int getId();
+    }
+
+
     public interface Comment {
         Long getTime();
         String getAuthor();
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class HalResourceContextTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testFetchDoesNotReplaceNewerVersion() {
+        final HalResource fetchedResource = createCounter(1);
+        final HalResource writtenResource = createCounter(2);
+        final HalResourceContext[] context = new HalResourceContext[1];
+        HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost", "hal",
+                                            new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                            new HashMap<String, Object>(), null) {
+            @Override
+            HalResource getHalResource(String resourcePath, HalResource previousResource, HalResource staleResource) {
+                // A write is applied while the GET is in flight.
+                context[0].resourceUpdated(writtenResource);
+
+                return fetchedResource;
+            }
+        };
+
+        context[0] = new HalResourceContext(null, "/counter", halClient);
+
+        Assert.assertSame(writtenResource, context[0].getHalResource());
+        Assert.assertSame(writtenResource, context[0].getKnownHalResource());
+    }
+
+
+    @Test
+    public void testReadersSeeEachSnapshotWhole()
+            throws Exception {
+        final HalResourceContext context = new HalResourceContext(createCounter(0), "/counter", null);
+        final AtomicBoolean updating = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            results.add(readers.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int count = 0;
+
+                    while (updating.get()) {
+                        HalResource halResource = context.getHalResource();
+                        int nextCount = ((Number) halResource.getProperty("count")).intValue();
+
+                        // The single writer only moves forward, and every snapshot it publishes is complete.
+                        Assert.assertTrue(nextCount >= count);
+                        Assert.assertEquals("/counter", halResource._getSelfHref());
+                        count = nextCount;
+                    }
+
+                    return count;
+                }
+            }));
+        }
+
+        for (int i = 1; i <= 20000; i++) {
+            context.resourceUpdated(createCounter(i));
+        }
+
+        updating.set(false);
+
+        for (Future<Integer> result : results) {
+            Assert.assertTrue(result.get(10, TimeUnit.SECONDS) <= 20000);
+        }
+
+        readers.shutdown();
+        Assert.assertEquals(20000, ((Number) context.getKnownHalResource().getProperty("count")).intValue());
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private static HalResource createCounter(int count) {
+        HalResource halResource = new HalResource();
+        HalLink link = new HalLink();
+
+        link.setHref("/counter");
+        halResource.setLinks(Collections.singletonMap("self", link));
+        halResource.addProperty("count", count);
+
+        return halResource;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.util.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class Http2HalTransportTest {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private ServerSocket serverSocket;
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicInteger maxActiveStreams = new AtomicInteger();
+    private final Set<String> refusedPaths = Collections.synchronizedSet(new HashSet<String>());
+    private final Set<Integer> resetStreams = Collections.synchronizedSet(new HashSet<Integer>());
+    private Http2HalTransport transport;
+
+    private static final int SERVER_MAX_CONCURRENT_STREAMS = 2;
+
+
+    //-------------------------------------------------------------
+    // Methods - Setup
+    //-------------------------------------------------------------
+
+    @Before
+    public void startServer()
+            throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        serverExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+
+                        connections.incrementAndGet();
+                        serverExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                    }
+                } catch (IOException ignore) {
+                    // The server socket was closed
+                }
+            }
+        });
+
+        transport = new Http2HalTransport(new ClientConfiguration(), 10, true);
+    }
+
+
+    @After
+    public void stopServer()
+            throws IOException {
+        transport.shutdown();
+        serverSocket.close();
+        serverExecutor.shutdownNow();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testStreamsShareOneConnection()
+            throws Exception {
+        final CountDownLatch done = new CountDownLatch(10);
+        final List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+
+        for (int i = 0; i < 10; i++) {
+            Request<?> request = createRequest(HttpMethodName.GET, "/items/" + i);
+
+            request.addParameter("q", "a b");
+            transport.send(request, new HalTransport.Callback() {
+                @Override
+                public void completed(HttpResponse response) {
+                    try {
+                        bodies.add(response.getStatusCode() + " " + IOUtils.toString(response.getContent()));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    done.countDown();
+                }
+
+
+                @Override
+                public void failed(Exception e) {
+                    bodies.add(e.toString());
+                    done.countDown();
+                }
+            });
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, connections.get());
+        Assert.assertEquals(SERVER_MAX_CONCURRENT_STREAMS, maxActiveStreams.get());
+        Assert.assertEquals(10, bodies.size());
+        Assert.assertTrue(bodies.toString(), bodies.contains("200 GET /items/3?q=a%20b "));
+    }
+
+
+    @Test
+    public void testPostAndRefusedStream()
+            throws Exception {
+        Request<?> request = createRequest(HttpMethodName.POST, "/refuse-once");
+
+        request.setContent(new ByteArrayInputStream("{\"a\":1}".getBytes("UTF-8")));
+
+        HttpResponse response = send(request);
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals("text/plain", response.getHeaders().get("content-type"));
+        Assert.assertEquals("POST /refuse-once {\"a\":1}", IOUtils.toString(response.getContent()));
+        Assert.assertEquals(404, send(createRequest(HttpMethodName.GET, "/missing")).getStatusCode());
+    }
+
+
+    @Test
+    public void testCancelledStreamsAreResetOrNotSent()
+            throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+        CountDownLatch done = new CountDownLatch(4);
+
+        // Two streams are opened and held by the server, and the third waits for one of them to close.
+        for (int i = 0; i < 3; i++) {
+            transport.send(createRequest(HttpMethodName.GET, "/hold/" + i), new CancellableCallback(cancelled, failures, done));
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+
+        while (activeStreams.get() < SERVER_MAX_CONCURRENT_STREAMS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        cancelled.set(true);
+        transport.send(createRequest(HttpMethodName.GET, "/hold/3"), new CancellableCallback(cancelled, failures, done));
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(4, failures.size());
+
+        for (Exception e : failures) {
+            Assert.assertTrue(e.toString(), e instanceof CancellationException);
+        }
+
+        while (resetStreams.size() < SERVER_MAX_CONCURRENT_STREAMS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        // Only the streams that were open were reset; the others were never sent.
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1, 3)), resetStreams);
+        Assert.assertEquals(SERVER_MAX_CONCURRENT_STREAMS, maxActiveStreams.get());
+        Assert.assertEquals(200, send(createRequest(HttpMethodName.GET, "/items/1")).getStatusCode());
+        Assert.assertEquals(1, connections.get());
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private Request<?> createRequest(HttpMethodName httpMethod, String resourcePath) {
+        Request<?> request = new DefaultRequest<Void>(null);
+
+        request.setHttpMethod(httpMethod);
+        request.setEndpoint(URI.create("http://localhost:" + serverSocket.getLocalPort()));
+        request.setResourcePath(resourcePath);
+
+        return request;
+    }
+
+
+    private HttpResponse send(Request<?> request)
+            throws Exception {
+        final BlockingHalCallback<HttpResponse> callback = new BlockingHalCallback<>(0);
+
+        transport.send(request, new HalTransport.Callback() {
+            @Override
+            public void completed(HttpResponse response) {
+                callback.onSuccess(response);
+            }
+
+
+            @Override
+            public void failed(Exception e) {
+                callback.onError(e);
+            }
+        });
+
+        return callback.get();
+    }
+
+
+    /**
+     * A minimal HTTP/2 server: it reads the client's frames on one thread, and answers each request after a delay,
+     * so the streams overlap.
+     */
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+            Hpack.Decoder decoder = new Hpack.Decoder(4096);
+            Map<Integer, List<String[]>> requestHeaders = new HashMap<>();
+            Map<Integer, ByteArrayOutputStream> requestBodies = new HashMap<>();
+
+            in.readFully(new byte[24]);
+            writeFrame(out, 0x4, 0, 0, ByteBuffer.allocate(6).putShort((short) 0x3).putInt(SERVER_MAX_CONCURRENT_STREAMS).array());
+
+            while (true) {
+                int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                final int streamId = in.readInt() & 0x7fffffff;
+                byte[] payload = new byte[length];
+
+                in.readFully(payload);
+
+                if (type == 0x4 && (flags & 0x1) == 0) {
+                    writeFrame(out, 0x4, 0x1, 0, new byte[0]);
+                } else if (type == 0x3) {
+                    resetStreams.add(streamId);
+                } else if (type == 0x1) {
+                    Assert.assertEquals("END_HEADERS", 0x4, flags & 0x4);
+
+                    requestHeaders.put(streamId, decoder.decode(payload));
+                    requestBodies.put(streamId, new ByteArrayOutputStream());
+                } else if (type == 0x0) {
+                    requestBodies.get(streamId).write(payload);
+                }
+
+                if ((type == 0x0 || type == 0x1) && (flags & 0x1) != 0) {
+                    final Map<String, String> headers = new HashMap<>();
+
+                    for (String[] header : requestHeaders.remove(streamId)) {
+                        headers.put(header[0], header[1]);
+                    }
+
+                    final String body = requestBodies.remove(streamId).toString("UTF-8");
+                    int active = activeStreams.incrementAndGet();
+
+                    if (active > maxActiveStreams.get()) {
+                        maxActiveStreams.set(active);
+                    }
+
+                    serverExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            respond(out, streamId, headers, body);
+                        }
+                    });
+                }
+            }
+        } catch (IOException ignore) {
+            // The connection was closed
+        }
+    }
+
+
+    private void respond(OutputStream out, int streamId, Map<String, String> headers, String body) {
+        try {
+            String path = headers.get(":path");
+
+            if (path.equals("/refuse-once") && refusedPaths.add(path)) {
+                activeStreams.decrementAndGet();
+                writeFrame(out, 0x3, 0, streamId, ByteBuffer.allocate(4).putInt(0x7).array());
+
+                return;
+            }
+
+            if (path.startsWith("/hold/")) {
+                // Held until the client resets the stream, and then not answered
+                while (!resetStreams.contains(streamId)) {
+                    Thread.sleep(1);
+                }
+
+                activeStreams.decrementAndGet();
+
+                return;
+            }
+
+            Thread.sleep(50);
+
+            byte[] content = (headers.get(":method") + " " + path + " " + body).getBytes("UTF-8");
+            byte[] block = new Hpack.Encoder().encode(Arrays.asList(new String[] { ":status", path.equals("/missing") ? "404" : "200" },
+                                                                    new String[] { "content-type", "text/plain" }));
+
+            activeStreams.decrementAndGet();
+            writeFrame(out, 0x1, 0x4, streamId, block);
+            writeFrame(out, 0x0, 0x1, streamId, content);
+        } catch (IOException | InterruptedException ignore) {
+            // The connection was closed
+        }
+    }
+
+
+    private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(9 + payload.length);
+
+        frame.put((byte) (payload.length >>> 16)).putShort((short) payload.length).put((byte) type).put((byte) flags);
+        frame.putInt(streamId).put(payload);
+
+        synchronized (out) {
+            out.write(frame.array());
+            out.flush();
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    /**
+     * Records failures, and reports the request cancelled once cancelled is set.
+     */
+    private static class CancellableCallback
+            implements HalTransport.Callback, HalTransport.Cancellable {
+        private final AtomicBoolean cancelled;
+        private final List<Exception> failures;
+        private final CountDownLatch done;
+
+
+        CancellableCallback(AtomicBoolean cancelled, List<Exception> failures, CountDownLatch done) {
+            this.cancelled = cancelled;
+            this.failures = failures;
+            this.done = done;
+        }
+
+
+        @Override
+        public void completed(HttpResponse response) {
+            done.countDown();
+        }
+
+
+        @Override
+        public void failed(Exception e) {
+            failures.add(e);
+            done.countDown();
+        }
+
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.JsonPatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class JsonPatchDiffTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testDiffPatch() {
+        String body = "A body long enough to be copied rather than sent again.";
+        Map<String, Object> source = new HashMap<>();
+        Map<String, Object> target = new HashMap<>();
+
+        source.put("title", "Draft");
+        source.put("tags", Arrays.asList("a", "b", "c", "d"));
+        source.put("author", Collections.singletonMap("name", "Ann"));
+        source.put("body", body);
+        source.put("meta", Collections.singletonMap("x", 1));
+        target.put("title", "Draft");
+        target.put("tags", Arrays.asList("a", "c", "d", "e"));
+        target.put("writer", Collections.singletonMap("name", "Ann"));
+        target.put("body", body);
+        target.put("summary", body);
+        target.put("meta", Collections.singletonMap("x", 2));
+
+        JsonPatch patch = JsonPatchDiff.diff(source, target);
+        List<String> ops = new ArrayList<>();
+
+        for (JsonPatch.Item patchItem : patch.getPatchItems()) {
+            ops.add(patchItem.getOp() + " " + patchItem.getPath()
+                    + (patchItem instanceof JsonPatch.FromItem ? " " + ((JsonPatch.FromItem) patchItem).getFrom() : ""));
+        }
+
+        Assert.assertEquals(Arrays.asList("replace /meta/x", "remove /tags/1", "add /tags/3", "copy /summary /body",
+                                          "move /writer /author"), ops);
+
+        HalResource halResource = new HalResource();
+
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            halResource.addProperty(entry.getKey(), JsonPatchApplier.toPropertyValue(entry.getValue()));
+        }
+
+        Assert.assertTrue(JsonPatchApplier.jsonEquals(target, JsonPatchApplier.apply(halResource, patch).getProperties()));
+        Assert.assertTrue(JsonPatchDiff.diff(source, source).getPatchItems().isEmpty());
+    }
+
+
+    @Test
+    public void testNumbersAreMatchedByValue() {
+        List<Object> values = Arrays.<Object>asList(1.0, 2.50, 1000, 0.0, 4.0, 5.0);
+        Map<String, Object> source = new HashMap<>();
+        Map<String, Object> target = new HashMap<>();
+
+        source.put("count", 3.0);
+        source.put("values", values);
+        target.put("total", 3);
+        target.put("values", values);
+        target.put("copy", Arrays.<Object>asList(1, 2.5, 1e3, 0, 4L, new BigDecimal("5.000")));
+
+        List<String> ops = new ArrayList<>();
+
+        for (JsonPatch.Item patchItem : JsonPatchDiff.diff(source, target).getPatchItems()) {
+            ops.add(patchItem.getOp() + " " + patchItem.getPath() + " " + ((JsonPatch.FromItem) patchItem).getFrom());
+        }
+
+        Assert.assertEquals(Arrays.asList("copy /copy /values", "move /total /count"), ops);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.JsonPatch;
+import com.amazonaws.hal.ResourceInfo;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+import com.amazonaws.transform.JsonUnmarshallerContextImpl;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+
+public class JsonPatchTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testMarshallCoalescedPatch()
+            throws Exception {
+        JsonPatch patch = new JsonPatch().with(new JsonPatch.Replace("/title", "Draft"))
+                                         .with(new JsonPatch.Replace("/title", "Final"))
+                                         .with(new JsonPatch.Remove("/tags/0"))
+                                         .with(new JsonPatch.Add("/tags/0", Arrays.asList(1, true)))
+                                         .with(new JsonPatch.Add("/tags/-", "x"))
+                                         .with(new JsonPatch.Add("/tags/-", "y"))
+                                         .with(new JsonPatch.Add("/author", Collections.singletonMap("name", "Ann")))
+                                         .with(new JsonPatch.Test("/author/name", "Ann"))
+                                         .with(new JsonPatch.Replace("/author", null))
+                                         .with(new JsonPatch.Move("/count", "/total"))
+                                         .with(new JsonPatch.Replace("/total", 2))
+                                         .with(new JsonPatch.Remove("/title"));
+
+        RepresentationMarshaller.Utf8Buffer content = RepresentationMarshaller.marshallPatch(patch.coalesce());
+
+        Assert.assertEquals("[{\"op\":\"replace\",\"path\":\"/tags/0\",\"value\":[1,true]},"
+                            + "{\"op\":\"add\",\"path\":\"/tags/-\",\"value\":\"x\"},"
+                            + "{\"op\":\"add\",\"path\":\"/tags/-\",\"value\":\"y\"},"
+                            + "{\"op\":\"add\",\"path\":\"/author\",\"value\":{\"name\":\"Ann\"}},"
+                            + "{\"op\":\"test\",\"path\":\"/author/name\",\"value\":\"Ann\"},"
+                            + "{\"op\":\"replace\",\"path\":\"/author\",\"value\":null},"
+                            + "{\"op\":\"move\",\"path\":\"/count\",\"from\":\"/total\"},"
+                            + "{\"op\":\"replace\",\"path\":\"/total\",\"value\":2},"
+                            + "{\"op\":\"remove\",\"path\":\"/title\"}]",
+                            new String(content.toByteArray(), "UTF-8"));
+        Assert.assertEquals(12, patch.getPatchItems().size());
+    }
+
+
+    @Test
+    public void testApplyPatchLocally()
+            throws Exception {
+        HalResource halResource = parseHalResourceFromClasspath("types.resource");
+        HalResourceContext context = new HalResourceContext(halResource, "/types", null);
+
+        context.resourcePatched(new JsonPatch().with(new JsonPatch.Test("/integerMap/one", 1.0))
+                                               .with(new JsonPatch.Add("/integerList/1", 9))
+                                               .with(new JsonPatch.Remove("/integerMap/two"))
+                                               .with(new JsonPatch.Copy("/copy", "/integerMap"))
+                                               .with(new JsonPatch.Move("/integerMap/four", "/integerMap/three"))
+                                               .with(new JsonPatch.Replace("/copy/one", Collections.singletonMap("a", true))),
+                                null);
+
+        ResourceInfo patched = context.getResourceInfo();
+
+        Assert.assertEquals("/types", patched._getSelfHref());
+        Assert.assertEquals(Arrays.asList(1, 9, 2, 3), patched._getProperty("integerList"));
+        Assert.assertEquals(2, ((Map<?, ?>) patched._getProperty("integerMap")).size());
+        Assert.assertEquals(3, ((Map<?, ?>) patched._getProperty("integerMap")).get("four"));
+        Assert.assertEquals(Collections.singletonMap("a", true), ((Map<?, ?>) patched._getProperty("copy")).get("one"));
+        Assert.assertEquals(Arrays.asList(1, 2, 3), halResource._getProperty("integerList"));
+        Assert.assertEquals(3, ((Map<?, ?>) halResource._getProperty("integerMap")).size());
+
+        Assert.assertNull(JsonPatchApplier.apply(halResource, new JsonPatch().with(new JsonPatch.Test("/integerList/0", 2))));
+        Assert.assertNull(JsonPatchApplier.apply(halResource, new JsonPatch().with(new JsonPatch.Remove("/_links/self"))));
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private HalResource parseHalResourceFromClasspath(String classpathFile)
+            throws Exception {
+        InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(classpathFile);
+        JsonParser jsonParser = new JsonFactory().createJsonParser(inputStream);
+        JsonUnmarshallerContext jsonUnmarshallerContext = new JsonUnmarshallerContextImpl(jsonParser);
+
+        return HalJsonResourceUnmarshaller.getInstance().unmarshall(jsonUnmarshallerContext);
+    }
+}
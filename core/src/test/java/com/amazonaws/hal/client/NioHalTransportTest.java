@@ -0,0 +1,377 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+
+public class NioHalTransportTest {
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private NioHalTransport transport;
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+
+    //-------------------------------------------------------------
+    // Methods - Setup
+    //-------------------------------------------------------------
+
+    @Before
+    public void startServer()
+            throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+
+                byte[] requestBody = IOUtils.toByteArray(exchange.getRequestBody());
+                String path = exchange.getRequestURI().getPath();
+                byte[] body;
+                int status;
+
+                if (path.equals("/gzip")) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+                    try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+                        gzipStream.write(("{\"accept\":\"" + exchange.getRequestHeaders().getFirst("Accept-Encoding") + "\"}").getBytes("UTF-8"));
+                    }
+
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    exchange.sendResponseHeaders(200, compressed.size());
+
+                    try (OutputStream responseBody = exchange.getResponseBody()) {
+                        compressed.writeTo(responseBody);
+                    }
+
+                    return;
+                }
+
+                if (path.equals("/missing")) {
+                    status = 404;
+                    body = "{\"message\":\"Not here\"}".getBytes("UTF-8");
+                } else {
+                    status = 200;
+                    body = (exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+                            + exchange.getRequestHeaders().getFirst("Accept") + " " + new String(requestBody, "UTF-8")).getBytes("UTF-8");
+                }
+
+                exchange.getResponseHeaders().add("Location", "/created");
+
+                // A length of 0 makes the server use chunked transfer coding.
+                exchange.sendResponseHeaders(status, path.equals("/chunked") ? 0 : body.length);
+
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(body);
+                }
+            }
+        });
+        server.start();
+
+        transport = new NioHalTransport(new ClientConfiguration().withMaxConnections(2), 2);
+    }
+
+
+    @After
+    public void stopServer() {
+        transport.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testGet()
+            throws Exception {
+        Request<?> request = createRequest(HttpMethodName.GET, "/things/a b");
+
+        request.addParameter("q", "x&y");
+        request.addHeader("Accept", "application/hal+json");
+
+        HttpResponse response = send(request);
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals("/created", response.getHeaders().get("Location"));
+        Assert.assertEquals("GET /things/a%20b?q=x%26y application/hal+json ", IOUtils.toString(response.getContent()));
+    }
+
+
+    @Test
+    public void testPostAndChunkedResponses()
+            throws Exception {
+        Request<?> request = createRequest(HttpMethodName.POST, "/chunked");
+
+        request.setContent(new ByteArrayInputStream("{\"a\":1}".getBytes("UTF-8")));
+
+        HttpResponse response = send(request);
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals("POST /chunked null {\"a\":1}", IOUtils.toString(response.getContent()));
+    }
+
+
+    @Test
+    public void testStreamedRequestBody()
+            throws Exception {
+        Iterable<Map<String, Integer>> elements = new Iterable<Map<String, Integer>>() {
+            @Override
+            public Iterator<Map<String, Integer>> iterator() {
+                return new Iterator<Map<String, Integer>>() {
+                    private int next;
+
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < 5000;
+                    }
+
+
+                    @Override
+                    public Map<String, Integer> next() {
+                        return Collections.singletonMap("n", next++);
+                    }
+
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        StringBuilder expected = new StringBuilder("[");
+
+        for (int i = 0; i < 5000; i++) {
+            expected.append(i == 0 ? "" : ",").append("{\"n\":").append(i).append('}');
+        }
+
+        expected.append(']');
+
+        Request<?> request = createRequest(HttpMethodName.POST, "/stream");
+
+        request.setContent(StreamingContent.of(elements));
+
+        HttpResponse response = send(request);
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals("POST /stream null " + expected, IOUtils.toString(response.getContent()));
+    }
+
+
+    @Test
+    public void testErrorStatusIsPassedOn()
+            throws Exception {
+        HttpResponse response = send(createRequest(HttpMethodName.GET, "/missing"));
+
+        Assert.assertEquals(404, response.getStatusCode());
+        Assert.assertEquals("{\"message\":\"Not here\"}", IOUtils.toString(response.getContent()));
+    }
+
+
+    @Test
+    public void testCompressedResponseIsInflated()
+            throws Exception {
+        Request<?> request = createRequest(HttpMethodName.GET, "/gzip");
+
+        new AcceptHalJsonRequestHandler().beforeRequest(request);
+
+        HttpResponse response = send(request);
+        String content = new DecompressingResponseHandler<>(new HttpResponseHandler<String>() {
+            @Override
+            public String handle(HttpResponse response)
+                    throws Exception {
+                return IOUtils.toString(response.getContent());
+            }
+
+
+            @Override
+            public boolean needsConnectionLeftOpen() {
+                return false;
+            }
+        }).handle(response);
+
+        Assert.assertEquals("{\"accept\":\"gzip, deflate\"}", content);
+        Assert.assertFalse(response.getHeaders().containsKey("Content-Encoding"));
+    }
+
+
+    @Test
+    public void testConnectionsAreReusedAndLimited()
+            throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(200, send(createRequest(HttpMethodName.GET, "/chunked")).getStatusCode());
+        }
+
+        Assert.assertEquals(1, clientPorts.size());
+
+        final CountDownLatch done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            transport.send(createRequest(HttpMethodName.GET, "/" + i), new HalTransport.Callback() {
+                @Override
+                public void completed(HttpResponse response) {
+                    done.countDown();
+                }
+
+
+                @Override
+                public void failed(Exception e) {
+                }
+            });
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(clientPorts.toString(), clientPorts.size() <= 2);
+    }
+
+
+    @Test
+    public void testConnectTimesOut()
+            throws Exception {
+        List<Socket> backlog = new ArrayList<>();
+        NioHalTransport connectTransport = new NioHalTransport(new ClientConfiguration().withConnectionTimeout(200), 1);
+
+        // A listening socket that never accepts stops answering connection attempts once its backlog is full.
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName("localhost"))) {
+            for (int i = 0; i < 16; i++) {
+                Socket socket = new Socket();
+
+                backlog.add(socket);
+
+                try {
+                    socket.connect(serverSocket.getLocalSocketAddress(), 200);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+            }
+
+            Request<?> request = createRequest(HttpMethodName.GET, "/");
+
+            request.setEndpoint(URI.create("http://localhost:" + serverSocket.getLocalPort()));
+
+            transport.shutdown();
+            transport = connectTransport;
+
+            try {
+                send(request);
+                Assert.fail("The connection should have timed out.");
+            } catch (SocketTimeoutException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to connect"));
+            }
+        } finally {
+            for (Socket socket : backlog) {
+                socket.close();
+            }
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private Request<?> createRequest(HttpMethodName httpMethod, String resourcePath) {
+        Request<?> request = new DefaultRequest<Void>(null);
+
+        request.setHttpMethod(httpMethod);
+        request.setEndpoint(URI.create("http://localhost:" + server.getAddress().getPort()));
+        request.setResourcePath(resourcePath);
+
+        return request;
+    }
+
+
+    private HttpResponse send(Request<?> request)
+            throws Exception {
+        final HttpResponse[] response = new HttpResponse[1];
+        final Exception[] exception = new Exception[1];
+        final CountDownLatch done = new CountDownLatch(1);
+
+        transport.send(request, new HalTransport.Callback() {
+            @Override
+            public void completed(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                done.countDown();
+            }
+
+
+            @Override
+            public void failed(Exception e) {
+                exception[0] = e;
+                done.countDown();
+            }
+        });
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        if (exception[0] != null) {
+            throw exception[0];
+        }
+
+        return response[0];
+    }
+}
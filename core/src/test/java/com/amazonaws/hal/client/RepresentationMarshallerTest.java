@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.util.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+public class RepresentationMarshallerTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testMarshallRepresentation()
+            throws Exception {
+        Draft draft = new Draft();
+
+        RepresentationMarshaller.Utf8Buffer content = RepresentationMarshaller.marshall(draft);
+
+        Assert.assertEquals("{\"author\":{\"name\":\"Ann \\\"A\\\" \u00c5berg\"},\"counts\":{\"views\":3},"
+                            + "\"published\":true,\"tags\":[\"hal\",null,\"\\n\\u0001\"],\"title\":\"\u20ac \ud83d\ude00\"}",
+                            new String(content.getBytes(), 0, content.getLength(), "UTF-8"));
+        Assert.assertSame(content, RepresentationMarshaller.marshall(Collections.singletonMap("id", 1)));
+        Assert.assertEquals("{\"id\":1}", new String(content.toByteArray(), "UTF-8"));
+    }
+
+
+
+    @Test
+    public void testStreamedContent()
+            throws Exception {
+        final List<Map<String, Integer>> list = Arrays.asList(Collections.singletonMap("n", 1), Collections.singletonMap("n", 2));
+        Iterable<Map<String, Integer>> elements = new Iterable<Map<String, Integer>>() {
+            @Override
+            public Iterator<Map<String, Integer>> iterator() {
+                return list.iterator();
+            }
+        };
+
+        Assert.assertFalse(StreamingContent.isStreamed(list));
+        Assert.assertTrue(StreamingContent.isStreamed(elements));
+        Assert.assertTrue(StreamingContent.isStreamed(list.iterator()));
+        Assert.assertEquals("[{\"n\":1},{\"n\":2}]", IOUtils.toString(StreamingContent.of(list.iterator())));
+
+        // An Iterable is iterated again when the body is reset.
+        InputStream content = StreamingContent.of(elements);
+
+        content.mark(0);
+        Assert.assertEquals("[{\"n\":1},{\"n\":2}]", IOUtils.toString(content));
+        content.reset();
+        Assert.assertEquals("[{\"n\":1},{\"n\":2}]", IOUtils.toString(content));
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes - Representations
+    //-------------------------------------------------------------
+
+    public static class Draft {
+
+        public String getTitle() {
+            return "\u20ac \ud83d\ude00";
+        }
+
+
+        public List<String> getTags() {
+            return Arrays.asList("hal", null, "\n\u0001");
+        }
+
+
+        public Map<String, Integer> getCounts() {
+            return Collections.singletonMap("views", 3);
+        }
+
+
+        public Draft.Author getAuthor() {
+            return new Author();
+        }
+
+
+        public boolean isPublished() {
+            return true;
+        }
+
+
+        public Double getRating() {
+            return null;
+        }
+
+
+        public static class Author {
+            public String getName() {
+                return "Ann \"A\" \u00c5berg";
+            }
+        }
+    }
+}
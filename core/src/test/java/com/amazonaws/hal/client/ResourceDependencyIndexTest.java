@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class ResourceDependencyIndexTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testOnlyCachedResourcesAreIndexed() {
+        Map<String, Object> resourceCache = new HashMap<>();
+        ResourceDependencyIndex index = new ResourceDependencyIndex(resourceCache, new PinnedResourceRegistry(null));
+
+        index.add("/orders", createOrders("/orders/1", "/orders/2"));
+
+        Assert.assertTrue(index.getEmbeddingPaths("/orders/1").isEmpty());
+        Assert.assertTrue(index.getLinkingPaths("/orders/2").isEmpty());
+
+        resourceCache.put("/orders", "orders");
+        index.add("/orders", createOrders("/orders/1", "/orders/2"));
+
+        Assert.assertEquals(Arrays.asList("/orders"), index.getEmbeddingPaths("/orders/1"));
+        Assert.assertEquals(Arrays.asList("/orders"), index.getLinkingPaths("/orders/2"));
+
+        // A new representation replaces the entries of the previous one.
+        index.add("/orders", createOrders("/orders/3", "/orders/4"));
+
+        Assert.assertTrue(index.getEmbeddingPaths("/orders/1").isEmpty());
+        Assert.assertTrue(index.getLinkingPaths("/orders/2").isEmpty());
+        Assert.assertEquals(Arrays.asList("/orders"), index.getEmbeddingPaths("/orders/3"));
+
+        resourceCache.remove("/orders");
+        index.prune("/orders");
+
+        Assert.assertTrue(index.getEmbeddingPaths("/orders/3").isEmpty());
+        Assert.assertTrue(index.getLinkingPaths("/orders/4").isEmpty());
+    }
+
+
+    @Test
+    public void testEvictedResourcesAreSwept() {
+        Map<String, Object> resourceCache = new HashMap<>();
+        ResourceDependencyIndex index = new ResourceDependencyIndex(resourceCache, new PinnedResourceRegistry(null));
+
+        // Cached and then evicted without the index being told, as by an LRU cache
+        for (int i = 0; i < 5000; i++) {
+            String resourcePath = "/orders?page=" + i;
+
+            resourceCache.put(resourcePath, resourcePath);
+            index.add(resourcePath, createOrders("/orders/" + i, "/orders?page=" + (i + 1)));
+            resourceCache.remove(resourcePath);
+        }
+
+        Assert.assertTrue(index.getEmbeddingPaths("/orders/0").isEmpty());
+        Assert.assertTrue(index.getLinkingPaths("/orders?page=1").isEmpty());
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private static HalResource createOrders(String embeddedHref, String linkedHref) {
+        HalResource halResource = new HalResource();
+        HalLink link = new HalLink();
+
+        link.setHref(linkedHref);
+        halResource.setLinks(Collections.singletonMap("next", link));
+        halResource.setEmbedded(Collections.singletonMap(embeddedHref, new HalResource()));
+
+        return halResource;
+    }
+}
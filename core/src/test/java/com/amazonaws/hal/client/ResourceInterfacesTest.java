@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.hal.Link;
+import com.amazonaws.hal.ResourceInfo;
+import com.amazonaws.http.HttpMethodName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+
+public class ResourceInterfacesTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testPrepareReportsProblems() {
+        Assert.assertTrue(ResourceInterfaces.prepare(Post.class).isEmpty());
+
+        List<String> problems = ResourceInterfaces.prepare(Library.class);
+
+        Assert.assertEquals(problems.toString(), 2, problems.size());
+        Assert.assertTrue(problems.toString(), problems.toString().contains("update(): PUT operations require a representation argument."));
+        Assert.assertTrue(problems.toString(), problems.toString().contains("refresh(): methods must be getters or be annotated with @Link."));
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes - Representations
+    //-------------------------------------------------------------
+
+    public interface Post extends ResourceInfo {
+        String getTitle();
+        List<String> getTags();
+    }
+
+
+    public interface Library {
+        @Link(relation = "posts") List<Post> getPosts();
+        @Link(relation = "self", method = HttpMethodName.PUT) Library update();
+        void refresh();
+    }
+}
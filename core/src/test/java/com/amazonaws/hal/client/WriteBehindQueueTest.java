@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.client;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.hal.JsonPatch;
+import com.amazonaws.hal.WriteBehind;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+public class WriteBehindQueueTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testWriteBehindMergesWrites() {
+        final List<String> sent = new ArrayList<>();
+        HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost", "hal",
+                                            new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                            new HashMap<String, Object>(), null) {
+            @Override
+            <T> T putResourceNow(Class<T> resourceClass, String resourcePath, Object representation) {
+                sent.add("PUT " + resourcePath + " " + toJson(RepresentationMarshaller.marshall(representation)));
+
+                return null;
+            }
+
+
+            @Override
+            <T> T patchResourceNow(Class<T> resourceClass, String resourcePath, Object representation) {
+                sent.add("PATCH " + resourcePath + " " + toJson(RepresentationMarshaller.marshallPatch((JsonPatch) representation)));
+
+                return null;
+            }
+        };
+
+        halClient.setWriteBehind(new WriteBehind().withFlushDelay(1, TimeUnit.HOURS));
+
+        halClient.putResource(Void.class, "/counter", Collections.singletonMap("count", 1));
+        halClient.patchResource(void.class, "/counter", new JsonPatch().with(new JsonPatch.Replace("/count", 2)));
+        halClient.patchResource(Void.class, "/counter", new JsonPatch().with(new JsonPatch.Replace("/count", 3)));
+        halClient.patchResource(Void.class, "/status", new JsonPatch().with(new JsonPatch.Add("/state", "busy")));
+        halClient.patchResource(Void.class, "/status", new JsonPatch().with(new JsonPatch.Replace("/state", "idle")));
+
+        Assert.assertTrue(sent.isEmpty());
+
+        halClient.flushWrites();
+        Collections.sort(sent);
+
+        Assert.assertEquals(Arrays.asList("PATCH /status [{\"op\":\"add\",\"path\":\"/state\",\"value\":\"idle\"}]",
+                                          "PUT /counter {\"count\":3}"), sent);
+
+        // A write whose result is used is sent right away, after the write queued for the same resource.
+        sent.clear();
+        halClient.patchResource(Void.class, "/counter", new JsonPatch().with(new JsonPatch.Remove("/count")));
+        halClient.putResource(Object.class, "/counter", Collections.singletonMap("count", 4));
+
+        Assert.assertEquals(Arrays.asList("PATCH /counter [{\"op\":\"remove\",\"path\":\"/count\"}]",
+                                          "PUT /counter {\"count\":4}"), sent);
+
+        // Writes still queued are sent when the client is shut down.
+        sent.clear();
+        halClient.putResource(Void.class, "/counter", Collections.singletonMap("count", 5));
+        halClient.shutdown();
+
+        Assert.assertEquals(Collections.singletonList("PUT /counter {\"count\":5}"), sent);
+    }
+
+
+    @Test
+    public void testDirectWriteWaitsForFlushInProgress()
+            throws InterruptedException {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost", "hal",
+                                                  new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                                  new HashMap<String, Object>(), null) {
+            @Override
+            <T> T putResourceNow(Class<T> resourceClass, String resourcePath, Object representation) {
+                String json = toJson(RepresentationMarshaller.marshall(representation));
+
+                sent.add("start " + json);
+
+                if (resourceClass == Void.class) {
+                    sending.countDown();
+
+                    try {
+                        released.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                sent.add("end " + json);
+
+                return null;
+            }
+        };
+
+        halClient.setWriteBehind(new WriteBehind().withFlushDelay(0, TimeUnit.MILLISECONDS));
+        halClient.putResource(Void.class, "/counter", Collections.singletonMap("count", 1));
+        Assert.assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+        // The queued write has been taken off the queue by the flush thread, and is still being sent.
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                halClient.putResource(Object.class, "/counter", Collections.singletonMap("count", 2));
+            }
+        };
+
+        writer.start();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+
+        while (writer.getState() != Thread.State.BLOCKED && writer.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        released.countDown();
+        writer.join();
+        halClient.shutdown();
+
+        Assert.assertEquals(Arrays.asList("start {\"count\":1}", "end {\"count\":1}",
+                                          "start {\"count\":2}", "end {\"count\":2}"), sent);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private static String toJson(RepresentationMarshaller.Utf8Buffer content) {
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
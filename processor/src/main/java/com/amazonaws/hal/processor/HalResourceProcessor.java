@@ -0,0 +1,379 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.processor;
+
+
+import com.amazonaws.hal.Link;
+import com.amazonaws.hal.UriValue;
+import com.amazonaws.hal.UriVariable;
+import com.amazonaws.http.HttpMethodName;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Generates implementation classes for HAL resource interfaces, so that HalClient can create resource instances
+ * without java.lang.reflect.Proxy and reflective dispatch.
+ *
+ * Every interface declaring a method annotated with Link (or with a UriVariable parameter) is processed, as well as
+ * every interface reachable from it through link return types (resources) and getter return types (values backed by
+ * a JSON object).  For each, an implementation and a GeneratedResourceFactory are generated in the interface's
+ * package, and the factories are registered in META-INF/services so HalClient can discover them.  Interfaces that
+ * can't be implemented (e.g. private or generic ones) are reported and left to the dynamic proxy implementation.
+ */
+@SupportedAnnotationTypes({ "com.amazonaws.hal.Link", "com.amazonaws.hal.UriVariable", "com.amazonaws.hal.UriValue" })
+public class HalResourceProcessor extends AbstractProcessor {
+
+    //-------------------------------------------------------------
+    // Constants
+    //-------------------------------------------------------------
+
+    static final String FACTORY_SERVICE_FILE = "META-INF/services/com.amazonaws.hal.client.GeneratedResourceFactory";
+    static final String RESOURCE_INFO_CLASS = "com.amazonaws.hal.ResourceInfo";
+
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private Set<String> generatedInterfaces = new TreeSet<>();
+    private Set<String> factoryClassNames = new TreeSet<>();
+
+
+    //-------------------------------------------------------------
+    // Implementation - Processor
+    //-------------------------------------------------------------
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, Usage> usages = new LinkedHashMap<>();
+        Deque<TypeElement> pending = new ArrayDeque<>();
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(Link.class)) {
+            addUsage(element.getEnclosingElement(), true, usages, pending);
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(UriValue.class)) {
+            addUsage(element.getEnclosingElement(), true, usages, pending);
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(UriVariable.class)) {
+            addUsage(element.getEnclosingElement().getEnclosingElement(), true, usages, pending);
+        }
+
+        // Walk the interface graph, so that interfaces without any annotations of their own are included as well.
+        while (!pending.isEmpty()) {
+            TypeElement typeElement = pending.pop();
+
+            for (ExecutableElement method : getAbstractMethods(typeElement)) {
+                Link link = method.getAnnotation(Link.class);
+
+                if (link != null) {
+                    TypeMirror returnType = method.getReturnType();
+
+                    if (link.method() == HttpMethodName.GET && isCollection(returnType, "java.util.List")) {
+                        returnType = getTypeArgument(returnType, 0);
+                    } else if (link.method() == HttpMethodName.GET && isCollection(returnType, "java.util.Map")) {
+                        returnType = getTypeArgument(returnType, 1);
+                    }
+
+                    if (returnType != null) {
+                        addUsage(processingEnv.getTypeUtils().asElement(returnType), true, usages, pending);
+                    }
+                } else if (isGetter(method)) {
+                    addValueUsages(method.getReturnType(), usages, pending);
+                }
+            }
+        }
+
+        for (Map.Entry<TypeElement, Usage> entry : usages.entrySet()) {
+            generate(entry.getKey(), entry.getValue());
+        }
+
+        if (roundEnv.processingOver()) {
+            writeFactoryServiceFile();
+        }
+
+        return false;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    /**
+     * @return the abstract methods of the interface, including inherited ones, without duplicates.
+     */
+    List<ExecutableElement> getAbstractMethods(TypeElement typeElement) {
+        Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+
+        for (Element member : processingEnv.getElementUtils().getAllMembers(typeElement)) {
+            if (member.getKind() != ElementKind.METHOD || !member.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+
+            ExecutableElement method = (ExecutableElement) member;
+            StringBuilder signature = new StringBuilder(method.getSimpleName());
+
+            for (Element parameter : method.getParameters()) {
+                signature.append(',').append(processingEnv.getTypeUtils().erasure(parameter.asType()));
+            }
+
+            if (!methods.containsKey(signature.toString())) {
+                methods.put(signature.toString(), method);
+            }
+        }
+
+        return new ArrayList<>(methods.values());
+    }
+
+
+    static boolean isGetter(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+
+        return name.startsWith("get") && name.length() > "get".length();
+    }
+
+
+    boolean isCollection(TypeMirror type, String collectionClass) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeMirror collectionType = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement(collectionClass).asType());
+
+        return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), collectionType);
+    }
+
+
+    static TypeMirror getTypeArgument(TypeMirror type, int index) {
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+
+        if (typeArguments.size() <= index) {
+            return null;
+        }
+
+        TypeMirror typeArgument = typeArguments.get(index);
+
+        if (typeArgument.getKind() == TypeKind.WILDCARD) {
+            return ((WildcardType) typeArgument).getExtendsBound();
+        }
+
+        return typeArgument;
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private void addValueUsages(TypeMirror type, Map<TypeElement, Usage> usages, Deque<TypeElement> pending) {
+        if (type == null || type.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+
+        addUsage(processingEnv.getTypeUtils().asElement(type), false, usages, pending);
+
+        // Element types of lists and maps, e.g. Map<String, Column>
+        for (TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments()) {
+            if (typeArgument.getKind() == TypeKind.WILDCARD) {
+                typeArgument = ((WildcardType) typeArgument).getExtendsBound();
+            }
+
+            addValueUsages(typeArgument, usages, pending);
+        }
+    }
+
+
+    private void addUsage(Element element, boolean resource, Map<TypeElement, Usage> usages, Deque<TypeElement> pending) {
+        if (element == null || element.getKind() != ElementKind.INTERFACE) {
+            return;
+        }
+
+        TypeElement typeElement = (TypeElement) element;
+        String qualifiedName = typeElement.getQualifiedName().toString();
+
+        if (qualifiedName.startsWith("java.") || qualifiedName.startsWith("javax.") || qualifiedName.equals(RESOURCE_INFO_CLASS)
+            || generatedInterfaces.contains(qualifiedName)) {
+            return;
+        }
+
+        Usage usage = usages.get(typeElement);
+
+        if (usage == null) {
+            usage = new Usage();
+            usages.put(typeElement, usage);
+        }
+
+        if ((resource && !usage.resource) || (!resource && !usage.value)) {
+            if (resource) {
+                usage.resource = true;
+            } else {
+                usage.value = true;
+            }
+
+            pending.push(typeElement);
+        }
+    }
+
+
+    private void generate(TypeElement typeElement, Usage usage) {
+        String qualifiedName = typeElement.getQualifiedName().toString();
+
+        if (!isImplementable(typeElement)) {
+            return;
+        }
+
+        ResourceImplementationWriter writer = new ResourceImplementationWriter(processingEnv, this, typeElement);
+
+        if (!writer.validate(usage.resource)) {
+            return;
+        }
+
+        try {
+            writer.write(usage.resource, usage.value);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                     "Unable to write implementation of " + qualifiedName + ": " + e.getMessage(),
+                                                     typeElement);
+
+            return;
+        }
+
+        generatedInterfaces.add(qualifiedName);
+        factoryClassNames.add(writer.getFactoryClassName());
+    }
+
+
+    private boolean isImplementable(TypeElement typeElement) {
+        String reason = null;
+
+        if (!typeElement.getTypeParameters().isEmpty()) {
+            reason = "generic interfaces are not supported";
+        }
+
+        for (Element element = typeElement; reason == null && element.getKind() != ElementKind.PACKAGE;
+             element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                reason = "it is not accessible from its package";
+            }
+        }
+
+        for (ExecutableElement method : getAbstractMethods(typeElement)) {
+            if (reason == null && !method.getTypeParameters().isEmpty()) {
+                reason = "method " + method.getSimpleName() + " is generic";
+            }
+        }
+
+        if (reason != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                                                     "Not generating an implementation of " + typeElement.getQualifiedName()
+                                                     + " (" + reason + "); a dynamic proxy will be used instead.",
+                                                     typeElement);
+
+            return false;
+        }
+
+        return true;
+    }
+
+
+    private void writeFactoryServiceFile() {
+        if (factoryClassNames.isEmpty()) {
+            return;
+        }
+
+        Set<String> allFactoryClassNames = new TreeSet<>(factoryClassNames);
+
+        // Keep factories registered by an earlier (e.g. incremental) compilation.
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", FACTORY_SERVICE_FILE);
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"))) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        allFactoryClassNames.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException ignore) {
+            // No previous registrations
+        }
+
+        try {
+            FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", FACTORY_SERVICE_FILE);
+
+            try (Writer writer = new OutputStreamWriter(serviceFile.openOutputStream(), "UTF-8")) {
+                for (String factoryClassName : allFactoryClassNames) {
+                    writer.write(factoryClassName);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                     "Unable to write " + FACTORY_SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Inner Classes
+    //-------------------------------------------------------------
+
+    private static final class Usage {
+        boolean resource;       // Returned by a link, backed by a HAL resource
+        boolean value;          // Returned by a getter, backed by a JSON object
+    }
+}
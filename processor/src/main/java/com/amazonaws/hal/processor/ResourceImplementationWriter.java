@@ -0,0 +1,598 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.processor;
+
+
+import com.amazonaws.hal.Link;
+import com.amazonaws.hal.UriValue;
+import com.amazonaws.hal.UriVariable;
+import com.amazonaws.http.HttpMethodName;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Writes the generated classes for one interface: the implementation backed by a HAL resource, the implementation
+ * backed by a JSON object, and the factory that creates them.
+ */
+class ResourceImplementationWriter {
+
+    //-------------------------------------------------------------
+    // Constants
+    //-------------------------------------------------------------
+
+    private static final String CLIENT_PACKAGE = "com.amazonaws.hal.client.";
+
+
+    //-------------------------------------------------------------
+    // Variables - Private
+    //-------------------------------------------------------------
+
+    private ProcessingEnvironment processingEnv;
+    private HalResourceProcessor processor;
+    private TypeElement typeElement;
+    private Types types;
+    private String packageName;
+    private String baseName;        // Outer_Inner for nested interfaces
+
+
+    //-------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------
+
+    ResourceImplementationWriter(ProcessingEnvironment processingEnv, HalResourceProcessor processor, TypeElement typeElement) {
+        this.processingEnv = processingEnv;
+        this.processor = processor;
+        this.typeElement = typeElement;
+        this.types = processingEnv.getTypeUtils();
+        this.packageName = processingEnv.getElementUtils().getPackageOf(typeElement).getQualifiedName().toString();
+
+        StringBuilder name = new StringBuilder(typeElement.getSimpleName());
+
+        for (Element element = typeElement.getEnclosingElement(); !(element instanceof PackageElement);
+             element = element.getEnclosingElement()) {
+            name.insert(0, element.getSimpleName() + "_");
+        }
+
+        this.baseName = name.toString();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Package
+    //-------------------------------------------------------------
+
+    String getFactoryClassName() {
+        return qualify(baseName + "_HalFactory");
+    }
+
+
+    /**
+     * Report configuration problems that would otherwise only surface when the method is invoked.
+     *
+     * @param resource true if the interface is used as a resource.
+     * @return true if no errors were found.
+     */
+    boolean validate(boolean resource) {
+        boolean valid = true;
+
+        for (ExecutableElement method : processor.getAbstractMethods(typeElement)) {
+            Link link = method.getAnnotation(Link.class);
+
+            if (!resource || link == null) {
+                continue;
+            }
+
+            if (requiresRepresentation(link) && method.getParameters().isEmpty()) {
+                error(link.method() + " operations require a representation argument.", method);
+                valid = false;
+            }
+
+            if (method.getReturnType().getKind().isPrimitive()) {
+                error("Link methods must return a resource interface, a List or Map of them, or void.", method);
+                valid = false;
+            }
+        }
+
+        return valid;
+    }
+
+
+    void write(boolean resource, boolean value)
+            throws IOException {
+        if (resource) {
+            writeResourceClass();
+        }
+
+        if (value) {
+            writeValueClass();
+        }
+
+        writeFactoryClass(resource, value);
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Classes
+    //-------------------------------------------------------------
+
+    private void writeResourceClass()
+            throws IOException {
+        String className = baseName + "_HalResource";
+
+        try (PrintWriter out = createSourceFile(className)) {
+            writeClassHeader(out, className, CLIENT_PACKAGE + "GeneratedResource");
+
+            out.println("    private final " + CLIENT_PACKAGE + "HalResourceContext context;");
+            out.println();
+            out.println();
+            out.println("    public " + className + "(" + CLIENT_PACKAGE + "HalResourceContext context) {");
+            out.println("        this.context = context;");
+            out.println("    }");
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + CLIENT_PACKAGE + "HalResourceContext _getResourceContext() {");
+            out.println("        return context;");
+            out.println("    }");
+
+            List<String> typeConstants = new ArrayList<>();
+
+            for (ExecutableElement method : processor.getAbstractMethods(typeElement)) {
+                if (isObjectMethod(method)) {
+                    continue;
+                }
+
+                out.println();
+                out.println();
+                writeMethodDeclaration(out, method);
+
+                Link link = method.getAnnotation(Link.class);
+
+                if (isResourceInfoMethod(method)) {
+                    out.print("        return context.getResourceInfo()." + method.getSimpleName() + "(");
+                    out.print(getParameterNames(method));
+                    out.println(");");
+                } else if (link != null) {
+                    writeLinkBody(out, method, link);
+                } else if (HalResourceProcessor.isGetter(method)) {
+                    writeGetterBody(out, method, typeConstants);
+                } else {
+                    writeUnsupportedBody(out, method);
+                }
+
+                out.println("    }");
+            }
+
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public String toString() {");
+            out.println("        return context.getResourcePath();");
+            out.println("    }");
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean equals(Object o) {");
+            out.println("        return context.isSameResource(o);");
+            out.println("    }");
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public int hashCode() {");
+            out.println("        return context.getResourcePath().hashCode();");
+            out.println("    }");
+
+            writeTypeConstants(out, typeConstants);
+
+            out.println("}");
+        }
+    }
+
+
+    private void writeValueClass()
+            throws IOException {
+        String className = baseName + "_HalValue";
+
+        try (PrintWriter out = createSourceFile(className)) {
+            writeClassHeader(out, className, null);
+
+            out.println("    private final " + CLIENT_PACKAGE + "PropertyMapContext context;");
+            out.println();
+            out.println();
+            out.println("    public " + className + "(" + CLIENT_PACKAGE + "PropertyMapContext context) {");
+            out.println("        this.context = context;");
+            out.println("    }");
+
+            List<String> typeConstants = new ArrayList<>();
+
+            for (ExecutableElement method : processor.getAbstractMethods(typeElement)) {
+                if (isObjectMethod(method)) {
+                    continue;
+                }
+
+                out.println();
+                out.println();
+                writeMethodDeclaration(out, method);
+
+                if (HalResourceProcessor.isGetter(method) && method.getAnnotation(Link.class) == null) {
+                    writeGetterBody(out, method, typeConstants);
+                } else {
+                    writeUnsupportedBody(out, method);
+                }
+
+                out.println("    }");
+            }
+
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public String toString() {");
+            out.println("        return context.toString();");
+            out.println("    }");
+
+            writeTypeConstants(out, typeConstants);
+
+            out.println("}");
+        }
+    }
+
+
+    private void writeFactoryClass(boolean resource, boolean value)
+            throws IOException {
+        String className = baseName + "_HalFactory";
+
+        try (PrintWriter out = createSourceFile(className)) {
+            writeClassHeader(out, className, CLIENT_PACKAGE + "GeneratedResourceFactory");
+
+            out.println("    @Override");
+            out.println("    public Class<?> getResourceClass() {");
+            out.println("        return " + types.erasure(typeElement.asType()) + ".class;");
+            out.println("    }");
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object createResource(" + CLIENT_PACKAGE + "HalResourceContext context) {");
+            out.println(resource ? "        return new " + baseName + "_HalResource(context);" : "        return null;");
+            out.println("    }");
+            out.println();
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object createValue(" + CLIENT_PACKAGE + "PropertyMapContext context) {");
+            out.println(value ? "        return new " + baseName + "_HalValue(context);" : "        return null;");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Members
+    //-------------------------------------------------------------
+
+    private void writeClassHeader(PrintWriter out, String className, String additionalInterface) {
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println();
+        }
+
+        out.println("/**");
+        out.println(" * Generated by " + HalResourceProcessor.class.getName() + " from " + typeElement.getQualifiedName() + ".");
+        out.println(" */");
+        out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+
+        if (className.endsWith("_HalFactory")) {
+            out.println("public final class " + className + " implements " + additionalInterface + " {");
+        } else {
+            out.print("final class " + className + " implements " + types.erasure(typeElement.asType()));
+            out.println(additionalInterface == null ? " {" : ", " + additionalInterface + " {");
+        }
+
+        out.println();
+    }
+
+
+    private void writeMethodDeclaration(PrintWriter out, ExecutableElement method) {
+        out.println("    @Override");
+        out.print("    public " + method.getReturnType() + " " + method.getSimpleName() + "(");
+
+        List<? extends VariableElement> parameters = method.getParameters();
+
+        for (int i = 0; i < parameters.size(); i++) {
+            TypeMirror parameterType = parameters.get(i).asType();
+
+            if (i > 0) {
+                out.print(", ");
+            }
+
+            if (method.isVarArgs() && i == parameters.size() - 1) {
+                out.print(((ArrayType) parameterType).getComponentType() + "...");
+            } else {
+                out.print(parameterType);
+            }
+
+            out.print(" p" + i);
+        }
+
+        out.print(")");
+
+        if (!method.getThrownTypes().isEmpty()) {
+            out.print(" throws ");
+
+            for (int i = 0; i < method.getThrownTypes().size(); i++) {
+                out.print((i > 0 ? ", " : "") + method.getThrownTypes().get(i));
+            }
+        }
+
+        out.println(" {");
+    }
+
+
+    private void writeLinkBody(PrintWriter out, ExecutableElement method, Link link) {
+        TypeMirror returnType = method.getReturnType();
+        String relation = literal(link.relation());
+        String returnPrefix = returnType.getKind() == TypeKind.VOID ? "        " : "        return (" + returnType + ") ";
+
+        if (link.method() == HttpMethodName.GET && processor.isCollection(returnType, "java.util.List")) {
+            out.println(returnPrefix + "context.getLinkedResourceList(" + classLiteral(HalResourceProcessor.getTypeArgument(returnType, 0))
+                        + ", " + relation + ");");
+        } else if (link.method() == HttpMethodName.GET && processor.isCollection(returnType, "java.util.Map")) {
+            out.println(returnPrefix + "context.getLinkedResourceMap(" + classLiteral(HalResourceProcessor.getTypeArgument(returnType, 1))
+                        + ", " + relation + ", com.amazonaws.hal.Link.KeyField." + link.keyField().name() + ");");
+        } else if (link.method() == HttpMethodName.GET) {
+            out.println(returnPrefix + "context.getLinkedResource(" + classLiteral(returnType) + ", " + relation + ", "
+                        + getUriVariables(method, link) + ");");
+        } else {
+            String href = "context.getRelationHref(" + relation + ", " + getUriVariables(method, link) + ")";
+            String clientMethod;
+
+            switch (link.method()) {
+            case POST:
+                clientMethod = "postResource";
+                break;
+            case PUT:
+                clientMethod = "putResource";
+                break;
+            case PATCH:
+                clientMethod = "patchResource";
+                break;
+            case DELETE:
+                clientMethod = "deleteResource";
+                break;
+            default:
+                out.println("        throw new UnsupportedOperationException(\"Unexpected HTTP method: " + link.method() + "\");");
+                return;
+            }
+
+            out.println(returnPrefix + "context.getHalClient()." + clientMethod + "(" + classLiteral(returnType) + ", " + href
+                        + (requiresRepresentation(link) ? ", p0" : "") + ");");
+        }
+    }
+
+
+    private void writeGetterBody(PrintWriter out, ExecutableElement method, List<String> typeConstants) {
+        TypeMirror returnType = method.getReturnType();
+        String name = method.getSimpleName().toString().substring("get".length());
+        String propertyName = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+        String type = typeExpression(returnType);
+
+        // Generic types are built once per class rather than on every call.
+        if (!type.endsWith(".class")) {
+            typeConstants.add(type);
+            type = "TYPE_" + (typeConstants.size() - 1);
+        }
+
+        String castType = returnType.getKind().isPrimitive() ? types.boxedClass((PrimitiveType) returnType).getQualifiedName().toString()
+                                                             : returnType.toString();
+
+        out.println("        return (" + castType + ") context.getProperty(" + literal(propertyName) + ", " + type + ");");
+    }
+
+
+    private void writeUnsupportedBody(PrintWriter out, ExecutableElement method) {
+        out.println("        throw new UnsupportedOperationException(\"Don't know how to handle '" + method.getSimpleName() + "'\");");
+    }
+
+
+    private void writeTypeConstants(PrintWriter out, List<String> typeConstants) {
+        if (typeConstants.isEmpty()) {
+            return;
+        }
+
+        out.println();
+        out.println();
+
+        for (int i = 0; i < typeConstants.size(); i++) {
+            out.println("    private static final java.lang.reflect.Type TYPE_" + i + " = " + typeConstants.get(i) + ";");
+        }
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Expressions
+    //-------------------------------------------------------------
+
+    /**
+     * @return an expression for the java.lang.reflect.Type equivalent of the type mirror.
+     */
+    private String typeExpression(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            StringBuilder expression = new StringBuilder(CLIENT_PACKAGE + "GeneratedTypes.parameterizedType(");
+
+            expression.append(classLiteral(type));
+
+            for (TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments()) {
+                expression.append(", ").append(typeExpression(typeArgument));
+            }
+
+            return expression.append(")").toString();
+        } else if (type.getKind() == TypeKind.WILDCARD) {
+            TypeMirror extendsBound = ((WildcardType) type).getExtendsBound();
+
+            return extendsBound == null ? "Object.class" : typeExpression(extendsBound);
+        } else if (type.getKind() == TypeKind.TYPEVAR) {
+            return typeExpression(((TypeVariable) type).getUpperBound());
+        }
+
+        return classLiteral(type);
+    }
+
+
+    private String classLiteral(TypeMirror type) {
+        if (type == null) {
+            return "com.amazonaws.hal.ResourceInfo.class";
+        }
+
+        return types.erasure(type) + ".class";
+    }
+
+
+    private String getUriVariables(ExecutableElement method, Link link) {
+        StringBuilder names = new StringBuilder("new String[] {");
+        StringBuilder values = new StringBuilder("new Object[] {");
+        List<? extends VariableElement> parameters = method.getParameters();
+        boolean first = true;
+
+        for (int i = 0; i < parameters.size(); i++) {
+            UriVariable uriVariable = parameters.get(i).getAnnotation(UriVariable.class);
+
+            if (uriVariable != null) {
+                names.append(first ? " " : ", ").append(literal(uriVariable.name()));
+                values.append(first ? " " : ", ").append("p").append(i);
+                first = false;
+            }
+        }
+
+        for (UriValue uriValue : link.uriValues()) {
+            names.append(first ? " " : ", ").append(literal(uriValue.name()));
+            values.append(first ? " " : ", ").append(literal(uriValue.value()));
+            first = false;
+        }
+
+        return names.append(first ? "}" : " }") + ", " + values.append(first ? "}" : " }");
+    }
+
+
+    private String getParameterNames(ExecutableElement method) {
+        StringBuilder names = new StringBuilder();
+
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            names.append(i > 0 ? ", p" : "p").append(i);
+        }
+
+        return names.toString();
+    }
+
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+
+        for (char c : value.toCharArray()) {
+            switch (c) {
+            case '"':
+                literal.append("\\\"");
+                break;
+            case '\\':
+                literal.append("\\\\");
+                break;
+            case '\n':
+                literal.append("\\n");
+                break;
+            case '\r':
+                literal.append("\\r");
+                break;
+            case '\t':
+                literal.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c > 0x7e) {
+                    literal.append(String.format("\\u%04x", (int) c));
+                } else {
+                    literal.append(c);
+                }
+            }
+        }
+
+        return literal.append('"').toString();
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private - Helpers
+    //-------------------------------------------------------------
+
+    private PrintWriter createSourceFile(String className)
+            throws IOException {
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualify(className), typeElement);
+
+        return new PrintWriter(sourceFile.openWriter());
+    }
+
+
+    private String qualify(String className) {
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+
+    private boolean isResourceInfoMethod(ExecutableElement method) {
+        Element declaringElement = method.getEnclosingElement();
+
+        return declaringElement.getKind() == ElementKind.INTERFACE
+               && ((TypeElement) declaringElement).getQualifiedName().contentEquals(HalResourceProcessor.RESOURCE_INFO_CLASS);
+    }
+
+
+    private boolean isObjectMethod(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        int parameterCount = method.getParameters().size();
+
+        return (name.equals("toString") && parameterCount == 0)
+               || (name.equals("hashCode") && parameterCount == 0)
+               || (name.equals("equals") && parameterCount == 1);
+    }
+
+
+    private static boolean requiresRepresentation(Link link) {
+        return link.method() == HttpMethodName.POST || link.method() == HttpMethodName.PUT || link.method() == HttpMethodName.PATCH;
+    }
+
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.hal.processor;
+
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.hal.ResourceInfo;
+import com.amazonaws.hal.client.HalClient;
+import com.amazonaws.hal.client.NioHalTransport;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class HalResourceProcessorTest {
+
+    //-------------------------------------------------------------
+    // Methods - Test Cases
+    //-------------------------------------------------------------
+
+    @Test
+    public void testGeneratesImplementations()
+            throws Exception {
+        File outputDirectory = Files.createTempDirectory("hal-processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(outputDirectory,
+                source("sample.Root",
+                       "package sample;",
+                       "import com.amazonaws.hal.*;",
+                       "import com.amazonaws.http.HttpMethodName;",
+                       "import java.util.*;",
+                       "public interface Root extends ResourceInfo {",
+                       "    String getName();",
+                       "    int getCount();",
+                       "    Map<String, Column> getColumns();",
+                       "    @Link(relation = \"items\") List<Item> getItems();",
+                       "    @Link(relation = \"item\") Item getItem(@UriVariable(name = \"id\") String id);",
+                       "    @Link(relation = \"byName\", keyField = Link.KeyField.Name) Map<String, Item> getItemsByName();",
+                       "    @Link(relation = \"items\", method = HttpMethodName.POST) Item createItem(Object representation);",
+                       "    @Link(relation = \"self\", method = HttpMethodName.DELETE) void delete();",
+                       "}"),
+                source("sample.Item",
+                       "package sample;",
+                       "public interface Item {",
+                       "    String getId();",
+                       "}"),
+                source("sample.Column",
+                       "package sample;",
+                       "public interface Column {",
+                       "    String getDisplayName();",
+                       "}"));
+
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), errors(diagnostics).isEmpty());
+
+        for (String className : Arrays.asList("Root_HalResource", "Root_HalFactory", "Item_HalResource", "Item_HalFactory",
+                                              "Column_HalValue", "Column_HalFactory")) {
+            Assert.assertTrue(className, new File(outputDirectory, "sample/" + className + ".class").exists());
+        }
+
+        List<String> factories = Files.readAllLines(new File(outputDirectory, HalResourceProcessor.FACTORY_SERVICE_FILE).toPath(),
+                                                    Charset.forName("UTF-8"));
+
+        Assert.assertEquals(Arrays.asList("sample.Column_HalFactory", "sample.Item_HalFactory", "sample.Root_HalFactory"), factories);
+    }
+
+
+    @Test
+    public void testGeneratedImplementationsReadResources()
+            throws Exception {
+        File outputDirectory = Files.createTempDirectory("hal-processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(outputDirectory,
+                source("sample.Root",
+                       "package sample;",
+                       "import com.amazonaws.hal.*;",
+                       "import java.util.*;",
+                       "public interface Root extends ResourceInfo {",
+                       "    String getName();",
+                       "    int getCount();",
+                       "    Map<String, Column> getColumns();",
+                       "    @Link(relation = \"items\") List<Item> getItems();",
+                       "    @Link(relation = \"item\") Item getItem(@UriVariable(name = \"id\") String id);",
+                       "    @Link(relation = \"byName\", keyField = Link.KeyField.Name) Map<String, Item> getItemsByName();",
+                       "}"),
+                source("sample.Item",
+                       "package sample;",
+                       "public interface Item {",
+                       "    String getId();",
+                       "}"),
+                source("sample.Column",
+                       "package sample;",
+                       "public interface Column {",
+                       "    String getDisplayName();",
+                       "}"));
+
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), errors(diagnostics).isEmpty());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange)
+                    throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                String body = path.startsWith("/items/")
+                        ? "{\"_links\":{\"self\":{\"href\":\"" + path + "\"}},\"id\":\"" + path.substring(7) + "\"}"
+                        : "{\"_links\":{\"self\":{\"href\":\"/\"},"
+                          + "\"items\":[{\"href\":\"/items/1\"},{\"href\":\"/items/2\"}],"
+                          + "\"item\":{\"href\":\"/items/{id}\",\"templated\":true},"
+                          + "\"byName\":[{\"href\":\"/items/1\",\"name\":\"one\"}]},"
+                          + "\"name\":\"root\",\"count\":3,\"columns\":{\"a\":{\"displayName\":\"A\"}}}";
+                byte[] bytes = body.getBytes("UTF-8");
+
+                exchange.getResponseHeaders().add("Content-Type", "application/hal+json");
+                exchange.sendResponseHeaders(200, bytes.length);
+
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(bytes);
+                }
+            }
+        });
+        server.start();
+
+        NioHalTransport transport = new NioHalTransport(new ClientConfiguration(), 1);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { outputDirectory.toURI().toURL() },
+                                                             getClass().getClassLoader())) {
+            Class<?> rootClass = classLoader.loadClass("sample.Root");
+            HalClient halClient = new HalClient(new ClientConfiguration(), "http://localhost:" + server.getAddress().getPort(), "hal",
+                                                new StaticCredentialsProvider(new AnonymousAWSCredentials()),
+                                                new HashMap<String, Object>(), null);
+
+            halClient.setTransport(transport);
+
+            Object root = halClient.getResource(rootClass, "/");
+
+            // The generated implementation is used rather than a dynamic proxy.
+            Assert.assertEquals("sample.Root_HalResource", root.getClass().getName());
+            Assert.assertEquals("/", ((ResourceInfo) root)._getSelfHref());
+            Assert.assertEquals("root", invoke(root, "getName"));
+            Assert.assertEquals(3, invoke(root, "getCount"));
+
+            Object column = ((Map<?, ?>) invoke(root, "getColumns")).get("a");
+
+            Assert.assertEquals("sample.Column_HalValue", column.getClass().getName());
+            Assert.assertEquals("A", invoke(column, "getDisplayName"));
+
+            List<?> items = (List<?>) invoke(root, "getItems");
+
+            Assert.assertEquals(2, items.size());
+            Assert.assertEquals("sample.Item_HalResource", items.get(1).getClass().getName());
+            Assert.assertEquals("2", invoke(items.get(1), "getId"));
+            Assert.assertEquals("7", invoke(invoke(root, "getItem", "7"), "getId"));
+            Assert.assertEquals("1", invoke(((Map<?, ?>) invoke(root, "getItemsByName")).get("one"), "getId"));
+        } finally {
+            transport.shutdown();
+            server.stop(0);
+        }
+    }
+
+
+    @Test
+    public void testReportsMissingRepresentation()
+            throws Exception {
+        File outputDirectory = Files.createTempDirectory("hal-processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(outputDirectory,
+                source("sample.Root",
+                       "package sample;",
+                       "import com.amazonaws.hal.*;",
+                       "import com.amazonaws.http.HttpMethodName;",
+                       "public interface Root {",
+                       "    @Link(relation = \"items\", method = HttpMethodName.PUT) Root update();",
+                       "}"));
+
+        List<Diagnostic<? extends JavaFileObject>> errors = errors(diagnostics);
+
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0).getMessage(null).contains("PUT operations require a representation argument."));
+    }
+
+
+    //-------------------------------------------------------------
+    // Methods - Private
+    //-------------------------------------------------------------
+
+    private DiagnosticCollector<JavaFileObject> compile(File outputDirectory, JavaFileObject... sources)
+            throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDirectory));
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(outputDirectory));
+
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                                                                 Arrays.asList("-classpath", System.getProperty("java.class.path")),
+                                                                 null, Arrays.asList(sources));
+
+            task.setProcessors(Collections.singletonList(new HalResourceProcessor()));
+            task.call();
+        }
+
+        return diagnostics;
+    }
+
+
+    /**
+     * Call a method of a class the test compiled, through the interface it was declared in.
+     */
+    private static Object invoke(Object resource, String methodName, String... arguments)
+            throws Exception {
+        Class<?>[] parameterTypes = new Class<?>[arguments.length];
+
+        Arrays.fill(parameterTypes, String.class);
+
+        for (Class<?> resourceInterface : resource.getClass().getInterfaces()) {
+            try {
+                return resourceInterface.getMethod(methodName, parameterTypes).invoke(resource, (Object[]) arguments);
+            } catch (NoSuchMethodException ignore) {
+                // Declared by another of the interfaces
+            }
+        }
+
+        throw new NoSuchMethodException(methodName);
+    }
+
+
+    private List<Diagnostic<? extends JavaFileObject>> errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+        }
+
+        return errors;
+    }
+
+
+    private static JavaFileObject source(String className, String... lines) {
+        final StringBuilder content = new StringBuilder();
+
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+}